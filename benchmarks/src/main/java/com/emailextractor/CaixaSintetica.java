@@ -0,0 +1,115 @@
+package com.emailextractor;
+
+import com.icegreen.greenmail.store.FolderException;
+import com.icegreen.greenmail.store.MailFolder;
+import jakarta.mail.Flags;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Povoa uma pasta do GreenMail com mensagens sintéticas e calcula, ao mesmo tempo,
+ * os contatos que o extrator deve produzir (data mais recente e nome não vazio da
+ * mensagem de menor UID, com o INTERNALDATE quando falta o cabeçalho Date).
+ */
+class CaixaSintetica {
+
+    private static final String[] DOMINIOS = {
+            "gmail.com", "outlook.com", "empresa.com.br", "lists.apache.org", "uol.com.br", "exemplo.org"
+    };
+    private static final String[] NOMES = {
+            "Maria Silva", "João Souza", "Ana Paula Oliveira", "Carlos Lima", "Fernanda Costa", "Pedro Álvares"
+    };
+    private static final long DATA_BASE = 1_600_000_000_000L;
+
+    /**
+     * Contato esperado no CSV.
+     */
+    static final class Esperado {
+        String nome = "";
+        long data = RepositorioContatos.SEM_DATA;
+    }
+
+    private final int mensagens;
+    private final int remetentes;
+    private final int percentualSemData;
+    private final int percentualMultiplosFrom;
+    private final int percentualSemNome;
+    private final long semente;
+
+    CaixaSintetica(int mensagens, int remetentes, int percentualSemData, int percentualMultiplosFrom,
+            int percentualSemNome, long semente) {
+        this.mensagens = mensagens;
+        this.remetentes = remetentes;
+        this.percentualSemData = percentualSemData;
+        this.percentualMultiplosFrom = percentualMultiplosFrom;
+        this.percentualSemNome = percentualSemNome;
+        this.semente = semente;
+    }
+
+    /**
+     * Grava as mensagens na pasta, em ordem de UID, e devolve os contatos esperados.
+     */
+    Map<String, Esperado> povoar(MailFolder pasta) throws MessagingException, FolderException {
+        Session sessao = Session.getInstance(new Properties());
+        Random aleatorio = new Random(semente);
+        SimpleDateFormat formatoData = new SimpleDateFormat("EEE, d MMM yyyy HH:mm:ss Z", Locale.US);
+        Map<String, Esperado> esperados = new HashMap<>();
+
+        for (int i = 0; i < mensagens; i++) {
+            // Datas fora de ordem, como em caixas com mensagens importadas
+            long data = DATA_BASE + (long) aleatorio.nextInt(200_000_000) * 1000L;
+            long dataInterna = DATA_BASE + i * 1000L;
+            boolean semData = aleatorio.nextInt(100) < percentualSemData;
+            int enderecos = aleatorio.nextInt(100) < percentualMultiplosFrom ? 2 : 1;
+
+            StringBuilder from = new StringBuilder();
+            for (int e = 0; e < enderecos; e++) {
+                int id = aleatorio.nextInt(remetentes);
+                String email = "remetente" + id + "@" + DOMINIOS[id % DOMINIOS.length];
+                String nome = aleatorio.nextInt(100) < percentualSemNome ? "" : NOMES[id % NOMES.length];
+                if (e > 0) {
+                    from.append(", ");
+                }
+                if (nome.isEmpty()) {
+                    from.append(email);
+                } else {
+                    from.append("=?UTF-8?B?")
+                            .append(java.util.Base64.getEncoder().encodeToString(nome.getBytes(StandardCharsets.UTF_8)))
+                            .append("?= <").append(email).append('>');
+                }
+
+                Esperado esperado = esperados.computeIfAbsent(email, k -> new Esperado());
+                esperado.data = Math.max(esperado.data, semData ? dataInterna : data);
+                if (esperado.nome.isEmpty()) {
+                    esperado.nome = nome;
+                }
+            }
+
+            StringBuilder cabecalhos = new StringBuilder()
+                    .append("From: ").append(from).append("\r\n")
+                    .append("To: carga@exemplo.com\r\n")
+                    .append("Subject: Mensagem ").append(i).append("\r\n")
+                    .append("Message-ID: <").append(i).append(".").append(semente).append("@carga>\r\n");
+            if (!semData) {
+                cabecalhos.append("Date: ").append(formatoData.format(new Date(data))).append("\r\n");
+            }
+            cabecalhos.append("\r\nCorpo da mensagem ").append(i).append("\r\n");
+
+            MimeMessage mensagem = new MimeMessage(sessao,
+                    new ByteArrayInputStream(cabecalhos.toString().getBytes(StandardCharsets.US_ASCII)));
+            pasta.appendMessage(mensagem, new Flags(), new Date(dataInterna));
+        }
+        return esperados;
+    }
+}
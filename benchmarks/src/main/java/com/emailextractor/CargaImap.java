@@ -0,0 +1,336 @@
+package com.emailextractor;
+
+import com.google.gson.Gson;
+import com.icegreen.greenmail.store.MailFolder;
+import com.icegreen.greenmail.user.GreenMailUser;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import com.opencsv.CSVParserBuilder;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Teste de carga de ponta a ponta: sobe um servidor IMAPS embutido (GreenMail),
+ * povoa a caixa com mensagens sintéticas, executa o extrator em outro processo
+ * através de um {@link ProxyFalhas} e confere o CSV gerado contra o resultado
+ * esperado.
+ *
+ * Quando o proxy derruba a conexão o extrator salva o estado e termina; o teste
+ * o executa de novo com {@code --retomar=sim} até concluir, como faria um usuário.
+ * Argumentos depois de {@code --} são repassados ao extrator.
+ *
+ * Uso: java -cp benchmarks.jar com.emailextractor.CargaImap [opções] [-- opções do extrator]
+ */
+public class CargaImap {
+
+    private static final String USUARIO = "carga@exemplo.com";
+    private static final String SENHA = "carga";
+    private static final String SENHA_KEYSTORE = "changeit";
+    private static final Gson GSON = new Gson();
+
+    private static final String USO = String.join(System.lineSeparator(),
+            "Uso: java -cp benchmarks.jar com.emailextractor.CargaImap [opções] [-- opções do extrator]",
+            "",
+            "  --mensagens=N             Mensagens na caixa (padrão 100000)",
+            "  --remetentes=N            Remetentes distintos (padrão 20000)",
+            "  --sem-data=PCT            Percentual de mensagens sem cabeçalho Date (padrão 5)",
+            "  --multiplos-from=PCT      Percentual com dois endereços no From (padrão 3)",
+            "  --sem-nome=PCT            Percentual de endereços sem nome (padrão 20)",
+            "  --latencia-ms=N           Atraso do proxy na resposta a cada comando IMAP (padrão 0)",
+            "  --desconectar-ms=N        Tempo médio de vida de uma conexão no proxy (padrão 0 = nunca)",
+            "  --tentativas=N            Execuções do extrator antes de desistir (padrão 20)",
+            "  --heap-extrator=TAMANHO   -Xmx do processo do extrator (padrão 512m)",
+            "  --semente=N               Semente dos dados sintéticos (padrão 42)");
+
+    public static void main(String[] args) throws Exception {
+        int mensagens = 100_000;
+        int remetentes = 20_000;
+        int semData = 5;
+        int multiplosFrom = 3;
+        int semNome = 20;
+        long latenciaMs = 0;
+        long desconectarMs = 0;
+        int tentativas = 20;
+        String heap = "512m";
+        long semente = 42;
+        List<String> argumentosExtrator = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("--")) {
+                    for (int j = i + 1; j < args.length; j++) {
+                        argumentosExtrator.add(args[j]);
+                    }
+                    break;
+                }
+                if (arg.equals("--ajuda") || arg.equals("-h") || arg.equals("--help")) {
+                    System.out.println(USO);
+                    return;
+                }
+                int igual = arg.indexOf('=');
+                String nome = igual < 0 ? arg : arg.substring(0, igual);
+                String valor = igual < 0 ? "" : arg.substring(igual + 1);
+                switch (nome) {
+                    case "--mensagens":
+                        mensagens = Integer.parseInt(valor);
+                        break;
+                    case "--remetentes":
+                        remetentes = Integer.parseInt(valor);
+                        break;
+                    case "--sem-data":
+                        semData = Integer.parseInt(valor);
+                        break;
+                    case "--multiplos-from":
+                        multiplosFrom = Integer.parseInt(valor);
+                        break;
+                    case "--sem-nome":
+                        semNome = Integer.parseInt(valor);
+                        break;
+                    case "--latencia-ms":
+                        latenciaMs = Long.parseLong(valor);
+                        break;
+                    case "--desconectar-ms":
+                        desconectarMs = Long.parseLong(valor);
+                        break;
+                    case "--tentativas":
+                        tentativas = Integer.parseInt(valor);
+                        break;
+                    case "--heap-extrator":
+                        heap = valor;
+                        break;
+                    case "--semente":
+                        semente = Long.parseLong(valor);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Opção desconhecida: " + arg);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USO);
+            System.exit(2);
+        }
+
+        configurarCertificado();
+        GreenMail greenMail = new GreenMail(new ServerSetup(portaLivre(), "127.0.0.1", ServerSetup.PROTOCOL_IMAPS));
+        greenMail.start();
+        try {
+            GreenMailUser usuario = greenMail.setUser(USUARIO, USUARIO, SENHA);
+            MailFolder caixa = greenMail.getManagers().getImapHostManager().getInbox(usuario);
+
+            System.out.printf("Povoando a caixa com %d mensagens de %d remetentes...%n", mensagens, remetentes);
+            long inicioPovoamento = System.nanoTime();
+            Map<String, CaixaSintetica.Esperado> esperados =
+                    new CaixaSintetica(mensagens, remetentes, semData, multiplosFrom, semNome, semente).povoar(caixa);
+            System.out.printf("Caixa pronta em %.1f s: %d contatos esperados%n",
+                    (System.nanoTime() - inicioPovoamento) / 1e9, esperados.size());
+
+            try (ProxyFalhas proxy = new ProxyFalhas("127.0.0.1", greenMail.getImaps().getPort(),
+                    latenciaMs, desconectarMs, semente)) {
+                executar(proxy, esperados, tentativas, heap, argumentosExtrator, mensagens);
+            }
+        } finally {
+            greenMail.stop();
+        }
+    }
+
+    private static void executar(ProxyFalhas proxy, Map<String, CaixaSintetica.Esperado> esperados, int tentativas,
+            String heap, List<String> argumentosExtrator, int mensagens) throws IOException, InterruptedException {
+        Path diretorio = Files.createTempDirectory("carga-imap");
+        Path csv = diretorio.resolve("contatos.csv");
+        Path resumo = diretorio.resolve("resumo_execucao.json");
+        Path log = diretorio.resolve("extrator.log");
+
+        List<String> comando = new ArrayList<>();
+        comando.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        comando.add("-Xmx" + heap);
+        comando.add("-cp");
+        comando.add(classpathAbsoluto());
+        comando.add(EmailExtractor.class.getName());
+        comando.add("--usuario=" + USUARIO);
+        // O extrator só confere nomes DNS do certificado, não endereços IP
+        comando.add("--servidor=localhost");
+        comando.add("--porta=" + proxy.getPorta());
+        comando.add("--csv=" + csv);
+        comando.add("--retomar=sim");
+        comando.add("--sem-teclado");
+        comando.add("--progresso=linhas");
+        comando.add("--resumo=" + resumo);
+        comando.addAll(argumentosExtrator);
+
+        System.out.println("Diretório de trabalho: " + diretorio);
+        long inicio = System.nanoTime();
+        long picoHeap = 0;
+        int execucoes = 0;
+        int semProgresso = 0;
+        boolean concluido = false;
+        while (!concluido && execucoes < tentativas && semProgresso < 3) {
+            execucoes++;
+            Files.deleteIfExists(resumo);
+            ProcessBuilder processo = new ProcessBuilder(comando)
+                    .directory(diretorio.toFile())
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.appendTo(log.toFile()));
+            processo.environment().put(OpcoesExtracao.VARIAVEL_SENHA, SENHA);
+            long inicioExecucao = System.nanoTime();
+            int saida = processo.start().waitFor();
+
+            MetricasExtracao.ResumoExecucao dados = lerResumo(resumo);
+            if (dados == null) {
+                // Sem resumo o extrator nem chegou a rodar; repetir não adianta
+                System.out.printf("Execução %d terminou com código %d sem gravar o resumo%n", execucoes, saida);
+                break;
+            }
+            concluido = dados.concluido;
+            semProgresso = dados.mensagensProcessadas > 0 ? 0 : semProgresso + 1;
+            picoHeap = Math.max(picoHeap, dados.picoHeapBytes);
+            System.out.printf("Execução %d: %.1f s, código %d, %s%n", execucoes,
+                    (System.nanoTime() - inicioExecucao) / 1e9, saida,
+                    concluido ? "concluída" : "interrompida após " + dados.mensagensProcessadas + " mensagens");
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        System.out.println();
+        System.out.println("=== Resultado ===");
+        System.out.printf("Tempo total:         %.1f s (%.0f msg/s)%n", segundos, mensagens / segundos);
+        System.out.printf("Execuções:           %d (%d retomadas)%n", execucoes, execucoes - 1);
+        System.out.printf("Conexões no proxy:   %d (%d derrubadas)%n", proxy.getConexoes(), proxy.getDesconexoes());
+        System.out.printf("Pico de heap:        %.1f MB%n", picoHeap / (1024.0 * 1024.0));
+        if (!concluido) {
+            System.out.println("Extração não concluiu em " + execucoes + " execuções; veja " + log);
+            System.exit(1);
+        }
+
+        Path arquivoCsv = Files.exists(csv) ? csv : Path.of(csv + ".gz");
+        if (!conferir(arquivoCsv, esperados)) {
+            System.exit(1);
+        }
+    }
+
+    private static MetricasExtracao.ResumoExecucao lerResumo(Path resumo) throws IOException {
+        if (!Files.exists(resumo)) {
+            return null;
+        }
+        try (Reader leitor = Files.newBufferedReader(resumo, StandardCharsets.UTF_8)) {
+            return GSON.fromJson(leitor, MetricasExtracao.ResumoExecucao.class);
+        }
+    }
+
+    /**
+     * Compara o CSV com os contatos esperados e imprime as divergências.
+     */
+    private static boolean conferir(Path arquivoCsv, Map<String, CaixaSintetica.Esperado> esperados)
+            throws IOException {
+        Map<String, String[]> linhas = new HashMap<>();
+        try (CSVReader leitor = new CSVReaderBuilder(abrir(arquivoCsv))
+                .withCSVParser(new CSVParserBuilder().withSeparator(';').build())
+                .build()) {
+            leitor.skip(1);
+            for (String[] linha : leitor) {
+                linhas.put(linha[0], linha);
+            }
+        }
+
+        int faltando = 0;
+        int datasErradas = 0;
+        int nomesErrados = 0;
+        for (Map.Entry<String, CaixaSintetica.Esperado> entrada : esperados.entrySet()) {
+            String[] linha = linhas.get(entrada.getKey());
+            CaixaSintetica.Esperado esperado = entrada.getValue();
+            if (linha == null) {
+                faltando++;
+                continue;
+            }
+            if (!linha[2].equals(ExportadorCsv.formatarData(esperado.data))) {
+                datasErradas++;
+                if (datasErradas <= 5) {
+                    System.out.printf("  Data divergente em %s: %s (esperado %s)%n", entrada.getKey(), linha[2],
+                            ExportadorCsv.formatarData(esperado.data));
+                }
+            }
+            if (!linha[1].equals(esperado.nome)) {
+                nomesErrados++;
+                if (nomesErrados <= 5) {
+                    System.out.printf("  Nome divergente em %s: '%s' (esperado '%s')%n", entrada.getKey(), linha[1],
+                            esperado.nome);
+                }
+            }
+        }
+        int sobrando = 0;
+        for (String email : linhas.keySet()) {
+            if (!esperados.containsKey(email)) {
+                sobrando++;
+            }
+        }
+
+        System.out.printf("Contatos no CSV:     %d de %d esperados%n", linhas.size(), esperados.size());
+        System.out.printf("Divergências:        %d faltando, %d inesperados, %d datas, %d nomes%n",
+                faltando, sobrando, datasErradas, nomesErrados);
+        boolean correto = faltando == 0 && sobrando == 0 && datasErradas == 0 && nomesErrados == 0;
+        System.out.println(correto ? "CSV correto." : "CSV DIVERGENTE.");
+        return correto;
+    }
+
+    private static Reader abrir(Path arquivo) throws IOException {
+        if (arquivo.toString().endsWith(".gz")) {
+            return new InputStreamReader(new GZIPInputStream(Files.newInputStream(arquivo)), StandardCharsets.UTF_8);
+        }
+        return Files.newBufferedReader(arquivo, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Classpath desta JVM com caminhos absolutos, já que o extrator roda em outro diretório.
+     */
+    private static String classpathAbsoluto() {
+        List<String> entradas = new ArrayList<>();
+        for (String entrada : System.getProperty("java.class.path").split(File.pathSeparator)) {
+            entradas.add(Path.of(entrada).toAbsolutePath().toString());
+        }
+        return String.join(File.pathSeparator, entradas);
+    }
+
+    /**
+     * Gera um certificado para localhost e o entrega ao GreenMail: o certificado
+     * embutido nele não traz o nome do servidor e o extrator confere a identidade.
+     */
+    private static void configurarCertificado() throws IOException, InterruptedException {
+        Path keystore = Files.createTempDirectory("carga-imap-tls").resolve("servidor.p12");
+        Process keytool = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                "-genkeypair", "-alias", "greenmail", "-keyalg", "RSA", "-keysize", "2048",
+                "-validity", "2", "-dname", "CN=localhost", "-ext", "SAN=dns:localhost,ip:127.0.0.1",
+                "-storetype", "PKCS12", "-keystore", keystore.toString(),
+                "-storepass", SENHA_KEYSTORE, "-keypass", SENHA_KEYSTORE)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        if (keytool.waitFor() != 0) {
+            throw new IOException("keytool falhou ao gerar o certificado do servidor de teste");
+        }
+        System.setProperty("greenmail.tls.keystore.file", keystore.toString());
+        System.setProperty("greenmail.tls.keystore.password", SENHA_KEYSTORE);
+        System.setProperty("greenmail.tls.key.password", SENHA_KEYSTORE);
+    }
+
+    private static int portaLivre() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.emailextractor;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Geração determinística de mensagens e contatos para os benchmarks.
+ */
+final class DadosSinteticos {
+
+    private static final String[] DOMINIOS = {
+            "gmail.com", "outlook.com", "empresa.com.br", "lists.apache.org", "uol.com.br",
+            "mail.exemplo.org", "yahoo.com.br", "github.com"
+    };
+    private static final String[] NOMES = {
+            "Maria Silva", "João Souza", "Ana Paula Oliveira", "Carlos Eduardo Lima", "Fernanda Costa"
+    };
+
+    // Formas comuns do cabeçalho From em caixas reais
+    private static final String[] MODELOS_FROM = {
+            "%2$s <%1$s>",
+            "\"%2$s\" <%1$s>",
+            "%1$s",
+            "\"Sobrenome, %2$s\" <%1$s>",
+            "=?UTF-8?B?%3$s?= <%1$s>",
+            "%2$s via Lista <%1$s>"
+    };
+
+    private DadosSinteticos() {
+    }
+
+    static String email(Random aleatorio, int remetentes) {
+        int id = aleatorio.nextInt(remetentes);
+        return "usuario" + id + "@" + DOMINIOS[id % DOMINIOS.length];
+    }
+
+    static String nome(Random aleatorio) {
+        return NOMES[aleatorio.nextInt(NOMES.length)];
+    }
+
+    /**
+     * Mensagens MIME só com cabeçalhos, com From/To/Cc variados e Date no formato RFC 5322.
+     */
+    static MimeMessage[] mensagens(int quantidade, int remetentes, long semente) throws MessagingException {
+        Session sessao = Session.getInstance(new Properties());
+        Random aleatorio = new Random(semente);
+        MimeMessage[] mensagens = new MimeMessage[quantidade];
+        for (int i = 0; i < quantidade; i++) {
+            // Cada remetente usa sempre o mesmo nome e a mesma forma de From, como nas caixas reais
+            int id = aleatorio.nextInt(remetentes);
+            String email = "usuario" + id + "@" + DOMINIOS[id % DOMINIOS.length];
+            String nome = NOMES[id % NOMES.length];
+            String nomeCodificado = java.util.Base64.getEncoder()
+                    .encodeToString(nome.getBytes(StandardCharsets.UTF_8));
+            String from = String.format(MODELOS_FROM[(id / NOMES.length) % MODELOS_FROM.length], email, nome,
+                    nomeCodificado);
+            StringBuilder cabecalhos = new StringBuilder()
+                    .append("From: ").append(from).append("\r\n")
+                    .append("To: ").append(email(aleatorio, remetentes)).append(", ")
+                    .append(nome(aleatorio)).append(" <").append(email(aleatorio, remetentes)).append(">\r\n")
+                    .append("Cc: ").append(email(aleatorio, remetentes)).append("\r\n")
+                    .append("Reply-To: ").append(email).append("\r\n")
+                    .append("Subject: Mensagem ").append(i).append("\r\n")
+                    .append("Date: Mon, ").append(1 + i % 28).append(" Jan 2024 ")
+                    .append(String.format("%02d:%02d:%02d", i % 24, i % 60, (i * 7) % 60)).append(" -0300\r\n")
+                    .append("Message-ID: <").append(i).append("@bench>\r\n")
+                    .append("\r\n");
+            mensagens[i] = new MimeMessage(sessao,
+                    new ByteArrayInputStream(cabecalhos.toString().getBytes(StandardCharsets.US_ASCII)));
+        }
+        return mensagens;
+    }
+
+    /**
+     * Repositório preenchido com a quantidade pedida de contatos distintos.
+     */
+    static RepositorioContatos repositorio(String tipo, int contatos, long semente) {
+        RepositorioContatos repositorio = novoRepositorio(tipo);
+        Random aleatorio = new Random(semente);
+        for (int i = 0; i < contatos; i++) {
+            String email = "usuario" + i + "@" + DOMINIOS[i % DOMINIOS.length];
+            long data = 1_600_000_000_000L + aleatorio.nextInt(1_000_000_000);
+            repositorio.registrar(email, i % 3 == 0 ? "" : nome(aleatorio), data, i);
+        }
+        return repositorio;
+    }
+
+    static RepositorioContatos novoRepositorio(String tipo) {
+        return tipo.equals("mapa") ? new RepositorioContatosMapa() : new RepositorioContatosCompacto();
+    }
+}
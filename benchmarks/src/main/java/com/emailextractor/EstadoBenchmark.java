@@ -0,0 +1,82 @@
+package com.emailextractor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gravação e carga da base do estado (o que a compactação e a retomada fazem),
+ * nos dois formatos, para diferentes quantidades de contatos.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class EstadoBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int contatos;
+
+    @Param({"BINARIO", "JSON"})
+    public String formato;
+
+    @Param({"compacto"})
+    public String repositorio;
+
+    private RepositorioContatos origem;
+    private Path arquivoGravacao;
+    private Path arquivoCarga;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        origem = DadosSinteticos.repositorio(repositorio, contatos, 7);
+        arquivoGravacao = Files.createTempFile("bench-estado-", ".gravacao");
+        arquivoCarga = Files.createTempFile("bench-estado-", ".carga");
+        gravar(arquivoCarga);
+    }
+
+    @TearDown(Level.Trial)
+    public void limpar() throws IOException {
+        Files.deleteIfExists(arquivoGravacao);
+        Files.deleteIfExists(arquivoCarga);
+    }
+
+    private void gravar(Path arquivo) throws IOException {
+        try (OutputStream saida = new BufferedOutputStream(Files.newOutputStream(arquivo), 1 << 20)) {
+            ExtracaoConta.escreverBase(saida, new ExtracaoConta.EstadoProcesso(), origem,
+                    FormatoEstado.valueOf(formato));
+        }
+    }
+
+    @Benchmark
+    public long gravarBase() throws IOException {
+        gravar(arquivoGravacao);
+        return Files.size(arquivoGravacao);
+    }
+
+    @Benchmark
+    public int carregarBase() throws IOException {
+        RepositorioContatos destino = DadosSinteticos.novoRepositorio(repositorio);
+        ExtracaoConta.carregarBase(arquivoCarga, destino);
+        return destino.tamanho();
+    }
+}
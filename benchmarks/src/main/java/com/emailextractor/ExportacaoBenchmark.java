@@ -0,0 +1,66 @@
+package com.emailextractor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Exportação do CSV: ordenação em memória contra ordenação externa (orçamento
+ * pequeno força corridas em disco), por chave de ordenação e com gzip.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ExportacaoBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int contatos;
+
+    @Param({"EMAIL", "DOMINIO", "DATA"})
+    public String ordenacao;
+
+    // 512 MB cabe tudo em memória; 8 MB força a ordenação externa
+    @Param({"512", "8"})
+    public int memoriaMb;
+
+    @Param({"false", "true"})
+    public boolean gzip;
+
+    private RepositorioContatos origem;
+    private Path destino;
+
+    @Setup(Level.Trial)
+    public void preparar() throws IOException {
+        origem = DadosSinteticos.repositorio("compacto", contatos, 5);
+        destino = Files.createTempFile("bench-exportacao-", ".csv");
+    }
+
+    @TearDown(Level.Trial)
+    public void limpar() throws IOException {
+        Files.deleteIfExists(destino);
+    }
+
+    @Benchmark
+    public long exportar() throws IOException {
+        ExportadorCsv exportador = new ExportadorCsv(OrdenacaoCsv.valueOf(ordenacao), gzip, memoriaMb * 1024L * 1024L);
+        return exportador.exportar(origem, destino);
+    }
+}
@@ -0,0 +1,85 @@
+package com.emailextractor;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Custo de extrair os contatos de uma mensagem já carregada (parse dos
+ * cabeçalhos de endereço e da data, normalização e registro no repositório).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ExtracaoBenchmark {
+
+    private static final int MENSAGENS = 4096;
+
+    @Param({"ENVELOPE", "CABECALHOS"})
+    public String modo;
+
+    @Param({"from", "from,to,cc,reply-to"})
+    public String cabecalhos;
+
+    @Param({"compacto", "mapa"})
+    public String repositorio;
+
+    // Remetentes distintos: poucos (caixa com newsletters) ou quase um por mensagem
+    @Param({"20000", "500"})
+    public int remetentes;
+
+    // Capacidade do cache de endereços (0 = sem cache) e normalizações aplicadas
+    @Param({"0", "8192"})
+    public int cache;
+
+    @Param({"nenhuma", "todas"})
+    public String normalizar;
+
+    private MimeMessage[] mensagens;
+    private ModoFetch modoFetch;
+    private Set<CabecalhoEndereco> cabecalhosSelecionados;
+    private RepositorioContatos contatos;
+    private CacheEnderecos cacheEnderecos;
+    private Set<String> alterados;
+    private MetricasExtracao metricas;
+
+    @Setup
+    public void preparar() throws MessagingException {
+        mensagens = DadosSinteticos.mensagens(MENSAGENS, remetentes, 42);
+        modoFetch = ModoFetch.valueOf(modo);
+        cabecalhosSelecionados = EnumSet.copyOf(CabecalhoEndereco.parseLista(cabecalhos));
+        contatos = DadosSinteticos.novoRepositorio(repositorio);
+        cacheEnderecos = new CacheEnderecos(cache, NormalizacaoEndereco.parseLista(normalizar));
+        alterados = new HashSet<>();
+        metricas = new MetricasExtracao(() -> { }, () -> { }, () -> { }, () -> false);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MENSAGENS)
+    public int extrair() throws MessagingException {
+        for (int i = 0; i < mensagens.length; i++) {
+            ExtracaoConta.extractSenderInfo(mensagens[i], contatos, modoFetch, cabecalhosSelecionados,
+                    cacheEnderecos, i, alterados, metricas);
+        }
+        return contatos.tamanho();
+    }
+}
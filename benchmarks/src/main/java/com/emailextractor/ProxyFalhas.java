@@ -0,0 +1,149 @@
+package com.emailextractor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Proxy TCP entre o extrator e o servidor IMAP que injeta falhas: latência na
+ * primeira resposta a cada comando do cliente (simulando o tempo de ida e volta)
+ * e desconexões após um tempo de vida (com variação aleatória) de cada conexão. Repassa os bytes sem interpretá-los, então
+ * funciona com IMAPS.
+ */
+class ProxyFalhas implements AutoCloseable {
+
+    private final ServerSocket servidor;
+    private final String hostDestino;
+    private final int portaDestino;
+    private final long latenciaMs;
+    private final long desconectarAposMs;
+    private final Random aleatorio;
+    private final ScheduledExecutorService agendador;
+    private final AtomicInteger conexoes = new AtomicInteger();
+    private final AtomicInteger desconexoes = new AtomicInteger();
+    private volatile boolean ativo = true;
+
+    /**
+     * @param latenciaMs        atraso da resposta a cada comando do cliente (0 = sem atraso)
+     * @param desconectarAposMs tempo médio de vida de cada conexão antes de ser derrubada (0 = nunca)
+     */
+    ProxyFalhas(String hostDestino, int portaDestino, long latenciaMs, long desconectarAposMs, long semente)
+            throws IOException {
+        this.servidor = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.hostDestino = hostDestino;
+        this.portaDestino = portaDestino;
+        this.latenciaMs = latenciaMs;
+        this.desconectarAposMs = desconectarAposMs;
+        this.aleatorio = new Random(semente);
+        this.agendador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "proxy-desconexoes");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Thread aceitador = new Thread(this::aceitar, "proxy-aceitador");
+        aceitador.setDaemon(true);
+        aceitador.start();
+    }
+
+    int getPorta() {
+        return servidor.getLocalPort();
+    }
+
+    int getConexoes() {
+        return conexoes.get();
+    }
+
+    int getDesconexoes() {
+        return desconexoes.get();
+    }
+
+    private void aceitar() {
+        while (ativo) {
+            try {
+                Socket cliente = servidor.accept();
+                Socket destino = new Socket(hostDestino, portaDestino);
+                cliente.setTcpNoDelay(true);
+                destino.setTcpNoDelay(true);
+                conexoes.incrementAndGet();
+                AtomicBoolean pedidoPendente = new AtomicBoolean();
+                iniciarRepasse(cliente, destino, pedidoPendente, false, "proxy-envio");
+                iniciarRepasse(destino, cliente, pedidoPendente, true, "proxy-resposta");
+                if (desconectarAposMs > 0) {
+                    long vida;
+                    synchronized (aleatorio) {
+                        // Entre metade e uma vez e meia do tempo médio
+                        vida = desconectarAposMs / 2 + (long) (aleatorio.nextDouble() * desconectarAposMs);
+                    }
+                    agendador.schedule(() -> derrubar(cliente, destino), vida, TimeUnit.MILLISECONDS);
+                }
+            } catch (IOException e) {
+                if (ativo) {
+                    System.err.println("Proxy: falha ao aceitar conexão: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void derrubar(Socket cliente, Socket destino) {
+        if (!cliente.isClosed()) {
+            desconexoes.incrementAndGet();
+        }
+        fechar(cliente);
+        fechar(destino);
+    }
+
+    /**
+     * Copia bytes de um socket para outro. No sentido do cliente para o servidor marca
+     * que há um comando pendente; no sentido contrário, o primeiro bloco depois de um
+     * comando espera a latência configurada.
+     */
+    private void iniciarRepasse(Socket origem, Socket destino, AtomicBoolean pedidoPendente, boolean resposta,
+            String nome) {
+        Thread thread = new Thread(() -> {
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream entrada = origem.getInputStream(); OutputStream saida = destino.getOutputStream()) {
+                int lidos;
+                while ((lidos = entrada.read(buffer)) >= 0) {
+                    if (!resposta) {
+                        pedidoPendente.set(true);
+                    } else if (latenciaMs > 0 && pedidoPendente.getAndSet(false)) {
+                        Thread.sleep(latenciaMs);
+                    }
+                    saida.write(buffer, 0, lidos);
+                    saida.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                // Conexão encerrada por um dos lados ou derrubada de propósito
+            } finally {
+                fechar(origem);
+                fechar(destino);
+            }
+        }, nome);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static void fechar(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Já fechado
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        ativo = false;
+        agendador.shutdownNow();
+        servidor.close();
+    }
+}
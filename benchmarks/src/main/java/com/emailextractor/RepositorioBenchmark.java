@@ -0,0 +1,72 @@
+package com.emailextractor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registro de contatos no repositório: mistura de endereços novos e repetidos,
+ * como numa caixa real em que poucos remetentes concentram a maior parte das mensagens.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositorioBenchmark {
+
+    private static final int OPERACOES = 1 << 16;
+
+    @Param({"compacto", "mapa"})
+    public String repositorio;
+
+    @Param({"100000", "1000000"})
+    public int remetentes;
+
+    private RepositorioContatos contatos;
+    private String[] emails;
+    private String[] nomes;
+    private long[] datas;
+
+    @Setup
+    public void preparar() {
+        contatos = DadosSinteticos.repositorio(repositorio, remetentes, 3);
+        Random aleatorio = new Random(11);
+        emails = new String[OPERACOES];
+        nomes = new String[OPERACOES];
+        datas = new long[OPERACOES];
+        for (int i = 0; i < OPERACOES; i++) {
+            // ~10% de endereços inéditos; o restante já está no repositório
+            emails[i] = aleatorio.nextInt(10) == 0
+                    ? "novo" + aleatorio.nextInt() + "@exemplo.com"
+                    : DadosSinteticos.email(aleatorio, remetentes);
+            nomes[i] = DadosSinteticos.nome(aleatorio);
+            datas[i] = 1_600_000_000_000L + aleatorio.nextInt(2_000_000_000);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERACOES)
+    public int registrar() {
+        int alterados = 0;
+        for (int i = 0; i < OPERACOES; i++) {
+            if (contatos.registrar(emails[i], nomes[i], datas[i], i)) {
+                alterados++;
+            }
+        }
+        return alterados;
+    }
+}
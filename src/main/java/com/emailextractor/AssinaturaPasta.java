@@ -0,0 +1,80 @@
+package com.emailextractor;
+
+import jakarta.mail.MessagingException;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.protocol.Status;
+
+/**
+ * Assinatura de uma pasta lida com um único STATUS, sem abri-la: UIDVALIDITY,
+ * UIDNEXT, quantidade de mensagens e, em servidores com CONDSTORE (RFC 7162),
+ * HIGHESTMODSEQ.
+ *
+ * A assinatura é guardada no checkpoint quando a pasta é concluída. Na execução
+ * seguinte, o mesmo UIDVALIDITY com o mesmo UIDNEXT garante que nenhuma mensagem
+ * chegou desde então, e a pasta é pulada sem SELECT nem FETCH. Mensagens e
+ * HIGHESTMODSEQ mudam também com flags e remoções, que não alteram os remetentes:
+ * servem só para informar que a pasta mudou sem mensagens novas.
+ */
+class AssinaturaPasta {
+
+    private static final String[] ITENS = {"UIDVALIDITY", "UIDNEXT", "MESSAGES"};
+    private static final String[] ITENS_CONDSTORE = {"UIDVALIDITY", "UIDNEXT", "MESSAGES", "HIGHESTMODSEQ"};
+
+    long uidValidity;
+    long uidNext;
+    long mensagens;
+    // 0 quando o servidor não tem CONDSTORE
+    long highestModSeq;
+
+    AssinaturaPasta(long uidValidity, long uidNext, long mensagens, long highestModSeq) {
+        this.uidValidity = uidValidity;
+        this.uidNext = uidNext;
+        this.mensagens = mensagens;
+        this.highestModSeq = highestModSeq;
+    }
+
+    /**
+     * Pede a assinatura da pasta (fechada) ao servidor num único STATUS; null se o
+     * servidor não informar UIDVALIDITY e UIDNEXT.
+     */
+    static AssinaturaPasta ler(IMAPFolder pasta) throws MessagingException {
+        Status status = (Status) pasta.doCommand(protocolo -> protocolo.status(pasta.getFullName(),
+                protocolo.hasCapability("CONDSTORE") ? ITENS_CONDSTORE : ITENS));
+        if (status == null || status.uidvalidity <= 0 || status.uidnext <= 0) {
+            return null;
+        }
+        return new AssinaturaPasta(status.uidvalidity, status.uidnext, Math.max(0, status.total),
+                Math.max(0, status.highestmodseq));
+    }
+
+    /**
+     * Se nenhuma mensagem chegou à pasta depois do checkpoint: o UIDVALIDITY é o mesmo
+     * e o UIDNEXT não passou do último UID processado nem da assinatura da conclusão anterior.
+     * Sem UID processado (pasta vazia na conclusão anterior, comum em Rascunhos e Lixeira)
+     * só a assinatura decide, e também o HIGHESTMODSEQ precisa ser o mesmo.
+     *
+     * @param anterior assinatura gravada quando a pasta foi concluída (null se nunca foi)
+     */
+    boolean semMensagensNovas(long uidValidityCheckpoint, long ultimoUid, AssinaturaPasta anterior) {
+        if (uidValidity != uidValidityCheckpoint) {
+            return false;
+        }
+        boolean mesmaValidade = anterior != null && anterior.uidValidity == uidValidity;
+        if (ultimoUid <= 0) {
+            return mesmaValidade && uidNext <= anterior.uidNext && highestModSeq == anterior.highestModSeq;
+        }
+        return uidNext <= ultimoUid + 1 || (mesmaValidade && uidNext <= anterior.uidNext);
+    }
+
+    /**
+     * Se nada mudou na pasta (nem flags ou remoções, quando o servidor informa HIGHESTMODSEQ).
+     */
+    boolean identica(AssinaturaPasta outra) {
+        return outra != null && uidValidity == outra.uidValidity && uidNext == outra.uidNext
+                && mensagens == outra.mensagens && highestModSeq == outra.highestModSeq;
+    }
+
+    AssinaturaPasta copiar() {
+        return new AssinaturaPasta(uidValidity, uidNext, mensagens, highestModSeq);
+    }
+}
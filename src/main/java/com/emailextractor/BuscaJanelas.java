@@ -0,0 +1,185 @@
+package com.emailextractor;
+
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Estágio de busca do pipeline de uma conexão: uma thread própria pede as janelas
+ * ao {@link ControleJanelas} e as busca no servidor enquanto a janela anterior é
+ * processada, entregando-as por uma fila limitada. Com a fila cheia a busca espera
+ * (a extração é o gargalo); com a fila vazia quem espera é a extração (o servidor
+ * é o gargalo). As duas esperas e a ocupação da fila vão para as métricas.
+ *
+ * A conexão continua tendo um único comando em andamento por vez: o FETCH da
+ * próxima janela ocupa a pasta, enquanto a extração só lê dados já carregados.
+ */
+class BuscaJanelas {
+
+    /**
+     * Busca as mensagens de uma janela no servidor.
+     */
+    interface Busca {
+        JanelaBuscada buscar(JanelaUid janela) throws MessagingException;
+    }
+
+    /**
+     * Janela já buscada, pronta para a extração. Os UIDs são lidos na busca: a
+     * pasta sincroniza {@code getUID} com o FETCH, e a extração não deve esperar por ele.
+     */
+    static final class JanelaBuscada {
+        final JanelaUid janela;
+        final Message[] mensagens;
+        final long[] uids;
+
+        JanelaBuscada(JanelaUid janela, Message[] mensagens, long[] uids) {
+            this.janela = janela;
+            this.mensagens = mensagens;
+            this.uids = uids;
+        }
+    }
+
+    // Marca o fim da fila (janelas esgotadas, parada ou falha)
+    private static final JanelaBuscada FIM = new JanelaBuscada(null, null, null);
+    private static final long ESPERA_MS = 200;
+
+    private final ControleJanelas controle;
+    private final Busca busca;
+    private final BooleanSupplier interromper;
+    private final MetricasExtracao metricas;
+    private final BlockingQueue<JanelaBuscada> fila;
+    // Janelas entregues pelo controle e ainda não retiradas da fila, em ordem
+    private final List<JanelaUid> emMaos = new ArrayList<>();
+    private final Thread thread;
+    private volatile boolean parado = false;
+    private volatile Exception falha;
+
+    /**
+     * @param profundidade janelas buscadas à frente da extração (além da que está sendo buscada)
+     * @param interromper  condição externa de parada (encerramento ou falha de outra conexão)
+     */
+    BuscaJanelas(String nome, ControleJanelas controle, int profundidade, Busca busca,
+            BooleanSupplier interromper, MetricasExtracao metricas) {
+        this.controle = controle;
+        this.busca = busca;
+        this.interromper = interromper;
+        this.metricas = metricas;
+        this.fila = new ArrayBlockingQueue<>(profundidade);
+        this.thread = new Thread(this::executar, "busca-" + nome);
+        this.thread.setDaemon(true);
+    }
+
+    void iniciar() {
+        thread.start();
+    }
+
+    private void executar() {
+        try {
+            while (!parado && !interromper.getAsBoolean()) {
+                JanelaUid janela;
+                synchronized (emMaos) {
+                    janela = controle.proxima();
+                    if (janela == null) {
+                        break;
+                    }
+                    emMaos.add(janela);
+                }
+                if (!entregar(busca.buscar(janela))) {
+                    return;
+                }
+            }
+        } catch (MessagingException | RuntimeException e) {
+            falha = e;
+        } finally {
+            entregar(FIM);
+        }
+    }
+
+    /**
+     * Coloca a janela na fila, esperando vaga; desiste se o pipeline for parado.
+     */
+    private boolean entregar(JanelaBuscada buscada) {
+        long inicio = MetricasExtracao.agora();
+        try {
+            while (!parado) {
+                if (fila.offer(buscada, ESPERA_MS, TimeUnit.MILLISECONDS)) {
+                    if (buscada != FIM) {
+                        metricas.alterarFilaJanelas(1);
+                    }
+                    return true;
+                }
+            }
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            metricas.registrarEsperaBusca(MetricasExtracao.agora() - inicio);
+        }
+    }
+
+    /**
+     * Próxima janela buscada, esperando a busca se preciso; null quando acabarem
+     * (ou o pipeline for interrompido). Uma falha da busca é relançada aqui, na
+     * thread da extração, para seguir o tratamento de queda de conexão de sempre.
+     */
+    JanelaBuscada proxima() throws MessagingException {
+        long inicio = MetricasExtracao.agora();
+        JanelaBuscada buscada;
+        try {
+            buscada = fila.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            metricas.registrarEsperaExtracao(MetricasExtracao.agora() - inicio);
+        }
+        if (buscada == FIM) {
+            // Mantém a marca na fila para chamadas seguintes
+            fila.offer(FIM);
+            Exception erro = falha;
+            if (erro instanceof MessagingException) {
+                throw (MessagingException) erro;
+            }
+            if (erro != null) {
+                throw (RuntimeException) erro;
+            }
+            return null;
+        }
+        metricas.alterarFilaJanelas(-1);
+        synchronized (emMaos) {
+            emMaos.remove(buscada.janela);
+        }
+        return buscada;
+    }
+
+    /**
+     * Para a busca (esperando o FETCH em andamento terminar) e devolve, em ordem,
+     * as janelas já entregues pelo controle que a extração não chegou a retirar.
+     */
+    List<JanelaUid> parar() {
+        parado = true;
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (JanelaBuscada buscada : fila) {
+            if (buscada != FIM) {
+                metricas.alterarFilaJanelas(-1);
+            }
+        }
+        fila.clear();
+        synchronized (emMaos) {
+            List<JanelaUid> restantes = new ArrayList<>(emMaos);
+            emMaos.clear();
+            return restantes;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.emailextractor;
+
+import jakarta.mail.Address;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Cabeçalhos de endereço dos quais os contatos podem ser extraídos.
+ */
+enum CabecalhoEndereco {
+    FROM("From"),
+    TO("To"),
+    CC("Cc"),
+    REPLY_TO("Reply-To");
+
+    final String nome;
+
+    CabecalhoEndereco(String nome) {
+        this.nome = nome;
+    }
+
+    /**
+     * Lê os endereços deste cabeçalho a partir dos dados já carregados pelo fetch,
+     * já na forma canônica. No modo ENVELOPE usa os campos do envelope; no modo
+     * CABECALHOS interpreta o cabeçalho bruto (com cache de cabeçalhos repetidos).
+     */
+    CacheEnderecos.Endereco[] ler(Message mensagem, ModoFetch modo, CacheEnderecos cache)
+            throws MessagingException {
+        if (modo == ModoFetch.CABECALHOS) {
+            String[] valores = mensagem.getHeader(nome);
+            if (valores == null) {
+                return CacheEnderecos.NENHUM;
+            }
+            return cache.doCabecalho(valores.length == 1 ? valores[0] : String.join(",", valores));
+        }
+        Address[] enderecos;
+        switch (this) {
+            case FROM:
+                enderecos = mensagem.getFrom();
+                break;
+            case TO:
+                enderecos = mensagem.getRecipients(Message.RecipientType.TO);
+                break;
+            case CC:
+                enderecos = mensagem.getRecipients(Message.RecipientType.CC);
+                break;
+            default:
+                enderecos = mensagem.getReplyTo();
+        }
+        return enderecos != null ? cache.doEnvelope(enderecos) : CacheEnderecos.NENHUM;
+    }
+
+    /**
+     * Interpreta uma lista separada por vírgulas, ex.: "from,to,cc,reply-to".
+     */
+    static Set<CabecalhoEndereco> parseLista(String valor) {
+        Set<CabecalhoEndereco> cabecalhos = EnumSet.noneOf(CabecalhoEndereco.class);
+        for (String item : valor.split(",")) {
+            String chave = item.trim().toLowerCase();
+            if (chave.isEmpty()) continue;
+            boolean encontrado = false;
+            for (CabecalhoEndereco cabecalho : values()) {
+                if (cabecalho.nome.toLowerCase().equals(chave)) {
+                    cabecalhos.add(cabecalho);
+                    encontrado = true;
+                }
+            }
+            if (!encontrado) {
+                throw new IllegalArgumentException("Cabeçalho inválido: " + item.trim()
+                        + " (use from, to, cc ou reply-to)");
+            }
+        }
+        if (cabecalhos.isEmpty()) {
+            throw new IllegalArgumentException("Informe ao menos um cabeçalho");
+        }
+        return cabecalhos;
+    }
+}
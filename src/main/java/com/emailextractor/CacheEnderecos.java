@@ -0,0 +1,269 @@
+package com.emailextractor;
+
+import jakarta.mail.Address;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeUtility;
+import jakarta.mail.internet.ParseException;
+
+import java.io.UnsupportedEncodingException;
+import java.net.IDN;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Interpreta e normaliza os endereços dos cabeçalhos, guardando o resultado num
+ * cache LRU limitado. Em caixas reais poucos milhares de remetentes respondem pela
+ * maior parte das mensagens, então a maioria dos cabeçalhos já foi vista.
+ *
+ * No modo CABECALHOS a chave é o valor bruto do cabeçalho e um acerto evita o parse
+ * do {@link InternetAddress} e toda a normalização. No modo ENVELOPE o servidor já
+ * entrega os endereços separados; o cache só é usado quando há normalizações
+ * ({@link NormalizacaoEndereco}), com chave no endereço e no nome recebidos.
+ *
+ * O cache é dividido em segmentos com lock próprio, para várias conexões
+ * consultarem ao mesmo tempo sem disputa.
+ */
+class CacheEnderecos {
+
+    static final int CAPACIDADE_PADRAO = 8192;
+    private static final int SEGMENTOS = 16;
+    static final Endereco[] NENHUM = new Endereco[0];
+    // Palavra codificada (RFC 2047), ex.: =?UTF-8?B?Sm/Do28=?=
+    private static final Pattern PALAVRA_CODIFICADA = Pattern.compile("=\\?[^?\\s]+\\?[bBqQ]\\?[^?\\s]*\\?=");
+    private static final Pattern ESPACOS = Pattern.compile("\\s+");
+
+    /**
+     * Endereço na forma canônica, pronto para o repositório de contatos.
+     */
+    static final class Endereco {
+        final String email;
+        final String nome;
+
+        Endereco(String email, String nome) {
+            this.email = email;
+            this.nome = nome;
+        }
+    }
+
+    private final Set<NormalizacaoEndereco> normalizacoes;
+    private final LinkedHashMap<String, Endereco[]>[] segmentos;
+    private final LongAdder acertos = new LongAdder();
+    private final LongAdder falhas = new LongAdder();
+
+    /**
+     * @param capacidade quantidade máxima de entradas (0 desativa o cache)
+     */
+    CacheEnderecos(int capacidade, Set<NormalizacaoEndereco> normalizacoes) {
+        this.normalizacoes = normalizacoes.isEmpty()
+                ? EnumSet.noneOf(NormalizacaoEndereco.class) : EnumSet.copyOf(normalizacoes);
+        if (capacidade <= 0) {
+            this.segmentos = null;
+            return;
+        }
+        int porSegmento = Math.max(1, capacidade / SEGMENTOS);
+        // Arrays genéricos não podem ser criados diretamente; todo elemento é preenchido abaixo
+        @SuppressWarnings("unchecked")
+        LinkedHashMap<String, Endereco[]>[] criados =
+                (LinkedHashMap<String, Endereco[]>[]) new LinkedHashMap<?, ?>[SEGMENTOS];
+        for (int i = 0; i < SEGMENTOS; i++) {
+            criados[i] = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Endereco[]> maisAntiga) {
+                    return size() > porSegmento;
+                }
+            };
+        }
+        this.segmentos = criados;
+    }
+
+    long getAcertos() {
+        return acertos.sum();
+    }
+
+    long getFalhas() {
+        return falhas.sum();
+    }
+
+    /**
+     * Endereços de um cabeçalho bruto (modo CABECALHOS).
+     *
+     * @throws AddressException se o cabeçalho for malformado (não é guardado no cache)
+     */
+    Endereco[] doCabecalho(String valor) throws AddressException {
+        Endereco[] enderecos = consultar(valor);
+        if (enderecos == null) {
+            enderecos = normalizar(InternetAddress.parseHeader(valor, false));
+            guardar(valor, enderecos);
+        }
+        return enderecos;
+    }
+
+    /**
+     * Endereços já separados pelo servidor (modo ENVELOPE).
+     */
+    Endereco[] doEnvelope(Address[] enderecos) {
+        if (normalizacoes.isEmpty() || segmentos == null) {
+            return normalizar(enderecos);
+        }
+        Endereco[] resultado = new Endereco[enderecos.length];
+        int quantidade = 0;
+        for (Address endereco : enderecos) {
+            if (!(endereco instanceof InternetAddress)) {
+                continue;
+            }
+            InternetAddress internetAddress = (InternetAddress) endereco;
+            String email = internetAddress.getAddress();
+            String nome = internetAddress.getPersonal();
+            String chave = nome != null ? email + '\n' + nome : email;
+            Endereco[] unico = consultar(chave);
+            if (unico == null) {
+                unico = normalizar(new Address[]{internetAddress});
+                guardar(chave, unico);
+            }
+            if (unico.length > 0) {
+                resultado[quantidade++] = unico[0];
+            }
+        }
+        return quantidade == resultado.length ? resultado : Arrays.copyOf(resultado, quantidade);
+    }
+
+    private Endereco[] consultar(String chave) {
+        if (segmentos == null) {
+            return null;
+        }
+        LinkedHashMap<String, Endereco[]> segmento = segmento(chave);
+        Endereco[] enderecos;
+        synchronized (segmento) {
+            enderecos = segmento.get(chave);
+        }
+        if (enderecos != null) {
+            acertos.increment();
+        } else {
+            falhas.increment();
+        }
+        return enderecos;
+    }
+
+    private void guardar(String chave, Endereco[] enderecos) {
+        if (segmentos == null) {
+            return;
+        }
+        LinkedHashMap<String, Endereco[]> segmento = segmento(chave);
+        synchronized (segmento) {
+            segmento.put(chave, enderecos);
+        }
+    }
+
+    private LinkedHashMap<String, Endereco[]> segmento(String chave) {
+        int hash = chave.hashCode();
+        return segmentos[(hash ^ (hash >>> 16)) & (SEGMENTOS - 1)];
+    }
+
+    private Endereco[] normalizar(Address[] enderecos) {
+        if (enderecos == null || enderecos.length == 0) {
+            return NENHUM;
+        }
+        Endereco[] resultado = new Endereco[enderecos.length];
+        int quantidade = 0;
+        for (Address endereco : enderecos) {
+            if (!(endereco instanceof InternetAddress)) {
+                continue;
+            }
+            InternetAddress internetAddress = (InternetAddress) endereco;
+            String email = internetAddress.getAddress();
+            if (email == null) {
+                continue;
+            }
+            email = normalizarEmail(email.toLowerCase().trim());
+            if (email.isEmpty()) {
+                continue;
+            }
+            String nome = internetAddress.getPersonal();
+            if (normalizacoes.contains(NormalizacaoEndereco.NOMES)) {
+                nome = normalizarNome(nome);
+            }
+            resultado[quantidade++] = new Endereco(email, nome);
+        }
+        return quantidade == resultado.length ? resultado : Arrays.copyOf(resultado, quantidade);
+    }
+
+    private String normalizarEmail(String email) {
+        int arroba = email.lastIndexOf('@');
+        if (arroba <= 0 || normalizacoes.isEmpty()) {
+            return email;
+        }
+        String local = email.substring(0, arroba);
+        String dominio = email.substring(arroba + 1);
+        if (normalizacoes.contains(NormalizacaoEndereco.IDN)) {
+            try {
+                dominio = IDN.toASCII(dominio, IDN.ALLOW_UNASSIGNED).toLowerCase();
+            } catch (IllegalArgumentException e) {
+                // Domínio inválido para IDNA: mantido como veio
+            }
+        }
+        if (normalizacoes.contains(NormalizacaoEndereco.GMAIL)
+                && (dominio.equals("gmail.com") || dominio.equals("googlemail.com"))) {
+            int mais = local.indexOf('+');
+            String semApelido = (mais >= 0 ? local.substring(0, mais) : local).replace(".", "");
+            if (semApelido.replace("\"", "").isEmpty()) {
+                // Ex.: +tag@gmail.com ou .@gmail.com (com ou sem aspas): sobraria "@gmail.com", que
+                // juntaria endereços sem relação num contato inválido; fica o endereço original
+                return email;
+            }
+            local = semApelido;
+            dominio = "gmail.com";
+        }
+        return local + '@' + dominio;
+    }
+
+    /**
+     * Decodifica palavras RFC 2047 que sobraram no nome (entre aspas, coladas a
+     * outro texto), remove aspas ao redor e junta espaços repetidos.
+     */
+    static String normalizarNome(String nome) {
+        if (nome == null) {
+            return null;
+        }
+        String texto = nome;
+        if (texto.contains("=?")) {
+            texto = decodificarPalavras(texto);
+        }
+        texto = ESPACOS.matcher(texto).replaceAll(" ").trim();
+        if (texto.length() >= 2 && (texto.charAt(0) == '"' || texto.charAt(0) == '\'')
+                && texto.charAt(texto.length() - 1) == texto.charAt(0)) {
+            texto = texto.substring(1, texto.length() - 1).trim();
+        }
+        return texto;
+    }
+
+    private static String decodificarPalavras(String texto) {
+        Matcher matcher = PALAVRA_CODIFICADA.matcher(texto);
+        StringBuilder resultado = new StringBuilder(texto.length());
+        int fimAnterior = 0;
+        boolean anteriorCodificada = false;
+        while (matcher.find()) {
+            String entre = texto.substring(fimAnterior, matcher.start());
+            // Espaço entre duas palavras codificadas não faz parte do texto (RFC 2047, 6.2)
+            if (!(anteriorCodificada && entre.isBlank())) {
+                resultado.append(entre);
+            }
+            try {
+                resultado.append(MimeUtility.decodeWord(matcher.group()));
+                anteriorCodificada = true;
+            } catch (ParseException | UnsupportedEncodingException e) {
+                resultado.append(matcher.group());
+                anteriorCodificada = false;
+            }
+            fimAnterior = matcher.end();
+        }
+        resultado.append(texto, fimAnterior, texto.length());
+        return resultado.toString();
+    }
+}
@@ -0,0 +1,122 @@
+package com.emailextractor;
+
+import javax.net.SocketFactory;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fábrica de sockets TCP que contabiliza os bytes trafegados.
+ * Registrada em {@code mail.imaps.socketFactory}; o Angus Mail cria o socket
+ * por aqui e depois o envolve com SSL, então os valores medidos são os bytes
+ * cifrados que passam de fato pela rede.
+ */
+class ContadorBytesSocketFactory extends SocketFactory {
+
+    private final AtomicLong bytesRecebidos = new AtomicLong();
+    private final AtomicLong bytesEnviados = new AtomicLong();
+
+    long getBytesRecebidos() {
+        return bytesRecebidos.get();
+    }
+
+    long getBytesEnviados() {
+        return bytesEnviados.get();
+    }
+
+    @Override
+    public Socket createSocket() {
+        return new SocketContador();
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        Socket socket = createSocket();
+        socket.connect(new InetSocketAddress(host, port));
+        return socket;
+    }
+
+    @Override
+    public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+        Socket socket = createSocket();
+        socket.bind(new InetSocketAddress(localHost, localPort));
+        socket.connect(new InetSocketAddress(host, port));
+        return socket;
+    }
+
+    @Override
+    public Socket createSocket(InetAddress host, int port) throws IOException {
+        Socket socket = createSocket();
+        socket.connect(new InetSocketAddress(host, port));
+        return socket;
+    }
+
+    @Override
+    public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort)
+            throws IOException {
+        Socket socket = createSocket();
+        socket.bind(new InetSocketAddress(localAddress, localPort));
+        socket.connect(new InetSocketAddress(address, port));
+        return socket;
+    }
+
+    /**
+     * Socket cujos fluxos de entrada e saída somam os bytes nos contadores da fábrica.
+     */
+    private class SocketContador extends Socket {
+        private InputStream entrada;
+        private OutputStream saida;
+
+        @Override
+        public synchronized InputStream getInputStream() throws IOException {
+            if (entrada == null) {
+                entrada = new FilterInputStream(super.getInputStream()) {
+                    @Override
+                    public int read() throws IOException {
+                        int b = super.read();
+                        if (b >= 0) {
+                            bytesRecebidos.incrementAndGet();
+                        }
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        int lidos = super.read(b, off, len);
+                        if (lidos > 0) {
+                            bytesRecebidos.addAndGet(lidos);
+                        }
+                        return lidos;
+                    }
+                };
+            }
+            return entrada;
+        }
+
+        @Override
+        public synchronized OutputStream getOutputStream() throws IOException {
+            if (saida == null) {
+                saida = new FilterOutputStream(super.getOutputStream()) {
+                    @Override
+                    public void write(int b) throws IOException {
+                        out.write(b);
+                        bytesEnviados.incrementAndGet();
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                        bytesEnviados.addAndGet(len);
+                    }
+                };
+            }
+            return saida;
+        }
+    }
+}
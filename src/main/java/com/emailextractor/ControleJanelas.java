@@ -0,0 +1,163 @@
+package com.emailextractor;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Distribui as janelas de UID entre as conexões e calcula o checkpoint.
+ * As janelas podem terminar fora de ordem; o checkpoint é o maior UID
+ * abaixo do qual todas as mensagens já foram processadas.
+ *
+ * O tamanho das janelas entregues se adapta ao servidor (aumento aditivo,
+ * redução multiplicativa): cada janela interrompida por queda de conexão é
+ * devolvida e o limite cai pela metade; cada janela concluída o aumenta um
+ * pouco, até voltar ao tamanho planejado. Janelas maiores que o limite são
+ * divididas no momento da entrega.
+ */
+class ControleJanelas {
+
+    // Menor janela a que o limite pode cair
+    static final int LIMITE_MINIMO = 10;
+
+    private final List<JanelaUid> janelas;
+    private int proxima = 0;
+    // Índice da primeira janela ainda não concluída
+    private int prefixoConcluido = 0;
+    private long cursorBase;
+    private volatile boolean abortado = false;
+    // Janelas interrompidas, entregues antes das ainda não atribuídas
+    private final Deque<JanelaUid> devolvidas = new ArrayDeque<>();
+    private final int limiteMaximo;
+    private final int incremento;
+    private int limite;
+
+    /**
+     * @param janelas       janelas planejadas, em ordem de UID (a lista é alterada nas divisões)
+     * @param cursorInicial último UID do checkpoint
+     * @param tamanho       tamanho planejado das janelas, teto do limite adaptativo
+     */
+    ControleJanelas(List<JanelaUid> janelas, long cursorInicial, int tamanho) {
+        this.janelas = janelas;
+        this.cursorBase = cursorInicial;
+        this.limiteMaximo = Math.max(LIMITE_MINIMO, tamanho);
+        this.incremento = Math.max(1, limiteMaximo / 8);
+        this.limite = limiteMaximo;
+    }
+
+    /**
+     * Entrega a próxima janela ainda não atribuída, ou null quando acabarem.
+     */
+    synchronized JanelaUid proxima() {
+        if (abortado) {
+            return null;
+        }
+        if (!devolvidas.isEmpty()) {
+            return limitar(devolvidas.poll(), true);
+        }
+        if (proxima >= janelas.size()) {
+            return null;
+        }
+        return limitar(janelas.get(proxima++), false);
+    }
+
+    /**
+     * Divide a janela que passar do limite atual; a primeira parte é entregue e o
+     * restante volta para a fila na mesma posição (a ordem da lista define o checkpoint).
+     */
+    private JanelaUid limitar(JanelaUid janela, boolean devolvida) {
+        if (janela.estimativa <= limite) {
+            return janela;
+        }
+        JanelaUid[] partes = janela.dividir(limite);
+        int indice = devolvida ? janelas.indexOf(janela) : proxima - 1;
+        janelas.set(indice, partes[1]);
+        janelas.add(indice, partes[0]);
+        partes[0].ultimoUid = janela.ultimoUid;
+        if (devolvida) {
+            // Inserção antes do ponteiro: as janelas ainda não atribuídas andaram uma posição
+            proxima++;
+            devolvidas.addFirst(partes[1]);
+        }
+        return partes[0];
+    }
+
+    synchronized void concluir(JanelaUid janela) {
+        limite = Math.min(limiteMaximo, limite + incremento);
+        marcarConcluida(janela);
+    }
+
+    private void marcarConcluida(JanelaUid janela) {
+        janela.concluida = true;
+        while (prefixoConcluido < janelas.size() && janelas.get(prefixoConcluido).concluida) {
+            JanelaUid concluida = janelas.get(prefixoConcluido);
+            // A última janela é aberta (fim = MAXUID); nela vale o último UID visto
+            cursorBase = Math.max(cursorBase, concluida.fim == jakarta.mail.UIDFolder.MAXUID
+                    ? concluida.ultimoUid : concluida.fim);
+            prefixoConcluido++;
+        }
+    }
+
+    /**
+     * Devolve uma janela interrompida pela queda da conexão: a parte ainda não
+     * processada será entregue de novo (a outra conexão ou a esta, depois de
+     * reconectar) e o limite das próximas janelas cai pela metade.
+     *
+     * @return novo limite de mensagens por janela
+     */
+    synchronized int devolver(JanelaUid janela) {
+        return devolver(List.of(janela));
+    }
+
+    /**
+     * Devolve de uma vez as janelas que uma conexão tinha em mãos (a interrompida e
+     * as já buscadas na fila do pipeline), em ordem de entrega; elas voltam a ser
+     * entregues na mesma ordem e o limite cai pela metade uma única vez.
+     *
+     * @return novo limite de mensagens por janela
+     */
+    synchronized int devolver(List<JanelaUid> emMaos) {
+        limite = Math.max(LIMITE_MINIMO, limite / 2);
+        for (int i = emMaos.size() - 1; i >= 0; i--) {
+            JanelaUid janela = emMaos.get(i);
+            int indice = janelas.indexOf(janela);
+            JanelaUid resto = janela.restante();
+            if (resto == null) {
+                marcarConcluida(janela);
+            } else if (indice >= 0) {
+                janelas.set(indice, resto);
+                devolvidas.addFirst(resto);
+            }
+        }
+        return limite;
+    }
+
+    /**
+     * Último UID do checkpoint: fim do prefixo de janelas concluídas ou,
+     * se houver, o progresso parcial da primeira janela em andamento.
+     */
+    synchronized long cursor() {
+        if (prefixoConcluido < janelas.size()) {
+            return Math.max(cursorBase, janelas.get(prefixoConcluido).ultimoUid);
+        }
+        return cursorBase;
+    }
+
+    /**
+     * Limite atual de mensagens por janela.
+     */
+    synchronized int limite() {
+        return limite;
+    }
+
+    /**
+     * Interrompe a distribuição de janelas (usado quando uma conexão falha).
+     */
+    void abortar() {
+        abortado = true;
+    }
+
+    boolean isAbortado() {
+        return abortado;
+    }
+}
@@ -1,22 +1,15 @@
 package com.emailextractor;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.opencsv.CSVWriter;
-import jakarta.mail.*;
-import jakarta.mail.internet.InternetAddress;
-
 import java.io.*;
-import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import jakarta.mail.FetchProfile;
 
 /**
  * Extrator de contatos de e-mail para CSV.
- * Conecta via IMAP a um servidor de e-mail, extrai os remetentes
- * de todas as mensagens da caixa de entrada e gera um arquivo CSV.
+ * Conecta via IMAP a um servidor de e-mail, extrai os remetentes (e, opcionalmente,
+ * destinatários) das mensagens das pastas selecionadas e gera um arquivo CSV.
  * 
  * Funcionalidades:
  * - Pausar/retomar com teclas de atalho (P/R/S)
@@ -25,98 +18,46 @@ import jakarta.mail.FetchProfile;
  */
 public class EmailExtractor {
 
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
     private static final SimpleDateFormat DATE_FORMAT_DISPLAY = new SimpleDateFormat("dd/MM/yyyy HH:mm");
-    private static final int BARRA_TAMANHO = 40;
-    private static final String ARQUIVO_ESTADO = "estado_processo.json";
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
-
-    // Variáveis de controle de pausa (volatile para thread-safety)
-    private static volatile boolean pausado = false;
-    private static volatile boolean encerrar = false;
-    private static volatile boolean processando = false;
-
-    // Estado atual do processamento
-    private static EstadoProcesso estadoAtual = null;
-    private static Map<String, ContatoEmail> contatosMap = new HashMap<>();
 
-    /**
-     * Classe para serialização de contatos no JSON.
-     */
-    private static class ContatoSerializado {
-        String email;
-        String nome;
-        String dataUltimoEmail;
+    // Opções de linha de comando
+    private static OpcoesExtracao opcoes = new OpcoesExtracao();
 
-        ContatoSerializado(String email, String nome, Date data) {
-            this.email = email;
-            this.nome = nome != null ? nome : "";
-            this.dataUltimoEmail = data != null ? DATE_FORMAT.format(data) : null;
-        }
-
-        Date getDataAsDate() {
-            if (dataUltimoEmail == null) return null;
-            try {
-                return DATE_FORMAT.parse(dataUltimoEmail);
-            } catch (Exception e) {
-                return null;
-            }
+    public static void main(String[] args) {
+        try {
+            opcoes = OpcoesExtracao.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERRO: " + e.getMessage());
+            System.err.println(OpcoesExtracao.USO);
+            return;
         }
-    }
 
-    /**
-     * Classe para representar o estado do processo salvo em JSON.
-     */
-    private static class EstadoProcesso {
-        String servidor;
-        int porta;
-        String usuario;
-        String arquivoCsv;
-        int indiceAtual;
-        int totalMensagens;
-        String dataInicio;
-        String dataUltimaSalva;
-        Map<String, ContatoSerializado> contatos;
-
-        EstadoProcesso() {
-            this.contatos = new HashMap<>();
-            this.dataInicio = DATE_FORMAT.format(new Date());
+        if (opcoes.converterOrigem != null) {
+            converterEstado(Paths.get(opcoes.converterOrigem), Paths.get(opcoes.converterDestino));
+            return;
         }
-    }
-
-    /**
-     * Classe interna para armazenar informações do contato em memória.
-     */
-    private static class ContatoEmail {
-        String email;
-        String nome;
-        Date dataUltimoEmail;
-
-        ContatoEmail(String email, String nome, Date data) {
-            this.email = email;
-            this.nome = nome != null ? nome : "";
-            this.dataUltimoEmail = data;
+        if (opcoes.exportarIndice != null) {
+            exportarIndice(Paths.get(opcoes.arquivoIndice), Paths.get(opcoes.exportarIndice));
+            return;
         }
-
-        void atualizarSeNecessario(String nome, Date data) {
-            if (data != null && (this.dataUltimoEmail == null || data.after(this.dataUltimoEmail))) {
-                this.dataUltimoEmail = data;
-            }
-            if ((this.nome == null || this.nome.isEmpty()) && nome != null && !nome.isEmpty()) {
-                this.nome = nome;
-            }
+        if (opcoes.origensLocais != null) {
+            ExtracaoLocal.executar(opcoes);
+            return;
         }
-
-        ContatoSerializado toSerializado() {
-            return new ContatoSerializado(email, nome, dataUltimoEmail);
+        if (opcoes.arquivoLote != null) {
+            ExecutorLote.executar(Paths.get(opcoes.arquivoLote), args);
+            return;
         }
 
-        static ContatoEmail fromSerializado(ContatoSerializado cs) {
-            return new ContatoEmail(cs.email, cs.nome, cs.getDataAsDate());
+        ExtracaoConta extracao;
+        try {
+            extracao = new ExtracaoConta(opcoes, Paths.get(""), null, true);
+        } catch (UncheckedIOException e) {
+            System.err.println("ERRO: " + e.getCause().getMessage());
+            return;
         }
-    }
+        extracao.getMetricas().registrarJmx();
 
-    public static void main(String[] args) {
         Scanner scanner = new Scanner(System.in);
         Console console = System.console();
 
@@ -125,91 +66,44 @@ public class EmailExtractor {
         System.out.println("==============================================");
         System.out.println();
 
-        String usuario;
         String senha;
-        String servidor;
-        int porta;
-        String nomeArquivo;
-        int indiceInicial = 0;
-
-        // Verificar se existe estado salvo
-        if (existeEstadoSalvo()) {
-            EstadoProcesso estadoSalvo = carregarEstado();
-            if (estadoSalvo != null) {
-                System.out.println("[!] Processo anterior detectado!");
-                System.out.println("    Servidor: " + estadoSalvo.servidor);
-                int porcentagem = (int) ((estadoSalvo.indiceAtual * 100.0) / estadoSalvo.totalMensagens);
-                System.out.println("    Progresso: " + estadoSalvo.indiceAtual + "/" + estadoSalvo.totalMensagens + " (" + porcentagem + "%)");
-                System.out.println("    Última atualização: " + estadoSalvo.dataUltimaSalva);
-                System.out.println("    Contatos encontrados: " + estadoSalvo.contatos.size());
-                System.out.println();
-
-                System.out.print("Deseja continuar de onde parou? (S/N): ");
-                String resposta = scanner.nextLine().trim().toUpperCase();
 
-                if (resposta.equals("S") || resposta.equals("SIM")) {
-                    // Continuar processo anterior
-                    usuario = estadoSalvo.usuario;
-                    servidor = estadoSalvo.servidor;
-                    porta = estadoSalvo.porta;
-                    nomeArquivo = estadoSalvo.arquivoCsv;
-                    indiceInicial = estadoSalvo.indiceAtual;
-                    estadoAtual = estadoSalvo;
+        // Verificar se existe estado salvo (um estado corrompido é apagado na carga)
+        ExtracaoConta.EstadoProcesso estadoSalvo = extracao.carregarEstadoSalvo();
+        if (estadoSalvo != null) {
+            System.out.println("[!] Processo anterior detectado!");
+            System.out.println("    Servidor: " + estadoSalvo.servidor);
+            int porcentagem = (int) ((estadoSalvo.indiceAtual * 100.0) / estadoSalvo.totalMensagens);
+            System.out.println("    Progresso: " + estadoSalvo.indiceAtual + "/" + estadoSalvo.totalMensagens + " (" + porcentagem + "%)");
+            System.out.println("    Última atualização: " + estadoSalvo.dataUltimaSalva);
+            System.out.println("    Contatos encontrados: " + extracao.getContatos());
+            System.out.println();
 
-                    // Restaurar contatos do estado salvo
-                    for (Map.Entry<String, ContatoSerializado> entry : estadoSalvo.contatos.entrySet()) {
-                        contatosMap.put(entry.getKey(), ContatoEmail.fromSerializado(entry.getValue()));
-                    }
+            System.out.print("Deseja continuar de onde parou? (S/N): ");
+            String resposta;
+            if (opcoes.retomar != null) {
+                resposta = opcoes.retomar ? "S" : "N";
+                System.out.println(resposta);
+            } else {
+                resposta = scanner.nextLine().trim().toUpperCase();
+            }
 
-                    // Solicitar apenas a senha (por segurança, não salvamos)
-                    if (console != null) {
-                        char[] senhaChars = console.readPassword("Informe a senha para " + usuario + ": ");
-                        senha = new String(senhaChars);
-                    } else {
-                        System.out.print("Informe a senha para " + usuario + ": ");
-                        senha = scanner.nextLine();
-                    }
-                } else {
-                    // Reiniciar processo - deletar estado antigo
-                    deletarEstadoSalvo();
-                    System.out.println("Estado anterior removido. Iniciando novo processo...");
-                    System.out.println();
+            if (resposta.equals("S") || resposta.equals("SIM")) {
+                // Continuar processo anterior
+                extracao.continuar(estadoSalvo);
 
-                    // Solicitar novas credenciais
-                    String[] credenciais = solicitarCredenciais(scanner, console);
-                    usuario = credenciais[0];
-                    senha = credenciais[1];
-                    servidor = credenciais[2];
-                    porta = Integer.parseInt(credenciais[3]);
-                    nomeArquivo = credenciais[4];
-                }
+                // Solicitar apenas a senha (por segurança, não salvamos)
+                senha = lerSenha("Informe a senha para " + estadoSalvo.usuario + ": ", scanner, console);
             } else {
-                // Estado corrompido - solicitar novas credenciais
-                deletarEstadoSalvo();
-                String[] credenciais = solicitarCredenciais(scanner, console);
-                usuario = credenciais[0];
-                senha = credenciais[1];
-                servidor = credenciais[2];
-                porta = Integer.parseInt(credenciais[3]);
-                nomeArquivo = credenciais[4];
+                // Reiniciar processo - deletar estado antigo
+                extracao.descartarEstadoSalvo();
+                System.out.println("Estado anterior removido. Iniciando novo processo...");
+                System.out.println();
+                senha = iniciarNovo(extracao, scanner, console);
             }
         } else {
             // Não existe estado salvo - solicitar credenciais
-            String[] credenciais = solicitarCredenciais(scanner, console);
-            usuario = credenciais[0];
-            senha = credenciais[1];
-            servidor = credenciais[2];
-            porta = Integer.parseInt(credenciais[3]);
-            nomeArquivo = credenciais[4];
-        }
-
-        // Inicializar estado se não existir
-        if (estadoAtual == null) {
-            estadoAtual = new EstadoProcesso();
-            estadoAtual.usuario = usuario;
-            estadoAtual.servidor = servidor;
-            estadoAtual.porta = porta;
-            estadoAtual.arquivoCsv = nomeArquivo;
+            senha = iniciarNovo(extracao, scanner, console);
         }
 
         System.out.println();
@@ -220,40 +114,56 @@ public class EmailExtractor {
         System.out.println("╚════════════════════════════════════════════════════════╝");
         System.out.println();
 
-        // Iniciar thread de monitoramento de teclado
-        iniciarMonitoramentoTeclado(scanner);
+        // Iniciar thread de monitoramento de teclado (sem ela, o controle é feito pelo JMX)
+        if (opcoes.teclado) {
+            iniciarMonitoramentoTeclado(extracao);
+        }
 
-        try {
-            connectAndExtract(usuario, senha, servidor, porta, nomeArquivo, indiceInicial);
-        } catch (Exception e) {
-            System.err.println();
-            System.err.println("ERRO: " + e.getMessage());
-            e.printStackTrace();
-            
-            // Salvar estado em caso de erro
-            if (estadoAtual != null && estadoAtual.indiceAtual > 0) {
-                System.out.println();
-                System.out.println("Salvando estado antes de encerrar...");
-                salvarEstado();
-            }
+        extracao.executar(senha);
+    }
+
+    /**
+     * Solicita as credenciais e inicia um processo novo; devolve a senha.
+     */
+    private static String iniciarNovo(ExtracaoConta extracao, Scanner scanner, Console console) {
+        String[] credenciais = solicitarCredenciais(scanner, console);
+        extracao.iniciarNovo(credenciais[0], credenciais[2], Integer.parseInt(credenciais[3]), credenciais[4]);
+        return credenciais[1];
+    }
+
+    /**
+     * Lê a senha da variável de ambiente {@value OpcoesExtracao#VARIAVEL_SENHA} ou, se
+     * ausente, do terminal. A senha nunca é aceita como argumento de linha de comando.
+     */
+    private static String lerSenha(String pergunta, Scanner scanner, Console console) {
+        String senha = System.getenv(OpcoesExtracao.VARIAVEL_SENHA);
+        if (senha != null) {
+            return senha;
+        }
+        if (console != null) {
+            return new String(console.readPassword(pergunta));
         }
+        System.out.print(pergunta);
+        return scanner.nextLine();
     }
 
     /**
      * Solicita credenciais do usuário.
      */
     private static String[] solicitarCredenciais(Scanner scanner, Console console) {
+        if (opcoes.usuario != null) {
+            // Execução sem interação: dados da linha de comando, senha da variável de ambiente
+            String senha = lerSenha("Informe a senha para " + opcoes.usuario + ": ", scanner, console);
+            String servidor = opcoes.servidor != null ? opcoes.servidor : "imap.gmail.com";
+            int porta = opcoes.porta > 0 ? opcoes.porta : 993;
+            String nomeArquivo = opcoes.arquivoCsv != null ? opcoes.arquivoCsv : "contatos.csv";
+            return new String[]{opcoes.usuario, senha, servidor, String.valueOf(porta), nomeArquivo};
+        }
+
         System.out.print("Informe o usuário (e-mail): ");
         String usuario = scanner.nextLine().trim();
 
-        String senha;
-        if (console != null) {
-            char[] senhaChars = console.readPassword("Informe a senha: ");
-            senha = new String(senhaChars);
-        } else {
-            System.out.print("Informe a senha: ");
-            senha = scanner.nextLine();
-        }
+        String senha = lerSenha("Informe a senha: ", scanner, console);
 
         System.out.print("Informe o servidor IMAP (padrão: imap.gmail.com): ");
         String servidor = scanner.nextLine().trim();
@@ -292,39 +202,24 @@ public class EmailExtractor {
     /**
      * Inicia thread para monitorar entrada do teclado.
      */
-    private static void iniciarMonitoramentoTeclado(Scanner scanner) {
+    private static void iniciarMonitoramentoTeclado(ExtracaoConta extracao) {
         Thread monitorThread = new Thread(() -> {
             try {
                 BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
-                while (!encerrar) {
+                while (!extracao.isEncerrado()) {
                     if (reader.ready()) {
                         String input = reader.readLine();
                         if (input != null) {
                             input = input.trim().toUpperCase();
                             switch (input) {
                                 case "P":
-                                    if (processando && !pausado) {
-                                        pausado = true;
-                                        System.out.println();
-                                        System.out.println();
-                                        System.out.println(">> Processamento PAUSADO. Pressione [R] para retomar ou [S] para sair salvando.");
-                                        salvarEstado();
-                                    }
+                                    extracao.pausar();
                                     break;
                                 case "R":
-                                    if (pausado) {
-                                        pausado = false;
-                                        System.out.println(">> Retomando processamento...");
-                                        System.out.println();
-                                    }
+                                    extracao.retomar();
                                     break;
                                 case "S":
-                                    if (processando) {
-                                        encerrar = true;
-                                        pausado = false;
-                                        System.out.println();
-                                        System.out.println(">> Encerrando e salvando estado...");
-                                    }
+                                    extracao.sairSalvando();
                                     break;
                             }
                         }
@@ -340,324 +235,39 @@ public class EmailExtractor {
     }
 
     /**
-     * Conecta ao servidor IMAP e extrai os remetentes de todas as mensagens.
-     */
-    private static void connectAndExtract(String usuario, String senha, String servidor, 
-            int porta, String nomeArquivo, int indiceInicial) throws MessagingException, IOException {
-
-        Properties props = new Properties();
-        props.put("mail.store.protocol", "imaps");
-        props.put("mail.imaps.host", servidor);
-        props.put("mail.imaps.port", String.valueOf(porta));
-        props.put("mail.imaps.ssl.enable", "true");
-        props.put("mail.imaps.ssl.trust", "*");
-        props.put("mail.imaps.connectiontimeout", "10000");
-        props.put("mail.imaps.timeout", "10000");
-
-        Session session = Session.getInstance(props);
-        Store store = session.getStore("imaps");
-
-        try {
-            store.connect(servidor, porta, usuario, senha);
-            System.out.println("Conexão estabelecida com sucesso!");
-
-            Folder inbox = store.getFolder("INBOX");
-            inbox.open(Folder.READ_ONLY);
-
-            int totalMensagens = inbox.getMessageCount();
-            estadoAtual.totalMensagens = totalMensagens;
-            
-            System.out.println("Total de mensagens na caixa de entrada: " + totalMensagens);
-
-            if (indiceInicial > 0) {
-                System.out.println("Retomando processamento a partir da mensagem " + (indiceInicial + 1) + "...");
-            } else {
-                System.out.println("Processando mensagens (do mais antigo para o mais recente)...");
-            }
-
-            // Obter todas as mensagens
-            Message[] mensagens = inbox.getMessages();
-
-            // Pré-carregar informações das mensagens para evitar lazy loading lento
-            System.out.print("Carregando informações das mensagens do servidor... ");
-            System.out.flush();
-            FetchProfile fetchProfile = new FetchProfile();
-            fetchProfile.add(FetchProfile.Item.ENVELOPE);
-            inbox.fetch(mensagens, fetchProfile);
-            System.out.println("OK!");
-
-            // Ordenar mensagens por data (mais antiga primeiro)
-            // Isso garante que ao retomar, os e-mails novos ainda serão processados
-            System.out.print("Ordenando mensagens por data... ");
-            System.out.flush();
-            Arrays.sort(mensagens, (m1, m2) -> {
-                try {
-                    Date d1 = m1.getSentDate();
-                    Date d2 = m2.getSentDate();
-                    if (d1 == null && d2 == null) return 0;
-                    if (d1 == null) return -1;
-                    if (d2 == null) return 1;
-                    return d1.compareTo(d2);
-                } catch (MessagingException e) {
-                    return 0;
-                }
-            });
-            System.out.println("OK!");
-            System.out.println();
-
-            processando = true;
-            int processadas = indiceInicial;
-            int ultimoSalvamento = indiceInicial;
-            int ultimoProgresso = indiceInicial;
-            
-            // Mostrar barra inicial
-            printProgressBar(processadas, totalMensagens);
-
-            for (int i = indiceInicial; i < mensagens.length; i++) {
-                // Verificar se deve encerrar
-                if (encerrar) {
-                    estadoAtual.indiceAtual = i;
-                    salvarEstado();
-                    System.out.println();
-                    System.out.println();
-                    System.out.println("==============================================");
-                    System.out.println("Processo pausado e estado salvo!");
-                    System.out.println("Progresso: " + i + "/" + totalMensagens);
-                    System.out.println("Contatos encontrados até agora: " + contatosMap.size());
-                    System.out.println("Execute novamente para continuar de onde parou.");
-                    System.out.println("==============================================");
-                    inbox.close(false);
-                    return;
-                }
-
-                // Verificar se está pausado
-                while (pausado && !encerrar) {
-                    try {
-                        Thread.sleep(200);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-                }
-
-                if (encerrar) continue;
-
-                try {
-                    extractSenderInfo(mensagens[i], contatosMap);
-                    processadas = i + 1;
-                    estadoAtual.indiceAtual = processadas;
-
-                    // Atualizar barra de progresso a cada mensagem
-                    printProgressBar(processadas, totalMensagens);
-                    
-                    // Também mostrar progresso em texto a cada 100 mensagens (fallback)
-                    if (processadas - ultimoProgresso >= 100) {
-                        System.out.println(); // Nova linha para não sobrescrever
-                        printProgressoSimples(processadas, totalMensagens);
-                        ultimoProgresso = processadas;
-                    }
-
-                    // Salvar estado a cada 50 mensagens
-                    if (processadas - ultimoSalvamento >= 50) {
-                        salvarEstado();
-                        ultimoSalvamento = processadas;
-                    }
-
-                } catch (MessagingException e) {
-                    processadas = i + 1;
-                    estadoAtual.indiceAtual = processadas;
-                    printProgressBar(processadas, totalMensagens);
-                }
-            }
-
-            processando = false;
-            encerrar = true;
-
-            System.out.println();
-            System.out.println();
-            System.out.println("Processamento concluído! " + processadas + " mensagens processadas.");
-
-            inbox.close(false);
-
-            // Exportar para CSV
-            if (!contatosMap.isEmpty()) {
-                exportToCsv(contatosMap, nomeArquivo);
-                System.out.println();
-                System.out.println("==============================================");
-                System.out.println("Extração concluída com sucesso!");
-                System.out.println("Total de contatos únicos: " + contatosMap.size());
-                System.out.println("Arquivo salvo em: " + nomeArquivo);
-                System.out.println("==============================================");
-
-                // Deletar arquivo de estado após conclusão bem-sucedida
-                deletarEstadoSalvo();
-            } else {
-                System.out.println("Nenhum e-mail encontrado na caixa de entrada.");
-            }
-
-        } finally {
-            store.close();
-        }
-    }
-
-    /**
-     * Verifica se existe arquivo de estado salvo.
+     * Converte uma base de estado entre os formatos binário e JSON.
+     * O formato de origem é detectado pelo conteúdo; o de destino, pela extensão.
      */
-    private static boolean existeEstadoSalvo() {
-        return Files.exists(Paths.get(ARQUIVO_ESTADO));
-    }
-
-    /**
-     * Carrega o estado do arquivo JSON.
-     */
-    private static EstadoProcesso carregarEstado() {
+    private static void converterEstado(Path origem, Path destino) {
         try {
-            String json = new String(Files.readAllBytes(Paths.get(ARQUIVO_ESTADO)));
-            return GSON.fromJson(json, EstadoProcesso.class);
+            RepositorioContatos contatos = new RepositorioContatosCompacto();
+            ExtracaoConta.EstadoProcesso metadados = ExtracaoConta.carregarBase(origem, contatos);
+            FormatoEstado formato = FormatoEstado.porExtensao(destino.toString());
+            JournalEstado.gravarAtomicamente(destino,
+                    saida -> ExtracaoConta.escreverBase(saida, metadados, contatos, formato));
+            System.out.println("Estado convertido para " + formato.name().toLowerCase() + ": " + destino
+                    + " (" + contatos.tamanho() + " contatos)");
         } catch (Exception e) {
-            System.err.println("Erro ao carregar estado: " + e.getMessage());
-            return null;
-        }
-    }
-
-    /**
-     * Salva o estado atual no arquivo JSON.
-     */
-    private static synchronized void salvarEstado() {
-        if (estadoAtual == null) return;
-
-        try {
-            estadoAtual.dataUltimaSalva = DATE_FORMAT.format(new Date());
-
-            // Converter contatos para formato serializável
-            estadoAtual.contatos = new HashMap<>();
-            for (Map.Entry<String, ContatoEmail> entry : contatosMap.entrySet()) {
-                estadoAtual.contatos.put(entry.getKey(), entry.getValue().toSerializado());
-            }
-
-            String json = GSON.toJson(estadoAtual);
-            Files.write(Paths.get(ARQUIVO_ESTADO), json.getBytes());
-        } catch (IOException e) {
-            System.err.println("Erro ao salvar estado: " + e.getMessage());
+            System.err.println("Erro ao converter estado: " + e.getMessage());
         }
     }
 
     /**
-     * Deleta o arquivo de estado salvo.
+     * Exporta o índice de contatos para CSV, na ordem e compressão pedidas, sem conectar.
      */
-    private static void deletarEstadoSalvo() {
+    private static void exportarIndice(Path arquivoIndice, Path destino) {
         try {
-            Files.deleteIfExists(Paths.get(ARQUIVO_ESTADO));
-        } catch (IOException e) {
-            System.err.println("Erro ao deletar arquivo de estado: " + e.getMessage());
-        }
-    }
-
-    /**
-     * Imprime uma barra de progresso no terminal.
-     */
-    private static void printProgressBar(int atual, int total) {
-        if (total == 0) return;
-
-        int porcentagem = (int) ((atual * 100.0) / total);
-        int preenchido = (int) ((atual * BARRA_TAMANHO) / total);
-        int vazio = BARRA_TAMANHO - preenchido;
-
-        StringBuilder barra = new StringBuilder();
-        barra.append("[");
-
-        for (int i = 0; i < preenchido; i++) {
-            barra.append("=");
-        }
-
-        for (int i = 0; i < vazio; i++) {
-            barra.append(" ");
-        }
-
-        barra.append("] ");
-        barra.append(String.format("%3d%%", porcentagem));
-        barra.append(String.format(" (%d/%d)", atual, total));
-        barra.append(" | Contatos: " + contatosMap.size());
-        
-        // Limpar a linha e imprimir a barra
-        System.out.print("\r" + barra.toString() + "          ");
-        System.out.flush();
-    }
-    
-    /**
-     * Imprime progresso simples (para quando a barra não funciona bem).
-     */
-    private static void printProgressoSimples(int atual, int total) {
-        int porcentagem = (int) ((atual * 100.0) / total);
-        System.out.println("Processadas: " + atual + "/" + total + " (" + porcentagem + "%) | Contatos: " + contatosMap.size());
-    }
-
-    /**
-     * Extrai informações do remetente de uma mensagem.
-     */
-    private static void extractSenderInfo(Message mensagem, Map<String, ContatoEmail> contatos)
-            throws MessagingException {
-
-        Address[] remetentes = mensagem.getFrom();
-        if (remetentes == null || remetentes.length == 0) {
-            return;
-        }
-
-        Date dataEnvio = mensagem.getSentDate();
-        if (dataEnvio == null) {
-            dataEnvio = mensagem.getReceivedDate();
-        }
-
-        for (Address address : remetentes) {
-            if (address instanceof InternetAddress) {
-                InternetAddress internetAddress = (InternetAddress) address;
-                String email = internetAddress.getAddress();
-                String nome = internetAddress.getPersonal();
-
-                if (email != null && !email.isEmpty()) {
-                    email = email.toLowerCase().trim();
-
-                    if (contatos.containsKey(email)) {
-                        contatos.get(email).atualizarSeNecessario(nome, dataEnvio);
-                    } else {
-                        contatos.put(email, new ContatoEmail(email, nome, dataEnvio));
-                    }
-                }
-            }
-        }
-    }
-
-    /**
-     * Exporta os contatos para um arquivo CSV.
-     */
-    private static void exportToCsv(Map<String, ContatoEmail> contatos, String nomeArquivo)
-            throws IOException {
-
-        try (CSVWriter writer = new CSVWriter(new FileWriter(nomeArquivo),
-                ';',  // Separador ponto e vírgula
-                CSVWriter.NO_QUOTE_CHARACTER,
-                CSVWriter.DEFAULT_ESCAPE_CHARACTER,
-                CSVWriter.DEFAULT_LINE_END)) {
-            String[] cabecalho = {"email_remetente", "nome_remetente", "data_ultimo_email"};
-            writer.writeNext(cabecalho);
-
-            List<ContatoEmail> listaContatos = new ArrayList<>(contatos.values());
-            listaContatos.sort(Comparator.comparing(c -> c.email));
-
-            for (ContatoEmail contato : listaContatos) {
-                String dataFormatada = contato.dataUltimoEmail != null
-                        ? DATE_FORMAT.format(contato.dataUltimoEmail)
-                        : "";
-
-                String[] linha = {
-                        contato.email,
-                        contato.nome,
-                        dataFormatada
-                };
-                writer.writeNext(linha);
+            RepositorioContatosIndice indice = RepositorioContatosIndice.abrir(arquivoIndice);
+            try {
+                ExportadorCsv exportador = new ExportadorCsv(opcoes.ordenacaoCsv, opcoes.gzip,
+                        opcoes.memoriaExportacaoMb * 1024L * 1024L);
+                long exportados = exportador.exportar(indice, destino);
+                System.out.println("Índice exportado para " + destino + " (" + exportados + " contatos)");
+            } finally {
+                indice.fechar();
             }
+        } catch (Exception e) {
+            System.err.println("Erro ao exportar índice: " + e.getMessage());
         }
-
-        System.out.println("Arquivo CSV gerado com sucesso: " + nomeArquivo);
     }
 }
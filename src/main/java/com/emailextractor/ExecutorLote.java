@@ -0,0 +1,361 @@
+package com.emailextractor;
+
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Modo lote: extrai várias contas descritas num arquivo JSON, sem nenhuma pergunta,
+ * na mesma JVM. Cada conta é uma {@link ExtracaoConta} com diretório de estado
+ * próprio, executada em sua própria thread (virtual, quando a JVM oferece) e
+ * limitada por {@link LimiteConexoes}.
+ *
+ * Contas interrompidas são retomadas na execução seguinte do mesmo lote; contas
+ * já concluídas são puladas, a menos que {@code --retomar=nao} seja usado.
+ */
+class ExecutorLote {
+
+    static final String ARQUIVO_RESUMO_LOTE = "resumo_lote.json";
+    private static final long INTERVALO_PROGRESSO_MS = 10_000;
+
+    /**
+     * Conteúdo do arquivo de lote.
+     */
+    static class ArquivoLote {
+        // Diretório onde cada conta guarda estado e resumo (um subdiretório por conta)
+        String diretorioEstado = "lote";
+        // Conexões IMAP abertas ao mesmo tempo por todo o lote e por servidor
+        int conexoesMaximas = 16;
+        int conexoesPorServidor = 4;
+        // Tetos específicos, ex.: {"imap.gmail.com": 8}
+        Map<String, Integer> limitesServidores = new HashMap<>();
+        List<ContaLote> contas = new ArrayList<>();
+    }
+
+    /**
+     * Uma conta do lote. A senha vem de uma variável de ambiente ou de um arquivo,
+     * nunca do próprio arquivo de lote.
+     */
+    static class ContaLote {
+        String id;
+        String usuario;
+        String servidor = "imap.gmail.com";
+        int porta = 993;
+        List<String> pastas;
+        String csv;
+        String variavelSenha;
+        String arquivoSenha;
+        // Opções de linha de comando aplicadas só a esta conta (ex.: "--conexoes=4")
+        List<String> opcoes = new ArrayList<>();
+    }
+
+    /**
+     * Resultado de uma conta, gravado em {@value #ARQUIVO_RESUMO_LOTE}.
+     */
+    static class ResultadoConta {
+        String conta;
+        String situacao;
+        long mensagens;
+        int contatos;
+        double duracaoSegundos;
+        String erro;
+    }
+
+    private final ArquivoLote lote;
+    private final String[] argumentosGlobais;
+    private final LimiteConexoes limite;
+    private final List<ExtracaoConta> ativas = new ArrayList<>();
+    private int terminadas;
+
+    private ExecutorLote(ArquivoLote lote, String[] argumentosGlobais) {
+        this.lote = lote;
+        this.argumentosGlobais = argumentosGlobais;
+        Map<String, Integer> limites = new HashMap<>();
+        for (Map.Entry<String, Integer> entrada : lote.limitesServidores.entrySet()) {
+            limites.put(entrada.getKey().toLowerCase(), entrada.getValue());
+        }
+        this.limite = new LimiteConexoes(lote.conexoesMaximas, lote.conexoesPorServidor, limites);
+    }
+
+    /**
+     * Lê o arquivo de lote e extrai todas as contas. As opções da linha de comando
+     * valem para todas as contas; as de cada conta vêm depois e prevalecem.
+     */
+    static void executar(Path arquivo, String[] argumentosGlobais) {
+        ArquivoLote lote;
+        try (Reader reader = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8)) {
+            lote = ExtracaoConta.GSON.fromJson(reader, ArquivoLote.class);
+        } catch (IOException | JsonParseException e) {
+            System.err.println("Erro ao ler arquivo de lote: " + e.getMessage());
+            return;
+        }
+        if (lote == null || lote.contas == null || lote.contas.isEmpty()) {
+            System.err.println("Arquivo de lote sem contas: " + arquivo);
+            return;
+        }
+        if (lote.conexoesMaximas < 1 || lote.conexoesPorServidor < 1) {
+            System.err.println("conexoesMaximas e conexoesPorServidor devem ser maiores que zero");
+            return;
+        }
+        new ExecutorLote(lote, argumentosGlobais).executarContas();
+    }
+
+    private void executarContas() {
+        System.out.println("Lote com " + lote.contas.size() + " contas (até " + lote.conexoesMaximas
+                + " conexões, " + lote.conexoesPorServidor + " por servidor)");
+
+        ScheduledExecutorService relatorio = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "progresso-lote");
+            thread.setDaemon(true);
+            return thread;
+        });
+        relatorio.scheduleAtFixedRate(this::imprimirProgresso, INTERVALO_PROGRESSO_MS, INTERVALO_PROGRESSO_MS,
+                TimeUnit.MILLISECONDS);
+
+        List<ResultadoConta> resultados = new ArrayList<>();
+        ExecutorService executor = criarExecutor();
+        try {
+            List<Future<ResultadoConta>> futuros = new ArrayList<>();
+            for (ContaLote conta : lote.contas) {
+                futuros.add(executor.submit(() -> executarConta(conta)));
+            }
+            for (Future<ResultadoConta> futuro : futuros) {
+                try {
+                    resultados.add(futuro.get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (java.util.concurrent.ExecutionException e) {
+                    // executarConta não deixa escapar exceções; mantido por segurança
+                    System.err.println("Falha inesperada no lote: " + e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            relatorio.shutdownNow();
+        }
+
+        imprimirResultados(resultados);
+        gravarResultados(resultados);
+    }
+
+    /**
+     * Threads virtuais (Java 21+) quando disponíveis; caso contrário, uma thread de
+     * plataforma por conta, que passa a maior parte do tempo esperando permissões.
+     */
+    private static ExecutorService criarExecutor() {
+        try {
+            Method virtuais = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtuais.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private ResultadoConta executarConta(ContaLote conta) {
+        ResultadoConta resultado = new ResultadoConta();
+        resultado.conta = identificador(conta);
+        long inicio = System.nanoTime();
+        String prefixo = "[" + resultado.conta + "] ";
+        try {
+            if (conta.usuario == null || conta.usuario.isBlank()) {
+                throw new IllegalArgumentException("conta sem usuário");
+            }
+            OpcoesExtracao opcoes = opcoesDaConta(conta);
+            if (opcoes.continuo) {
+                // Uma conta monitorada nunca termina e prenderia suas conexões para sempre
+                throw new IllegalArgumentException("--continuo não é aceito no modo lote; use um processo por conta");
+            }
+            Path diretorio = Path.of(lote.diretorioEstado, diretorioSeguro(resultado.conta));
+            Files.createDirectories(diretorio);
+            if (opcoes.arquivoResumo.equals(OpcoesExtracao.ARQUIVO_RESUMO_PADRAO)) {
+                opcoes.arquivoResumo = diretorio.resolve(OpcoesExtracao.ARQUIVO_RESUMO_PADRAO).toString();
+            }
+            if (opcoes.retomar != Boolean.FALSE && jaConcluida(diretorio, opcoes)) {
+                System.out.println(prefixo + "já concluída em execução anterior, ignorando.");
+                resultado.situacao = "ignorada";
+                return resultado;
+            }
+            String senha = lerSenha(conta);
+
+            int conexoes = Math.min(opcoes.conexoes, limite.maximoPara(conta.servidor));
+            opcoes.conexoes = conexoes;
+            limite.adquirir(conta.servidor, conexoes);
+            ExtracaoConta extracao = null;
+            try {
+                extracao = new ExtracaoConta(opcoes, diretorio, prefixo, false);
+                extracao.getMetricas().registrarJmxConta(resultado.conta);
+                ExtracaoConta.EstadoProcesso estadoSalvo = extracao.carregarEstadoSalvo();
+                if (estadoSalvo != null && opcoes.retomar != Boolean.FALSE) {
+                    System.out.println(prefixo + "retomando processo anterior (" + estadoSalvo.indiceAtual
+                            + " mensagens já processadas)");
+                    extracao.continuar(estadoSalvo);
+                } else {
+                    if (estadoSalvo != null) {
+                        extracao.descartarEstadoSalvo();
+                    }
+                    extracao.iniciarNovo(conta.usuario, conta.servidor, conta.porta, opcoes.arquivoCsv);
+                }
+                synchronized (this) {
+                    ativas.add(extracao);
+                }
+
+                boolean concluida = extracao.executar(senha);
+                resultado.situacao = concluida ? "concluida" : extracao.getErro() != null ? "falhou" : "interrompida";
+                resultado.erro = extracao.getErro();
+                resultado.mensagens = extracao.getMetricas().getMensagensProcessadas();
+                resultado.contatos = extracao.getContatos();
+            } finally {
+                limite.liberar(conta.servidor, conexoes);
+                if (extracao != null) {
+                    extracao.getMetricas().removerJmx();
+                    synchronized (this) {
+                        ativas.remove(extracao);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            resultado.situacao = "interrompida";
+        } catch (Exception e) {
+            System.err.println(prefixo + "ERRO: " + e.getMessage());
+            resultado.situacao = "falhou";
+            resultado.erro = e.getMessage();
+        } finally {
+            resultado.duracaoSegundos = (System.nanoTime() - inicio) / 1e9;
+            synchronized (this) {
+                terminadas++;
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Opções globais seguidas das opções da conta; usuário, servidor, pastas e CSV
+     * vêm dos campos da conta.
+     */
+    private OpcoesExtracao opcoesDaConta(ContaLote conta) {
+        List<String> argumentos = new ArrayList<>(Arrays.asList(argumentosGlobais));
+        argumentos.addAll(conta.opcoes);
+        OpcoesExtracao opcoes = OpcoesExtracao.parse(argumentos.toArray(new String[0]));
+        opcoes.usuario = conta.usuario;
+        opcoes.servidor = conta.servidor;
+        opcoes.porta = conta.porta;
+        if (conta.pastas != null && !conta.pastas.isEmpty()) {
+            opcoes.pastas = conta.pastas;
+        }
+        opcoes.arquivoCsv = conta.csv != null ? conta.csv : "contatos_" + diretorioSeguro(identificador(conta)) + ".csv";
+        return opcoes;
+    }
+
+    private static String identificador(ContaLote conta) {
+        if (conta.id != null && !conta.id.isBlank()) {
+            return conta.id;
+        }
+        return conta.usuario + "@" + conta.servidor;
+    }
+
+    /**
+     * Nome de diretório derivado do identificador, sem separadores nem caracteres especiais.
+     */
+    private static String diretorioSeguro(String identificador) {
+        return identificador.replaceAll("[^A-Za-z0-9._@-]", "_");
+    }
+
+    /**
+     * Uma conta está concluída quando não há estado pendente e o último resumo diz que terminou.
+     */
+    private static boolean jaConcluida(Path diretorio, OpcoesExtracao opcoes) {
+        for (FormatoEstado formato : FormatoEstado.values()) {
+            if (Files.exists(diretorio.resolve(formato.arquivoPadrao))) {
+                return false;
+            }
+        }
+        Path resumo = Path.of(opcoes.arquivoResumo);
+        if (!Files.exists(resumo)) {
+            return false;
+        }
+        try (Reader reader = Files.newBufferedReader(resumo, StandardCharsets.UTF_8)) {
+            MetricasExtracao.ResumoExecucao anterior =
+                    ExtracaoConta.GSON.fromJson(reader, MetricasExtracao.ResumoExecucao.class);
+            return anterior != null && anterior.concluido;
+        } catch (IOException | JsonParseException e) {
+            return false;
+        }
+    }
+
+    private static String lerSenha(ContaLote conta) throws IOException {
+        if (conta.variavelSenha != null) {
+            String senha = System.getenv(conta.variavelSenha);
+            if (senha == null) {
+                throw new IllegalArgumentException("variável de ambiente " + conta.variavelSenha + " não definida");
+            }
+            return senha;
+        }
+        if (conta.arquivoSenha != null) {
+            String conteudo = Files.readString(Path.of(conta.arquivoSenha), StandardCharsets.UTF_8);
+            // Apenas a primeira linha; a quebra de linha final de editores não faz parte da senha
+            int fim = conteudo.indexOf('\n');
+            return (fim >= 0 ? conteudo.substring(0, fim) : conteudo).replace("\r", "");
+        }
+        String senha = System.getenv(OpcoesExtracao.VARIAVEL_SENHA);
+        if (senha == null) {
+            throw new IllegalArgumentException("informe variavelSenha ou arquivoSenha para a conta");
+        }
+        return senha;
+    }
+
+    private synchronized void imprimirProgresso() {
+        long mensagens = 0;
+        int contatos = 0;
+        for (ExtracaoConta extracao : ativas) {
+            mensagens += extracao.getMetricas().getMensagensProcessadas();
+            contatos += extracao.getContatos();
+        }
+        System.out.println("Lote: " + terminadas + "/" + lote.contas.size() + " contas terminadas, "
+                + ativas.size() + " em andamento (" + mensagens + " mensagens, " + contatos + " contatos)");
+    }
+
+    private static void imprimirResultados(List<ResultadoConta> resultados) {
+        int concluidas = 0;
+        System.out.println();
+        System.out.println("==============================================");
+        for (ResultadoConta resultado : resultados) {
+            if ("concluida".equals(resultado.situacao) || "ignorada".equals(resultado.situacao)) {
+                concluidas++;
+            }
+            System.out.printf("%-40s %-12s %8d msgs %7d contatos %7.1f s%s%n", resultado.conta,
+                    resultado.situacao, resultado.mensagens, resultado.contatos, resultado.duracaoSegundos,
+                    resultado.erro != null ? "  (" + resultado.erro + ")" : "");
+        }
+        System.out.println("Contas concluídas: " + concluidas + "/" + resultados.size());
+        System.out.println("==============================================");
+    }
+
+    private void gravarResultados(List<ResultadoConta> resultados) {
+        Path arquivo = Path.of(lote.diretorioEstado, ARQUIVO_RESUMO_LOTE);
+        try {
+            Files.createDirectories(arquivo.getParent());
+            String json = ExtracaoConta.GSON.toJson(resultados);
+            JournalEstado.gravarAtomicamente(arquivo, saida -> saida.write(json.getBytes(StandardCharsets.UTF_8)));
+            System.out.println("Resumo do lote salvo em: " + arquivo);
+        } catch (IOException e) {
+            System.err.println("Erro ao salvar resumo do lote: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.emailextractor;
+
+import com.google.gson.JsonParseException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Exportação incremental: em vez de regravar o CSV só com os contatos da execução,
+ * mescla neles o CSV anterior e grava o resultado de forma atômica (arquivo
+ * temporário + move). Opcionalmente grava à parte os contatos novos ou com data
+ * mais recente, para importações que só precisam das mudanças.
+ *
+ * Ao lado do CSV fica um arquivo de controle ({@value #SUFIXO_CONTROLE}) com os
+ * checkpoints das pastas na última exportação; a execução seguinte da mesma conta
+ * e perfil parte deles e busca apenas as mensagens novas.
+ */
+class ExportacaoIncremental {
+
+    static final String SUFIXO_CONTROLE = ".incremental.json";
+
+    // O CSV guarda as datas em segundos; a comparação com o anterior ignora os milissegundos
+    private static final long PRECISAO_CSV_MS = 1000;
+    // Linhas do CSV anterior valem antes das da execução: o nome gravado só é trocado se vazio
+    private static final long ORDEM_ANTERIOR = 0;
+    private static final long ORDEM_ATUAL = 1;
+
+    /**
+     * Checkpoint de uma pasta na última exportação.
+     */
+    static class PastaExportada {
+        long uidValidity;
+        long ultimoUid;
+        AssinaturaPasta assinatura;
+        // Fila de falhas ainda não resolvidas (UID -> tentativas feitas)
+        TreeMap<Long, Integer> falhas = new TreeMap<>();
+
+        PastaExportada(long uidValidity, long ultimoUid, AssinaturaPasta assinatura, Map<Long, Integer> falhas) {
+            this.uidValidity = uidValidity;
+            this.ultimoUid = ultimoUid;
+            this.assinatura = assinatura;
+            this.falhas = new TreeMap<>(falhas);
+        }
+    }
+
+    /**
+     * Conteúdo do arquivo de controle.
+     */
+    static class Controle {
+        String conta;
+        String perfil;
+        String exportadoEm;
+        long contatos;
+        Map<String, PastaExportada> pastas = new LinkedHashMap<>();
+    }
+
+    /**
+     * Resultado de uma mesclagem.
+     */
+    static class Resultado {
+        long anteriores;
+        long total;
+        long alterados;
+    }
+
+    private final ExportadorCsv exportador;
+
+    ExportacaoIncremental(ExportadorCsv exportador) {
+        this.exportador = exportador;
+    }
+
+    static Path arquivoControle(Path csv) {
+        return csv.resolveSibling(csv.getFileName() + SUFIXO_CONTROLE);
+    }
+
+    /**
+     * Lê o arquivo de controle do CSV; null se não existir, se o CSV não existir
+     * mais (os checkpoints não valeriam sem os contatos) ou se for ilegível.
+     */
+    static Controle lerControle(Path csv) throws IOException {
+        Path arquivo = arquivoControle(csv);
+        if (!Files.exists(arquivo) || !Files.exists(csv)) {
+            return null;
+        }
+        try (Reader reader = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8)) {
+            return ExtracaoConta.GSON.fromJson(reader, Controle.class);
+        } catch (JsonParseException e) {
+            throw new IOException("Arquivo de controle inválido: " + arquivo + " (" + e.getMessage() + ")", e);
+        }
+    }
+
+    static void gravarControle(Path csv, Controle controle) throws IOException {
+        String json = ExtracaoConta.GSON.toJson(controle);
+        JournalEstado.gravarAtomicamente(arquivoControle(csv),
+                saida -> saida.write(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Mescla os contatos da execução no CSV {@code destino} (se existir) e o regrava
+     * atomicamente. Um contato entra nas alterações se é novo, se a data ficou mais
+     * recente ou se ganhou nome; as alterações vão para {@code alteracoes}, se não for null.
+     */
+    Resultado mesclar(RepositorioContatos atuais, Path destino, Path alteracoes) throws IOException {
+        Resultado resultado = new Resultado();
+        RepositorioContatos mesclados = new RepositorioContatosCompacto();
+        if (Files.exists(destino)) {
+            resultado.anteriores = lerCsv(destino, mesclados);
+        }
+
+        RepositorioContatos alterados = new RepositorioContatosMapa();
+        atuais.paraCada((email, nome, data) -> {
+            if (mesclados.registrar(email, nome, truncar(data), ORDEM_ATUAL)) {
+                mesclados.ler(email, (emailMesclado, nomeMesclado, dataMesclada) ->
+                        alterados.restaurar(emailMesclado, nomeMesclado, dataMesclada));
+            }
+        });
+        resultado.total = mesclados.tamanho();
+        resultado.alterados = alterados.tamanho();
+
+        gravarAtomicamente(mesclados, destino);
+        if (alteracoes != null) {
+            gravarAtomicamente(alterados, alteracoes);
+        }
+        return resultado;
+    }
+
+    private void gravarAtomicamente(RepositorioContatos contatos, Path destino) throws IOException {
+        Path temporario = destino.resolveSibling(destino.getFileName() + ".tmp");
+        try {
+            exportador.exportar(contatos, temporario);
+            Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporario);
+        }
+    }
+
+    /**
+     * Carrega um CSV gerado pelo extrator (comprimido se terminar em .gz).
+     *
+     * @return quantidade de contatos lidos
+     */
+    static long lerCsv(Path csv, RepositorioContatos destino) throws IOException {
+        return ExportadorCsv.ler(csv, (numero, campos) -> {
+            if (campos.length != 3 || campos[0].isEmpty()) {
+                throw new IOException("Linha " + numero + " inválida no CSV anterior " + csv + ": "
+                        + String.join(";", campos));
+            }
+            long data;
+            try {
+                data = campos[2].isEmpty() ? RepositorioContatos.SEM_DATA : ExportadorCsv.lerData(campos[2]);
+            } catch (DateTimeParseException e) {
+                throw new IOException("Data inválida na linha " + numero + " do CSV anterior " + csv + ": "
+                        + campos[2], e);
+            }
+            destino.registrar(campos[0], campos[1], data, ORDEM_ANTERIOR);
+        });
+    }
+
+    private static long truncar(long data) {
+        return data == RepositorioContatos.SEM_DATA ? data : data - Math.floorMod(data, PRECISAO_CSV_MS);
+    }
+}
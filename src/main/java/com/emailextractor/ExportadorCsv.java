@@ -0,0 +1,380 @@
+package com.emailextractor;
+
+import com.opencsv.CSVWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exporta os contatos para CSV com ordenação externa.
+ *
+ * Os contatos são lidos do repositório sem ordem e acumulados até o orçamento de
+ * memória; ao estourá-lo, o lote é ordenado e gravado num arquivo temporário
+ * (uma "corrida"). No fim as corridas são intercaladas (k-way merge) direto no CSV,
+ * então o pico de memória fica limitado ao orçamento qualquer que seja o número
+ * de contatos. Se tudo couber no orçamento, nada é gravado em disco além do CSV.
+ *
+ * O {@link RepositorioContatosIndice} já entrega os contatos ordenados pelo banco
+ * e é copiado direto para o CSV, sem corridas.
+ */
+class ExportadorCsv {
+
+    static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    // Sem aspas delimitadoras: o separador, a quebra de linha e o próprio escape vêm precedidos do escape
+    private static final char SEPARADOR = ';';
+    private static final char ESCAPE = CSVWriter.DEFAULT_ESCAPE_CHARACTER;
+    private static final String[] CABECALHO = {"email_remetente", "nome_remetente", "data_ultimo_email"};
+
+    private static final int BUFFER_SAIDA = 1 << 20;
+    private static final int BUFFER_CORRIDA = 64 * 1024;
+    // Estimativa de memória por contato além dos caracteres (objetos, strings e referência na lista)
+    private static final int SOBRECARGA_CONTATO = 120;
+
+    private final OrdenacaoCsv ordenacao;
+    private final boolean gzip;
+    private final long orcamentoBytes;
+
+    ExportadorCsv(OrdenacaoCsv ordenacao, boolean gzip, long orcamentoBytes) {
+        this.ordenacao = ordenacao;
+        this.gzip = gzip;
+        this.orcamentoBytes = orcamentoBytes;
+    }
+
+    /**
+     * Formata uma data em epoch millis no fuso local; vazio para {@link RepositorioContatos#SEM_DATA}.
+     * DateTimeFormatter é imutável, então pode ser usado por qualquer thread.
+     */
+    static String formatarData(long data) {
+        if (data == RepositorioContatos.SEM_DATA) {
+            return "";
+        }
+        return FORMATO_DATA.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(data), ZoneId.systemDefault()));
+    }
+
+    /**
+     * Interpreta uma data no formato de {@link #FORMATO_DATA} como epoch millis no fuso local.
+     */
+    static long lerData(String texto) {
+        return LocalDateTime.parse(texto, FORMATO_DATA).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Recebe cada linha lida de um CSV exportado, já sem o escape.
+     */
+    interface ConsumidorLinha {
+        /**
+         * @param numero posição da linha no arquivo, contando o cabeçalho como 1
+         */
+        void aceitar(long numero, String[] campos) throws IOException;
+    }
+
+    /**
+     * Lê um CSV gravado pelo exportador (comprimido se terminar em .gz), pulando o
+     * cabeçalho. Com o escape desfeito caractere a caractere, nomes com aspas,
+     * separador ou quebra de linha voltam exatamente como foram gravados.
+     *
+     * @return quantidade de linhas entregues
+     */
+    static long ler(Path csv, ConsumidorLinha consumidor) throws IOException {
+        InputStream entrada = Files.newInputStream(csv);
+        if (csv.getFileName().toString().endsWith(".gz")) {
+            entrada = new GZIPInputStream(entrada, BUFFER_CORRIDA);
+        }
+        try (Reader reader = new InputStreamReader(new BufferedInputStream(entrada, BUFFER_SAIDA),
+                StandardCharsets.UTF_8)) {
+            return ler(reader, consumidor);
+        }
+    }
+
+    static long ler(Reader reader, ConsumidorLinha consumidor) throws IOException {
+        List<String> campos = new ArrayList<>(CABECALHO.length);
+        StringBuilder campo = new StringBuilder();
+        long numero = 0;
+        long lidas = 0;
+        boolean vazia = true;
+        int c;
+        while ((c = reader.read()) != -1) {
+            if (c == ESCAPE) {
+                int escapado = reader.read();
+                if (escapado == -1) {
+                    throw new IOException("Escape incompleto no fim do CSV");
+                }
+                campo.append((char) escapado);
+                vazia = false;
+            } else if (c == SEPARADOR) {
+                campos.add(campo.toString());
+                campo.setLength(0);
+                vazia = false;
+            } else if (c == '\n') {
+                numero++;
+                if (!vazia && numero > 1) {
+                    campos.add(campo.toString());
+                    consumidor.aceitar(numero, campos.toArray(new String[0]));
+                    lidas++;
+                }
+                campos.clear();
+                campo.setLength(0);
+                vazia = true;
+            } else {
+                campo.append((char) c);
+                vazia = false;
+            }
+        }
+        // Última linha sem quebra no fim
+        numero++;
+        if (!vazia && numero > 1) {
+            campos.add(campo.toString());
+            consumidor.aceitar(numero, campos.toArray(new String[0]));
+            lidas++;
+        }
+        return lidas;
+    }
+
+    private static final class Linha {
+        final String email;
+        final String nome;
+        final long data;
+
+        Linha(String email, String nome, long data) {
+            this.email = email;
+            this.nome = nome;
+            this.data = data;
+        }
+
+        String dominio() {
+            return email.substring(email.lastIndexOf('@') + 1);
+        }
+    }
+
+    private Comparator<Linha> comparador() {
+        Comparator<Linha> porEmail = Comparator.comparing(l -> l.email);
+        switch (ordenacao) {
+            case DOMINIO:
+                return Comparator.comparing(Linha::dominio).thenComparing(porEmail);
+            case DATA:
+                // SEM_DATA é Long.MIN_VALUE, então fica no fim da ordem decrescente
+                return Comparator.comparingLong((Linha l) -> l.data).reversed().thenComparing(porEmail);
+            default:
+                return porEmail;
+        }
+    }
+
+    /**
+     * Grava o CSV com todos os contatos do repositório.
+     *
+     * @return quantidade de contatos exportados
+     */
+    long exportar(RepositorioContatos contatos, Path destino) throws IOException {
+        if (contatos instanceof RepositorioContatosIndice) {
+            return exportarOrdenado((RepositorioContatosIndice) contatos, destino);
+        }
+        Comparator<Linha> comparador = comparador();
+        Path diretorio = destino.toAbsolutePath().getParent();
+        List<Path> corridas = new ArrayList<>();
+        List<Linha> lote = new ArrayList<>();
+        long[] memoria = {0};
+
+        try {
+            try {
+                contatos.paraCada((email, nome, data) -> {
+                    lote.add(new Linha(email, nome, data));
+                    memoria[0] += SOBRECARGA_CONTATO + 2L * (email.length() + nome.length());
+                    if (memoria[0] >= orcamentoBytes) {
+                        try {
+                            corridas.add(gravarCorrida(lote, comparador, diretorio));
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                        lote.clear();
+                        memoria[0] = 0;
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            lote.sort(comparador);
+            try (CSVWriter writer = abrirCsv(destino)) {
+                writer.writeNext(CABECALHO);
+                if (corridas.isEmpty()) {
+                    for (Linha linha : lote) {
+                        escrever(writer, linha);
+                    }
+                    return lote.size();
+                }
+                if (!lote.isEmpty()) {
+                    corridas.add(gravarCorrida(lote, comparador, diretorio));
+                    lote.clear();
+                }
+                return intercalar(corridas, comparador, writer);
+            }
+        } finally {
+            for (Path corrida : corridas) {
+                Files.deleteIfExists(corrida);
+            }
+        }
+    }
+
+    private long exportarOrdenado(RepositorioContatosIndice indice, Path destino) throws IOException {
+        long[] exportados = {0};
+        try (CSVWriter writer = abrirCsv(destino)) {
+            writer.writeNext(CABECALHO);
+            try {
+                indice.paraCadaOrdenado(ordenacao, (email, nome, data) -> {
+                    writer.writeNext(new String[]{email, nome, formatarData(data)});
+                    exportados[0]++;
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return exportados[0];
+    }
+
+    private CSVWriter abrirCsv(Path destino) throws IOException {
+        FileChannel canal = FileChannel.open(destino, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            OutputStream saida = new BufferedOutputStream(Channels.newOutputStream(canal), BUFFER_SAIDA);
+            if (gzip) {
+                // Já grava o cabeçalho gzip, e pode falhar com o canal aberto
+                saida = new GZIPOutputStream(saida, BUFFER_CORRIDA);
+            }
+            return new CSVWriter(new OutputStreamWriter(saida, StandardCharsets.UTF_8),
+                    SEPARADOR,
+                    CSVWriter.NO_QUOTE_CHARACTER,
+                    ESCAPE,
+                    CSVWriter.DEFAULT_LINE_END);
+        } catch (IOException | RuntimeException e) {
+            try {
+                canal.close();
+            } catch (IOException erroAoFechar) {
+                e.addSuppressed(erroAoFechar);
+            }
+            throw e;
+        }
+    }
+
+    private static void escrever(CSVWriter writer, Linha linha) {
+        writer.writeNext(new String[]{linha.email, linha.nome, formatarData(linha.data)});
+    }
+
+    /**
+     * Ordena o lote e grava como corrida temporária, ao lado do CSV de destino.
+     */
+    private static Path gravarCorrida(List<Linha> lote, Comparator<Linha> comparador, Path diretorio)
+            throws IOException {
+        lote.sort(comparador);
+        Path corrida = Files.createTempFile(diretorio, "exportacao-", ".corrida");
+        try (DataOutputStream saida = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(corrida), BUFFER_CORRIDA))) {
+            for (Linha linha : lote) {
+                escreverTexto(saida, linha.email);
+                escreverTexto(saida, linha.nome);
+                saida.writeLong(linha.data);
+            }
+        }
+        return corrida;
+    }
+
+    private static void escreverTexto(DataOutputStream saida, String texto) throws IOException {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        saida.writeInt(bytes.length);
+        saida.write(bytes);
+    }
+
+    /**
+     * Leitor sequencial de uma corrida, com a linha corrente à frente.
+     */
+    private static final class Corrida implements Closeable {
+        private final DataInputStream entrada;
+        Linha atual;
+
+        Corrida(Path arquivo) throws IOException {
+            this.entrada = new DataInputStream(new BufferedInputStream(Files.newInputStream(arquivo), BUFFER_CORRIDA));
+        }
+
+        boolean avancar() throws IOException {
+            int tamanho;
+            try {
+                tamanho = entrada.readInt();
+            } catch (EOFException e) {
+                atual = null;
+                return false;
+            }
+            String email = lerTexto(tamanho);
+            String nome = lerTexto(entrada.readInt());
+            atual = new Linha(email, nome, entrada.readLong());
+            return true;
+        }
+
+        private String lerTexto(int tamanho) throws IOException {
+            byte[] bytes = new byte[tamanho];
+            entrada.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            entrada.close();
+        }
+    }
+
+    private static long intercalar(List<Path> arquivos, Comparator<Linha> comparador, CSVWriter writer)
+            throws IOException {
+        PriorityQueue<Corrida> fila = new PriorityQueue<>(arquivos.size(),
+                (a, b) -> comparador.compare(a.atual, b.atual));
+        List<Corrida> abertas = new ArrayList<>();
+        long exportados = 0;
+        try {
+            for (Path arquivo : arquivos) {
+                Corrida corrida = new Corrida(arquivo);
+                abertas.add(corrida);
+                if (corrida.avancar()) {
+                    fila.add(corrida);
+                }
+            }
+            while (!fila.isEmpty()) {
+                Corrida menor = fila.poll();
+                escrever(writer, menor.atual);
+                exportados++;
+                if (menor.avancar()) {
+                    fila.add(menor);
+                }
+            }
+        } finally {
+            for (Corrida corrida : abertas) {
+                corrida.close();
+            }
+        }
+        return exportados;
+    }
+}
@@ -0,0 +1,2170 @@
+package com.emailextractor;
+
+import com.google.gson.ExclusionStrategy;
+import com.google.gson.FieldAttributes;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import jakarta.mail.*;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.MailDateFormat;
+import jakarta.mail.internet.MimeMessage;
+import org.eclipse.angus.mail.iap.Response;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPMessage;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.eclipse.angus.mail.imap.protocol.IMAPResponse;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Extração de uma caixa postal: conexões, checkpoints, contatos e exportação.
+ *
+ * Todo o estado fica na instância (arquivos de estado em {@code diretorioEstado}),
+ * então várias contas podem ser extraídas na mesma JVM. A interação com o usuário
+ * (perguntas, teclado) é feita por quem cria a instância.
+ */
+class ExtracaoConta {
+
+    static final String ARQUIVO_JOURNAL = "estado_processo.journal";
+    static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    // Linhas do journal: compactas e sem a lista de contatos do estado
+    static final Gson GSON_JOURNAL = new GsonBuilder()
+            .setExclusionStrategies(new ExclusionStrategy() {
+                @Override
+                public boolean shouldSkipField(FieldAttributes campo) {
+                    return campo.getDeclaringClass() == EstadoProcesso.class && campo.getName().equals("contatos");
+                }
+
+                @Override
+                public boolean shouldSkipClass(Class<?> classe) {
+                    return false;
+                }
+            })
+            .create();
+    // RFC 2177: o servidor pode encerrar um IDLE de 30 minutos; renova antes disso
+    private static final long RENOVACAO_IDLE_MS = 25 * 60_000L;
+    // Servidores sem IDLE são consultados neste intervalo
+    private static final long INTERVALO_SONDAGEM_MS = 60_000L;
+    // UIDs de mensagens perdidas listados no console; o resto só é contado
+    private static final int UIDS_LISTADOS = 20;
+    // Datas dos critérios SINCE/BEFORE do SEARCH (RFC 3501: d-MMM-yyyy, meses em inglês)
+    private static final DateTimeFormatter FORMATO_DATA_IMAP = DateTimeFormatter.ofPattern("d-MMM-yyyy", Locale.ENGLISH);
+    // MailDateFormat não é thread-safe
+    private static final ThreadLocal<MailDateFormat> MAIL_DATE_FORMAT = ThreadLocal.withInitial(MailDateFormat::new);
+
+    /**
+     * Classe para serialização de contatos no JSON.
+     */
+    private static class ContatoSerializado {
+        String email;
+        String nome;
+        String dataUltimoEmail;
+
+        ContatoSerializado(String email, String nome, long data) {
+            this.email = email;
+            this.nome = nome != null ? nome : "";
+            this.dataUltimoEmail = data != RepositorioContatos.SEM_DATA ? ExportadorCsv.formatarData(data) : null;
+        }
+
+        long getDataEpoch() {
+            if (dataUltimoEmail == null) return RepositorioContatos.SEM_DATA;
+            try {
+                return ExportadorCsv.lerData(dataUltimoEmail);
+            } catch (Exception e) {
+                return RepositorioContatos.SEM_DATA;
+            }
+        }
+    }
+
+    /**
+     * Classe para representar o estado do processo salvo em JSON.
+     */
+    static class EstadoProcesso {
+        String servidor;
+        int porta;
+        String usuario;
+        String arquivoCsv;
+        int indiceAtual;
+        int totalMensagens;
+        // Pastas e cabeçalhos escolhidos na execução original (reaplicados ao retomar)
+        List<String> pastasSelecionadas;
+        Set<CabecalhoEndereco> cabecalhos;
+        // Normalizações dos endereços (a forma canônica precisa ser a mesma ao retomar)
+        Set<NormalizacaoEndereco> normalizacoes;
+        // Período de recebimento filtrado (AAAA-MM-DD; null = sem limite)
+        String desde;
+        String ate;
+        // Texto das opções, como informado (ex.: "90d"); compõe o perfil do índice
+        String desdeInformado;
+        String ateInformado;
+        // Checkpoint de UID por pasta, na ordem em que foram processadas
+        Map<String, CheckpointPasta> pastas;
+        // Formato antigo, apenas INBOX: migrado para "pastas" ao carregar
+        long uidValidity;
+        long ultimoUid;
+        String dataInicio;
+        String dataUltimaSalva;
+        // Geração da base: aumenta a cada compactação (só é gravada na própria base)
+        long geracaoBase;
+        Map<String, ContatoSerializado> contatos;
+
+        EstadoProcesso() {
+            this.contatos = new HashMap<>();
+            this.pastas = new LinkedHashMap<>();
+            this.dataInicio = ExportadorCsv.formatarData(System.currentTimeMillis());
+        }
+
+        /**
+         * Cópia dos metadados (sem contatos) para o gravador serializar fora do lock.
+         */
+        EstadoProcesso copiarMetadados() {
+            EstadoProcesso copia = new EstadoProcesso();
+            copia.servidor = servidor;
+            copia.porta = porta;
+            copia.usuario = usuario;
+            copia.arquivoCsv = arquivoCsv;
+            copia.indiceAtual = indiceAtual;
+            copia.totalMensagens = totalMensagens;
+            copia.pastasSelecionadas = pastasSelecionadas;
+            copia.cabecalhos = cabecalhos;
+            copia.normalizacoes = normalizacoes;
+            copia.desde = desde;
+            copia.ate = ate;
+            copia.desdeInformado = desdeInformado;
+            copia.ateInformado = ateInformado;
+            for (Map.Entry<String, CheckpointPasta> entry : pastas.entrySet()) {
+                copia.pastas.put(entry.getKey(), entry.getValue().copiar());
+            }
+            copia.dataInicio = dataInicio;
+            copia.dataUltimaSalva = dataUltimaSalva;
+            return copia;
+        }
+    }
+
+    /**
+     * Linha do journal de estado: um contato alterado, os metadados do checkpoint ou,
+     * na primeira linha, a geração da base sobre a qual o journal vale.
+     */
+    private static class RegistroJournal {
+        ContatoSerializado contato;
+        EstadoProcesso estado;
+        Long geracao;
+    }
+
+    /**
+     * Checkpoint de uma pasta: só é válido enquanto o UIDVALIDITY não mudar.
+     */
+    private static class CheckpointPasta {
+        long uidValidity;
+        long ultimoUid;
+        boolean concluida;
+        // STATUS lido antes da última conclusão da pasta (null = nunca concluída)
+        AssinaturaPasta assinatura;
+        // Fila de novas tentativas: UID das mensagens que falharam -> tentativas feitas
+        TreeMap<Long, Integer> falhas = new TreeMap<>();
+
+        CheckpointPasta copiar() {
+            CheckpointPasta copia = new CheckpointPasta();
+            copia.uidValidity = uidValidity;
+            copia.ultimoUid = ultimoUid;
+            copia.concluida = concluida;
+            copia.assinatura = assinatura != null ? assinatura.copiar() : null;
+            copia.falhas = new TreeMap<>(falhas);
+            return copia;
+        }
+    }
+
+    private final OpcoesExtracao opcoes;
+    private final Path diretorioEstado;
+    private final JournalEstado journal;
+    // Prefixo das mensagens no console (null = saída interativa, sem prefixo)
+    private final String prefixo;
+    private final boolean exibirProgresso;
+    private final MetricasExtracao metricas;
+    private final RepositorioContatos repositorio;
+    // Índice persistente que faz as vezes do repositório (null = contatos só em memória)
+    private final RepositorioContatosIndice indice;
+    // Endereços já interpretados e normalizados (criado ao executar, com as opções finais)
+    private CacheEnderecos cache;
+    private final ReconexaoImap reconexao;
+    // Senha da execução atual, só em memória: usada nas reconexões
+    private String senha;
+    private ContadorBytesSocketFactory contadorBytes;
+
+    // Variáveis de controle de pausa (volatile para thread-safety)
+    private volatile boolean pausado = false;
+    private volatile boolean encerrar = false;
+    private volatile boolean processando = false;
+
+    // Estado atual do processamento
+    private EstadoProcesso estadoAtual = null;
+    // Contatos novos ou alterados desde o último checkpoint (vão para o journal)
+    private final Set<String> contatosAlterados = ConcurrentHashMap.newKeySet();
+    private int ultimoSalvamento = 0;
+
+    // Checkpoints em segundo plano; o laço de extração nunca espera pelo disco
+    private GravadorEstado gravador;
+    private volatile RenderizadorProgresso progresso;
+    private volatile boolean concluido = false;
+    private volatile String erro;
+    private final Object lockGravacao = new Object();
+    private int ultimoIndiceGravado = -1;
+    // Geração da base em disco; o journal começa com ela
+    private long geracaoBase = 0;
+
+    // Hash de 64 bits dos Message-IDs já vistos, para não contar duas vezes
+    // mensagens presentes em mais de uma pasta (ex.: "Todos os e-mails" do Gmail).
+    // Vale só para a execução atual: não vai para o estado. Ao retomar, uma cópia já
+    // lida numa pasta concluída é lida de novo, o que só afeta a contagem de repetidas:
+    // a mescla no repositório é idempotente e a ordem (pasta, UID) mantém o mesmo nome
+    private final Set<Long> mensagensVistas = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger mensagensDuplicadas = new AtomicInteger();
+    private volatile boolean deduplicarMensagens = false;
+
+    // Modo contínuo: pastas em IDLE (despertadas com NOOP) e regravação agendada do CSV
+    private final List<IMAPFolder> pastasMonitoradas = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService agendador;
+    private final AtomicBoolean exportacaoAgendada = new AtomicBoolean(false);
+    private volatile long ultimaExportacao;
+    private String arquivoCsvContinuo;
+
+    /**
+     * @param diretorioEstado diretório da base, do journal e demais arquivos de estado
+     * @param prefixo         texto antes de cada mensagem no console, ou null
+     * @param exibirProgresso se desenha a barra/linhas de progresso
+     */
+    ExtracaoConta(OpcoesExtracao opcoes, Path diretorioEstado, String prefixo, boolean exibirProgresso) {
+        this.opcoes = opcoes;
+        this.diretorioEstado = diretorioEstado;
+        this.journal = new JournalEstado(diretorioEstado.resolve(ARQUIVO_JOURNAL));
+        this.prefixo = prefixo;
+        this.exibirProgresso = exibirProgresso;
+        if (opcoes.arquivoIndice != null) {
+            try {
+                this.indice = RepositorioContatosIndice.abrir(Paths.get(opcoes.arquivoIndice));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.repositorio = indice;
+        } else {
+            this.indice = null;
+            this.repositorio = opcoes.repositorioCompacto ? new RepositorioContatosCompacto() : new RepositorioContatosMapa();
+        }
+        this.metricas = new MetricasExtracao(this::pausar, this::retomar, this::sairSalvando, () -> pausado);
+        this.reconexao = new ReconexaoImap(opcoes.tentativas, opcoes.esperaMaxima);
+    }
+
+    MetricasExtracao getMetricas() {
+        return metricas;
+    }
+
+    int getContatos() {
+        return repositorio.tamanho();
+    }
+
+    boolean isConcluido() {
+        return concluido;
+    }
+
+    boolean isEncerrado() {
+        return encerrar;
+    }
+
+    /**
+     * Mensagem da falha que interrompeu a última execução, ou null.
+     */
+    String getErro() {
+        return erro;
+    }
+
+    // ---- Preparação ----
+
+    /**
+     * Carrega o estado salvo, se houver. Os contatos vão direto para o repositório.
+     *
+     * @return o estado salvo, ou null se não existir ou estiver corrompido
+     *         (nesse caso os arquivos são apagados)
+     */
+    EstadoProcesso carregarEstadoSalvo() {
+        if (baseAtual() == null) {
+            return null;
+        }
+        long inicioCarga = MetricasExtracao.agora();
+        EstadoProcesso estadoSalvo = carregarEstado();
+        metricas.registrarFase(MetricasExtracao.Fase.CARGA_ESTADO, inicioCarga);
+        if (estadoSalvo == null) {
+            deletarEstadoSalvo();
+        }
+        return estadoSalvo;
+    }
+
+    /**
+     * Continua o processo salvo, reaplicando as pastas, cabeçalhos, normalizações e
+     * período escolhidos na execução original.
+     */
+    void continuar(EstadoProcesso estadoSalvo) {
+        estadoAtual = estadoSalvo;
+        migrarEstadoAntigo(estadoAtual);
+        if (estadoAtual.pastasSelecionadas != null) {
+            opcoes.pastas = estadoAtual.pastasSelecionadas;
+        }
+        if (estadoAtual.cabecalhos != null && !estadoAtual.cabecalhos.isEmpty()) {
+            opcoes.cabecalhos = estadoAtual.cabecalhos;
+        }
+        if (estadoAtual.normalizacoes != null) {
+            opcoes.normalizacoes = estadoAtual.normalizacoes;
+        }
+        // Os checkpoints só valem para o período da execução original (estados antigos não tinham filtro)
+        opcoes.desde = estadoAtual.desde != null ? LocalDate.parse(estadoAtual.desde) : null;
+        opcoes.ate = estadoAtual.ate != null ? LocalDate.parse(estadoAtual.ate) : null;
+        opcoes.desdeInformado = estadoAtual.desdeInformado;
+        opcoes.ateInformado = estadoAtual.ateInformado;
+    }
+
+    /**
+     * Descarta o estado salvo e os contatos já carregados.
+     */
+    void descartarEstadoSalvo() {
+        repositorio.limpar();
+        deletarEstadoSalvo();
+    }
+
+    /**
+     * Começa um processo novo (depois de descartar ou sem estado salvo). Com o índice
+     * de contatos, as pastas continuam dos checkpoints gravados nele pela execução
+     * anterior da mesma conta, e só as mensagens novas são buscadas; com
+     * {@code --incremental}, dos checkpoints da última exportação do CSV.
+     */
+    void iniciarNovo(String usuario, String servidor, int porta, String nomeArquivo) {
+        estadoAtual = new EstadoProcesso();
+        estadoAtual.usuario = usuario;
+        estadoAtual.servidor = servidor;
+        estadoAtual.porta = porta;
+        estadoAtual.arquivoCsv = nomeArquivo;
+        estadoAtual.pastasSelecionadas = opcoes.pastas;
+        estadoAtual.cabecalhos = opcoes.cabecalhos;
+        estadoAtual.normalizacoes = opcoes.normalizacoes;
+        estadoAtual.desde = opcoes.desde != null ? opcoes.desde.toString() : null;
+        estadoAtual.ate = opcoes.ate != null ? opcoes.ate.toString() : null;
+        estadoAtual.desdeInformado = opcoes.desdeInformado;
+        estadoAtual.ateInformado = opcoes.ateInformado;
+        if (indice != null) {
+            carregarCheckpointsDoIndice();
+        } else if (opcoes.incremental) {
+            carregarCheckpointsIncrementais();
+        }
+    }
+
+    /**
+     * Executa a extração até concluir, ser interrompida ou falhar. Se a conexão cair
+     * fora do processamento das janelas (conexão inicial, planejamento), a extração
+     * recomeça a partir dos checkpoints em memória, com a espera de {@link ReconexaoImap}.
+     * Em caso de falha o estado é salvo para a próxima execução. O resumo é gravado ao final.
+     *
+     * @return true se a extração terminou e o CSV foi gerado
+     */
+    boolean executar(String senha) {
+        this.senha = senha;
+        // Checkpoints por tempo; os por quantidade de mensagens são pedidos pelo laço de extração
+        gravador = new GravadorEstado(this::gravarCheckpoint, opcoes.checkpointSegundos * 1000L);
+        gravador.iniciar();
+        cache = new CacheEnderecos(opcoes.cacheEnderecos, opcoes.normalizacoes);
+        metricas.definirCache(cache::getAcertos, cache::getFalhas);
+        // Contabilizar o tráfego de todas as conexões, inclusive as reabertas
+        contadorBytes = new ContadorBytesSocketFactory();
+        metricas.definirFontes(contadorBytes::getBytesRecebidos, contadorBytes::getBytesEnviados, repositorio::tamanho);
+
+        int falhas = 0;
+        try {
+            while (true) {
+                int processadasAntes = estadoAtual.indiceAtual;
+                try {
+                    connectAndExtract(estadoAtual.usuario, senha, estadoAtual.servidor, estadoAtual.porta,
+                            estadoAtual.arquivoCsv);
+                    break;
+                } catch (MessagingException | IllegalStateException e) {
+                    falhas = estadoAtual.indiceAtual > processadasAntes ? 1 : falhas + 1;
+                    if (encerrar || !ReconexaoImap.isFalhaConexao(e) || !reconexao.permite(falhas)) {
+                        throw e;
+                    }
+                    gravador.gravarAgora();
+                    aguardarReconexao("Conexão perdida", e, falhas);
+                }
+            }
+        } catch (Exception e) {
+            erro = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            if (prefixo == null) {
+                System.err.println();
+                System.err.println("ERRO: " + e.getMessage());
+                e.printStackTrace();
+            } else {
+                System.err.println(prefixo + "ERRO: " + e.getMessage());
+            }
+
+            // Salvar estado em caso de erro (inclusive pastas concluídas sem mensagens)
+            if (estadoAtual != null && (estadoAtual.indiceAtual > 0 || !estadoAtual.pastas.isEmpty())) {
+                imprimir("");
+                imprimir("Salvando estado antes de encerrar...");
+                gravador.gravarAgora();
+            }
+        } finally {
+            gravador.parar();
+            if (indice != null) {
+                try {
+                    indice.fechar();
+                } catch (IOException e) {
+                    imprimirErro(e.getMessage());
+                }
+            }
+        }
+        gravarResumo();
+        return concluido;
+    }
+
+    /**
+     * Grava o resumo da execução (tempos, vazão, latências) em JSON para análise posterior.
+     */
+    private void gravarResumo() {
+        MetricasExtracao.ResumoExecucao resumo = metricas.resumo();
+        resumo.concluido = concluido;
+        resumo.servidor = estadoAtual != null ? estadoAtual.servidor : null;
+        resumo.conexoes = opcoes.conexoes;
+        resumo.tamanhoJanela = opcoes.tamanhoJanela;
+        resumo.pipeline.filaBusca = opcoes.filaBusca;
+        resumo.modoFetch = opcoes.modoFetch.name().toLowerCase();
+        resumo.mensagensDuplicadas = mensagensDuplicadas.get();
+        try {
+            String json = GSON.toJson(resumo);
+            JournalEstado.gravarAtomicamente(Paths.get(opcoes.arquivoResumo),
+                    saida -> saida.write(json.getBytes(StandardCharsets.UTF_8)));
+            imprimir("Resumo da execução salvo em: " + opcoes.arquivoResumo);
+        } catch (IOException e) {
+            imprimirErro("Erro ao salvar resumo da execução: " + e.getMessage());
+        }
+    }
+
+    // ---- Controle ----
+
+    /**
+     * Comandos de controle, acionados pelo teclado ou pelo MBean de métricas.
+     */
+    synchronized void pausar() {
+        if (processando && !pausado) {
+            pausado = true;
+            imprimir("");
+            imprimir("");
+            imprimir(">> Processamento PAUSADO. Pressione [R] para retomar ou [S] para sair salvando.");
+            gravador.solicitar();
+        }
+    }
+
+    synchronized void retomar() {
+        if (pausado) {
+            pausado = false;
+            imprimir(">> Retomando processamento...");
+            imprimir("");
+        }
+    }
+
+    synchronized void sairSalvando() {
+        if (processando) {
+            encerrar = true;
+            pausado = false;
+            imprimir("");
+            imprimir(">> Encerrando e salvando estado...");
+        }
+    }
+
+    private void imprimir(String texto) {
+        if (prefixo == null) {
+            System.out.println(texto);
+        } else if (!texto.isEmpty()) {
+            System.out.println(prefixo + texto);
+        }
+    }
+
+    private void imprimirErro(String texto) {
+        System.err.println(prefixo == null ? texto : prefixo + texto);
+    }
+
+    // ---- Extração ----
+
+    /**
+     * Conecta ao servidor IMAP e extrai os contatos de todas as mensagens das pastas
+     * selecionadas. A retomada usa o último UID processado de cada pasta (ver
+     * {@link UIDFolder}), então o servidor só envia as mensagens acima do checkpoint.
+     */
+    private void connectAndExtract(String usuario, String senha, String servidor,
+            int porta, String nomeArquivo) throws MessagingException, IOException {
+
+        Properties props = new Properties();
+        props.put("mail.store.protocol", "imaps");
+        props.put("mail.imaps.host", servidor);
+        props.put("mail.imaps.port", String.valueOf(porta));
+        props.put("mail.imaps.ssl.enable", "true");
+        props.put("mail.imaps.ssl.trust", "*");
+        props.put("mail.imaps.connectiontimeout", "10000");
+        props.put("mail.imaps.timeout", "10000");
+
+        // Contabilizar o tráfego da conexão (o SSL é aplicado por cima deste socket)
+        props.put("mail.imaps.socketFactory", contadorBytes);
+
+        Session session = Session.getInstance(props);
+        Store store = session.getStore("imaps");
+        List<Store> conexoesExtras = new ArrayList<>();
+
+        try {
+            long inicioConexao = MetricasExtracao.agora();
+            store.connect(servidor, porta, usuario, senha);
+            metricas.registrarFase(MetricasExtracao.Fase.CONEXAO, inicioConexao);
+            imprimir("Conexão estabelecida com sucesso!");
+
+            List<Folder> pastas = resolverPastas(store, opcoes.pastas);
+            deduplicarMensagens = pastas.size() > 1;
+            imprimir("Pastas a processar: " + pastas.size());
+            if (criterioData() != null) {
+                imprimir("Período (filtrado pelo servidor): recebidas "
+                        + (opcoes.desde != null ? "desde " + opcoes.desde : "")
+                        + (opcoes.desde != null && opcoes.ate != null ? " " : "")
+                        + (opcoes.ate != null ? "até " + opcoes.ate : ""));
+            }
+
+            // Conexões adicionais são abertas uma única vez e reaproveitadas em todas as pastas
+            for (int i = 1; i < opcoes.conexoes; i++) {
+                Store extra = session.getStore("imaps");
+                long inicioExtra = MetricasExtracao.agora();
+                extra.connect(servidor, porta, usuario, senha);
+                metricas.registrarFase(MetricasExtracao.Fase.CONEXAO, inicioExtra);
+                conexoesExtras.add(extra);
+            }
+            if (!conexoesExtras.isEmpty()) {
+                imprimir("Usando " + opcoes.conexoes + " conexões em paralelo.");
+            }
+
+            processando = true;
+            ultimoSalvamento = estadoAtual.indiceAtual;
+            estadoAtual.totalMensagens = estadoAtual.indiceAtual;
+
+            for (int indicePasta = 0; indicePasta < pastas.size() && !encerrar; indicePasta++) {
+                Folder pasta = pastas.get(indicePasta);
+                CheckpointPasta checkpoint = checkpointDaPasta(pasta.getFullName());
+                // No modo contínuo as pastas concluídas são revistas a partir do checkpoint
+                if (checkpoint.concluida && !opcoes.continuo) {
+                    imprimir("Pasta " + pasta.getFullName() + " já concluída anteriormente, ignorando.");
+                    continue;
+                }
+                extrairPasta(pasta, indicePasta, checkpoint, conexoesExtras);
+            }
+            int processadas = estadoAtual.indiceAtual;
+            int totalMensagens = estadoAtual.totalMensagens;
+
+            if (encerrar) {
+                gravador.gravarAgora();
+                imprimir("");
+                imprimir("");
+                imprimir("==============================================");
+                imprimir("Processo pausado e estado salvo!");
+                imprimir("Progresso: " + processadas + "/" + totalMensagens);
+                imprimir("Contatos encontrados até agora: " + repositorio.tamanho());
+                imprimir("Tráfego recebido: " + formatarBytes(contadorBytes.getBytesRecebidos()));
+                imprimir("Execute novamente para continuar de onde parou.");
+                imprimir("==============================================");
+                return;
+            }
+
+            if (opcoes.continuo) {
+                monitorar(session, store, conexoesExtras, pastas, nomeArquivo);
+                return;
+            }
+
+            processando = false;
+            encerrar = true;
+            gravador.parar();
+            if (indice != null) {
+                // Checkpoints finais e contatos ainda pendentes, antes de exportar do índice
+                sincronizarIndice(estadoAtual.copiarMetadados());
+            }
+
+            imprimir("");
+            imprimir("");
+            imprimir("Processamento concluído! " + processadas + " mensagens processadas.");
+            if (mensagensDuplicadas.get() > 0) {
+                imprimir("Mensagens repetidas em mais de uma pasta (ignoradas): " + mensagensDuplicadas.get());
+            }
+            if (metricas.getMensagensComFalha() > 0) {
+                imprimir("Mensagens com falha na leitura: " + metricas.getMensagensComFalha() + " ("
+                        + metricas.getFalhasRecuperadas() + " recuperadas em novas tentativas, "
+                        + metricas.getFalhasDefinitivas() + " perdidas)");
+            }
+            imprimir("Tráfego IMAP (modo " + opcoes.modoFetch.name().toLowerCase() + "): "
+                    + formatarBytes(contadorBytes.getBytesRecebidos()) + " recebidos, "
+                    + formatarBytes(contadorBytes.getBytesEnviados()) + " enviados");
+            long consultasCache = cache.getAcertos() + cache.getFalhas();
+            if (consultasCache > 0) {
+                imprimir(String.format("Cache de endereços: %.1f%% de acertos em %d consultas",
+                        100.0 * cache.getAcertos() / consultasCache, consultasCache));
+            }
+
+            // Exportar para CSV (no modo incremental, mesmo sem contatos novos: o controle avança)
+            boolean csvAnterior = opcoes.incremental && Files.exists(Paths.get(arquivoCsvFinal(nomeArquivo)));
+            if (repositorio.tamanho() > 0 || csvAnterior) {
+                long total;
+                if (opcoes.incremental) {
+                    nomeArquivo = arquivoCsvFinal(nomeArquivo);
+                    total = exportarIncremental(repositorio, nomeArquivo);
+                } else {
+                    nomeArquivo = exportToCsv(repositorio, nomeArquivo);
+                    total = repositorio.tamanho();
+                }
+                imprimir("");
+                imprimir("==============================================");
+                imprimir("Extração concluída com sucesso!");
+                imprimir("Total de contatos únicos: " + total);
+                imprimir("Arquivo salvo em: " + nomeArquivo);
+                imprimir("==============================================");
+
+                // Deletar arquivo de estado após conclusão bem-sucedida
+                deletarEstadoSalvo();
+                concluido = true;
+            } else {
+                imprimir("Nenhum e-mail encontrado nas pastas processadas.");
+            }
+
+        } finally {
+            for (Store extra : conexoesExtras) {
+                try {
+                    extra.close();
+                } catch (MessagingException e) {
+                    // Conexão já encerrada
+                }
+            }
+            store.close();
+        }
+    }
+
+    /**
+     * Resolve as pastas pedidas; "*" lista todas as pastas que podem conter mensagens.
+     */
+    private List<Folder> resolverPastas(Store store, List<String> nomes) throws MessagingException {
+        List<Folder> pastas = new ArrayList<>();
+        if (nomes.size() == 1 && nomes.get(0).equals("*")) {
+            for (Folder pasta : store.getDefaultFolder().list("*")) {
+                if ((pasta.getType() & Folder.HOLDS_MESSAGES) != 0) {
+                    pastas.add(pasta);
+                }
+            }
+        } else {
+            for (String nome : nomes) {
+                Folder pasta = store.getFolder(nome);
+                if (!pasta.exists()) {
+                    imprimir("[!] Pasta não encontrada, ignorando: " + nome);
+                    continue;
+                }
+                pastas.add(pasta);
+            }
+        }
+        return pastas;
+    }
+
+    /**
+     * Extrai uma pasta: confere com um STATUS se chegou algo desde o checkpoint
+     * (senão a pasta nem é aberta), valida o checkpoint pelo UIDVALIDITY, planeja
+     * as janelas acima do último UID processado e as distribui entre as conexões.
+     */
+    private void extrairPasta(Folder pasta, int indicePasta, CheckpointPasta checkpoint,
+            List<Store> conexoesExtras) throws MessagingException {
+
+        String nome = pasta.getFullName();
+        AssinaturaPasta assinatura = lerAssinatura(pasta);
+        if (assinatura != null && semMensagensNovas(assinatura, checkpoint)) {
+            imprimir("");
+            imprimir("Pasta " + nome + ": sem mensagens novas "
+                    + (checkpoint.ultimoUid > 0 ? "desde o UID " + checkpoint.ultimoUid : "desde a última conclusão")
+                    + (assinatura.identica(checkpoint.assinatura) ? "" : " (apenas flags ou remoções)")
+                    + ", pulada.");
+            metricas.registrarPastaPulada();
+            concluirPasta(checkpoint, assinatura);
+            return;
+        }
+        pasta.open(Folder.READ_ONLY);
+        try {
+            long uidInicial = validarCheckpoint(checkpoint, ((UIDFolder) pasta).getUIDValidity(), nome);
+            imprimir("");
+            if (uidInicial > 1) {
+                imprimir("Pasta " + nome + ": retomando a partir do UID " + uidInicial + "...");
+            } else {
+                imprimir("Pasta " + nome + ": processando mensagens (do mais antigo para o mais recente)...");
+            }
+
+            // Planejar janelas de UID a partir do checkpoint; cada janela é buscada,
+            // processada e descartada antes da próxima, mantendo o heap constante
+            long inicioPlanejamento = MetricasExtracao.agora();
+            List<JanelaUid> janelas = planejar(pasta, uidInicial);
+            metricas.registrarFase(MetricasExtracao.Fase.PLANEJAMENTO, inicioPlanejamento);
+            imprimir("Planejando janelas de " + opcoes.tamanhoJanela + " mensagens... OK!");
+
+            int pendentes = 0;
+            for (JanelaUid janela : janelas) {
+                pendentes += janela.estimativa;
+            }
+            adicionarAoTotal(pendentes);
+            imprimir("Total de mensagens a processar (estimado): " + pendentes);
+            imprimir("");
+
+            // O progresso é desenhado por uma thread própria enquanto a pasta é processada
+            if (exibirProgresso) {
+                progresso = new RenderizadorProgresso(opcoes.modoProgresso, repositorio::tamanho, () -> pausado);
+                publicarProgresso();
+                progresso.iniciar();
+            }
+
+            ControleJanelas controle = new ControleJanelas(janelas, checkpoint.ultimoUid, opcoes.tamanhoJanela);
+            long uidValidity = ((UIDFolder) pasta).getUIDValidity();
+            int conexoes = Math.min(1 + conexoesExtras.size(), Math.max(1, janelas.size()));
+            try {
+                if (conexoes <= 1) {
+                    processarComReconexao(pasta.getStore(), pasta, uidValidity, controle, checkpoint, indicePasta);
+                } else {
+                    extrairEmParalelo(pasta, uidValidity, controle, checkpoint, indicePasta,
+                            conexoesExtras.subList(0, conexoes - 1));
+                }
+            } finally {
+                if (progresso != null) {
+                    progresso.parar();
+                }
+            }
+
+            if (!encerrar) {
+                reprocessarFalhas(pasta, checkpoint, indicePasta);
+            }
+            // Encerrada no meio das novas tentativas, a pasta fica pendente com a fila no checkpoint
+            if (!encerrar) {
+                concluirPasta(checkpoint, assinatura);
+            }
+        } finally {
+            if (pasta.isOpen()) {
+                pasta.close(false);
+            }
+        }
+    }
+
+    /**
+     * Processa as janelas entregues pelo controle até não restar nenhuma.
+     * Cada conexão executa este laço sobre a sua própria pasta aberta.
+     *
+     * @return quantidade de mensagens processadas por esta conexão
+     */
+    private int processarJanelas(Folder pasta, ControleJanelas controle, CheckpointPasta checkpoint,
+            int indicePasta) throws MessagingException {
+        UIDFolder uidFolder = (UIDFolder) pasta;
+        FetchProfile fetchProfile = opcoes.modoFetch.criarFetchProfile(opcoes.cabecalhos, deduplicarMensagens);
+        if (opcoes.filaBusca > 0) {
+            return processarJanelasEmPipeline(pasta, controle, checkpoint, indicePasta, fetchProfile);
+        }
+        int processadas = 0;
+
+        JanelaUid janela;
+        while (!encerrar && (janela = controle.proxima()) != null) {
+            try {
+                processadas += processarJanela(buscarJanela(pasta, uidFolder, fetchProfile, janela), controle,
+                        checkpoint, indicePasta);
+            } catch (MessagingException | RuntimeException e) {
+                // A parte não processada volta para a fila, para esta ou outra conexão
+                controle.devolver(janela);
+                throw e;
+            }
+        }
+        return processadas;
+    }
+
+    /**
+     * Mesmo laço de {@link #processarJanelas}, em dois estágios: uma thread busca as
+     * próximas janelas (até {@code --fila-busca} à frente) enquanto esta processa a
+     * atual, escondendo a latência do servidor atrás do processamento local. Os
+     * checkpoints e o progresso já rodam em threads próprias, como terceiro estágio.
+     */
+    private int processarJanelasEmPipeline(Folder pasta, ControleJanelas controle, CheckpointPasta checkpoint,
+            int indicePasta, FetchProfile fetchProfile) throws MessagingException {
+        UIDFolder uidFolder = (UIDFolder) pasta;
+        BuscaJanelas busca = new BuscaJanelas(pasta.getFullName(), controle, opcoes.filaBusca,
+                janela -> buscarJanela(pasta, uidFolder, fetchProfile, janela),
+                () -> encerrar || controle.isAbortado(), metricas);
+        busca.iniciar();
+        int processadas = 0;
+
+        BuscaJanelas.JanelaBuscada atual = null;
+        try {
+            while (!encerrar && (atual = busca.proxima()) != null) {
+                processadas += processarJanela(atual, controle, checkpoint, indicePasta);
+            }
+        } catch (MessagingException | RuntimeException e) {
+            // A janela interrompida e as já buscadas voltam para a fila, na ordem original
+            List<JanelaUid> emMaos = new ArrayList<>();
+            if (atual != null && !atual.janela.concluida) {
+                emMaos.add(atual.janela);
+            }
+            emMaos.addAll(busca.parar());
+            controle.devolver(emMaos);
+            throw e;
+        }
+        busca.parar();
+        return processadas;
+    }
+
+    /**
+     * Busca no servidor as mensagens de uma janela com os dados do perfil de fetch.
+     */
+    private BuscaJanelas.JanelaBuscada buscarJanela(Folder pasta, UIDFolder uidFolder, FetchProfile fetchProfile,
+            JanelaUid janela) throws MessagingException {
+        long inicioFetch = MetricasExtracao.agora();
+        Message[] mensagens = janela.uids != null
+                ? existentes(uidFolder.getMessagesByUID(janela.uids))
+                : uidFolder.getMessagesByUID(janela.inicio, janela.fim);
+        pasta.fetch(mensagens, fetchProfile);
+        long[] uids = new long[mensagens.length];
+        for (int i = 0; i < mensagens.length; i++) {
+            uids[i] = uidFolder.getUID(mensagens[i]);
+        }
+        metricas.registrarFase(MetricasExtracao.Fase.FETCH, inicioFetch);
+        return new BuscaJanelas.JanelaBuscada(janela, mensagens, uids);
+    }
+
+    /**
+     * Processa uma janela já buscada; só a conclui se não for interrompida.
+     *
+     * @return quantidade de mensagens processadas
+     */
+    private int processarJanela(BuscaJanelas.JanelaBuscada buscada, ControleJanelas controle,
+            CheckpointPasta checkpoint, int indicePasta) throws MessagingException {
+        JanelaUid janela = buscada.janela;
+        Message[] mensagens = buscada.mensagens;
+        int processadas = 0;
+
+        boolean interrompida = false;
+        for (int i = 0; i < mensagens.length; i++) {
+            Message mensagem = mensagens[i];
+            // Verificar se está pausado
+            while (pausado && !encerrar) {
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            if (encerrar || controle.isAbortado()) {
+                interrompida = true;
+                break;
+            }
+
+            long uid = buscada.uids[i];
+            if (uid < janela.inicio || uid > janela.fim) {
+                // "n:*" sempre inclui a última mensagem, mesmo com UID menor que n
+                continue;
+            }
+
+            long inicioProcessamento = MetricasExtracao.agora();
+            try {
+                if (deduplicarMensagens && jaProcessada(mensagem)) {
+                    mensagensDuplicadas.incrementAndGet();
+                } else {
+                    // A ordem (pasta, UID) decide qual nome prevalece, independente da conexão
+                    long ordem = ((long) indicePasta << 32) | uid;
+                    extractSenderInfo(mensagem, repositorio, opcoes.modoFetch, opcoes.cabecalhos, cache, ordem,
+                            contatosAlterados, metricas);
+                }
+            } catch (MessagingException e) {
+                if (ReconexaoImap.isFalhaConexao(e)) {
+                    // Conexão caiu no meio da mensagem: ela será buscada de novo
+                    throw e;
+                }
+                // Mensagem ilegível: contada como processada e buscada de novo ao final da pasta
+                registrarFalha(checkpoint, uid);
+            }
+            metricas.registrarFase(MetricasExtracao.Fase.PROCESSAMENTO, inicioProcessamento);
+            metricas.registrarMensagem();
+            registrarProcessada(controle, janela, uid, checkpoint);
+            processadas++;
+        }
+
+        // Liberar envelopes da janela; o cache da pasta mantém apenas os stubs
+        for (Message mensagem : mensagens) {
+            ((IMAPMessage) mensagem).invalidateHeaders();
+        }
+
+        if (!interrompida) {
+            concluirJanela(controle, janela, checkpoint);
+        }
+        return processadas;
+    }
+
+    /**
+     * Busca de novo as mensagens da fila de falhas da pasta, em lotes de até
+     * {@code --janela} UIDs (um UID FETCH por lote), com uma espera crescente entre as
+     * rodadas. Cada mensagem tem até {@code --tentativas-mensagem} novas tentativas; as
+     * que esgotarem saem da fila e são informadas como perdidas. Uma queda de conexão é
+     * relançada: a fila fica no checkpoint e é retomada depois da reconexão.
+     */
+    private void reprocessarFalhas(Folder pasta, CheckpointPasta checkpoint, int indicePasta)
+            throws MessagingException {
+        UIDFolder uidFolder = (UIDFolder) pasta;
+        FetchProfile fetchProfile = opcoes.modoFetch.criarFetchProfile(opcoes.cabecalhos, false);
+        List<Long> perdidas = new ArrayList<>();
+        int recuperadas = 0;
+        int rodada = 0;
+
+        long[] pendentes;
+        while (!encerrar && (pendentes = falhasPendentes(checkpoint, perdidas)).length > 0) {
+            if (rodada++ > 0) {
+                aguardar(reconexao.espera(rodada - 1));
+                if (encerrar) {
+                    break;
+                }
+            }
+            imprimir("Pasta " + pasta.getFullName() + ": buscando de novo " + pendentes.length
+                    + " mensagem(ns) com falha (rodada " + rodada + ")...");
+            for (int inicio = 0; inicio < pendentes.length && !encerrar; inicio += opcoes.tamanhoJanela) {
+                long[] lote = Arrays.copyOfRange(pendentes, inicio,
+                        Math.min(pendentes.length, inicio + opcoes.tamanhoJanela));
+                recuperadas += reprocessarLote(pasta, uidFolder, fetchProfile, lote, checkpoint, indicePasta);
+            }
+        }
+
+        if (recuperadas > 0 || !perdidas.isEmpty()) {
+            gravador.solicitar();
+            imprimir("Pasta " + pasta.getFullName() + ": " + recuperadas + " mensagem(ns) com falha recuperada(s)"
+                    + (perdidas.isEmpty() ? "" : ", " + perdidas.size() + " perdida(s) após "
+                            + opcoes.tentativasMensagem + " nova(s) tentativa(s) (UIDs " + listarUids(perdidas) + ")")
+                    + ".");
+        }
+    }
+
+    /**
+     * Busca um lote da fila de falhas e extrai as mensagens; as lidas saem da fila e as
+     * que falharem de novo somam uma tentativa. Mensagens removidas do servidor saem sem contar.
+     *
+     * @return quantidade de mensagens recuperadas
+     */
+    private int reprocessarLote(Folder pasta, UIDFolder uidFolder, FetchProfile fetchProfile, long[] lote,
+            CheckpointPasta checkpoint, int indicePasta) throws MessagingException {
+        Set<Long> semResposta = new HashSet<>();
+        for (long uid : lote) {
+            semResposta.add(uid);
+        }
+        int recuperadas = 0;
+        Message[] mensagens;
+        try {
+            long inicioFetch = MetricasExtracao.agora();
+            mensagens = existentes(uidFolder.getMessagesByUID(lote));
+            pasta.fetch(mensagens, fetchProfile);
+            metricas.registrarFase(MetricasExtracao.Fase.FETCH, inicioFetch);
+        } catch (MessagingException e) {
+            if (ReconexaoImap.isFalhaConexao(e)) {
+                throw e;
+            }
+            // O servidor recusou o lote inteiro: cada mensagem soma uma tentativa
+            for (long uid : lote) {
+                registrarFalha(checkpoint, uid);
+            }
+            return 0;
+        }
+
+        for (Message mensagem : mensagens) {
+            long uid = uidFolder.getUID(mensagem);
+            semResposta.remove(uid);
+            long inicioProcessamento = MetricasExtracao.agora();
+            try {
+                // Sem deduplicação: o Message-ID já foi registrado na tentativa que falhou
+                long ordem = ((long) indicePasta << 32) | uid;
+                extractSenderInfo(mensagem, repositorio, opcoes.modoFetch, opcoes.cabecalhos, cache, ordem,
+                        contatosAlterados, metricas);
+                removerFalha(checkpoint, uid, true);
+                recuperadas++;
+            } catch (MessageRemovedException e) {
+                removerFalha(checkpoint, uid, false);
+            } catch (MessagingException e) {
+                if (ReconexaoImap.isFalhaConexao(e)) {
+                    throw e;
+                }
+                registrarFalha(checkpoint, uid);
+            }
+            metricas.registrarFase(MetricasExtracao.Fase.PROCESSAMENTO, inicioProcessamento);
+            ((IMAPMessage) mensagem).invalidateHeaders();
+        }
+        // UIDs que não existem mais na pasta (mensagem apagada desde a falha)
+        for (long uid : semResposta) {
+            removerFalha(checkpoint, uid, false);
+        }
+        return recuperadas;
+    }
+
+    /**
+     * Processa as janelas de uma pasta em paralelo: cada conexão adicional abre a
+     * pasta e a conexão principal também participa. Uma conexão que cai reconecta
+     * sozinha enquanto as outras continuam; se ela desistir ou falhar de outra forma,
+     * as demais param na próxima mensagem e o erro é propagado com o checkpoint consistente.
+     */
+    private void extrairEmParalelo(Folder pasta, long uidValidity, ControleJanelas controle,
+            CheckpointPasta checkpoint, int indicePasta, List<Store> conexoesExtras) throws MessagingException {
+
+        ExecutorService executor = Executors.newFixedThreadPool(conexoesExtras.size());
+        List<Future<Void>> futuros = new ArrayList<>();
+        for (Store extra : conexoesExtras) {
+            futuros.add(executor.submit(() -> {
+                Folder copia = extra.getFolder(pasta.getFullName());
+                try {
+                    processarComReconexao(extra, copia, uidValidity, controle, checkpoint, indicePasta);
+                    return null;
+                } catch (Exception e) {
+                    controle.abortar();
+                    throw e;
+                } finally {
+                    if (copia.isOpen()) {
+                        copia.close(false);
+                    }
+                }
+            }));
+        }
+
+        MessagingException falha = null;
+        try {
+            processarComReconexao(pasta.getStore(), pasta, uidValidity, controle, checkpoint, indicePasta);
+        } catch (MessagingException e) {
+            controle.abortar();
+            falha = e;
+        }
+        for (Future<Void> futuro : futuros) {
+            try {
+                futuro.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                controle.abortar();
+            } catch (java.util.concurrent.ExecutionException e) {
+                if (falha == null) {
+                    falha = new MessagingException("Falha em conexão paralela: " + e.getCause().getMessage(),
+                            e.getCause() instanceof Exception ? (Exception) e.getCause() : null);
+                }
+            }
+        }
+        executor.shutdown();
+        if (falha != null) {
+            throw falha;
+        }
+    }
+
+    /**
+     * Processa janelas numa conexão até acabarem, reconectando quando ela cai: a
+     * pasta é reaberta (conferindo o UIDVALIDITY) e a extração segue da janela
+     * interrompida, sem repetir as já concluídas. Depois de
+     * {@code --tentativas} quedas seguidas sem nenhuma mensagem processada, desiste.
+     *
+     * @param pasta pasta desta conexão, aberta ou não; quem chama a fecha ao final
+     */
+    private void processarComReconexao(Store conexao, Folder pasta, long uidValidity, ControleJanelas controle,
+            CheckpointPasta checkpoint, int indicePasta) throws MessagingException {
+        int falhas = 0;
+        while (true) {
+            long processadasAntes = metricas.getMensagensProcessadas();
+            try {
+                if (!pasta.isOpen()) {
+                    if (!conexao.isConnected()) {
+                        conectar(conexao);
+                    }
+                    pasta.open(Folder.READ_ONLY);
+                    if (((UIDFolder) pasta).getUIDValidity() != uidValidity) {
+                        throw new MessagingException("UIDVALIDITY mudou durante o processamento");
+                    }
+                    if (falhas > 0) {
+                        imprimir("Pasta " + pasta.getFullName() + ": conexão restabelecida, janelas de até "
+                                + controle.limite() + " mensagens.");
+                    }
+                }
+                processarJanelas(pasta, controle, checkpoint, indicePasta);
+                return;
+            } catch (MessagingException | IllegalStateException e) {
+                if (encerrar || controle.isAbortado() || !ReconexaoImap.isFalhaConexao(e)) {
+                    throw e;
+                }
+                falhas = metricas.getMensagensProcessadas() > processadasAntes ? 1 : falhas + 1;
+                if (!reconexao.permite(falhas)) {
+                    throw new ReconexaoImap.TentativasEsgotadas("conexão perdida e " + reconexao.getTentativas()
+                            + " tentativas de reconexão esgotadas: " + e.getMessage(), e);
+                }
+                fecharApos(pasta, conexao);
+                aguardarReconexao("Pasta " + pasta.getFullName() + ": conexão perdida", e, falhas);
+            }
+        }
+    }
+
+    /**
+     * Abre a conexão com as credenciais da execução atual.
+     */
+    private void conectar(Store conexao) throws MessagingException {
+        long inicioConexao = MetricasExtracao.agora();
+        conexao.connect(estadoAtual.servidor, estadoAtual.porta, estadoAtual.usuario, senha);
+        metricas.registrarFase(MetricasExtracao.Fase.CONEXAO, inicioConexao);
+    }
+
+    /**
+     * Fecha a pasta e a conexão depois de uma queda, ignorando erros (o socket já pode estar morto).
+     */
+    private static void fecharApos(Folder pasta, Store conexao) {
+        try {
+            if (pasta != null && pasta.isOpen()) {
+                pasta.close(false);
+            }
+        } catch (MessagingException | IllegalStateException e) {
+            // Pasta já fechada pela queda
+        }
+        try {
+            conexao.close();
+        } catch (MessagingException e) {
+            // Conexão já encerrada
+        }
+    }
+
+    /**
+     * Informa a queda e espera antes da tentativa seguinte (espera exponencial com sorteio).
+     */
+    private void aguardarReconexao(String contexto, Exception causa, int falhas) {
+        long espera = reconexao.espera(falhas);
+        metricas.registrarReconexao(ReconexaoImap.isLimite(causa));
+        imprimirErro(String.format("%s (%s), tentativa %d em %.1f s.", contexto,
+                causa.getMessage() != null ? causa.getMessage() : causa.getClass().getSimpleName(),
+                falhas, espera / 1000.0));
+        aguardar(espera);
+    }
+
+    /**
+     * Contabiliza uma mensagem processada, avança o checkpoint e atualiza o progresso.
+     */
+    private synchronized void registrarProcessada(ControleJanelas controle, JanelaUid janela, long uid,
+            CheckpointPasta checkpoint) {
+        janela.ultimoUid = uid;
+        int processadas = ++estadoAtual.indiceAtual;
+        checkpoint.ultimoUid = controle.cursor();
+        // Só publica os contadores; a exibição é feita pelo renderizador
+        publicarProgresso();
+
+        // Pedir checkpoint ao gravador a cada N mensagens (não bloqueia)
+        if (processadas - ultimoSalvamento >= opcoes.checkpointMensagens) {
+            gravador.solicitar();
+            ultimoSalvamento = processadas;
+        }
+    }
+
+    /**
+     * Põe a mensagem na fila de falhas da pasta, ou soma uma tentativa se já estiver nela.
+     */
+    private synchronized void registrarFalha(CheckpointPasta checkpoint, long uid) {
+        if (checkpoint.falhas.merge(uid, 1, Integer::sum) == 1) {
+            metricas.registrarFalhaMensagem();
+        }
+    }
+
+    /**
+     * @param recuperada se a mensagem foi lida (senão, não existe mais no servidor)
+     */
+    private synchronized void removerFalha(CheckpointPasta checkpoint, long uid, boolean recuperada) {
+        if (checkpoint.falhas.remove(uid) != null && recuperada) {
+            metricas.registrarFalhaResolvida(true);
+        }
+    }
+
+    /**
+     * UIDs da fila de falhas que ainda têm tentativas, em ordem; os que esgotaram
+     * saem da fila e vão para {@code perdidas}.
+     */
+    private synchronized long[] falhasPendentes(CheckpointPasta checkpoint, List<Long> perdidas) {
+        Iterator<Map.Entry<Long, Integer>> iterador = checkpoint.falhas.entrySet().iterator();
+        while (iterador.hasNext()) {
+            Map.Entry<Long, Integer> falha = iterador.next();
+            // A primeira falha não conta como nova tentativa
+            if (falha.getValue() > opcoes.tentativasMensagem) {
+                perdidas.add(falha.getKey());
+                metricas.registrarFalhaResolvida(false);
+                iterador.remove();
+            }
+        }
+        long[] pendentes = new long[checkpoint.falhas.size()];
+        int i = 0;
+        for (long uid : checkpoint.falhas.keySet()) {
+            pendentes[i++] = uid;
+        }
+        return pendentes;
+    }
+
+    private synchronized boolean temFalhas(CheckpointPasta checkpoint) {
+        return !checkpoint.falhas.isEmpty();
+    }
+
+    private static String listarUids(List<Long> uids) {
+        StringBuilder texto = new StringBuilder();
+        for (int i = 0; i < uids.size() && i < UIDS_LISTADOS; i++) {
+            texto.append(i > 0 ? ", " : "").append(uids.get(i));
+        }
+        if (uids.size() > UIDS_LISTADOS) {
+            texto.append(" e mais ").append(uids.size() - UIDS_LISTADOS);
+        }
+        return texto.toString();
+    }
+
+    private synchronized void concluirJanela(ControleJanelas controle, JanelaUid janela,
+            CheckpointPasta checkpoint) {
+        controle.concluir(janela);
+        checkpoint.ultimoUid = controle.cursor();
+    }
+
+    /**
+     * Confere o checkpoint da pasta contra o UIDVALIDITY atual e devolve o primeiro UID a processar.
+     * Um UIDVALIDITY diferente invalida todos os UIDs conhecidos (RFC 3501, 2.3.1.1).
+     */
+    private synchronized long validarCheckpoint(CheckpointPasta checkpoint, long uidValidity, String nome) {
+        if (checkpoint.ultimoUid > 0 && checkpoint.uidValidity != uidValidity) {
+            imprimir("[!] O UIDVALIDITY da pasta " + nome + " mudou desde o último checkpoint.");
+            imprimir("    Reprocessando a pasta (os contatos já encontrados são mantidos).");
+            checkpoint.ultimoUid = 0;
+            checkpoint.falhas.clear();
+        }
+        checkpoint.uidValidity = uidValidity;
+        return checkpoint.ultimoUid + 1;
+    }
+
+    /**
+     * Marca a pasta como concluída e guarda a assinatura lida antes de abri-la: as
+     * mensagens que chegaram depois dela têm UID maior ou igual ao UIDNEXT guardado.
+     */
+    private synchronized void concluirPasta(CheckpointPasta checkpoint, AssinaturaPasta assinatura) {
+        checkpoint.concluida = true;
+        if (assinatura != null) {
+            checkpoint.assinatura = assinatura;
+        }
+    }
+
+    private synchronized boolean semMensagensNovas(AssinaturaPasta assinatura, CheckpointPasta checkpoint) {
+        // Mensagens na fila de falhas pedem a pasta aberta, mesmo sem mensagens novas
+        return checkpoint.falhas.isEmpty() && assinatura.semMensagensNovas(checkpoint.uidValidity, checkpoint.ultimoUid, checkpoint.assinatura);
+    }
+
+    /**
+     * STATUS da pasta antes de abri-la; null se o servidor recusar (a pasta é então
+     * processada normalmente).
+     */
+    private AssinaturaPasta lerAssinatura(Folder pasta) throws MessagingException {
+        long inicio = MetricasExtracao.agora();
+        try {
+            return AssinaturaPasta.ler((IMAPFolder) pasta);
+        } catch (MessagingException e) {
+            if (ReconexaoImap.isFalhaConexao(e)) {
+                throw e;
+            }
+            return null;
+        } finally {
+            metricas.registrarFase(MetricasExtracao.Fase.PLANEJAMENTO, inicio);
+        }
+    }
+
+    private synchronized CheckpointPasta checkpointDaPasta(String nome) {
+        return estadoAtual.pastas.computeIfAbsent(nome, chave -> new CheckpointPasta());
+    }
+
+    private synchronized void adicionarAoTotal(int pendentes) {
+        estadoAtual.totalMensagens += pendentes;
+    }
+
+    private synchronized void publicarProgresso() {
+        if (progresso != null) {
+            progresso.atualizar(estadoAtual.indiceAtual, Math.max(estadoAtual.totalMensagens, estadoAtual.indiceAtual));
+        }
+    }
+
+    /**
+     * Registra o Message-ID da mensagem e informa se ele já havia sido visto.
+     * Mensagens sem Message-ID nunca são consideradas repetidas.
+     */
+    private boolean jaProcessada(Message mensagem) throws MessagingException {
+        String messageId;
+        if (opcoes.modoFetch == ModoFetch.CABECALHOS) {
+            String[] valores = mensagem.getHeader("Message-ID");
+            messageId = valores != null ? valores[0] : null;
+        } else {
+            messageId = ((MimeMessage) mensagem).getMessageID();
+        }
+        if (messageId == null || messageId.isBlank()) {
+            return false;
+        }
+        return !mensagensVistas.add(hash64(messageId.trim()));
+    }
+
+    /**
+     * Hash FNV-1a de 64 bits; colisões são desprezíveis para milhões de mensagens.
+     */
+    static long hash64(String texto) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < texto.length(); i++) {
+            hash ^= texto.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Converte o estado do formato antigo (checkpoint único da INBOX) para o checkpoint por pasta.
+     */
+    private static void migrarEstadoAntigo(EstadoProcesso estado) {
+        if (estado.pastas == null) {
+            estado.pastas = new LinkedHashMap<>();
+        }
+        if (estado.ultimoUid > 0 && estado.pastas.isEmpty()) {
+            CheckpointPasta checkpoint = new CheckpointPasta();
+            checkpoint.uidValidity = estado.uidValidity;
+            checkpoint.ultimoUid = estado.ultimoUid;
+            estado.pastas.put("INBOX", checkpoint);
+        }
+        estado.uidValidity = 0;
+        estado.ultimoUid = 0;
+    }
+
+    /**
+     * Janelas das mensagens a processar a partir de uidInicial: todas as da pasta
+     * ou, com {@code --desde}/{@code --ate}, só as que o servidor encontrar no período.
+     */
+    private List<JanelaUid> planejar(Folder pasta, long uidInicial) throws MessagingException {
+        String criterio = criterioData();
+        if (criterio == null) {
+            return planejarJanelas(pasta, uidInicial, opcoes.tamanhoJanela);
+        }
+        return planejarJanelasFiltradas((IMAPFolder) pasta, uidInicial, opcoes.tamanhoJanela, criterio);
+    }
+
+    /**
+     * Critério SEARCH do período pedido, ou null sem filtro. SINCE e BEFORE comparam
+     * a data de recebimento (INTERNALDATE) em dias; BEFORE é exclusivo, daí o dia seguinte a --ate.
+     */
+    private String criterioData() {
+        StringBuilder criterio = new StringBuilder();
+        if (opcoes.desde != null) {
+            criterio.append(" SINCE ").append(FORMATO_DATA_IMAP.format(opcoes.desde));
+        }
+        if (opcoes.ate != null) {
+            criterio.append(" BEFORE ").append(FORMATO_DATA_IMAP.format(opcoes.ate.plusDays(1)));
+        }
+        return criterio.length() == 0 ? null : criterio.toString();
+    }
+
+    /**
+     * Janelas com filtro de data: um único UID SEARCH devolve os UIDs do período
+     * acima do checkpoint, que são divididos em janelas de {@code tamanho} UIDs.
+     * Cada janela busca exatamente os seus UIDs, então mensagens fora do período
+     * nunca trafegam. Como o resultado da extração não depende da ordem das
+     * mensagens, basta ordenar os UIDs (o SEARCH não garante ordem).
+     */
+    private static List<JanelaUid> planejarJanelasFiltradas(IMAPFolder pasta, long uidInicial, int tamanho,
+            String criterio) throws MessagingException {
+
+        long[] uids = (long[]) pasta.doCommand(protocolo -> {
+            Response[] respostas = protocolo.command("UID SEARCH UID " + uidInicial + ":*" + criterio, null);
+            long[] encontrados = new long[64];
+            int quantidade = 0;
+            for (Response resposta : respostas) {
+                if (!(resposta instanceof IMAPResponse) || !((IMAPResponse) resposta).keyEquals("SEARCH")) {
+                    continue;
+                }
+                long uid;
+                while ((uid = resposta.readLong()) != -1) {
+                    // "n:*" sempre inclui a última mensagem, mesmo com UID menor que n
+                    if (uid >= uidInicial) {
+                        if (quantidade == encontrados.length) {
+                            encontrados = Arrays.copyOf(encontrados, quantidade * 2);
+                        }
+                        encontrados[quantidade++] = uid;
+                    }
+                }
+            }
+            protocolo.notifyResponseHandlers(respostas);
+            protocolo.handleResult(respostas[respostas.length - 1]);
+            return Arrays.copyOf(encontrados, quantidade);
+        });
+        Arrays.sort(uids);
+
+        List<JanelaUid> janelas = new ArrayList<>();
+        for (int inicio = 0; inicio < uids.length; inicio += tamanho) {
+            janelas.add(new JanelaUid(Arrays.copyOfRange(uids, inicio, Math.min(uids.length, inicio + tamanho))));
+        }
+        return janelas;
+    }
+
+    /**
+     * Remove as mensagens que não existem mais (UIDs apagados depois do SEARCH).
+     */
+    private static Message[] existentes(Message[] mensagens) {
+        int quantidade = 0;
+        for (Message mensagem : mensagens) {
+            if (mensagem != null) {
+                mensagens[quantidade++] = mensagem;
+            }
+        }
+        return quantidade == mensagens.length ? mensagens : Arrays.copyOf(mensagens, quantidade);
+    }
+
+    /**
+     * Divide as mensagens com UID >= uidInicial em janelas de aproximadamente
+     * {@code tamanho} mensagens. Os limites são obtidos com um único FETCH de UID
+     * sobre as mensagens 1, 1+tamanho, 1+2*tamanho..., sem carregar a pasta inteira.
+     */
+    static List<JanelaUid> planejarJanelas(Folder pasta, long uidInicial, int tamanho)
+            throws MessagingException {
+
+        List<JanelaUid> janelas = new ArrayList<>();
+        int total = pasta.getMessageCount();
+        if (total == 0) {
+            return janelas;
+        }
+
+        UIDFolder uidFolder = (UIDFolder) pasta;
+        int quantidade = (total + tamanho - 1) / tamanho;
+        Message[] fronteiras = new Message[quantidade];
+        for (int k = 0; k < quantidade; k++) {
+            fronteiras[k] = pasta.getMessage(1 + k * tamanho);
+        }
+        FetchProfile fetchProfile = new FetchProfile();
+        fetchProfile.add(UIDFolder.FetchProfileItem.UID);
+        pasta.fetch(fronteiras, fetchProfile);
+
+        for (int k = 0; k < quantidade; k++) {
+            long inicio = uidFolder.getUID(fronteiras[k]);
+            // A última janela fica aberta para incluir mensagens que chegarem durante o processamento
+            long fim = k + 1 < quantidade ? uidFolder.getUID(fronteiras[k + 1]) - 1 : UIDFolder.MAXUID;
+            if (fim < uidInicial) {
+                continue;
+            }
+            int estimativa = Math.min(tamanho, total - k * tamanho);
+            janelas.add(new JanelaUid(Math.max(inicio, uidInicial), fim, estimativa));
+        }
+        return janelas;
+    }
+
+    // ---- Modo contínuo ----
+
+    /**
+     * Depois da extração inicial, mantém cada pasta aberta em IDLE numa conexão
+     * própria e processa apenas as mensagens que chegarem, pelo mesmo caminho da
+     * extração. Os contatos alterados vão para o journal no checkpoint seguinte e
+     * o CSV é regravado (no máximo a cada {@code --intervalo-exportacao} segundos)
+     * até o processo ser encerrado com [S] ou pelo JMX. O estado não é apagado:
+     * a próxima execução continua a partir dos checkpoints.
+     *
+     * As conexões da extração são reaproveitadas; pastas além delas abrem uma conexão nova.
+     */
+    private void monitorar(Session session, Store store, List<Store> conexoesExtras, List<Folder> pastas,
+            String nomeArquivo) {
+
+        arquivoCsvContinuo = opcoes.gzip && !nomeArquivo.endsWith(".gz") ? nomeArquivo + ".gz" : nomeArquivo;
+        progresso = null;
+        gravador.solicitar();
+        exportarContinuo();
+        imprimir("");
+        imprimir("Arquivo CSV gerado: " + arquivoCsvContinuo + " (" + repositorio.tamanho() + " contatos)");
+        imprimir("Modo contínuo: aguardando mensagens novas em " + pastas.size() + " pasta(s)...");
+
+        agendador = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "agendador-continuo");
+            thread.setDaemon(true);
+            return thread;
+        });
+        agendador.scheduleWithFixedDelay(this::despertarMonitores, RENOVACAO_IDLE_MS, RENOVACAO_IDLE_MS,
+                TimeUnit.MILLISECONDS);
+
+        List<Thread> monitores = new ArrayList<>();
+        for (int i = 0; i < pastas.size(); i++) {
+            Store conexao = i == 0 ? store : i - 1 < conexoesExtras.size() ? conexoesExtras.get(i - 1) : null;
+            String nome = pastas.get(i).getFullName();
+            int indicePasta = i;
+            Thread monitor = new Thread(() -> monitorarPasta(session, conexao, nome, indicePasta), "idle-" + nome);
+            monitor.start();
+            monitores.add(monitor);
+        }
+
+        // Um NOOP só encerra o IDLE se chegar depois dele; repete até todas as pastas saírem
+        for (Thread monitor : monitores) {
+            while (monitor.isAlive()) {
+                try {
+                    monitor.join(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    encerrar = true;
+                }
+                if (encerrar) {
+                    despertarMonitores();
+                }
+            }
+        }
+        agendador.shutdownNow();
+
+        gravador.gravarAgora();
+        exportarContinuo();
+        imprimir("");
+        imprimir("==============================================");
+        imprimir("Modo contínuo encerrado e estado salvo.");
+        imprimir("Contatos: " + repositorio.tamanho() + " | CSV: " + arquivoCsvContinuo);
+        imprimir("Execute novamente para continuar de onde parou.");
+        imprimir("==============================================");
+    }
+
+    /**
+     * Laço de uma pasta no modo contínuo: alcança o que chegou desde o checkpoint e
+     * então alterna IDLE (ou espera, se o servidor não tiver IDLE) e busca dos UIDs
+     * novos. Se a conexão cair, reconecta com a espera de {@link ReconexaoImap}; o
+     * monitor nunca desiste, mas a espera para de crescer no teto de {@code --espera-maxima}.
+     */
+    private void monitorarPasta(Session session, Store conexao, String nome, int indicePasta) {
+
+        Store atual = conexao;
+        boolean avisouSemIdle = false;
+        int falhas = 0;
+        while (!encerrar) {
+            IMAPFolder pasta = null;
+            try {
+                if (atual == null || !atual.isConnected()) {
+                    atual = session.getStore("imaps");
+                    conectar(atual);
+                    imprimir("Pasta " + nome + ": conexão restabelecida.");
+                }
+                pasta = (IMAPFolder) atual.getFolder(nome);
+                pasta.open(Folder.READ_ONLY);
+                boolean idle = ((IMAPStore) atual).hasCapability("IDLE");
+                if (!idle && !avisouSemIdle) {
+                    imprimir("[!] Servidor sem IDLE: a pasta " + nome + " será consultada a cada "
+                            + INTERVALO_SONDAGEM_MS / 1000 + " s.");
+                    avisouSemIdle = true;
+                }
+                pastasMonitoradas.add(pasta);
+
+                CheckpointPasta checkpoint = checkpointDaPasta(nome);
+                long uidInicial = validarCheckpoint(checkpoint, pasta.getUIDValidity(), nome);
+                processarNovas(pasta, checkpoint, indicePasta, planejar(pasta, uidInicial));
+                falhas = 0;
+
+                while (!encerrar) {
+                    if (idle) {
+                        // Retorna na primeira notificação do servidor (EXISTS, EXPUNGE...) ou num NOOP nosso
+                        pasta.idle(true);
+                    } else {
+                        aguardar(INTERVALO_SONDAGEM_MS);
+                    }
+                    if (encerrar) {
+                        break;
+                    }
+                    List<JanelaUid> novas;
+                    if (criterioData() != null) {
+                        novas = planejar(pasta, checkpoint.ultimoUid + 1);
+                    } else {
+                        novas = new ArrayList<>();
+                        novas.add(new JanelaUid(checkpoint.ultimoUid + 1, UIDFolder.MAXUID, 0));
+                    }
+                    processarNovas(pasta, checkpoint, indicePasta, novas);
+                }
+            } catch (MessagingException | IllegalStateException e) {
+                if (encerrar) {
+                    break;
+                }
+                fecharConexao(atual, conexao);
+                atual = null;
+                aguardarReconexao("Pasta " + nome + ": conexão perdida", e, ++falhas);
+            } finally {
+                if (pasta != null) {
+                    pastasMonitoradas.remove(pasta);
+                    try {
+                        if (pasta.isOpen()) {
+                            pasta.close(false);
+                        }
+                    } catch (MessagingException e) {
+                        // Conexão já encerrada
+                    }
+                }
+            }
+        }
+        fecharConexao(atual, conexao);
+    }
+
+    /**
+     * Processa as janelas de mensagens novas de uma pasta monitorada e agenda a
+     * gravação do estado e do CSV quando houver alguma.
+     */
+    private void processarNovas(IMAPFolder pasta, CheckpointPasta checkpoint, int indicePasta,
+            List<JanelaUid> janelas) throws MessagingException {
+        if (janelas.isEmpty()) {
+            return;
+        }
+        int processadas = processarJanelas(pasta,
+                new ControleJanelas(janelas, checkpoint.ultimoUid, opcoes.tamanhoJanela),
+                checkpoint, indicePasta);
+        if (temFalhas(checkpoint)) {
+            reprocessarFalhas(pasta, checkpoint, indicePasta);
+        }
+        if (processadas > 0) {
+            gravador.solicitar();
+            agendarExportacao();
+            imprimir(ExportadorCsv.formatarData(System.currentTimeMillis()) + " " + pasta.getFullName() + ": " + processadas
+                    + " mensagem(ns) nova(s), " + repositorio.tamanho() + " contatos");
+        }
+    }
+
+    /**
+     * Interrompe o IDLE das pastas monitoradas com um NOOP (renovação periódica e encerramento).
+     */
+    private void despertarMonitores() {
+        for (IMAPFolder pasta : pastasMonitoradas) {
+            try {
+                pasta.doCommand(protocolo -> {
+                    protocolo.simpleCommand("NOOP", null);
+                    return null;
+                });
+            } catch (MessagingException | IllegalStateException e) {
+                // Pasta fechada ou conexão caída: o monitor dela trata
+            }
+        }
+    }
+
+    /**
+     * Agenda a regravação do CSV respeitando o intervalo mínimo entre exportações;
+     * mensagens que chegarem antes dela entram na mesma exportação.
+     */
+    private void agendarExportacao() {
+        if (exportacaoAgendada.compareAndSet(false, true)) {
+            long espera = Math.max(0, ultimaExportacao + opcoes.intervaloExportacao * 1000L
+                    - System.currentTimeMillis());
+            agendador.schedule(() -> {
+                exportacaoAgendada.set(false);
+                exportarContinuo();
+            }, espera, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Regrava o CSV num arquivo temporário e o renomeia por cima do anterior,
+     * para que quem lê o CSV nunca veja um arquivo pela metade.
+     */
+    private synchronized void exportarContinuo() {
+        Path destino = Paths.get(arquivoCsvContinuo);
+        Path temporario = destino.resolveSibling(destino.getFileName() + ".tmp");
+        ExportadorCsv exportador = new ExportadorCsv(opcoes.ordenacaoCsv, opcoes.gzip,
+                opcoes.memoriaExportacaoMb * 1024L * 1024L);
+        long inicio = MetricasExtracao.agora();
+        try {
+            exportador.exportar(repositorio, temporario);
+            Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            ultimaExportacao = System.currentTimeMillis();
+        } catch (IOException e) {
+            imprimirErro("Erro ao exportar CSV: " + e.getMessage());
+        } finally {
+            metricas.registrarFase(MetricasExtracao.Fase.EXPORTACAO, inicio);
+        }
+    }
+
+    /**
+     * Fecha uma conexão aberta pelo monitor; as da extração são fechadas por ela.
+     */
+    private static void fecharConexao(Store atual, Store original) {
+        if (atual == null || atual == original) {
+            return;
+        }
+        try {
+            atual.close();
+        } catch (MessagingException e) {
+            // Conexão já encerrada
+        }
+    }
+
+    /**
+     * Espera o tempo pedido, saindo antes se a extração for encerrada.
+     */
+    private void aguardar(long milissegundos) {
+        long fim = System.currentTimeMillis() + milissegundos;
+        while (!encerrar && System.currentTimeMillis() < fim) {
+            try {
+                Thread.sleep(Math.min(1000, fim - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // ---- Estado em disco ----
+
+    private Path arquivoBase(FormatoEstado formato) {
+        return diretorioEstado.resolve(formato.arquivoPadrao);
+    }
+
+    /**
+     * Base de estado existente; se houver uma em cada formato (troca de formato
+     * interrompida), vale a gravada por último.
+     */
+    private Path baseAtual() {
+        Path binario = arquivoBase(FormatoEstado.BINARIO);
+        Path json = arquivoBase(FormatoEstado.JSON);
+        boolean temBinario = Files.exists(binario);
+        boolean temJson = Files.exists(json);
+        if (temBinario && temJson) {
+            try {
+                return Files.getLastModifiedTime(json).compareTo(Files.getLastModifiedTime(binario)) > 0
+                        ? json : binario;
+            } catch (IOException e) {
+                return binario;
+            }
+        }
+        return temBinario ? binario : temJson ? json : null;
+    }
+
+    /**
+     * Carrega a base do estado diretamente no mapa de contatos e reaplica o journal
+     * por cima dela. Os contatos do journal são mesclados (data mais recente, nome
+     * não vazio), o que torna a releitura idempotente mesmo se a base já contiver
+     * essas alterações.
+     */
+    private EstadoProcesso carregarEstado() {
+        try {
+            EstadoProcesso estado = carregarBase(baseAtual(), repositorio);
+            geracaoBase = estado.geracaoBase;
+            boolean primeira = true;
+            for (String linha : journal.lerJournal()) {
+                RegistroJournal registro;
+                try {
+                    registro = GSON_JOURNAL.fromJson(linha, RegistroJournal.class);
+                } catch (JsonParseException e) {
+                    // Linha corrompida: o restante do journal não é confiável
+                    break;
+                }
+                if (registro == null) continue;
+                if (primeira && registro.geracao != null && registro.geracao < geracaoBase) {
+                    // Journal de uma base anterior: a compactação foi interrompida antes de
+                    // apagá-lo, e a base já contém tudo o que ele tem (com nomes mais novos)
+                    journal.apagar();
+                    break;
+                }
+                primeira = false;
+                if (registro.contato != null) {
+                    ContatoSerializado cs = registro.contato;
+                    repositorio.restaurar(cs.email, cs.nome, cs.getDataEpoch());
+                }
+                if (registro.estado != null) {
+                    estado = registro.estado;
+                }
+            }
+            estado.contatos = new HashMap<>();
+            return estado;
+        } catch (Exception e) {
+            repositorio.limpar();
+            imprimirErro("Erro ao carregar estado: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Lê uma base de estado (binária ou JSON, detectada pelo conteúdo) colocando os
+     * contatos em {@code destino}. A base binária é mapeada em memória e convertida
+     * sem objetos intermediários nem datas em texto.
+     */
+    static EstadoProcesso carregarBase(Path arquivo, RepositorioContatos destino) throws IOException {
+        if (FormatoEstadoBinario.ehBinario(arquivo)) {
+            String metadados = FormatoEstadoBinario.ler(arquivo, destino::restaurar);
+            return GSON_JOURNAL.fromJson(metadados, EstadoProcesso.class);
+        }
+
+        EstadoProcesso estado;
+        try (Reader reader = Files.newBufferedReader(arquivo, StandardCharsets.UTF_8)) {
+            estado = GSON.fromJson(reader, EstadoProcesso.class);
+        }
+        if (estado.contatos != null) {
+            for (ContatoSerializado cs : estado.contatos.values()) {
+                destino.restaurar(cs.email, cs.nome, cs.getDataEpoch());
+            }
+        }
+        estado.contatos = new HashMap<>();
+        return estado;
+    }
+
+    /**
+     * Grava uma base de estado completa no formato pedido.
+     */
+    static void escreverBase(OutputStream saida, EstadoProcesso metadados,
+            RepositorioContatos contatos, FormatoEstado formato) throws IOException {
+        if (formato == FormatoEstado.BINARIO) {
+            DataOutputStream dados = new DataOutputStream(saida);
+            FormatoEstadoBinario.escreverCabecalho(dados, GSON_JOURNAL.toJson(metadados));
+            try {
+                contatos.paraCada((email, nome, data) -> {
+                    try {
+                        FormatoEstadoBinario.escreverContato(dados, email, nome, data);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            FormatoEstadoBinario.escreverFim(dados);
+            dados.flush();
+            return;
+        }
+
+        Map<String, ContatoSerializado> serializados = new HashMap<>();
+        contatos.paraCada((email, nome, data) -> serializados.put(email, new ContatoSerializado(email, nome, data)));
+        metadados.contatos = serializados;
+        Writer writer = new OutputStreamWriter(saida, StandardCharsets.UTF_8);
+        GSON.toJson(metadados, writer);
+        writer.flush();
+        metadados.contatos = new HashMap<>();
+    }
+
+    /**
+     * Registra um checkpoint: anexa ao journal apenas os contatos alterados desde
+     * o anterior, seguidos dos metadados (cursores das pastas). Quando o journal
+     * fica maior que a base, a base é reescrita e o journal recomeça.
+     *
+     * Executado pela thread do {@link GravadorEstado}. Os metadados são copiados
+     * primeiro, sob o lock da extração; como toda alteração de contato acontece
+     * antes do cursor avançar, os contatos lidos depois da cópia cobrem tudo o que
+     * o cursor promete. Alterações posteriores que entrarem junto são inofensivas,
+     * pois reprocessar uma mensagem não muda o resultado.
+     */
+    private void gravarCheckpoint() {
+        synchronized (lockGravacao) {
+            if (estadoAtual == null) return;
+
+            EstadoProcesso metadados;
+            synchronized (this) {
+                if (estadoAtual.indiceAtual == ultimoIndiceGravado && contatosAlterados.isEmpty()
+                        && baseAtual() != null) {
+                    return;
+                }
+                estadoAtual.dataUltimaSalva = ExportadorCsv.formatarData(System.currentTimeMillis());
+                metadados = estadoAtual.copiarMetadados();
+                ultimoIndiceGravado = estadoAtual.indiceAtual;
+            }
+
+            long inicio = MetricasExtracao.agora();
+            try {
+                if (indice != null) {
+                    // Os contatos ficam no índice; o journal guarda apenas os metadados
+                    sincronizarIndice(metadados);
+                    contatosAlterados.clear();
+                }
+                Path base = baseAtual();
+                if (base == null) {
+                    compactarEstado(metadados);
+                    return;
+                }
+
+                List<String> linhas = new ArrayList<>();
+                if (journal.vazio()) {
+                    RegistroJournal cabecalho = new RegistroJournal();
+                    cabecalho.geracao = geracaoBase;
+                    linhas.add(GSON_JOURNAL.toJson(cabecalho));
+                }
+                Iterator<String> alterados = contatosAlterados.iterator();
+                while (alterados.hasNext()) {
+                    String email = alterados.next();
+                    alterados.remove();
+                    repositorio.ler(email, (e, nome, data) -> {
+                        RegistroJournal registro = new RegistroJournal();
+                        registro.contato = new ContatoSerializado(e, nome, data);
+                        linhas.add(GSON_JOURNAL.toJson(registro));
+                    });
+                }
+                RegistroJournal registroEstado = new RegistroJournal();
+                registroEstado.estado = metadados;
+                linhas.add(GSON_JOURNAL.toJson(registroEstado));
+                journal.anexar(linhas);
+
+                if (journal.precisaCompactar(base)) {
+                    compactarEstado(metadados);
+                }
+            } catch (IOException e) {
+                imprimirErro("Erro ao salvar estado: " + e.getMessage());
+            } finally {
+                metricas.registrarFase(MetricasExtracao.Fase.CHECKPOINT, inicio);
+            }
+        }
+    }
+
+    /**
+     * Reescreve a base com todos os contatos, no formato configurado, e esvazia o journal.
+     */
+    private void compactarEstado(EstadoProcesso metadados) throws IOException {
+        // Limpar antes de copiar: o que mudar durante a cópia volta a ser marcado
+        contatosAlterados.clear();
+        FormatoEstado formato = opcoes.formatoEstado;
+        RepositorioContatos contatos = indice != null ? new RepositorioContatosMapa() : repositorio;
+        metadados.geracaoBase = geracaoBase + 1;
+        journal.compactar(arquivoBase(formato),
+                saida -> escreverBase(saida, metadados, contatos, formato));
+        geracaoBase = metadados.geracaoBase;
+        // A base no outro formato, se existir, ficou desatualizada
+        for (FormatoEstado outro : FormatoEstado.values()) {
+            if (outro != formato) {
+                Files.deleteIfExists(arquivoBase(outro));
+            }
+        }
+    }
+
+    /**
+     * Grava no índice os contatos pendentes e os checkpoints das pastas na mesma
+     * transação, para que uma execução nova (sem o estado) continue deles.
+     */
+    private void sincronizarIndice(EstadoProcesso metadados) throws IOException {
+        String conta = contaIndice(metadados);
+        String perfil = perfilIndice(metadados);
+        for (Map.Entry<String, CheckpointPasta> entry : metadados.pastas.entrySet()) {
+            CheckpointPasta checkpoint = entry.getValue();
+            if (checkpoint.uidValidity != 0) {
+                indice.registrarCheckpoint(conta, perfil, entry.getKey(), checkpoint.uidValidity,
+                        checkpoint.ultimoUid, checkpoint.assinatura, checkpoint.falhas);
+            }
+        }
+        indice.sincronizar();
+    }
+
+    /**
+     * Lê do índice os checkpoints da execução anterior desta conta com o mesmo perfil.
+     */
+    private void carregarCheckpointsDoIndice() {
+        try {
+            indice.lerCheckpoints(contaIndice(estadoAtual), perfilIndice(estadoAtual),
+                    (pasta, uidValidity, ultimoUid, assinatura, falhas) -> {
+                        CheckpointPasta checkpoint = new CheckpointPasta();
+                        checkpoint.uidValidity = uidValidity;
+                        checkpoint.ultimoUid = ultimoUid;
+                        checkpoint.assinatura = assinatura;
+                        checkpoint.falhas = falhas;
+                        estadoAtual.pastas.put(pasta, checkpoint);
+                    });
+        } catch (IOException e) {
+            imprimirErro(e.getMessage());
+            return;
+        }
+        if (!estadoAtual.pastas.isEmpty()) {
+            imprimir("Índice de contatos " + indice.getArquivo() + ": " + indice.tamanho() + " contatos; "
+                    + estadoAtual.pastas.size() + " pasta(s) já vista(s), apenas mensagens novas serão buscadas.");
+        }
+    }
+
+    private static String contaIndice(EstadoProcesso estado) {
+        return estado.usuario + "|" + estado.servidor + ":" + estado.porta;
+    }
+
+    /**
+     * Opções que mudam quais contatos uma mensagem gera: checkpoints de perfis
+     * diferentes não valem um para o outro. O período entra como foi informado:
+     * com {@code --desde=90d} a data calculada muda todo dia, mas as mensagens novas
+     * acima do checkpoint estão sempre dentro do período, e ele continua valendo.
+     */
+    private static String perfilIndice(EstadoProcesso estado) {
+        return "cabecalhos=" + ordenado(estado.cabecalhos) + ";normalizar=" + ordenado(estado.normalizacoes)
+                + ";desde=" + (estado.desdeInformado != null ? estado.desdeInformado : estado.desde)
+                + ";ate=" + (estado.ateInformado != null ? estado.ateInformado : estado.ate);
+    }
+
+    private static <T extends Comparable<T>> String ordenado(Set<T> valores) {
+        return valores == null ? "[]" : new TreeSet<>(valores).toString();
+    }
+
+    /**
+     * Deleta os arquivos de estado salvo. O índice de contatos, se houver, é mantido.
+     */
+    private void deletarEstadoSalvo() {
+        try {
+            journal.apagar();
+            for (FormatoEstado formato : FormatoEstado.values()) {
+                Files.deleteIfExists(arquivoBase(formato));
+            }
+        } catch (IOException e) {
+            imprimirErro("Erro ao deletar arquivo de estado: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Extrai os contatos dos cabeçalhos de endereço selecionados de uma mensagem,
+     * lendo os dados carregados de acordo com o modo de fetch. Os e-mails de contatos
+     * novos ou alterados são acrescentados a {@code alterados}, quando não é null.
+     */
+    static void extractSenderInfo(Message mensagem, RepositorioContatos contatos, ModoFetch modo,
+            Set<CabecalhoEndereco> cabecalhos, CacheEnderecos cache, long ordem, Set<String> alterados,
+            MetricasExtracao metricas)
+            throws MessagingException {
+
+        Date dataEnvio;
+        if (modo == ModoFetch.CABECALHOS) {
+            String[] data = mensagem.getHeader("Date");
+            dataEnvio = data != null ? parseDataCabecalho(data[0]) : null;
+        } else {
+            dataEnvio = mensagem.getSentDate();
+        }
+        if (dataEnvio == null) {
+            dataEnvio = mensagem.getReceivedDate();
+        }
+        long data = dataEnvio != null ? dataEnvio.getTime() : RepositorioContatos.SEM_DATA;
+
+        for (CabecalhoEndereco cabecalho : cabecalhos) {
+            CacheEnderecos.Endereco[] enderecos;
+            try {
+                enderecos = cabecalho.ler(mensagem, modo, cache);
+            } catch (AddressException e) {
+                // Um cabeçalho malformado não impede a leitura dos demais
+                metricas.registrarExcecaoIgnorada();
+                continue;
+            }
+
+            for (CacheEnderecos.Endereco endereco : enderecos) {
+                if (contatos.registrar(endereco.email, endereco.nome, data, ordem) && alterados != null) {
+                    alterados.add(endereco.email);
+                }
+            }
+        }
+    }
+
+    /**
+     * Converte o valor de um cabeçalho Date (RFC 5322); retorna null se ausente ou inválido.
+     */
+    private static Date parseDataCabecalho(String valor) {
+        if (valor == null || valor.isEmpty()) {
+            return null;
+        }
+        try {
+            return MAIL_DATE_FORMAT.get().parse(valor);
+        } catch (java.text.ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Formata uma quantidade de bytes em unidade legível.
+     */
+    private static String formatarBytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KB", bytes / 1024.0);
+        if (bytes < 1024L * 1024 * 1024) return String.format("%.1f MB", bytes / (1024.0 * 1024));
+        return String.format("%.2f GB", bytes / (1024.0 * 1024 * 1024));
+    }
+
+    /**
+     * Exporta os contatos para um arquivo CSV, com ordenação externa limitada ao
+     * orçamento de memória configurado.
+     *
+     * @return nome do arquivo gerado (com .gz acrescentado se comprimido)
+     */
+    private String exportToCsv(RepositorioContatos contatos, String nomeArquivo)
+            throws IOException {
+
+        nomeArquivo = arquivoCsvFinal(nomeArquivo);
+        ExportadorCsv exportador = new ExportadorCsv(opcoes.ordenacaoCsv, opcoes.gzip,
+                opcoes.memoriaExportacaoMb * 1024L * 1024L);
+        long inicio = MetricasExtracao.agora();
+        exportador.exportar(contatos, Paths.get(nomeArquivo));
+        metricas.registrarFase(MetricasExtracao.Fase.EXPORTACAO, inicio);
+
+        imprimir("Arquivo CSV gerado com sucesso: " + nomeArquivo);
+        return nomeArquivo;
+    }
+
+    /**
+     * Nome do CSV gravado, com .gz acrescentado se comprimido.
+     */
+    private String arquivoCsvFinal(String nomeArquivo) {
+        return opcoes.gzip && !nomeArquivo.endsWith(".gz") ? nomeArquivo + ".gz" : nomeArquivo;
+    }
+
+    /**
+     * Mescla os contatos desta execução no CSV existente, grava as alterações
+     * (com {@code --alteracoes}) e o controle com os checkpoints das pastas.
+     *
+     * @return total de contatos no CSV mesclado
+     */
+    private long exportarIncremental(RepositorioContatos contatos, String nomeArquivo) throws IOException {
+        Path csv = Paths.get(nomeArquivo);
+        ExportadorCsv exportador = new ExportadorCsv(opcoes.ordenacaoCsv, opcoes.gzip,
+                opcoes.memoriaExportacaoMb * 1024L * 1024L);
+        // As alterações saem do mesmo exportador: com --gzip também ganham .gz
+        String arquivoAlteracoes = opcoes.arquivoAlteracoes != null ? arquivoCsvFinal(opcoes.arquivoAlteracoes) : null;
+        long inicio = MetricasExtracao.agora();
+        ExportacaoIncremental.Resultado resultado = new ExportacaoIncremental(exportador).mesclar(contatos, csv,
+                arquivoAlteracoes != null ? Paths.get(arquivoAlteracoes) : null);
+        metricas.registrarFase(MetricasExtracao.Fase.EXPORTACAO, inicio);
+
+        ExportacaoIncremental.Controle controle = new ExportacaoIncremental.Controle();
+        controle.conta = contaIndice(estadoAtual);
+        controle.perfil = perfilIndice(estadoAtual);
+        controle.exportadoEm = ExportadorCsv.formatarData(System.currentTimeMillis());
+        controle.contatos = resultado.total;
+        synchronized (this) {
+            for (Map.Entry<String, CheckpointPasta> entry : estadoAtual.pastas.entrySet()) {
+                if (entry.getValue().uidValidity != 0) {
+                    controle.pastas.put(entry.getKey(), new ExportacaoIncremental.PastaExportada(
+                            entry.getValue().uidValidity, entry.getValue().ultimoUid, entry.getValue().assinatura,
+                            entry.getValue().falhas));
+                }
+            }
+        }
+        ExportacaoIncremental.gravarControle(csv, controle);
+
+        imprimir("CSV mesclado: " + resultado.anteriores + " contatos anteriores, " + resultado.alterados
+                + " novos ou alterados, " + resultado.total + " no total.");
+        if (arquivoAlteracoes != null) {
+            imprimir("Alterações desde a última exportação salvas em: " + arquivoAlteracoes);
+        }
+        return resultado.total;
+    }
+
+    /**
+     * Lê os checkpoints da última exportação incremental do CSV, se forem desta conta e perfil.
+     */
+    private void carregarCheckpointsIncrementais() {
+        Path csv = Paths.get(arquivoCsvFinal(estadoAtual.arquivoCsv));
+        ExportacaoIncremental.Controle controle;
+        try {
+            controle = ExportacaoIncremental.lerControle(csv);
+        } catch (IOException e) {
+            imprimirErro(e.getMessage());
+            return;
+        }
+        if (controle == null || controle.pastas == null) {
+            return;
+        }
+        if (!contaIndice(estadoAtual).equals(controle.conta) || !perfilIndice(estadoAtual).equals(controle.perfil)) {
+            imprimir("[!] " + csv + " foi exportado por outra conta ou com outras opções; extraindo tudo e mesclando.");
+            return;
+        }
+        for (Map.Entry<String, ExportacaoIncremental.PastaExportada> entry : controle.pastas.entrySet()) {
+            CheckpointPasta checkpoint = new CheckpointPasta();
+            checkpoint.uidValidity = entry.getValue().uidValidity;
+            checkpoint.ultimoUid = entry.getValue().ultimoUid;
+            checkpoint.assinatura = entry.getValue().assinatura;
+            if (entry.getValue().falhas != null) {
+                checkpoint.falhas = entry.getValue().falhas;
+            }
+            estadoAtual.pastas.put(entry.getKey(), checkpoint);
+        }
+        imprimir("Exportação incremental: " + csv + " tem " + controle.contatos + " contatos (exportado em "
+                + controle.exportadoEm + "); apenas mensagens novas serão buscadas.");
+    }
+}
@@ -0,0 +1,554 @@
+package com.emailextractor;
+
+import jakarta.mail.MessagingException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+
+/**
+ * Extração sem servidor, a partir de arquivos locais: mbox, Maildir e .eml.
+ *
+ * Cada mbox é dividido em segmentos de {@value #TAMANHO_SEGMENTO_MB} MB mapeados em
+ * memória; cada segmento procura as linhas "From " que começam mensagens dentro
+ * dele e lê só os cabeçalhos de cada uma (o corpo é apenas percorrido em busca da
+ * próxima fronteira). Arquivos de Maildir e .eml têm só o início lido, até a linha
+ * em branco. Segmentos e arquivos são distribuídos num {@link ForkJoinPool}, então
+ * a extração fica limitada pela leitura do disco.
+ *
+ * As mensagens passam por {@link ExtracaoConta#extractSenderInfo} no modo
+ * {@link ModoFetch#CABECALHOS}, com o mesmo repositório, cache e normalizações da
+ * extração IMAP. Não há checkpoints: reprocessar os arquivos produz o mesmo resultado.
+ */
+class ExtracaoLocal {
+
+    static final int TAMANHO_SEGMENTO_MB = 128;
+    private static final long TAMANHO_SEGMENTO = TAMANHO_SEGMENTO_MB * 1024L * 1024L;
+    // Cabeçalhos maiores que isso são truncados (o restante é ignorado)
+    private static final int MAXIMO_CABECALHO = 1 << 20;
+    // Início de um arquivo de Maildir/.eml lido de uma vez; quase sempre contém todos os cabeçalhos
+    private static final int LEITURA_INICIAL = 64 * 1024;
+    // Arquivos por tarefa antes de dividir a faixa entre threads
+    private static final int ARQUIVOS_POR_TAREFA = 64;
+    // Posição da mensagem na ordem (fonte, posição): byte no mbox ou número do arquivo
+    private static final int BITS_POSICAO = 40;
+    private static final byte[] FROM = "From ".getBytes(StandardCharsets.US_ASCII);
+    private static final long INTERVALO_PROGRESSO_MS = 10_000;
+
+    private static final ThreadLocal<ByteBuffer> BUFFER_ARQUIVO =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(LEITURA_INICIAL));
+
+    /**
+     * Um mbox, um Maildir (arquivos de cur/ e new/) ou um conjunto de arquivos .eml.
+     */
+    private static final class Fonte {
+        final Path caminho;
+        final boolean mbox;
+        // Arquivos de mensagem (Maildir/.eml), em ordem de nome; vazio para mbox
+        final List<Path> arquivos;
+        final boolean maildir;
+
+        Fonte(Path caminho, boolean mbox, boolean maildir, List<Path> arquivos) {
+            this.caminho = caminho;
+            this.mbox = mbox;
+            this.maildir = maildir;
+            this.arquivos = arquivos;
+        }
+    }
+
+    /**
+     * Executa {@code acao} para cada índice de [inicio, fim), dividindo a faixa ao meio
+     * enquanto for maior que {@code limite}.
+     */
+    private static final class TarefaFaixa extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int inicio;
+        private final int fim;
+        private final int limite;
+        private final IntConsumer acao;
+
+        TarefaFaixa(int inicio, int fim, int limite, IntConsumer acao) {
+            this.inicio = inicio;
+            this.fim = fim;
+            this.limite = limite;
+            this.acao = acao;
+        }
+
+        @Override
+        protected void compute() {
+            if (fim - inicio <= limite) {
+                for (int i = inicio; i < fim; i++) {
+                    acao.accept(i);
+                }
+                return;
+            }
+            int meio = (inicio + fim) >>> 1;
+            invokeAll(new TarefaFaixa(inicio, meio, limite, acao), new TarefaFaixa(meio, fim, limite, acao));
+        }
+    }
+
+    private final OpcoesExtracao opcoes;
+    private final RepositorioContatos repositorio;
+    private final RepositorioContatosIndice indice;
+    private final CacheEnderecos cache;
+    private final MetricasExtracao metricas;
+    private final String[] nomes;
+    private final boolean deduplicar;
+    private final Set<Long> mensagensVistas = ConcurrentHashMap.newKeySet();
+    private final LongAdder mensagensDuplicadas = new LongAdder();
+    private final AtomicLong bytesLidos = new AtomicLong();
+    private long bytesTotais;
+
+    private ExtracaoLocal(OpcoesExtracao opcoes, RepositorioContatosIndice indice, boolean deduplicar) {
+        this.opcoes = opcoes;
+        this.indice = indice;
+        this.repositorio = indice != null ? indice
+                : opcoes.repositorioCompacto ? new RepositorioContatosCompacto() : new RepositorioContatosMapa();
+        this.cache = new CacheEnderecos(opcoes.cacheEnderecos, opcoes.normalizacoes);
+        this.metricas = new MetricasExtracao(() -> { }, () -> { }, () -> { }, () -> false);
+        this.deduplicar = deduplicar;
+        List<String> pedidos = new ArrayList<>();
+        for (CabecalhoEndereco cabecalho : opcoes.cabecalhos) {
+            pedidos.add(cabecalho.nome.toLowerCase());
+        }
+        pedidos.add("date");
+        if (deduplicar) {
+            pedidos.add("message-id");
+        }
+        this.nomes = pedidos.toArray(new String[0]);
+    }
+
+    /**
+     * Extrai os contatos dos arquivos e diretórios de {@code --local} e exporta o CSV.
+     *
+     * @return true se o CSV foi gerado
+     */
+    static boolean executar(OpcoesExtracao opcoes) {
+        RepositorioContatosIndice indice = null;
+        try {
+            List<Fonte> fontes = new ArrayList<>();
+            Set<Path> visitados = new HashSet<>();
+            for (String origem : opcoes.origensLocais) {
+                resolverFontes(Paths.get(origem), fontes, visitados);
+            }
+            if (fontes.isEmpty()) {
+                System.err.println("ERRO: nenhum mbox, Maildir ou .eml encontrado em " + opcoes.origensLocais);
+                return false;
+            }
+            if (opcoes.arquivoIndice != null) {
+                indice = RepositorioContatosIndice.abrir(Paths.get(opcoes.arquivoIndice));
+            }
+            return new ExtracaoLocal(opcoes, indice, fontes.size() > 1).extrair(fontes);
+        } catch (IOException | UncheckedIOException e) {
+            System.err.println("ERRO: " + e.getMessage());
+            return false;
+        } finally {
+            if (indice != null) {
+                try {
+                    indice.fechar();
+                } catch (IOException e) {
+                    System.err.println(e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Classifica o caminho: diretório com cur/ é um Maildir; arquivo .eml é uma
+     * mensagem avulsa; arquivo que começa com "From " é um mbox. Outros diretórios
+     * são percorridos (exportações do Thunderbird, árvores de Maildir++).
+     *
+     * Links simbólicos para diretórios são seguidos, mas cada diretório real é lido
+     * uma vez só: um link para um ancestral não gera um ciclo, e duas origens que
+     * apontam para a mesma árvore não contam as mensagens em dobro.
+     */
+    private static void resolverFontes(Path caminho, List<Fonte> fontes, Set<Path> visitados) throws IOException {
+        if (!Files.exists(caminho)) {
+            throw new IOException("Arquivo ou diretório não encontrado: " + caminho);
+        }
+        if (Files.isDirectory(caminho)) {
+            if (!visitados.add(caminho.toRealPath())) {
+                return;
+            }
+            if (Files.isDirectory(caminho.resolve("cur"))) {
+                List<Path> arquivos = new ArrayList<>();
+                for (String subdiretorio : new String[]{"cur", "new"}) {
+                    if (Files.isDirectory(caminho.resolve(subdiretorio))) {
+                        listarArquivos(caminho.resolve(subdiretorio), arquivos);
+                    }
+                }
+                if (!arquivos.isEmpty()) {
+                    arquivos.sort(null);
+                    fontes.add(new Fonte(caminho, false, true, arquivos));
+                }
+            }
+            List<Path> emls = new ArrayList<>();
+            try (Stream<Path> itens = Files.list(caminho)) {
+                for (Path item : (Iterable<Path>) itens.sorted()::iterator) {
+                    String nome = item.getFileName().toString();
+                    if (Files.isDirectory(item)) {
+                        if (!nome.equals("cur") && !nome.equals("new") && !nome.equals("tmp")) {
+                            resolverFontes(item, fontes, visitados);
+                        }
+                    } else if (nome.toLowerCase().endsWith(".eml")) {
+                        emls.add(item);
+                    } else if (ehMbox(item)) {
+                        fontes.add(new Fonte(item, true, false, List.of()));
+                    }
+                }
+            }
+            if (!emls.isEmpty()) {
+                fontes.add(new Fonte(caminho, false, false, emls));
+            }
+        } else if (caminho.getFileName().toString().toLowerCase().endsWith(".eml")) {
+            fontes.add(new Fonte(caminho, false, false, List.of(caminho)));
+        } else if (ehMbox(caminho)) {
+            fontes.add(new Fonte(caminho, true, false, List.of()));
+        } else {
+            throw new IOException("Formato não reconhecido (esperado mbox, Maildir ou .eml): " + caminho);
+        }
+    }
+
+    private static void listarArquivos(Path diretorio, List<Path> arquivos) throws IOException {
+        try (Stream<Path> itens = Files.list(diretorio)) {
+            itens.filter(Files::isRegularFile).forEach(arquivos::add);
+        }
+    }
+
+    private static boolean ehMbox(Path arquivo) throws IOException {
+        byte[] inicio = new byte[FROM.length];
+        try (InputStream entrada = Files.newInputStream(arquivo)) {
+            if (entrada.readNBytes(inicio, 0, inicio.length) < inicio.length) {
+                return false;
+            }
+        }
+        for (int i = 0; i < FROM.length; i++) {
+            if (inicio[i] != FROM[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean extrair(List<Fonte> fontes) throws IOException {
+        int mboxes = 0;
+        int arquivos = 0;
+        for (Fonte fonte : fontes) {
+            if (fonte.mbox) {
+                mboxes++;
+                bytesTotais += Files.size(fonte.caminho);
+            } else {
+                arquivos += fonte.arquivos.size();
+            }
+        }
+        System.out.println("Fontes locais: " + mboxes + " mbox (" + formatarMb(bytesTotais) + "), "
+                + arquivos + " arquivo(s) de Maildir/.eml");
+        int paralelismo = opcoes.paralelismo > 0 ? opcoes.paralelismo : Runtime.getRuntime().availableProcessors();
+        System.out.println("Processando com " + paralelismo + " thread(s)...");
+
+        metricas.definirFontes(bytesLidos::get, () -> 0, repositorio::tamanho);
+        metricas.definirCache(cache::getAcertos, cache::getFalhas);
+        ScheduledExecutorService progresso = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "progresso-local");
+            thread.setDaemon(true);
+            return thread;
+        });
+        progresso.scheduleAtFixedRate(this::imprimirProgresso, INTERVALO_PROGRESSO_MS, INTERVALO_PROGRESSO_MS,
+                TimeUnit.MILLISECONDS);
+
+        ForkJoinPool pool = new ForkJoinPool(paralelismo);
+        try {
+            List<RecursiveAction> tarefas = new ArrayList<>();
+            for (int i = 0; i < fontes.size(); i++) {
+                Fonte fonte = fontes.get(i);
+                int indiceFonte = i;
+                if (fonte.mbox) {
+                    long tamanho = Files.size(fonte.caminho);
+                    int segmentos = (int) Math.max(1, (tamanho + TAMANHO_SEGMENTO - 1) / TAMANHO_SEGMENTO);
+                    tarefas.add(new TarefaFaixa(0, segmentos, 1,
+                            segmento -> processarSegmentoMbox(fonte.caminho, indiceFonte, segmento * TAMANHO_SEGMENTO,
+                                    Math.min(tamanho, (segmento + 1) * TAMANHO_SEGMENTO))));
+                } else {
+                    tarefas.add(new TarefaFaixa(0, fonte.arquivos.size(), ARQUIVOS_POR_TAREFA,
+                            numero -> processarArquivo(fonte, indiceFonte, numero)));
+                }
+            }
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tarefas);
+                }
+            });
+        } finally {
+            pool.shutdown();
+            progresso.shutdownNow();
+        }
+        if (indice != null) {
+            indice.sincronizar();
+        }
+
+        System.out.println();
+        System.out.println("Leitura concluída! " + metricas.getMensagensProcessadas() + " mensagens processadas ("
+                + formatarMb(bytesLidos.get()) + " lidos, "
+                + String.format("%.1f", metricas.getMensagensPorSegundo()) + " msg/s).");
+        if (mensagensDuplicadas.sum() > 0) {
+            System.out.println("Mensagens repetidas em mais de uma fonte (ignoradas): " + mensagensDuplicadas.sum());
+        }
+        if (metricas.getExcecoesIgnoradas() > 0) {
+            System.out.println("Mensagens ou arquivos ilegíveis (ignorados): " + metricas.getExcecoesIgnoradas());
+        }
+
+        boolean exportado = false;
+        if (repositorio.tamanho() > 0) {
+            String nomeArquivo = opcoes.arquivoCsv != null ? opcoes.arquivoCsv : "contatos.csv";
+            if (opcoes.gzip && !nomeArquivo.endsWith(".gz")) {
+                nomeArquivo += ".gz";
+            }
+            ExportadorCsv exportador = new ExportadorCsv(opcoes.ordenacaoCsv, opcoes.gzip,
+                    opcoes.memoriaExportacaoMb * 1024L * 1024L);
+            long inicio = MetricasExtracao.agora();
+            long total = repositorio.tamanho();
+            if (opcoes.incremental) {
+                // Sem checkpoints: os arquivos são relidos, mas o CSV é mesclado e as alterações separadas
+                String arquivoAlteracoes = opcoes.arquivoAlteracoes;
+                if (arquivoAlteracoes != null && opcoes.gzip && !arquivoAlteracoes.endsWith(".gz")) {
+                    arquivoAlteracoes += ".gz";
+                }
+                Path alteracoes = arquivoAlteracoes != null ? Paths.get(arquivoAlteracoes) : null;
+                ExportacaoIncremental.Resultado resultado = new ExportacaoIncremental(exportador)
+                        .mesclar(repositorio, Paths.get(nomeArquivo), alteracoes);
+                total = resultado.total;
+                System.out.println("CSV mesclado: " + resultado.anteriores + " contatos anteriores, "
+                        + resultado.alterados + " novos ou alterados.");
+                if (arquivoAlteracoes != null) {
+                    System.out.println("Alterações salvas em: " + arquivoAlteracoes);
+                }
+            } else {
+                exportador.exportar(repositorio, Paths.get(nomeArquivo));
+            }
+            metricas.registrarFase(MetricasExtracao.Fase.EXPORTACAO, inicio);
+            System.out.println("==============================================");
+            System.out.println("Total de contatos únicos: " + total);
+            System.out.println("Arquivo salvo em: " + nomeArquivo);
+            System.out.println("==============================================");
+            exportado = true;
+        } else {
+            System.out.println("Nenhum e-mail encontrado nos arquivos locais.");
+        }
+        gravarResumo(exportado);
+        return exportado;
+    }
+
+    /**
+     * Processa as mensagens de um mbox que começam em [inicio, fim). O mapeamento
+     * começa um byte antes (para ver o '\n' que precede "From ") e vai além do fim
+     * o bastante para ler os cabeçalhos da última mensagem do segmento.
+     */
+    private void processarSegmentoMbox(Path arquivo, int indiceFonte, long inicio, long fim) {
+        long inicioLeitura = MetricasExtracao.agora();
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            long base = Math.max(0, inicio - 1);
+            long limiteArquivo = Math.min(canal.size(), fim + MAXIMO_CABECALHO);
+            if (limiteArquivo <= base) {
+                return;
+            }
+            MappedByteBuffer dados = canal.map(FileChannel.MapMode.READ_ONLY, base, limiteArquivo - base);
+            int limite = dados.limit();
+            int fimSegmento = (int) (Math.min(fim, limiteArquivo) - base);
+
+            int posicao = proximaMensagem(dados, (int) (inicio - base), fimSegmento, base == 0);
+            while (posicao >= 0) {
+                int fimLinhaFrom = MensagemLocal.proximaLinha(dados, posicao, limite);
+                String linhaFrom = texto(dados, posicao, Math.min(fimLinhaFrom, posicao + 256));
+                MensagemLocal mensagem = MensagemLocal.ler(dados, fimLinhaFrom, limite, nomes, linhaFrom,
+                        RepositorioContatos.SEM_DATA);
+                processar(mensagem, ((long) indiceFonte << BITS_POSICAO) | (base + posicao));
+                posicao = proximaMensagem(dados, fimLinhaFrom, fimSegmento, false);
+            }
+            bytesLidos.addAndGet(fim - inicio);
+        } catch (IOException e) {
+            metricas.registrarExcecaoIgnorada();
+            System.err.println("Erro ao ler " + arquivo + " (bytes " + inicio + "-" + fim + "): " + e.getMessage());
+        } finally {
+            metricas.registrarFase(MetricasExtracao.Fase.FETCH, inicioLeitura);
+        }
+    }
+
+    /**
+     * Primeira posição em [desde, ate) onde começa uma linha "From " (depois de '\n',
+     * ou no início do arquivo), ou -1.
+     */
+    private static int proximaMensagem(ByteBuffer dados, int desde, int ate, boolean inicioArquivo) {
+        int limite = dados.limit();
+        int posicao = desde;
+        if (inicioArquivo && posicao == 0 && comecaComFrom(dados, 0, limite)) {
+            return 0;
+        }
+        while (posicao < ate) {
+            if (posicao > 0 && dados.get(posicao - 1) == '\n' && comecaComFrom(dados, posicao, limite)) {
+                return posicao;
+            }
+            // Pular até o próximo '\n': o corpo é apenas percorrido
+            while (posicao < ate && dados.get(posicao) != '\n') {
+                posicao++;
+            }
+            posicao++;
+        }
+        return -1;
+    }
+
+    private static boolean comecaComFrom(ByteBuffer dados, int posicao, int limite) {
+        if (posicao + FROM.length > limite) {
+            return false;
+        }
+        for (int i = 0; i < FROM.length; i++) {
+            if (dados.get(posicao + i) != FROM[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lê os cabeçalhos de um arquivo de Maildir ou .eml: o início do arquivo num
+     * buffer da thread e, se a linha em branco não estiver nele, até {@value #MAXIMO_CABECALHO} bytes.
+     */
+    private void processarArquivo(Fonte fonte, int indiceFonte, int numero) {
+        Path arquivo = fonte.arquivos.get(numero);
+        long inicioLeitura = MetricasExtracao.agora();
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            long tamanho = canal.size();
+            ByteBuffer dados = BUFFER_ARQUIVO.get();
+            ler(canal, dados);
+            if (MensagemLocal.fimCabecalhos(dados, 0, dados.limit()) < 0 && tamanho > dados.limit()) {
+                dados = ByteBuffer.allocate((int) Math.min(tamanho, MAXIMO_CABECALHO));
+                canal.position(0);
+                ler(canal, dados);
+            }
+            bytesLidos.addAndGet(dados.limit());
+            long recebida = fonte.maildir ? dataMaildir(arquivo) : RepositorioContatos.SEM_DATA;
+            MensagemLocal mensagem = MensagemLocal.ler(dados, 0, dados.limit(), nomes, null, recebida);
+            processar(mensagem, ((long) indiceFonte << BITS_POSICAO) | numero);
+        } catch (IOException e) {
+            metricas.registrarExcecaoIgnorada();
+            System.err.println("Erro ao ler " + arquivo + ": " + e.getMessage());
+        } finally {
+            metricas.registrarFase(MetricasExtracao.Fase.FETCH, inicioLeitura);
+        }
+    }
+
+    /**
+     * Preenche o buffer a partir da posição atual do canal (ou até o fim do arquivo)
+     * e o deixa pronto para leitura.
+     */
+    private static void ler(FileChannel canal, ByteBuffer dados) throws IOException {
+        dados.clear();
+        while (dados.hasRemaining() && canal.read(dados) >= 0) {
+            // Continua até encher o buffer ou chegar ao fim
+        }
+        dados.flip();
+    }
+
+    /**
+     * Data de entrega do nome do arquivo de Maildir ("1234567890.M1P2.host:2,S"), em epoch millis.
+     */
+    private static long dataMaildir(Path arquivo) {
+        String nome = arquivo.getFileName().toString();
+        int ponto = nome.indexOf('.');
+        if (ponto <= 0 || ponto > 12) {
+            return RepositorioContatos.SEM_DATA;
+        }
+        try {
+            return Long.parseLong(nome.substring(0, ponto)) * 1000;
+        } catch (NumberFormatException e) {
+            return RepositorioContatos.SEM_DATA;
+        }
+    }
+
+    private void processar(MensagemLocal mensagem, long ordem) {
+        long inicioProcessamento = MetricasExtracao.agora();
+        try {
+            if (deduplicar && jaProcessada(mensagem)) {
+                mensagensDuplicadas.increment();
+            } else {
+                ExtracaoConta.extractSenderInfo(mensagem, repositorio, ModoFetch.CABECALHOS, opcoes.cabecalhos,
+                        cache, ordem, null, metricas);
+            }
+        } catch (MessagingException e) {
+            metricas.registrarExcecaoIgnorada();
+        }
+        metricas.registrarFase(MetricasExtracao.Fase.PROCESSAMENTO, inicioProcessamento);
+        metricas.registrarMensagem();
+    }
+
+    private boolean jaProcessada(MensagemLocal mensagem) throws MessagingException {
+        String[] valores = mensagem.getHeader("Message-ID");
+        if (valores == null || valores[0].isBlank()) {
+            return false;
+        }
+        return !mensagensVistas.add(ExtracaoConta.hash64(valores[0].trim()));
+    }
+
+    private static String texto(ByteBuffer dados, int inicio, int fim) {
+        byte[] bytes = new byte[fim - inicio];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = dados.get(inicio + i);
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private void imprimirProgresso() {
+        StringBuilder texto = new StringBuilder();
+        texto.append("Lidos: ").append(formatarMb(bytesLidos.get()));
+        if (bytesTotais > 0) {
+            texto.append(" (mbox: ").append(formatarMb(bytesTotais)).append(')');
+        }
+        texto.append(" | ").append(metricas.getMensagensProcessadas()).append(" mensagens | ")
+                .append(Math.round(metricas.getMensagensPorSegundo())).append(" msg/s | Contatos: ")
+                .append(repositorio.tamanho());
+        System.out.println(texto);
+    }
+
+    private static String formatarMb(long bytes) {
+        return String.format("%.1f MB", bytes / (1024.0 * 1024));
+    }
+
+    private void gravarResumo(boolean concluido) {
+        MetricasExtracao.ResumoExecucao resumo = metricas.resumo();
+        resumo.concluido = concluido;
+        resumo.conexoes = opcoes.paralelismo > 0 ? opcoes.paralelismo : Runtime.getRuntime().availableProcessors();
+        resumo.modoFetch = "local";
+        resumo.mensagensDuplicadas = mensagensDuplicadas.sum();
+        try {
+            String json = ExtracaoConta.GSON.toJson(resumo);
+            JournalEstado.gravarAtomicamente(Paths.get(opcoes.arquivoResumo),
+                    saida -> saida.write(json.getBytes(StandardCharsets.UTF_8)));
+            System.out.println("Resumo da execução salvo em: " + opcoes.arquivoResumo);
+        } catch (IOException e) {
+            System.err.println("Erro ao salvar resumo da execução: " + e.getMessage());
+        }
+    }
+}
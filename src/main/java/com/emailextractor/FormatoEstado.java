@@ -0,0 +1,42 @@
+package com.emailextractor;
+
+/**
+ * Formato em que a base do estado é gravada na compactação.
+ */
+enum FormatoEstado {
+
+    /**
+     * Binário compacto, carregado por mapeamento em memória (padrão).
+     */
+    BINARIO("estado_processo.bin"),
+
+    /**
+     * JSON legível, útil para inspeção e depuração.
+     */
+    JSON("estado_processo.json");
+
+    final String arquivoPadrao;
+
+    FormatoEstado(String arquivoPadrao) {
+        this.arquivoPadrao = arquivoPadrao;
+    }
+
+    static FormatoEstado parse(String valor) {
+        switch (valor.toLowerCase()) {
+            case "binario":
+            case "binário":
+                return BINARIO;
+            case "json":
+                return JSON;
+            default:
+                throw new IllegalArgumentException("Formato de estado inválido: " + valor + " (use binario ou json)");
+        }
+    }
+
+    /**
+     * Deduz o formato de destino pela extensão do arquivo (.json ou qualquer outra para binário).
+     */
+    static FormatoEstado porExtensao(String arquivo) {
+        return arquivo.toLowerCase().endsWith(".json") ? JSON : BINARIO;
+    }
+}
@@ -0,0 +1,125 @@
+package com.emailextractor;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Formato binário compacto da base de estado.
+ *
+ * Layout (inteiros big-endian):
+ * <pre>
+ *   int    mágico "EXCS"
+ *   int    versão
+ *   int+[] metadados (JSON UTF-8 do estado, sem contatos)
+ *   repetido por contato:
+ *     int+[] e-mail (UTF-8)
+ *     int+[] nome (UTF-8)
+ *     long   data do último e-mail em epoch millis (SEM_DATA se ausente)
+ *   int    -1 (fim dos contatos)
+ * </pre>
+ * O fim é marcado por sentinela, e não por contagem, para permitir gravar
+ * enquanto o mapa de contatos ainda recebe inserções.
+ */
+class FormatoEstadoBinario {
+
+    static final int MAGICO = 0x45584353; // "EXCS"
+    static final int VERSAO = 1;
+    static final long SEM_DATA = RepositorioContatos.SEM_DATA;
+    private static final int FIM = -1;
+
+    /**
+     * Recebe os contatos lidos de uma base.
+     */
+    interface LeitorContatos {
+        void contato(String email, String nome, long dataEpoch);
+    }
+
+    /**
+     * Indica se o arquivo começa com o número mágico do formato binário.
+     */
+    static boolean ehBinario(Path arquivo) throws IOException {
+        try (InputStream entrada = Files.newInputStream(arquivo)) {
+            byte[] cabecalho = entrada.readNBytes(4);
+            return cabecalho.length == 4 && ByteBuffer.wrap(cabecalho).getInt() == MAGICO;
+        }
+    }
+
+    static void escreverCabecalho(DataOutputStream saida, String metadadosJson) throws IOException {
+        saida.writeInt(MAGICO);
+        saida.writeInt(VERSAO);
+        escreverTexto(saida, metadadosJson);
+    }
+
+    static void escreverContato(DataOutputStream saida, String email, String nome, long dataEpoch)
+            throws IOException {
+        escreverTexto(saida, email);
+        escreverTexto(saida, nome != null ? nome : "");
+        saida.writeLong(dataEpoch);
+    }
+
+    static void escreverFim(DataOutputStream saida) throws IOException {
+        saida.writeInt(FIM);
+    }
+
+    /**
+     * Mapeia o arquivo em memória e entrega cada contato ao leitor, sem objetos
+     * intermediários nem conversão de datas em texto.
+     *
+     * @return o JSON dos metadados
+     */
+    static String ler(Path arquivo, LeitorContatos leitor) throws IOException {
+        try (FileChannel canal = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+            long tamanho = canal.size();
+            if (tamanho > Integer.MAX_VALUE) {
+                throw new IOException("Estado binário maior que 2 GB não é suportado: " + arquivo);
+            }
+            MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, tamanho);
+            if (buffer.getInt() != MAGICO) {
+                throw new IOException("Arquivo não está no formato binário de estado: " + arquivo);
+            }
+            int versao = buffer.getInt();
+            if (versao != VERSAO) {
+                throw new IOException("Versão do estado binário não suportada: " + versao);
+            }
+
+            byte[] temporario = new byte[256];
+            try {
+                String metadados = lerTexto(buffer, buffer.getInt(), temporario);
+                int tamanhoEmail;
+                while ((tamanhoEmail = buffer.getInt()) != FIM) {
+                    String email = lerTexto(buffer, tamanhoEmail, temporario);
+                    String nome = lerTexto(buffer, buffer.getInt(), temporario);
+                    leitor.contato(email, nome, buffer.getLong());
+                }
+                return metadados;
+            } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+                // Fim do arquivo antes da sentinela, ou tamanho de texto inválido
+                throw new IOException("Estado binário truncado ou corrompido: " + arquivo, e);
+            }
+        }
+    }
+
+    private static void escreverTexto(DataOutputStream saida, String texto) throws IOException {
+        byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+        saida.writeInt(bytes.length);
+        saida.write(bytes);
+    }
+
+    private static String lerTexto(ByteBuffer buffer, int tamanho, byte[] temporario) {
+        if (tamanho == 0) {
+            return "";
+        }
+        byte[] destino = tamanho <= temporario.length ? temporario : new byte[tamanho];
+        buffer.get(destino, 0, tamanho);
+        return new String(destino, 0, tamanho, StandardCharsets.UTF_8);
+    }
+}
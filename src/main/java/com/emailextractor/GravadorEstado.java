@@ -0,0 +1,85 @@
+package com.emailextractor;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executa os checkpoints em uma thread dedicada, fora do laço de extração.
+ * Pedidos feitos enquanto outro aguarda na fila são agrupados em um só, e um
+ * checkpoint periódico garante salvamento mesmo com poucas mensagens.
+ */
+class GravadorEstado {
+
+    private final Runnable checkpoint;
+    private final long intervaloMs;
+    private final ScheduledExecutorService executor;
+    private final AtomicBoolean pendente = new AtomicBoolean(false);
+
+    GravadorEstado(Runnable checkpoint, long intervaloMs) {
+        this.checkpoint = checkpoint;
+        this.intervaloMs = intervaloMs;
+        this.executor = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "gravador-estado");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void iniciar() {
+        executor.scheduleWithFixedDelay(this::executar, intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Pede um checkpoint sem bloquear quem chama.
+     */
+    void solicitar() {
+        if (pendente.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                pendente.set(false);
+                executar();
+            });
+        }
+    }
+
+    /**
+     * Grava um checkpoint e espera terminar (usado ao pausar com saída e em caso de erro).
+     * Depois de {@link #parar()} grava na própria thread de quem chama.
+     */
+    void gravarAgora() {
+        if (executor.isShutdown()) {
+            executar();
+            return;
+        }
+        try {
+            executor.submit(this::executar).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("Erro ao salvar estado: " + e.getCause().getMessage());
+        }
+    }
+
+    /**
+     * Interrompe os checkpoints, esperando o que estiver em andamento. Não interrompe
+     * a thread: um checkpoint interrompido no meio fecharia o canal do journal.
+     */
+    void parar() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void executar() {
+        try {
+            checkpoint.run();
+        } catch (RuntimeException e) {
+            System.err.println("Erro ao salvar estado: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.emailextractor;
+
+import java.util.Arrays;
+
+/**
+ * Faixa de UIDs [inicio, fim] buscada e processada de uma só vez.
+ * Com filtro de data, a janela traz também a lista exata de UIDs a buscar.
+ */
+class JanelaUid {
+    final long inicio;
+    final long fim;
+    final int estimativa;
+    // UIDs encontrados pelo SEARCH dentro da faixa (null = todas as mensagens da faixa)
+    final long[] uids;
+
+    // Maior UID já processado dentro da janela (0 = nenhum)
+    volatile long ultimoUid;
+    volatile boolean concluida;
+
+    JanelaUid(long inicio, long fim, int estimativa) {
+        this.inicio = inicio;
+        this.fim = fim;
+        this.estimativa = estimativa;
+        this.uids = null;
+    }
+
+    JanelaUid(long[] uids) {
+        this.inicio = uids[0];
+        this.fim = uids[uids.length - 1];
+        this.estimativa = uids.length;
+        this.uids = uids;
+    }
+
+    /**
+     * Separa as primeiras {@code quantidade} mensagens (estimadas) numa janela
+     * própria; devolve {primeira parte, restante}. Sem a lista de UIDs, o corte é
+     * proporcional à faixa; na última janela, que é aberta, supõe UIDs contíguos.
+     */
+    JanelaUid[] dividir(int quantidade) {
+        if (uids != null) {
+            return new JanelaUid[]{
+                new JanelaUid(Arrays.copyOfRange(uids, 0, quantidade)),
+                new JanelaUid(Arrays.copyOfRange(uids, quantidade, uids.length))
+            };
+        }
+        long largura = fim == jakarta.mail.UIDFolder.MAXUID
+                ? quantidade
+                : Math.max(1, (fim - inicio + 1) * quantidade / estimativa);
+        return new JanelaUid[]{
+            new JanelaUid(inicio, inicio + largura - 1, quantidade),
+            new JanelaUid(inicio + largura, fim, estimativa - quantidade)
+        };
+    }
+
+    /**
+     * Parte ainda não processada de uma janela interrompida, ou null se não sobrou nada.
+     * Guarda o progresso parcial para que o checkpoint não recue.
+     */
+    JanelaUid restante() {
+        long processado = ultimoUid;
+        JanelaUid resto;
+        if (processado < inicio) {
+            resto = uids != null ? new JanelaUid(uids) : new JanelaUid(inicio, fim, estimativa);
+        } else if (processado >= fim) {
+            return null;
+        } else if (uids != null) {
+            int corte = Arrays.binarySearch(uids, processado);
+            corte = corte >= 0 ? corte + 1 : -corte - 1;
+            if (corte >= uids.length) {
+                return null;
+            }
+            resto = new JanelaUid(Arrays.copyOfRange(uids, corte, uids.length));
+        } else {
+            // Estimativa proporcional ao que falta da faixa (a aberta mantém a original)
+            int faltam = fim == jakarta.mail.UIDFolder.MAXUID ? estimativa
+                    : (int) Math.max(1, estimativa * (fim - processado) / (fim - inicio + 1));
+            resto = new JanelaUid(processado + 1, fim, faltam);
+        }
+        resto.ultimoUid = processado;
+        return resto;
+    }
+}
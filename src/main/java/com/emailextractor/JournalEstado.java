@@ -0,0 +1,169 @@
+package com.emailextractor;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Journal do estado: linhas anexadas a cada checkpoint sobre uma base completa,
+ * que só é reescrita na compactação (a base pode estar em JSON ou binário).
+ *
+ * Garantias contra falhas (inclusive kill -9):
+ * - cada anexação termina com fsync, então um checkpoint confirmado não se perde;
+ * - uma linha cortada no fim do journal é descartada na leitura;
+ * - a base é escrita em arquivo temporário, sincronizada e renomeada atomicamente,
+ *   então sempre existe uma versão íntegra dela.
+ *
+ * O conteúdo das linhas é responsabilidade de quem usa a classe. Se o processo
+ * morrer entre a troca da base e a remoção do journal, o journal antigo sobra ao
+ * lado da base nova: quem usa a classe deve marcá-lo (ex.: com a geração da base
+ * na primeira linha) para descartá-lo na leitura.
+ */
+class JournalEstado {
+
+    // Tamanho mínimo do journal antes de considerar a compactação
+    private static final long LIMITE_MINIMO_COMPACTACAO = 4L * 1024 * 1024;
+
+    /**
+     * Produz o conteúdo de um arquivo gravado atomicamente.
+     */
+    interface ConteudoArquivo {
+        void escrever(OutputStream saida) throws IOException;
+    }
+
+    private final Path arquivoJournal;
+
+    JournalEstado(Path arquivoJournal) {
+        this.arquivoJournal = arquivoJournal;
+    }
+
+    /**
+     * Lê as linhas íntegras do journal; a última linha sem quebra de linha
+     * (escrita interrompida) é ignorada e cortada do arquivo, para que a próxima
+     * anexação não a complete com o começo de outra linha.
+     */
+    List<String> lerJournal() throws IOException {
+        List<String> linhas = new ArrayList<>();
+        if (!Files.exists(arquivoJournal)) {
+            return linhas;
+        }
+        byte[] conteudo = Files.readAllBytes(arquivoJournal);
+        int fimIntegro = conteudo.length;
+        while (fimIntegro > 0 && conteudo[fimIntegro - 1] != '\n') {
+            fimIntegro--;
+        }
+        if (fimIntegro < conteudo.length) {
+            try (FileChannel canal = FileChannel.open(arquivoJournal, StandardOpenOption.WRITE)) {
+                canal.truncate(fimIntegro);
+                canal.force(false);
+            }
+        }
+        try (BufferedReader reader = new BufferedReader(new java.io.StringReader(
+                new String(conteudo, 0, fimIntegro, StandardCharsets.UTF_8)))) {
+            String linha;
+            while ((linha = reader.readLine()) != null) {
+                if (!linha.isEmpty()) {
+                    linhas.add(linha);
+                }
+            }
+        }
+        return linhas;
+    }
+
+    /**
+     * Anexa as linhas ao journal e sincroniza com o disco.
+     */
+    void anexar(List<String> linhas) throws IOException {
+        StringBuilder bloco = new StringBuilder();
+        for (String linha : linhas) {
+            bloco.append(linha).append('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bloco.toString().getBytes(StandardCharsets.UTF_8));
+        try (FileChannel canal = FileChannel.open(arquivoJournal,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (buffer.hasRemaining()) {
+                canal.write(buffer);
+            }
+            canal.force(false);
+        }
+    }
+
+    /**
+     * Indica se o journal já cresceu o bastante para compensar reescrever a base.
+     * Comparar com o tamanho da base mantém o custo total linear no número de checkpoints.
+     */
+    boolean precisaCompactar(Path arquivoBase) throws IOException {
+        long tamanhoJournal = tamanho(arquivoJournal);
+        return tamanhoJournal > Math.max(LIMITE_MINIMO_COMPACTACAO, tamanho(arquivoBase));
+    }
+
+    /**
+     * Substitui a base pelo conteúdo informado (já contendo tudo o que está no journal)
+     * e esvazia o journal.
+     */
+    void compactar(Path arquivoBase, ConteudoArquivo conteudoBase) throws IOException {
+        gravarAtomicamente(arquivoBase, conteudoBase);
+        // Se o processo morrer antes desta linha, o journal antigo sobra ao lado da base nova
+        Files.deleteIfExists(arquivoJournal);
+    }
+
+    /**
+     * Se o journal não existe ou está vazio (recomeçado depois da última compactação).
+     */
+    boolean vazio() throws IOException {
+        return tamanho(arquivoJournal) == 0;
+    }
+
+    void apagar() throws IOException {
+        Files.deleteIfExists(arquivoJournal);
+    }
+
+    /**
+     * Escreve em arquivo temporário, sincroniza e renomeia sobre o destino.
+     */
+    static void gravarAtomicamente(Path destino, ConteudoArquivo conteudo) throws IOException {
+        Path temporario = destino.resolveSibling(destino.getFileName() + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream saida = new BufferedOutputStream(Channels.newOutputStream(canal), 1 << 20);
+            conteudo.escrever(saida);
+            saida.flush();
+            canal.force(true);
+        }
+        Files.move(temporario, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        sincronizarDiretorio(destino.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Garante que a renomeação chegou ao disco. Nem todo sistema permite abrir
+     * diretórios para sincronizar; nesse caso a operação é ignorada.
+     */
+    private static void sincronizarDiretorio(Path diretorio) {
+        if (diretorio == null) return;
+        try (FileChannel canal = FileChannel.open(diretorio, StandardOpenOption.READ)) {
+            canal.force(true);
+        } catch (IOException e) {
+            // Sem suporte a fsync de diretório (ex.: Windows)
+        }
+    }
+
+    private static long tamanho(Path arquivo) throws IOException {
+        try {
+            return Files.size(arquivo);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.emailextractor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limita as conexões IMAP abertas ao mesmo tempo por um lote: um teto global e
+ * um teto por servidor (provedores costumam recusar muitas conexões simultâneas
+ * do mesmo cliente).
+ *
+ * As permissões são sempre obtidas na mesma ordem (servidor, depois global) e
+ * quem espera pelo teto global nunca segura permissões globais, então não há
+ * impasse entre contas.
+ */
+class LimiteConexoes {
+
+    private final int maximoGlobal;
+    private final int maximoPorServidor;
+    private final Map<String, Integer> maximosServidores;
+    private final Semaphore global;
+    private final Map<String, Semaphore> porServidor = new ConcurrentHashMap<>();
+
+    /**
+     * @param maximosServidores tetos específicos por servidor (os demais usam {@code maximoPorServidor})
+     */
+    LimiteConexoes(int maximoGlobal, int maximoPorServidor, Map<String, Integer> maximosServidores) {
+        this.maximoGlobal = maximoGlobal;
+        this.maximoPorServidor = maximoPorServidor;
+        this.maximosServidores = maximosServidores;
+        this.global = new Semaphore(maximoGlobal, true);
+    }
+
+    /**
+     * Maior número de conexões que uma conta desse servidor pode obter de uma vez.
+     */
+    int maximoPara(String servidor) {
+        return Math.min(maximoGlobal, tetoServidor(servidor));
+    }
+
+    /**
+     * Bloqueia até obter {@code conexoes} permissões do servidor e do teto global.
+     */
+    void adquirir(String servidor, int conexoes) throws InterruptedException {
+        Semaphore doServidor = semaforo(servidor);
+        doServidor.acquire(conexoes);
+        try {
+            global.acquire(conexoes);
+        } catch (InterruptedException e) {
+            doServidor.release(conexoes);
+            throw e;
+        }
+    }
+
+    void liberar(String servidor, int conexoes) {
+        global.release(conexoes);
+        semaforo(servidor).release(conexoes);
+    }
+
+    private Semaphore semaforo(String servidor) {
+        return porServidor.computeIfAbsent(servidor.toLowerCase(), chave -> new Semaphore(tetoServidor(chave), true));
+    }
+
+    private int tetoServidor(String servidor) {
+        return maximosServidores.getOrDefault(servidor.toLowerCase(), maximoPorServidor);
+    }
+}
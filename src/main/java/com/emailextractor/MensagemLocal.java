@@ -0,0 +1,197 @@
+package com.emailextractor;
+
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Mensagem lida de um arquivo local (mbox, Maildir ou .eml) da qual só existem os
+ * cabeçalhos pedidos; o corpo nunca é lido nem interpretado.
+ *
+ * Os cabeçalhos são separados direto dos bytes (de um arquivo mapeado em memória
+ * ou de um buffer com o início do arquivo): apenas as linhas dos nomes pedidos são
+ * decodificadas, em UTF-8, e as demais são puladas. O resultado é lido pelo mesmo
+ * caminho da extração IMAP no modo {@link ModoFetch#CABECALHOS}.
+ *
+ * A data de recebimento vem da linha "From " do mbox ou do nome do arquivo do
+ * Maildir, e só é usada quando falta o cabeçalho Date.
+ */
+class MensagemLocal extends MimeMessage {
+
+    // Data da linha "From " do mbox, no formato do asctime (ex.: "Sat Jan  3 01:05:34 1996")
+    private static final Pattern DATA_LINHA_FROM = Pattern.compile(
+            "([A-Z][a-z]{2}) +(\\d{1,2}) +(\\d{1,2}):(\\d{2})(?::(\\d{2}))? +(?:[A-Za-z]{2,5} +|[+-]\\d{4} +)?(\\d{4})");
+    private static final String MESES = "janfebmaraprmayjunjulaugsepoctnovdec";
+
+    private final String linhaFrom;
+    private final long recebida;
+
+    private MensagemLocal(String linhaFrom, long recebida) {
+        super((Session) null);
+        this.linhaFrom = linhaFrom;
+        this.recebida = recebida;
+    }
+
+    /**
+     * Posição logo depois da linha em branco que encerra os cabeçalhos iniciados em
+     * {@code inicio}, ou -1 se ela não aparecer antes de {@code limite}.
+     */
+    static int fimCabecalhos(ByteBuffer dados, int inicio, int limite) {
+        int posicao = inicio;
+        while (posicao < limite) {
+            byte primeiro = dados.get(posicao);
+            if (primeiro == '\n') {
+                return posicao + 1;
+            }
+            if (primeiro == '\r' && posicao + 1 < limite && dados.get(posicao + 1) == '\n') {
+                return posicao + 2;
+            }
+            posicao = proximaLinha(dados, posicao, limite);
+        }
+        return -1;
+    }
+
+    /**
+     * Início da linha seguinte à que contém {@code posicao} (ou {@code limite}).
+     */
+    static int proximaLinha(ByteBuffer dados, int posicao, int limite) {
+        while (posicao < limite) {
+            if (dados.get(posicao++) == '\n') {
+                return posicao;
+            }
+        }
+        return limite;
+    }
+
+    /**
+     * Lê os cabeçalhos que começam em {@code inicio}, até a linha em branco ou {@code limite},
+     * guardando apenas os de {@code nomes} (em minúsculas). Linhas de continuação são
+     * juntadas ao cabeçalho anterior sem a quebra, como o servidor IMAP faria.
+     *
+     * @param linhaFrom linha "From " do mbox, ou null
+     * @param recebida  data de recebimento em epoch millis, ou {@link RepositorioContatos#SEM_DATA}
+     */
+    static MensagemLocal ler(ByteBuffer dados, int inicio, int limite, String[] nomes, String linhaFrom,
+            long recebida) {
+        MensagemLocal mensagem = new MensagemLocal(linhaFrom, recebida);
+        byte[] valor = new byte[256];
+        int tamanho = 0;
+        String atual = null;
+
+        int posicao = inicio;
+        while (posicao < limite) {
+            int fimLinha = proximaLinha(dados, posicao, limite);
+            int fimConteudo = fimLinha;
+            if (fimConteudo > posicao && dados.get(fimConteudo - 1) == '\n') fimConteudo--;
+            if (fimConteudo > posicao && dados.get(fimConteudo - 1) == '\r') fimConteudo--;
+            if (fimConteudo == posicao) {
+                // Linha em branco: fim dos cabeçalhos
+                break;
+            }
+
+            byte primeiro = dados.get(posicao);
+            int inicioValor;
+            if (primeiro == ' ' || primeiro == '\t') {
+                // Continuação do cabeçalho anterior
+                inicioValor = atual != null ? posicao : -1;
+            } else {
+                if (atual != null) {
+                    mensagem.headers.addHeader(atual, new String(valor, 0, tamanho, StandardCharsets.UTF_8).trim());
+                }
+                atual = null;
+                tamanho = 0;
+                inicioValor = -1;
+                int doisPontos = posicao;
+                while (doisPontos < fimConteudo && dados.get(doisPontos) != ':') {
+                    doisPontos++;
+                }
+                if (doisPontos < fimConteudo) {
+                    atual = nomePedido(dados, posicao, doisPontos, nomes);
+                    inicioValor = atual != null ? doisPontos + 1 : -1;
+                }
+            }
+
+            if (inicioValor >= 0) {
+                int quantidade = fimConteudo - inicioValor;
+                if (tamanho + quantidade > valor.length) {
+                    valor = Arrays.copyOf(valor, Math.max(valor.length * 2, tamanho + quantidade));
+                }
+                for (int i = 0; i < quantidade; i++) {
+                    valor[tamanho++] = dados.get(inicioValor + i);
+                }
+            }
+            posicao = fimLinha;
+        }
+        if (atual != null) {
+            mensagem.headers.addHeader(atual, new String(valor, 0, tamanho, StandardCharsets.UTF_8).trim());
+        }
+        return mensagem;
+    }
+
+    /**
+     * Nome pedido que coincide (sem diferenciar maiúsculas) com os bytes [inicio, fim), ou null.
+     */
+    private static String nomePedido(ByteBuffer dados, int inicio, int fim, String[] nomes) {
+        while (fim > inicio && (dados.get(fim - 1) == ' ' || dados.get(fim - 1) == '\t')) {
+            fim--;
+        }
+        int tamanho = fim - inicio;
+        for (String nome : nomes) {
+            if (nome.length() != tamanho) {
+                continue;
+            }
+            boolean igual = true;
+            for (int i = 0; i < tamanho && igual; i++) {
+                int b = dados.get(inicio + i);
+                if (b >= 'A' && b <= 'Z') {
+                    b += 'a' - 'A';
+                }
+                igual = b == nome.charAt(i);
+            }
+            if (igual) {
+                return nome;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Date getReceivedDate() {
+        if (recebida != RepositorioContatos.SEM_DATA) {
+            return new Date(recebida);
+        }
+        return linhaFrom != null ? dataLinhaFrom(linhaFrom) : null;
+    }
+
+    /**
+     * Data da linha "From " do mbox, tomada como UTC; null se não houver uma reconhecível.
+     */
+    static Date dataLinhaFrom(String linha) {
+        Matcher matcher = DATA_LINHA_FROM.matcher(linha);
+        if (!matcher.find()) {
+            return null;
+        }
+        int mes = MESES.indexOf(matcher.group(1).toLowerCase(Locale.ROOT));
+        if (mes < 0 || mes % 3 != 0) {
+            return null;
+        }
+        try {
+            LocalDateTime data = LocalDateTime.of(Integer.parseInt(matcher.group(6)), mes / 3 + 1,
+                    Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(3)),
+                    Integer.parseInt(matcher.group(4)),
+                    matcher.group(5) != null ? Integer.parseInt(matcher.group(5)) : 0);
+            return Date.from(data.toInstant(ZoneOffset.UTC));
+        } catch (java.time.DateTimeException e) {
+            return null;
+        }
+    }
+}
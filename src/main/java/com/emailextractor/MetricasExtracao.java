@@ -0,0 +1,578 @@
+package com.emailextractor;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Instrumentação da extração: tempo por fase, histogramas de latência das janelas
+ * buscadas e dos checkpoints, vazão, exceções ignoradas, reconexões e esperas
+ * dos estágios do pipeline de busca.
+ *
+ * Os contadores são {@link LongAdder}/atômicos, então várias conexões registram
+ * sem disputa. As métricas ficam visíveis por JMX durante a execução e são
+ * resumidas em {@link ResumoExecucao} ao final.
+ */
+class MetricasExtracao implements MetricasExtracaoMBean {
+
+    static final String NOME_JMX = "com.emailextractor:type=Extracao";
+
+    /**
+     * Fases cronometradas.
+     */
+    enum Fase {
+        CARGA_ESTADO,
+        CONEXAO,
+        PLANEJAMENTO,
+        FETCH,
+        PROCESSAMENTO,
+        CHECKPOINT,
+        EXPORTACAO
+    }
+
+    /**
+     * Histograma de latências em baldes de potência de 2 milissegundos:
+     * o balde i conta durações menores que 2^i ms (e maiores ou iguais a 2^(i-1)).
+     */
+    static final class Histograma {
+        private static final int BALDES = 32;
+        private final AtomicLongArray baldes = new AtomicLongArray(BALDES);
+        private final LongAdder quantidade = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maximoNanos = new AtomicLong();
+
+        void registrar(long nanos) {
+            long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int balde = Math.min(BALDES - 1, 64 - Long.numberOfLeadingZeros(ms));
+            baldes.incrementAndGet(balde);
+            quantidade.increment();
+            totalNanos.add(nanos);
+            maximoNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        long quantidade() {
+            return quantidade.sum();
+        }
+
+        double mediaMs() {
+            long n = quantidade.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1e6 / n;
+        }
+
+        long maximoMs() {
+            return TimeUnit.NANOSECONDS.toMillis(maximoNanos.get());
+        }
+
+        /**
+         * Limite superior do balde que contém o percentil pedido (0 a 100).
+         */
+        long percentilMs(double percentil) {
+            long n = quantidade.sum();
+            if (n == 0) {
+                return 0;
+            }
+            long alvo = (long) Math.ceil(n * percentil / 100.0);
+            long acumulado = 0;
+            for (int i = 0; i < BALDES; i++) {
+                acumulado += baldes.get(i);
+                if (acumulado >= alvo) {
+                    return Math.min(1L << i, maximoMs());
+                }
+            }
+            return maximoMs();
+        }
+    }
+
+    private final Map<Fase, LongAdder> nanosPorFase = new EnumMap<>(Fase.class);
+    private final Map<Fase, LongAdder> chamadasPorFase = new EnumMap<>(Fase.class);
+    private final LongAdder mensagens = new LongAdder();
+    private final LongAdder excecoesIgnoradas = new LongAdder();
+    private final LongAdder reconexoes = new LongAdder();
+    private final LongAdder reconexoesPorLimite = new LongAdder();
+    private final LongAdder pastasPuladas = new LongAdder();
+    private final LongAdder mensagensComFalha = new LongAdder();
+    private final LongAdder falhasRecuperadas = new LongAdder();
+    private final LongAdder falhasDefinitivas = new LongAdder();
+    private final LongAdder esperaBuscaNanos = new LongAdder();
+    private final LongAdder esperaExtracaoNanos = new LongAdder();
+    private final AtomicInteger filaJanelas = new AtomicInteger();
+    private final AtomicInteger filaJanelasMaxima = new AtomicInteger();
+    private final Histograma latenciaFetch = new Histograma();
+    private final Histograma duracaoCheckpoint = new Histograma();
+    private final long inicioNanos = System.nanoTime();
+    private final long inicioEpoch = System.currentTimeMillis();
+
+    private final Runnable pausar;
+    private final Runnable retomar;
+    private final Runnable encerrar;
+    private final BooleanSupplier pausado;
+
+    private volatile LongSupplier bytesRecebidos = () -> 0;
+    private volatile LongSupplier bytesEnviados = () -> 0;
+    private volatile IntSupplier contatos = () -> 0;
+    private volatile LongSupplier acertosCache = () -> 0;
+    private volatile LongSupplier falhasCache = () -> 0;
+    private volatile int contatosIniciais;
+    private ObjectName nomeJmx;
+
+    MetricasExtracao(Runnable pausar, Runnable retomar, Runnable encerrar, BooleanSupplier pausado) {
+        this.pausar = pausar;
+        this.retomar = retomar;
+        this.encerrar = encerrar;
+        this.pausado = pausado;
+        for (Fase fase : Fase.values()) {
+            nanosPorFase.put(fase, new LongAdder());
+            chamadasPorFase.put(fase, new LongAdder());
+        }
+    }
+
+    /**
+     * Registra o MBean no servidor da plataforma; falhas apenas desativam o JMX.
+     */
+    void registrarJmx() {
+        registrarJmx(NOME_JMX);
+    }
+
+    /**
+     * Registra o MBean de uma das contas de um lote, identificada pela chave {@code conta}.
+     */
+    void registrarJmxConta(String conta) {
+        registrarJmx(NOME_JMX + ",conta=" + ObjectName.quote(conta));
+    }
+
+    private void registrarJmx(String texto) {
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            ObjectName nome = new ObjectName(texto);
+            if (servidor.isRegistered(nome)) {
+                servidor.unregisterMBean(nome);
+            }
+            servidor.registerMBean(new StandardMBean(this, MetricasExtracaoMBean.class), nome);
+            nomeJmx = nome;
+        } catch (JMException e) {
+            System.err.println("Aviso: métricas JMX indisponíveis: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Retira o MBean do servidor (contas de lote já terminadas).
+     */
+    void removerJmx() {
+        if (nomeJmx == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(nomeJmx);
+        } catch (JMException e) {
+            // Já removido
+        }
+        nomeJmx = null;
+    }
+
+    /**
+     * Define de onde vêm os bytes trafegados e a quantidade de contatos.
+     */
+    void definirFontes(LongSupplier recebidos, LongSupplier enviados, IntSupplier contatos) {
+        this.bytesRecebidos = recebidos;
+        this.bytesEnviados = enviados;
+        this.contatos = contatos;
+        this.contatosIniciais = contatos.getAsInt();
+    }
+
+    /**
+     * Define de onde vêm os acertos e falhas do cache de endereços.
+     */
+    void definirCache(LongSupplier acertos, LongSupplier falhas) {
+        this.acertosCache = acertos;
+        this.falhasCache = falhas;
+    }
+
+    // ---- Registro (chamado pela extração) ----
+
+    static long agora() {
+        return System.nanoTime();
+    }
+
+    void registrarFase(Fase fase, long inicioNanos) {
+        long duracao = System.nanoTime() - inicioNanos;
+        nanosPorFase.get(fase).add(duracao);
+        chamadasPorFase.get(fase).increment();
+        if (fase == Fase.FETCH) {
+            latenciaFetch.registrar(duracao);
+        } else if (fase == Fase.CHECKPOINT) {
+            duracaoCheckpoint.registrar(duracao);
+        }
+    }
+
+    void registrarMensagem() {
+        mensagens.increment();
+    }
+
+    void registrarExcecaoIgnorada() {
+        excecoesIgnoradas.increment();
+    }
+
+    /**
+     * @param limite se a queda foi uma recusa explícita por limite de uso do provedor
+     */
+    void registrarReconexao(boolean limite) {
+        reconexoes.increment();
+        if (limite) {
+            reconexoesPorLimite.increment();
+        }
+    }
+
+    /**
+     * Pasta sem mensagens novas pulada pelo STATUS, sem SELECT nem FETCH.
+     */
+    void registrarPastaPulada() {
+        pastasPuladas.increment();
+    }
+
+    /**
+     * Mensagem ilegível posta na fila de novas tentativas da pasta.
+     */
+    void registrarFalhaMensagem() {
+        mensagensComFalha.increment();
+    }
+
+    /**
+     * Resultado de uma mensagem da fila de falhas: lida numa nova tentativa ou
+     * descartada depois de esgotar as tentativas.
+     */
+    void registrarFalhaResolvida(boolean recuperada) {
+        (recuperada ? falhasRecuperadas : falhasDefinitivas).increment();
+    }
+
+    /**
+     * Tempo que o estágio de busca ficou parado com a fila cheia (extração mais lenta).
+     */
+    void registrarEsperaBusca(long nanos) {
+        esperaBuscaNanos.add(nanos);
+    }
+
+    /**
+     * Tempo que a extração ficou parada com a fila vazia (servidor mais lento).
+     */
+    void registrarEsperaExtracao(long nanos) {
+        esperaExtracaoNanos.add(nanos);
+    }
+
+    /**
+     * Janelas buscadas que entraram (+1) ou saíram (-1) das filas do pipeline.
+     */
+    void alterarFilaJanelas(int delta) {
+        filaJanelasMaxima.accumulateAndGet(filaJanelas.addAndGet(delta), Math::max);
+    }
+
+    // ---- Leitura ----
+
+    private double segundosDecorridos() {
+        return Math.max(1e-3, (System.nanoTime() - inicioNanos) / 1e9);
+    }
+
+    @Override
+    public long getMensagensProcessadas() {
+        return mensagens.sum();
+    }
+
+    @Override
+    public double getMensagensPorSegundo() {
+        return mensagens.sum() / segundosDecorridos();
+    }
+
+    @Override
+    public int getContatos() {
+        return contatos.getAsInt();
+    }
+
+    @Override
+    public double getContatosPorSegundo() {
+        return Math.max(0, contatos.getAsInt() - contatosIniciais) / segundosDecorridos();
+    }
+
+    @Override
+    public long getBytesRecebidos() {
+        return bytesRecebidos.getAsLong();
+    }
+
+    @Override
+    public long getBytesEnviados() {
+        return bytesEnviados.getAsLong();
+    }
+
+    @Override
+    public long getExcecoesIgnoradas() {
+        return excecoesIgnoradas.sum();
+    }
+
+    @Override
+    public long getCacheEnderecosAcertos() {
+        return acertosCache.getAsLong();
+    }
+
+    @Override
+    public long getCacheEnderecosFalhas() {
+        return falhasCache.getAsLong();
+    }
+
+    @Override
+    public double getCacheEnderecosTaxaAcerto() {
+        long acertos = acertosCache.getAsLong();
+        long total = acertos + falhasCache.getAsLong();
+        return total == 0 ? 0 : (double) acertos / total;
+    }
+
+    @Override
+    public long getReconexoes() {
+        return reconexoes.sum();
+    }
+
+    @Override
+    public long getReconexoesPorLimite() {
+        return reconexoesPorLimite.sum();
+    }
+
+    @Override
+    public long getPastasPuladas() {
+        return pastasPuladas.sum();
+    }
+
+    @Override
+    public long getMensagensComFalha() {
+        return mensagensComFalha.sum();
+    }
+
+    @Override
+    public long getFalhasRecuperadas() {
+        return falhasRecuperadas.sum();
+    }
+
+    @Override
+    public long getFalhasDefinitivas() {
+        return falhasDefinitivas.sum();
+    }
+
+    @Override
+    public long getJanelasBuscadas() {
+        return latenciaFetch.quantidade();
+    }
+
+    @Override
+    public long getLatenciaFetchP50Ms() {
+        return latenciaFetch.percentilMs(50);
+    }
+
+    @Override
+    public long getLatenciaFetchP95Ms() {
+        return latenciaFetch.percentilMs(95);
+    }
+
+    @Override
+    public long getLatenciaFetchP99Ms() {
+        return latenciaFetch.percentilMs(99);
+    }
+
+    @Override
+    public long getLatenciaFetchMaximaMs() {
+        return latenciaFetch.maximoMs();
+    }
+
+    @Override
+    public int getFilaJanelas() {
+        return filaJanelas.get();
+    }
+
+    @Override
+    public int getFilaJanelasMaxima() {
+        return filaJanelasMaxima.get();
+    }
+
+    @Override
+    public long getEsperaBuscaMs() {
+        return TimeUnit.NANOSECONDS.toMillis(esperaBuscaNanos.sum());
+    }
+
+    @Override
+    public long getEsperaExtracaoMs() {
+        return TimeUnit.NANOSECONDS.toMillis(esperaExtracaoNanos.sum());
+    }
+
+    @Override
+    public long getCheckpoints() {
+        return duracaoCheckpoint.quantidade();
+    }
+
+    @Override
+    public double getCheckpointMedioMs() {
+        return duracaoCheckpoint.mediaMs();
+    }
+
+    @Override
+    public long getCheckpointMaximoMs() {
+        return duracaoCheckpoint.maximoMs();
+    }
+
+    @Override
+    public String[] getTemposFases() {
+        Fase[] fases = Fase.values();
+        String[] tempos = new String[fases.length];
+        for (int i = 0; i < fases.length; i++) {
+            tempos[i] = fases[i].name() + ": " + TimeUnit.NANOSECONDS.toMillis(nanosPorFase.get(fases[i]).sum())
+                    + " ms (" + chamadasPorFase.get(fases[i]).sum() + ")";
+        }
+        return tempos;
+    }
+
+    @Override
+    public boolean isPausado() {
+        return pausado.getAsBoolean();
+    }
+
+    @Override
+    public void pausar() {
+        pausar.run();
+    }
+
+    @Override
+    public void retomar() {
+        retomar.run();
+    }
+
+    @Override
+    public void encerrar() {
+        encerrar.run();
+    }
+
+    // ---- Resumo ----
+
+    /**
+     * Resumo da execução, gravado em JSON ao final.
+     */
+    static class ResumoExecucao {
+        String inicio;
+        String fim;
+        double duracaoSegundos;
+        boolean concluido;
+        String servidor;
+        int conexoes;
+        int tamanhoJanela;
+        String modoFetch;
+        long mensagensProcessadas;
+        double mensagensPorSegundo;
+        long mensagensDuplicadas;
+        int contatos;
+        int contatosNovos;
+        double contatosPorSegundo;
+        long bytesRecebidos;
+        long bytesEnviados;
+        long excecoesIgnoradas;
+        long cacheEnderecosAcertos;
+        long cacheEnderecosFalhas;
+        long reconexoes;
+        long reconexoesPorLimite;
+        long pastasPuladas;
+        long mensagensComFalha;
+        long falhasRecuperadas;
+        long falhasDefinitivas;
+        long picoHeapBytes;
+        Pipeline pipeline = new Pipeline();
+        Latencias fetch = new Latencias();
+        Latencias checkpoint = new Latencias();
+        Map<String, TempoFase> fases = new LinkedHashMap<>();
+    }
+
+    static class Latencias {
+        long quantidade;
+        double mediaMs;
+        long p50Ms;
+        long p95Ms;
+        long p99Ms;
+        long maximoMs;
+    }
+
+    static class Pipeline {
+        int filaBusca;
+        int filaMaxima;
+        long esperaBuscaMs;
+        long esperaExtracaoMs;
+    }
+
+    static class TempoFase {
+        long chamadas;
+        long totalMs;
+    }
+
+    ResumoExecucao resumo() {
+        ResumoExecucao resumo = new ResumoExecucao();
+        resumo.inicio = ExportadorCsv.formatarData(inicioEpoch);
+        resumo.fim = ExportadorCsv.formatarData(System.currentTimeMillis());
+        resumo.duracaoSegundos = segundosDecorridos();
+        resumo.mensagensProcessadas = getMensagensProcessadas();
+        resumo.mensagensPorSegundo = getMensagensPorSegundo();
+        resumo.contatos = getContatos();
+        resumo.contatosNovos = Math.max(0, resumo.contatos - contatosIniciais);
+        resumo.contatosPorSegundo = getContatosPorSegundo();
+        resumo.bytesRecebidos = getBytesRecebidos();
+        resumo.bytesEnviados = getBytesEnviados();
+        resumo.excecoesIgnoradas = getExcecoesIgnoradas();
+        resumo.cacheEnderecosAcertos = getCacheEnderecosAcertos();
+        resumo.cacheEnderecosFalhas = getCacheEnderecosFalhas();
+        resumo.reconexoes = getReconexoes();
+        resumo.reconexoesPorLimite = getReconexoesPorLimite();
+        resumo.pastasPuladas = getPastasPuladas();
+        resumo.mensagensComFalha = getMensagensComFalha();
+        resumo.falhasRecuperadas = getFalhasRecuperadas();
+        resumo.falhasDefinitivas = getFalhasDefinitivas();
+        resumo.picoHeapBytes = picoHeap();
+        resumo.pipeline.filaMaxima = getFilaJanelasMaxima();
+        resumo.pipeline.esperaBuscaMs = getEsperaBuscaMs();
+        resumo.pipeline.esperaExtracaoMs = getEsperaExtracaoMs();
+        preencher(resumo.fetch, latenciaFetch);
+        preencher(resumo.checkpoint, duracaoCheckpoint);
+        for (Fase fase : Fase.values()) {
+            TempoFase tempo = new TempoFase();
+            tempo.chamadas = chamadasPorFase.get(fase).sum();
+            tempo.totalMs = TimeUnit.NANOSECONDS.toMillis(nanosPorFase.get(fase).sum());
+            resumo.fases.put(fase.name().toLowerCase(), tempo);
+        }
+        return resumo;
+    }
+
+    /**
+     * Soma dos picos de uso dos pools de heap desde o início da JVM.
+     */
+    private static long picoHeap() {
+        long pico = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                pico += pool.getPeakUsage().getUsed();
+            }
+        }
+        return pico;
+    }
+
+    private static void preencher(Latencias latencias, Histograma histograma) {
+        latencias.quantidade = histograma.quantidade();
+        latencias.mediaMs = histograma.mediaMs();
+        latencias.p50Ms = histograma.percentilMs(50);
+        latencias.p95Ms = histograma.percentilMs(95);
+        latencias.p99Ms = histograma.percentilMs(99);
+        latencias.maximoMs = histograma.maximoMs();
+    }
+}
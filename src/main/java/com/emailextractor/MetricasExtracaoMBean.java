@@ -0,0 +1,97 @@
+package com.emailextractor;
+
+/**
+ * Interface JMX das métricas da extração (registrada como
+ * {@code com.emailextractor:type=Extracao}). Além da leitura das métricas,
+ * permite pausar, retomar e encerrar salvando, como os comandos de teclado.
+ * Precisa ser pública para a introspecção do JMX.
+ */
+public interface MetricasExtracaoMBean {
+
+    long getMensagensProcessadas();
+
+    double getMensagensPorSegundo();
+
+    int getContatos();
+
+    double getContatosPorSegundo();
+
+    long getBytesRecebidos();
+
+    long getBytesEnviados();
+
+    long getExcecoesIgnoradas();
+
+    long getCacheEnderecosAcertos();
+
+    long getCacheEnderecosFalhas();
+
+    double getCacheEnderecosTaxaAcerto();
+
+    long getReconexoes();
+
+    long getReconexoesPorLimite();
+
+    /**
+     * Pastas sem mensagens novas puladas pelo STATUS, sem serem abertas.
+     */
+    long getPastasPuladas();
+
+    /**
+     * Mensagens que falharam na primeira leitura e foram para a fila de novas tentativas.
+     */
+    long getMensagensComFalha();
+
+    long getFalhasRecuperadas();
+
+    /**
+     * Mensagens descartadas depois de esgotar {@code --tentativas-mensagem}.
+     */
+    long getFalhasDefinitivas();
+
+    long getJanelasBuscadas();
+
+    long getLatenciaFetchP50Ms();
+
+    long getLatenciaFetchP95Ms();
+
+    long getLatenciaFetchP99Ms();
+
+    long getLatenciaFetchMaximaMs();
+
+    /**
+     * Janelas já buscadas esperando a extração, somadas entre as conexões.
+     */
+    int getFilaJanelas();
+
+    int getFilaJanelasMaxima();
+
+    /**
+     * Tempo acumulado da busca parada com a fila cheia (a extração é o gargalo).
+     */
+    long getEsperaBuscaMs();
+
+    /**
+     * Tempo acumulado da extração parada com a fila vazia (o servidor é o gargalo).
+     */
+    long getEsperaExtracaoMs();
+
+    long getCheckpoints();
+
+    double getCheckpointMedioMs();
+
+    long getCheckpointMaximoMs();
+
+    /**
+     * Tempo acumulado por fase, no formato "FASE: total ms (chamadas)".
+     */
+    String[] getTemposFases();
+
+    boolean isPausado();
+
+    void pausar();
+
+    void retomar();
+
+    void encerrar();
+}
@@ -0,0 +1,60 @@
+package com.emailextractor;
+
+import jakarta.mail.FetchProfile;
+import jakarta.mail.UIDFolder;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+
+import java.util.Set;
+
+/**
+ * Define quais dados de cada mensagem são pedidos ao servidor IMAP.
+ */
+enum ModoFetch {
+
+    /**
+     * ENVELOPE completo (From, To, Cc, Bcc, Subject, Message-ID...).
+     */
+    ENVELOPE,
+
+    /**
+     * Apenas os cabeçalhos de endereço selecionados e o Date, mais o INTERNALDATE.
+     * Evita trafegar listas longas de To/Cc de mensagens de listas de discussão.
+     */
+    CABECALHOS;
+
+    /**
+     * Monta o FetchProfile correspondente ao modo, sempre incluindo o UID.
+     * No modo CABECALHOS pede apenas os cabeçalhos de endereço selecionados,
+     * o Date e, se necessário para deduplicação, o Message-ID.
+     */
+    FetchProfile criarFetchProfile(Set<CabecalhoEndereco> cabecalhos, boolean messageId) {
+        FetchProfile fetchProfile = new FetchProfile();
+        if (this == ENVELOPE) {
+            fetchProfile.add(FetchProfile.Item.ENVELOPE);
+        } else {
+            for (CabecalhoEndereco cabecalho : cabecalhos) {
+                fetchProfile.add(cabecalho.nome);
+            }
+            fetchProfile.add("Date");
+            if (messageId) {
+                fetchProfile.add("Message-ID");
+            }
+            fetchProfile.add(IMAPFolder.FetchProfileItem.INTERNALDATE);
+        }
+        fetchProfile.add(UIDFolder.FetchProfileItem.UID);
+        return fetchProfile;
+    }
+
+    static ModoFetch parse(String valor) {
+        switch (valor.toLowerCase()) {
+            case "envelope":
+                return ENVELOPE;
+            case "cabecalhos":
+            case "cabeçalhos":
+                return CABECALHOS;
+            default:
+                throw new IllegalArgumentException("Modo de fetch inválido: " + valor
+                        + " (use envelope ou cabecalhos)");
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.emailextractor;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Normalizações opcionais aplicadas aos endereços antes de registrá-los, além
+ * de minúsculas e espaços (sempre aplicados).
+ */
+enum NormalizacaoEndereco {
+    /**
+     * Domínios internacionalizados na forma ASCII (punycode), ex.: bücher.de → xn--bcher-kva.de.
+     */
+    IDN("idn"),
+
+    /**
+     * Apelidos do Gmail: sem pontos nem sufixo "+..." na parte local, googlemail.com → gmail.com.
+     */
+    GMAIL("gmail"),
+
+    /**
+     * Nomes com palavras codificadas (RFC 2047) que o parser estrito deixa passar,
+     * aspas ao redor e espaços repetidos.
+     */
+    NOMES("nomes");
+
+    final String nome;
+
+    NormalizacaoEndereco(String nome) {
+        this.nome = nome;
+    }
+
+    /**
+     * Interpreta uma lista separada por vírgulas, ex.: "idn,gmail", ou "todas"/"nenhuma".
+     */
+    static Set<NormalizacaoEndereco> parseLista(String valor) {
+        Set<NormalizacaoEndereco> normalizacoes = EnumSet.noneOf(NormalizacaoEndereco.class);
+        for (String item : valor.split(",")) {
+            String chave = item.trim().toLowerCase();
+            if (chave.isEmpty() || chave.equals("nenhuma")) continue;
+            if (chave.equals("todas")) {
+                normalizacoes.addAll(EnumSet.allOf(NormalizacaoEndereco.class));
+                continue;
+            }
+            boolean encontrado = false;
+            for (NormalizacaoEndereco normalizacao : values()) {
+                if (normalizacao.nome.equals(chave)) {
+                    normalizacoes.add(normalizacao);
+                    encontrado = true;
+                }
+            }
+            if (!encontrado) {
+                throw new IllegalArgumentException("Normalização inválida: " + item.trim()
+                        + " (use idn, gmail, nomes, todas ou nenhuma)");
+            }
+        }
+        return normalizacoes;
+    }
+}
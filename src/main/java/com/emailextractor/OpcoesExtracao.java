@@ -0,0 +1,387 @@
+package com.emailextractor;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Opções de linha de comando do extrator.
+ * Todas são opcionais; sem argumentos o comportamento é o padrão interativo.
+ */
+class OpcoesExtracao {
+
+    static final int JANELA_PADRAO = 1000;
+    static final int JANELA_MINIMA = 50;
+    static final int JANELA_MAXIMA = 10000;
+    static final int CONEXOES_MAXIMO = 16;
+    static final int FILA_BUSCA_PADRAO = 2;
+    static final int TENTATIVAS_MENSAGEM_PADRAO = 3;
+    static final int CHECKPOINT_MENSAGENS_PADRAO = 500;
+    static final int CHECKPOINT_SEGUNDOS_PADRAO = 10;
+    static final int MEMORIA_EXPORTACAO_PADRAO_MB = 64;
+    static final int INTERVALO_EXPORTACAO_PADRAO = 10;
+    static final String ARQUIVO_RESUMO_PADRAO = "resumo_execucao.json";
+    static final String VARIAVEL_SENHA = "EMAIL_EXTRACTOR_SENHA";
+
+    static final String USO = String.join(System.lineSeparator(),
+            "Uso: java -jar email-extractor.jar [opções]",
+            "  --janela=N    Mensagens buscadas por janela de UID (" + JANELA_MINIMA + "-" + JANELA_MAXIMA
+                    + ", padrão " + JANELA_PADRAO + ")",
+            "  --fetch=MODO  Dados pedidos ao servidor: envelope (padrão) ou cabecalhos (From/Date/INTERNALDATE)",
+            "  --conexoes=N  Conexões IMAP em paralelo (1-" + CONEXOES_MAXIMO + ", padrão 1)",
+            "  --fila-busca=N Janelas buscadas à frente do processamento, por conexão (padrão " + FILA_BUSCA_PADRAO
+                    + ", 0 = busca e processamento alternados)",
+            "  --pastas=LISTA       Pastas separadas por vírgula, ou * para todas (padrão INBOX)",
+            "  --cabecalhos=LISTA   Cabeçalhos de endereço: from,to,cc,reply-to (padrão from)",
+            "  --normalizar=LISTA   Normalizações dos endereços: idn,gmail,nomes, todas ou nenhuma (padrão)",
+            "  --cache-enderecos=N  Cabeçalhos interpretados mantidos em cache (padrão "
+                    + CacheEnderecos.CAPACIDADE_PADRAO + ", 0 desativa)",
+            "  --desde=DATA         Só mensagens recebidas a partir de DATA (AAAA-MM-DD, ou Nd = últimos N dias)",
+            "  --ate=DATA           Só mensagens recebidas até DATA, inclusive (AAAA-MM-DD)",
+            "  --tentativas=N            Reconexões seguidas sem progresso antes de desistir (padrão "
+                    + ReconexaoImap.TENTATIVAS_PADRAO + ", 0 desativa)",
+            "  --espera-maxima=S         Teto da espera entre reconexões, que dobra a cada queda (padrão "
+                    + ReconexaoImap.ESPERA_MAXIMA_PADRAO + " s)",
+            "  --tentativas-mensagem=N   Novas buscas de uma mensagem que falhou, ao final da pasta (padrão "
+                    + TENTATIVAS_MENSAGEM_PADRAO + ", 0 desativa)",
+            "  --checkpoint-mensagens=N  Checkpoint a cada N mensagens (padrão " + CHECKPOINT_MENSAGENS_PADRAO + ")",
+            "  --checkpoint-segundos=N   Checkpoint a cada N segundos (padrão " + CHECKPOINT_SEGUNDOS_PADRAO + ")",
+            "  --formato-estado=FORMATO  Base do estado em binario (padrão) ou json",
+            "  --repositorio=TIPO        Contatos em memória: compacto (padrão) ou mapa",
+            "  --indice=ARQUIVO          Contatos num índice H2 em disco, mantido entre execuções e contas",
+            "                            (a execução seguinte busca apenas as mensagens novas)",
+            "  --ordenar=CHAVE           Ordem do CSV: email (padrão), dominio ou data (mais recente primeiro)",
+            "  --gzip                    Grava o CSV comprimido (.csv.gz)",
+            "  --incremental             Mescla os contatos no CSV existente em vez de regravá-lo e, na execução",
+            "                            seguinte, busca só as mensagens novas",
+            "  --alteracoes=ARQUIVO      Com --incremental, grava também um CSV só com os contatos novos ou alterados",
+            "  --memoria-exportacao=MB   Memória usada para ordenar o CSV antes de usar arquivos temporários (padrão "
+                    + MEMORIA_EXPORTACAO_PADRAO_MB + ")",
+            "  --progresso=MODO          Exibição do progresso: auto (padrão), barra ou linhas",
+            "  --resumo=ARQUIVO          Resumo JSON da execução (padrão " + ARQUIVO_RESUMO_PADRAO + ")",
+            "  --sem-teclado             Não lê comandos do teclado (controle pelo JMX)",
+            "  --usuario=EMAIL           Usuário IMAP; com ele as perguntas iniciais são puladas",
+            "                            (senha lida da variável " + VARIAVEL_SENHA + ", se definida)",
+            "  --servidor=HOST           Servidor IMAP (padrão imap.gmail.com)",
+            "  --porta=N                 Porta IMAP (padrão 993)",
+            "  --csv=ARQUIVO             Arquivo CSV de saída (padrão contatos.csv)",
+            "  --retomar=sim|nao         Resposta automática quando há processo anterior salvo",
+            "  --continuo                Depois da extração, mantém as pastas abertas com IDLE e atualiza",
+            "                            o estado e o CSV a cada mensagem nova, até [S] ou o JMX encerrar",
+            "  --intervalo-exportacao=N  Intervalo mínimo entre regravações do CSV no modo contínuo (padrão "
+                    + INTERVALO_EXPORTACAO_PADRAO + " s)",
+            "  --lote=ARQUIVO            Extrai sem perguntas todas as contas do arquivo JSON de lote",
+            "                            (as demais opções valem para todas as contas)",
+            "  --converter-estado=ORIGEM,DESTINO  Converte uma base de estado (destino .json = JSON) e sai",
+            "  --exportar-indice=CSV     Exporta o índice de --indice para o CSV, sem conectar, e sai",
+            "  --local=CAMINHOS          Extrai de arquivos mbox, diretórios Maildir ou .eml separados por",
+            "                            vírgula, sem conectar, e exporta o CSV",
+            "  --paralelismo=N           Threads da extração local (padrão: núcleos do processador)");
+
+    // Quantidade de mensagens buscadas do servidor por janela de UID
+    int tamanhoJanela = JANELA_PADRAO;
+
+    // Dados de cada mensagem pedidos ao servidor
+    ModoFetch modoFetch = ModoFetch.ENVELOPE;
+
+    // Conexões IMAP independentes que dividem as janelas de UID
+    int conexoes = 1;
+
+    // Janelas buscadas antecipadamente por conexão enquanto a atual é processada (0 = sem pipeline)
+    int filaBusca = FILA_BUSCA_PADRAO;
+
+    // Pastas percorridas em ordem; "*" significa todas as pastas selecionáveis
+    List<String> pastas = Collections.singletonList("INBOX");
+
+    // Cabeçalhos dos quais os endereços são extraídos
+    Set<CabecalhoEndereco> cabecalhos = EnumSet.of(CabecalhoEndereco.FROM);
+
+    // Normalização dos endereços e cache dos cabeçalhos já interpretados
+    Set<NormalizacaoEndereco> normalizacoes = EnumSet.noneOf(NormalizacaoEndereco.class);
+    int cacheEnderecos = CacheEnderecos.CAPACIDADE_PADRAO;
+
+    // Período de recebimento filtrado pelo servidor (null = sem limite)
+    LocalDate desde;
+    LocalDate ate;
+    // Texto informado (ex.: "90d"): um período relativo anda com a data e não muda o perfil do índice
+    String desdeInformado;
+    String ateInformado;
+
+    // Reconexão após quedas e recusas do servidor
+    int tentativas = ReconexaoImap.TENTATIVAS_PADRAO;
+    int esperaMaxima = ReconexaoImap.ESPERA_MAXIMA_PADRAO;
+    int tentativasMensagem = TENTATIVAS_MENSAGEM_PADRAO;
+
+    // Gatilhos do checkpoint em segundo plano (o que ocorrer primeiro)
+    int checkpointMensagens = CHECKPOINT_MENSAGENS_PADRAO;
+    int checkpointSegundos = CHECKPOINT_SEGUNDOS_PADRAO;
+
+    // Formato da base do estado gravada na compactação
+    FormatoEstado formatoEstado = FormatoEstado.BINARIO;
+
+    // Repositório de contatos compacto (arena de bytes) ou mapa de objetos
+    boolean repositorioCompacto = true;
+
+    // Índice de contatos persistente em disco (null = contatos só em memória)
+    String arquivoIndice;
+
+    // Exportação do CSV
+    OrdenacaoCsv ordenacaoCsv = OrdenacaoCsv.EMAIL;
+    boolean gzip = false;
+    int memoriaExportacaoMb = MEMORIA_EXPORTACAO_PADRAO_MB;
+
+    // Exportação incremental: mescla no CSV anterior e grava as alterações à parte (null = não grava)
+    boolean incremental = false;
+    String arquivoAlteracoes;
+
+    // Barra no terminal ou linhas periódicas (auto decide pela presença de terminal)
+    RenderizadorProgresso.Modo modoProgresso = RenderizadorProgresso.Modo.AUTO;
+
+    // Instrumentação e controle
+    String arquivoResumo = ARQUIVO_RESUMO_PADRAO;
+    boolean teclado = true;
+
+    // Execução sem interação (null = perguntar)
+    String usuario;
+    String servidor;
+    int porta;
+    String arquivoCsv;
+    Boolean retomar;
+
+    // Modo contínuo: monitora as pastas com IDLE depois da extração inicial
+    boolean continuo = false;
+    int intervaloExportacao = INTERVALO_EXPORTACAO_PADRAO;
+
+    // Arquivo JSON com as contas do modo lote (null = uma conta, interativo)
+    String arquivoLote;
+
+    // Conversão avulsa de base de estado (null quando não pedida)
+    String converterOrigem;
+    String converterDestino;
+
+    // Exportação avulsa do índice de contatos (null quando não pedida)
+    String exportarIndice;
+
+    // Extração offline de mbox/Maildir/.eml (null = IMAP) e threads usadas (0 = núcleos)
+    List<String> origensLocais;
+    int paralelismo;
+
+    /**
+     * Interpreta os argumentos no formato --nome=valor.
+     */
+    static OpcoesExtracao parse(String[] args) {
+        OpcoesExtracao opcoes = new OpcoesExtracao();
+        for (String arg : args) {
+            int igual = arg.indexOf('=');
+            String nome = igual >= 0 ? arg.substring(0, igual) : arg;
+            String valor = igual >= 0 ? arg.substring(igual + 1).trim() : "";
+
+            switch (nome) {
+                case "--janela":
+                    opcoes.tamanhoJanela = inteiro(nome, valor, JANELA_MINIMA, JANELA_MAXIMA);
+                    break;
+                case "--fetch":
+                    opcoes.modoFetch = ModoFetch.parse(valor);
+                    break;
+                case "--conexoes":
+                    opcoes.conexoes = inteiro(nome, valor, 1, CONEXOES_MAXIMO);
+                    break;
+                case "--fila-busca":
+                    opcoes.filaBusca = inteiro(nome, valor, 0, 16);
+                    break;
+                case "--pastas":
+                    opcoes.pastas = parsePastas(valor);
+                    break;
+                case "--cabecalhos":
+                    opcoes.cabecalhos = CabecalhoEndereco.parseLista(valor);
+                    break;
+                case "--normalizar":
+                    opcoes.normalizacoes = NormalizacaoEndereco.parseLista(valor);
+                    break;
+                case "--cache-enderecos":
+                    opcoes.cacheEnderecos = inteiro(nome, valor, 0, 1 << 24);
+                    break;
+                case "--desde":
+                    opcoes.desde = data(nome, valor);
+                    opcoes.desdeInformado = valor;
+                    break;
+                case "--ate":
+                    opcoes.ate = data(nome, valor);
+                    opcoes.ateInformado = valor;
+                    break;
+                case "--tentativas":
+                    opcoes.tentativas = inteiro(nome, valor, 0, 1000);
+                    break;
+                case "--espera-maxima":
+                    opcoes.esperaMaxima = inteiro(nome, valor, 1, 3600);
+                    break;
+                case "--tentativas-mensagem":
+                    opcoes.tentativasMensagem = inteiro(nome, valor, 0, 100);
+                    break;
+                case "--checkpoint-mensagens":
+                    opcoes.checkpointMensagens = inteiro(nome, valor, 1, Integer.MAX_VALUE);
+                    break;
+                case "--checkpoint-segundos":
+                    opcoes.checkpointSegundos = inteiro(nome, valor, 1, 3600);
+                    break;
+                case "--formato-estado":
+                    opcoes.formatoEstado = FormatoEstado.parse(valor);
+                    break;
+                case "--repositorio":
+                    if (valor.equalsIgnoreCase("compacto")) {
+                        opcoes.repositorioCompacto = true;
+                    } else if (valor.equalsIgnoreCase("mapa")) {
+                        opcoes.repositorioCompacto = false;
+                    } else {
+                        throw new IllegalArgumentException("Repositório inválido: " + valor + " (use compacto ou mapa)");
+                    }
+                    break;
+                case "--indice":
+                    opcoes.arquivoIndice = obrigatorio(nome, valor);
+                    break;
+                case "--exportar-indice":
+                    opcoes.exportarIndice = obrigatorio(nome, valor);
+                    break;
+                case "--ordenar":
+                    opcoes.ordenacaoCsv = OrdenacaoCsv.parse(valor);
+                    break;
+                case "--gzip":
+                    opcoes.gzip = true;
+                    break;
+                case "--incremental":
+                    opcoes.incremental = true;
+                    break;
+                case "--alteracoes":
+                    opcoes.arquivoAlteracoes = obrigatorio(nome, valor);
+                    break;
+                case "--memoria-exportacao":
+                    opcoes.memoriaExportacaoMb = inteiro(nome, valor, 1, 1 << 20);
+                    break;
+                case "--progresso":
+                    opcoes.modoProgresso = RenderizadorProgresso.Modo.parse(valor);
+                    break;
+                case "--resumo":
+                    opcoes.arquivoResumo = obrigatorio(nome, valor);
+                    break;
+                case "--sem-teclado":
+                    opcoes.teclado = false;
+                    break;
+                case "--usuario":
+                    opcoes.usuario = obrigatorio(nome, valor);
+                    break;
+                case "--servidor":
+                    opcoes.servidor = obrigatorio(nome, valor);
+                    break;
+                case "--porta":
+                    opcoes.porta = inteiro(nome, valor, 1, 65535);
+                    break;
+                case "--csv":
+                    opcoes.arquivoCsv = obrigatorio(nome, valor);
+                    break;
+                case "--retomar":
+                    if (valor.equalsIgnoreCase("sim") || valor.equalsIgnoreCase("s")) {
+                        opcoes.retomar = true;
+                    } else if (valor.equalsIgnoreCase("nao") || valor.equalsIgnoreCase("não") || valor.equalsIgnoreCase("n")) {
+                        opcoes.retomar = false;
+                    } else {
+                        throw new IllegalArgumentException("Use --retomar=sim ou --retomar=nao");
+                    }
+                    break;
+                case "--continuo":
+                    opcoes.continuo = true;
+                    break;
+                case "--intervalo-exportacao":
+                    opcoes.intervaloExportacao = inteiro(nome, valor, 1, 3600);
+                    break;
+                case "--lote":
+                    opcoes.arquivoLote = obrigatorio(nome, valor);
+                    break;
+                case "--local":
+                    opcoes.origensLocais = new ArrayList<>();
+                    for (String caminho : obrigatorio(nome, valor).split(",")) {
+                        if (!caminho.isBlank()) {
+                            opcoes.origensLocais.add(caminho.trim());
+                        }
+                    }
+                    break;
+                case "--paralelismo":
+                    opcoes.paralelismo = inteiro(nome, valor, 1, 256);
+                    break;
+                case "--converter-estado": {
+                    String[] arquivos = valor.split(",");
+                    if (arquivos.length != 2 || arquivos[0].isBlank() || arquivos[1].isBlank()) {
+                        throw new IllegalArgumentException("Use --converter-estado=ORIGEM,DESTINO");
+                    }
+                    opcoes.converterOrigem = arquivos[0].trim();
+                    opcoes.converterDestino = arquivos[1].trim();
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("Opção desconhecida: " + arg);
+            }
+        }
+        if (opcoes.exportarIndice != null && opcoes.arquivoIndice == null) {
+            throw new IllegalArgumentException("--exportar-indice exige --indice=ARQUIVO");
+        }
+        if (opcoes.arquivoAlteracoes != null && !opcoes.incremental) {
+            throw new IllegalArgumentException("--alteracoes exige --incremental");
+        }
+        if (opcoes.incremental && opcoes.continuo) {
+            throw new IllegalArgumentException("--incremental não se aplica ao --continuo, que já mantém o CSV atualizado");
+        }
+        if (opcoes.desde != null && opcoes.ate != null && opcoes.desde.isAfter(opcoes.ate)) {
+            throw new IllegalArgumentException("--desde deve ser anterior ou igual a --ate");
+        }
+        return opcoes;
+    }
+
+    static List<String> parsePastas(String valor) {
+        List<String> pastas = new ArrayList<>();
+        for (String pasta : valor.split(",")) {
+            if (!pasta.trim().isEmpty()) {
+                pastas.add(pasta.trim());
+            }
+        }
+        if (pastas.isEmpty()) {
+            throw new IllegalArgumentException("Informe ao menos uma pasta");
+        }
+        return pastas;
+    }
+
+    private static String obrigatorio(String nome, String valor) {
+        if (valor.isEmpty()) {
+            throw new IllegalArgumentException("Informe um valor para " + nome);
+        }
+        return valor;
+    }
+
+    /**
+     * Data no formato AAAA-MM-DD, ou "Nd" para N dias antes de hoje.
+     */
+    private static LocalDate data(String nome, String valor) {
+        if (valor.matches("\\d+[dD]")) {
+            return LocalDate.now().minusDays(Long.parseLong(valor.substring(0, valor.length() - 1)));
+        }
+        try {
+            return LocalDate.parse(valor);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Data inválida para " + nome + ": " + valor + " (use AAAA-MM-DD ou Nd)");
+        }
+    }
+
+    private static int inteiro(String nome, String valor, int minimo, int maximo) {
+        try {
+            int numero = Integer.parseInt(valor);
+            if (numero < minimo || numero > maximo) {
+                throw new IllegalArgumentException(nome + " deve estar entre " + minimo + " e " + maximo);
+            }
+            return numero;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Valor inválido para " + nome + ": " + valor);
+        }
+    }
+}
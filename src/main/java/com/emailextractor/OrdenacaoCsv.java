@@ -0,0 +1,37 @@
+package com.emailextractor;
+
+/**
+ * Chave de ordenação das linhas do CSV exportado.
+ */
+enum OrdenacaoCsv {
+
+    /**
+     * Alfabética por e-mail (padrão).
+     */
+    EMAIL,
+
+    /**
+     * Por domínio e, dentro dele, por e-mail.
+     */
+    DOMINIO,
+
+    /**
+     * Do e-mail mais recente para o mais antigo; contatos sem data ficam no fim.
+     */
+    DATA;
+
+    static OrdenacaoCsv parse(String valor) {
+        switch (valor.toLowerCase()) {
+            case "email":
+            case "e-mail":
+                return EMAIL;
+            case "dominio":
+            case "domínio":
+                return DOMINIO;
+            case "data":
+                return DATA;
+            default:
+                throw new IllegalArgumentException("Ordenação inválida: " + valor + " (use email, dominio ou data)");
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.emailextractor;
+
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.FolderClosedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.StoreClosedException;
+import org.eclipse.angus.mail.iap.ConnectionException;
+import org.eclipse.angus.mail.iap.ProtocolException;
+import org.eclipse.angus.mail.iap.Response;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Política de reconexão: quais falhas justificam reconectar e quanto esperar
+ * antes de cada tentativa.
+ *
+ * A espera dobra a cada tentativa seguida, até o teto, e é sorteada entre a
+ * metade e o valor cheio. O sorteio evita que várias conexões (ou várias contas
+ * de um lote) derrubadas juntas pelo mesmo servidor voltem todas no mesmo instante.
+ */
+class ReconexaoImap {
+
+    static final int TENTATIVAS_PADRAO = 8;
+    static final int ESPERA_MAXIMA_PADRAO = 300;
+    private static final long ESPERA_INICIAL_MS = 1000;
+
+    // Códigos de resposta de NO/BYE que sinalizam limite de uso ou indisponibilidade
+    // temporária (RFC 5530; THROTTLED é do Gmail). O texto livre da resposta não é usado
+    private static final Set<String> CODIGOS_LIMITE = Set.of("THROTTLED", "UNAVAILABLE", "LIMIT");
+    // "[CODIGO ...]" logo depois do status, com ou sem a etiqueta e o status na frente
+    private static final Pattern CODIGO_RESPOSTA =
+            Pattern.compile("^(?:\\S+ (?:NO|BYE) )?\\[([A-Za-z0-9.-]+)", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Conexão que continuou caindo depois de todas as tentativas: não deve ser
+     * tentada de novo por quem chamou, apenas salva e reportada.
+     */
+    static class TentativasEsgotadas extends MessagingException {
+        private static final long serialVersionUID = 1L;
+
+        TentativasEsgotadas(String mensagem, Exception causa) {
+            super(mensagem, causa);
+        }
+    }
+
+    private final int tentativas;
+    private final long esperaMaximaMs;
+
+    /**
+     * @param tentativas   tentativas seguidas sem progresso antes de desistir (0 = nunca reconectar)
+     * @param esperaMaxima teto da espera entre tentativas, em segundos
+     */
+    ReconexaoImap(int tentativas, int esperaMaxima) {
+        this.tentativas = tentativas;
+        this.esperaMaximaMs = esperaMaxima * 1000L;
+    }
+
+    /**
+     * Indica se ainda cabe mais uma tentativa depois de {@code falhas} falhas seguidas.
+     */
+    boolean permite(int falhas) {
+        return falhas <= tentativas;
+    }
+
+    int getTentativas() {
+        return tentativas;
+    }
+
+    /**
+     * Espera antes da tentativa {@code falhas} (1 = primeira reconexão), já com o sorteio.
+     */
+    long espera(int falhas) {
+        long teto = Math.min(esperaMaximaMs, ESPERA_INICIAL_MS << Math.min(20, Math.max(0, falhas - 1)));
+        long metade = teto / 2;
+        return metade + ThreadLocalRandom.current().nextLong(teto - metade + 1);
+    }
+
+    /**
+     * Falhas de conexão: pasta ou conexão fechadas, queda de socket, tempo esgotado
+     * ({@code mail.imaps.timeout}) ou recusa temporária do servidor. Erros de
+     * protocolo e de dados (UIDVALIDITY mudou, pasta inexistente) não são recuperáveis.
+     */
+    static boolean isFalhaConexao(Throwable erro) {
+        for (Throwable causa = erro; causa != null; causa = causa.getCause()) {
+            if (causa instanceof TentativasEsgotadas) {
+                return false;
+            }
+            if (causa instanceof FolderClosedException || causa instanceof StoreClosedException
+                    || causa instanceof ConnectionException || causa instanceof IOException) {
+                return true;
+            }
+            if (causa instanceof IllegalStateException && causa.getMessage() != null
+                    && causa.getMessage().contains("closed")) {
+                // IMAPFolder recusa operações depois que a conexão cai e a pasta é fechada
+                return true;
+            }
+        }
+        return isLimite(erro);
+    }
+
+    /**
+     * Recusa explícita por limite de uso do provedor: uma resposta NO/BYE do servidor
+     * com um dos códigos de {@link #CODIGOS_LIMITE}. Outras exceções, mesmo com
+     * "too many" ou "exceeded" na mensagem, não contam.
+     */
+    static boolean isLimite(Throwable erro) {
+        for (Throwable causa = erro; causa != null; causa = causa.getCause()) {
+            if (causa instanceof TentativasEsgotadas) {
+                return false;
+            }
+            String codigo = null;
+            if (causa instanceof ProtocolException) {
+                Response resposta = ((ProtocolException) causa).getResponse();
+                if (resposta != null && (resposta.isNO() || resposta.isBYE())) {
+                    codigo = codigoResposta(resposta.toString());
+                }
+            } else if (causa instanceof AuthenticationFailedException) {
+                // O LOGIN recusado chega só com o texto da resposta NO, sem a resposta original
+                codigo = codigoResposta(causa.getMessage());
+            }
+            if (codigo != null && CODIGOS_LIMITE.contains(codigo)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String codigoResposta(String texto) {
+        if (texto == null) {
+            return null;
+        }
+        Matcher matcher = CODIGO_RESPOSTA.matcher(texto.trim());
+        return matcher.find() ? matcher.group(1).toUpperCase(Locale.ROOT) : null;
+    }
+}
@@ -0,0 +1,196 @@
+package com.emailextractor;
+
+import java.io.PrintStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * Mostra o progresso em uma thread própria, amostrando contadores atômicos em
+ * intervalo fixo. O laço de extração só atualiza os contadores; nunca formata
+ * texto nem espera pelo console.
+ *
+ * Em terminal desenha uma barra na mesma linha 4 vezes por segundo; com a saída
+ * redirecionada para arquivo ou pipe imprime uma linha simples a cada poucos segundos.
+ */
+class RenderizadorProgresso {
+
+    static final long INTERVALO_BARRA_MS = 250;
+    static final long INTERVALO_LINHAS_MS = 10_000;
+    private static final int BARRA_TAMANHO = 40;
+    // Amostras usadas na taxa (janela deslizante de ~5 s na barra)
+    private static final int AMOSTRAS_TAXA = 20;
+    private static final String CHEIO = "=".repeat(BARRA_TAMANHO);
+    private static final String VAZIO = " ".repeat(BARRA_TAMANHO);
+
+    /**
+     * Como o progresso é exibido.
+     */
+    enum Modo {
+        /** Barra quando há terminal, linhas caso contrário. */
+        AUTO,
+        BARRA,
+        LINHAS;
+
+        static Modo parse(String valor) {
+            switch (valor.toLowerCase()) {
+                case "auto":
+                    return AUTO;
+                case "barra":
+                    return BARRA;
+                case "linhas":
+                    return LINHAS;
+                default:
+                    throw new IllegalArgumentException("Modo de progresso inválido: " + valor
+                            + " (use auto, barra ou linhas)");
+            }
+        }
+    }
+
+    private final AtomicInteger processadas = new AtomicInteger();
+    private final AtomicInteger total = new AtomicInteger();
+    private final IntSupplier contatos;
+    private final BooleanSupplier silenciado;
+    private final boolean barra;
+    private final PrintStream saida;
+    private final ScheduledExecutorService executor;
+
+    // Acessados apenas pela thread de renderização (e por parar(), após encerrá-la)
+    private final long[] instantes = new long[AMOSTRAS_TAXA];
+    private final int[] contagens = new int[AMOSTRAS_TAXA];
+    private int amostras;
+    private int ultimoDesenhado = -1;
+    private int larguraAnterior;
+
+    RenderizadorProgresso(Modo modo, IntSupplier contatos, BooleanSupplier silenciado) {
+        this.contatos = contatos;
+        this.silenciado = silenciado;
+        this.barra = modo == Modo.BARRA || (modo == Modo.AUTO && System.console() != null);
+        this.saida = System.out;
+        this.executor = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "progresso");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void iniciar() {
+        long intervalo = barra ? INTERVALO_BARRA_MS : INTERVALO_LINHAS_MS;
+        executor.scheduleAtFixedRate(this::amostrar, 0, intervalo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Publica os contadores atuais; barato o bastante para ser chamado a cada mensagem.
+     */
+    void atualizar(int processadas, int total) {
+        this.processadas.lazySet(processadas);
+        this.total.lazySet(total);
+    }
+
+    /**
+     * Encerra a thread e desenha o estado final, terminando a linha da barra.
+     */
+    void parar() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ultimoDesenhado = -1;
+        amostrar();
+        if (barra) {
+            saida.println();
+        }
+    }
+
+    private void amostrar() {
+        int atual = processadas.get();
+        int totalAtual = Math.max(total.get(), atual);
+        long agora = System.nanoTime();
+        int posicao = amostras % AMOSTRAS_TAXA;
+        instantes[posicao] = agora;
+        contagens[posicao] = atual;
+        amostras++;
+
+        if (totalAtual == 0 || silenciado.getAsBoolean()) {
+            return;
+        }
+        if (barra && atual == ultimoDesenhado) {
+            return;
+        }
+        ultimoDesenhado = atual;
+
+        double taxa = taxa(agora, atual);
+        String texto = barra ? desenharBarra(atual, totalAtual, taxa) : desenharLinha(atual, totalAtual, taxa);
+        if (barra) {
+            // Espaços apagam o resto de uma linha anterior mais longa
+            int sobra = Math.max(0, larguraAnterior - texto.length());
+            larguraAnterior = texto.length();
+            saida.print("\r" + texto + " ".repeat(sobra));
+        } else {
+            saida.println(texto);
+        }
+        saida.flush();
+    }
+
+    /**
+     * Mensagens por segundo entre a amostra mais antiga guardada e a atual.
+     */
+    private double taxa(long agora, int atual) {
+        int maisAntiga = amostras > AMOSTRAS_TAXA ? amostras % AMOSTRAS_TAXA : 0;
+        long decorrido = agora - instantes[maisAntiga];
+        if (decorrido <= 0) {
+            return 0;
+        }
+        return (atual - contagens[maisAntiga]) * 1e9 / decorrido;
+    }
+
+    private String desenharBarra(int atual, int totalAtual, double taxa) {
+        int porcentagem = (int) (atual * 100L / totalAtual);
+        int preenchido = (int) (atual * (long) BARRA_TAMANHO / totalAtual);
+        StringBuilder texto = new StringBuilder(120);
+        texto.append('[').append(CHEIO, 0, preenchido).append(VAZIO, preenchido, BARRA_TAMANHO).append("] ");
+        if (porcentagem < 100) texto.append(' ');
+        if (porcentagem < 10) texto.append(' ');
+        texto.append(porcentagem).append("% (").append(atual).append('/').append(totalAtual).append(')');
+        acrescentarTaxa(texto, atual, totalAtual, taxa);
+        return texto.toString();
+    }
+
+    private String desenharLinha(int atual, int totalAtual, double taxa) {
+        StringBuilder texto = new StringBuilder(120);
+        texto.append("Processadas: ").append(atual).append('/').append(totalAtual)
+                .append(" (").append(atual * 100L / totalAtual).append("%)");
+        acrescentarTaxa(texto, atual, totalAtual, taxa);
+        return texto.toString();
+    }
+
+    private void acrescentarTaxa(StringBuilder texto, int atual, int totalAtual, double taxa) {
+        texto.append(" | ").append(Math.round(taxa)).append(" msg/s | ETA ");
+        int restantes = totalAtual - atual;
+        if (restantes == 0) {
+            texto.append("00:00:00");
+        } else if (taxa < 0.01) {
+            texto.append("--:--:--");
+        } else {
+            acrescentarDuracao(texto, (long) (restantes / taxa));
+        }
+        texto.append(" | Contatos: ").append(contatos.getAsInt());
+    }
+
+    private static void acrescentarDuracao(StringBuilder texto, long segundos) {
+        long horas = segundos / 3600;
+        long minutos = segundos / 60 % 60;
+        long resto = segundos % 60;
+        if (horas < 10) texto.append('0');
+        texto.append(horas).append(':');
+        if (minutos < 10) texto.append('0');
+        texto.append(minutos).append(':');
+        if (resto < 10) texto.append('0');
+        texto.append(resto);
+    }
+}
@@ -0,0 +1,53 @@
+package com.emailextractor;
+
+/**
+ * Armazenamento dos contatos encontrados durante a extração.
+ *
+ * Datas são epoch millis ({@link #SEM_DATA} quando ausente). As implementações
+ * devem ser seguras para várias conexões registrando ao mesmo tempo e para o
+ * gravador de estado percorrendo os contatos enquanto a extração continua.
+ */
+interface RepositorioContatos {
+
+    long SEM_DATA = Long.MIN_VALUE;
+
+    /**
+     * Recebe os dados de um contato.
+     */
+    interface ConsumidorContato {
+        void contato(String email, String nome, long data);
+    }
+
+    /**
+     * Registra uma ocorrência do endereço: a data mais recente vence e o nome não
+     * vazio da mensagem de menor ordem (pasta, UID) vence. Como nenhuma regra depende
+     * da ordem de chegada, o resultado é o mesmo com várias conexões em paralelo.
+     *
+     * @return true se o contato é novo ou mudou
+     */
+    boolean registrar(String email, String nome, long data, long ordem);
+
+    /**
+     * Restaura um contato de uma base ou journal gravado anteriormente. O nome
+     * gravado, se não vazio, substitui o atual (é mais recente); as datas são
+     * mescladas, o que torna a releitura idempotente.
+     */
+    void restaurar(String email, String nome, long data);
+
+    /**
+     * Entrega os dados atuais do contato ao consumidor.
+     *
+     * @return false se o endereço não está no repositório
+     */
+    boolean ler(String email, ConsumidorContato consumidor);
+
+    /**
+     * Percorre todos os contatos, sem ordem definida. Contatos registrados durante
+     * o percurso podem ou não ser entregues.
+     */
+    void paraCada(ConsumidorContato consumidor);
+
+    int tamanho();
+
+    void limpar();
+}
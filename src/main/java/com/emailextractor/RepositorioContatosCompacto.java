@@ -0,0 +1,347 @@
+package com.emailextractor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Repositório de contatos compacto para caixas com milhões de remetentes.
+ *
+ * Cada contato é um índice em arrays paralelos de primitivos (hash, parte local,
+ * domínio, nome, data e ordem do nome), localizado por uma tabela de endereçamento
+ * aberto com sondagem linear. Partes locais e nomes ficam em UTF-8 numa arena de
+ * páginas de bytes, prefixados pelo tamanho; domínios são guardados uma única vez
+ * e referenciados por número. O custo fica em torno de 70 bytes por contato, contra
+ * mais de 250 de um mapa de objetos.
+ *
+ * O acesso é sincronizado no próprio repositório; a codificação dos textos em UTF-8
+ * acontece fora do bloqueio.
+ */
+class RepositorioContatosCompacto implements RepositorioContatos {
+
+    private static final int BITS_PAGINA = 20;
+    private static final int TAMANHO_PAGINA = 1 << BITS_PAGINA;
+    private static final int MAXIMO_PAGINAS = 1 << (31 - BITS_PAGINA);
+    private static final int CAPACIDADE_INICIAL = 1024;
+    private static final float CARGA_MAXIMA = 0.6f;
+    // Contatos decodificados por vez ao percorrer o repositório fora do bloqueio
+    private static final int LOTE_PERCURSO = 4096;
+
+    private static final int SEM_DOMINIO = -1;
+    private static final int SEM_NOME = -1;
+
+    // Arena: endereço = (página << BITS_PAGINA) | posição
+    private byte[][] paginas = new byte[16][];
+    private int paginaAtual = -1;
+    private int posicaoPagina = TAMANHO_PAGINA;
+
+    // Domínios deduplicados
+    private final Map<String, Integer> indiceDominios = new HashMap<>();
+    private final List<String> dominios = new ArrayList<>();
+
+    // Contatos em arrays paralelos, indexados pela ordem de inserção
+    private int quantidade;
+    private int[] hashes = new int[CAPACIDADE_INICIAL];
+    private int[] locais = new int[CAPACIDADE_INICIAL];
+    private int[] dominiosContato = new int[CAPACIDADE_INICIAL];
+    private int[] nomes = new int[CAPACIDADE_INICIAL];
+    private long[] datas = new long[CAPACIDADE_INICIAL];
+    private long[] ordens = new long[CAPACIDADE_INICIAL];
+
+    // Tabela de endereçamento aberto: índice do contato + 1 (0 = vazio)
+    private int[] tabela = new int[CAPACIDADE_INICIAL * 2];
+
+    /**
+     * Endereço já separado e codificado, preparado fora do bloqueio.
+     */
+    private static final class Chave {
+        final int hash;
+        final byte[] local;
+        final String dominio;
+
+        Chave(String email) {
+            this.hash = espalhar(email.hashCode());
+            int arroba = email.lastIndexOf('@');
+            this.local = (arroba < 0 ? email : email.substring(0, arroba)).getBytes(StandardCharsets.UTF_8);
+            this.dominio = arroba < 0 ? null : email.substring(arroba + 1);
+        }
+    }
+
+    @Override
+    public boolean registrar(String email, String nome, long data, long ordem) {
+        Chave chave = new Chave(email);
+        byte[] nomeUtf8 = utf8(nome);
+        synchronized (this) {
+            int id = localizar(chave);
+            if (id < 0) {
+                inserir(chave, nomeUtf8, data, ordem);
+                return true;
+            }
+            boolean novaData = data > datas[id];
+            // O mesmo nome vindo de uma ordem menor também baixa a ordem guardada, mas
+            // não conta como alteração (nada muda no que é exportado)
+            boolean menorOrdem = nomeUtf8 != null && (nomes[id] == SEM_NOME || ordem < ordens[id]);
+            boolean novoNome = menorOrdem && !textoIgual(nomes[id], nomeUtf8);
+            if (novaData) {
+                datas[id] = data;
+            }
+            if (novoNome) {
+                nomes[id] = gravar(nomeUtf8);
+            }
+            if (menorOrdem) {
+                ordens[id] = ordem;
+            }
+            return novaData || novoNome;
+        }
+    }
+
+    @Override
+    public void restaurar(String email, String nome, long data) {
+        Chave chave = new Chave(email);
+        byte[] nomeUtf8 = utf8(nome);
+        synchronized (this) {
+            int id = localizar(chave);
+            if (id < 0) {
+                inserir(chave, nomeUtf8, data, 0);
+                return;
+            }
+            datas[id] = Math.max(datas[id], data);
+            if (nomeUtf8 != null && !textoIgual(nomes[id], nomeUtf8)) {
+                nomes[id] = gravar(nomeUtf8);
+            }
+            ordens[id] = 0;
+        }
+    }
+
+    @Override
+    public boolean ler(String email, ConsumidorContato consumidor) {
+        Chave chave = new Chave(email);
+        String nome;
+        long data;
+        synchronized (this) {
+            int id = localizar(chave);
+            if (id < 0) {
+                return false;
+            }
+            nome = lerTexto(nomes[id]);
+            data = datas[id];
+        }
+        consumidor.contato(email, nome, data);
+        return true;
+    }
+
+    @Override
+    public void paraCada(ConsumidorContato consumidor) {
+        String[] emails = new String[LOTE_PERCURSO];
+        String[] nomesLote = new String[LOTE_PERCURSO];
+        long[] datasLote = new long[LOTE_PERCURSO];
+        int inicio = 0;
+        while (true) {
+            int lidos;
+            synchronized (this) {
+                lidos = Math.min(quantidade - inicio, LOTE_PERCURSO);
+                for (int i = 0; i < lidos; i++) {
+                    emails[i] = lerEmail(inicio + i);
+                    nomesLote[i] = lerTexto(nomes[inicio + i]);
+                    datasLote[i] = datas[inicio + i];
+                }
+            }
+            if (lidos <= 0) {
+                return;
+            }
+            // O consumidor roda fora do bloqueio para não travar a extração
+            for (int i = 0; i < lidos; i++) {
+                consumidor.contato(emails[i], nomesLote[i], datasLote[i]);
+            }
+            inicio += lidos;
+        }
+    }
+
+    @Override
+    public synchronized int tamanho() {
+        return quantidade;
+    }
+
+    @Override
+    public synchronized void limpar() {
+        paginas = new byte[16][];
+        paginaAtual = -1;
+        posicaoPagina = TAMANHO_PAGINA;
+        indiceDominios.clear();
+        dominios.clear();
+        quantidade = 0;
+        hashes = new int[CAPACIDADE_INICIAL];
+        locais = new int[CAPACIDADE_INICIAL];
+        dominiosContato = new int[CAPACIDADE_INICIAL];
+        nomes = new int[CAPACIDADE_INICIAL];
+        datas = new long[CAPACIDADE_INICIAL];
+        ordens = new long[CAPACIDADE_INICIAL];
+        tabela = new int[CAPACIDADE_INICIAL * 2];
+    }
+
+    // ---- Tabela de endereçamento aberto ----
+
+    private int localizar(Chave chave) {
+        int dominio = SEM_DOMINIO;
+        if (chave.dominio != null) {
+            Integer id = indiceDominios.get(chave.dominio);
+            if (id == null) {
+                return -1; // domínio nunca visto: o endereço também não
+            }
+            dominio = id;
+        }
+        int mascara = tabela.length - 1;
+        for (int i = chave.hash & mascara; ; i = (i + 1) & mascara) {
+            int entrada = tabela[i];
+            if (entrada == 0) {
+                return -1;
+            }
+            int id = entrada - 1;
+            if (hashes[id] == chave.hash && dominiosContato[id] == dominio && textoIgual(locais[id], chave.local)) {
+                return id;
+            }
+        }
+    }
+
+    private void inserir(Chave chave, byte[] nomeUtf8, long data, long ordem) {
+        if (quantidade == hashes.length) {
+            int capacidade = hashes.length + (hashes.length >> 1);
+            hashes = Arrays.copyOf(hashes, capacidade);
+            locais = Arrays.copyOf(locais, capacidade);
+            dominiosContato = Arrays.copyOf(dominiosContato, capacidade);
+            nomes = Arrays.copyOf(nomes, capacidade);
+            datas = Arrays.copyOf(datas, capacidade);
+            ordens = Arrays.copyOf(ordens, capacidade);
+        }
+        int id = quantidade++;
+        hashes[id] = chave.hash;
+        locais[id] = gravar(chave.local);
+        dominiosContato[id] = chave.dominio != null ? idDominio(chave.dominio) : SEM_DOMINIO;
+        nomes[id] = nomeUtf8 != null ? gravar(nomeUtf8) : SEM_NOME;
+        datas[id] = data;
+        ordens[id] = ordem;
+
+        if (quantidade > tabela.length * CARGA_MAXIMA) {
+            tabela = new int[tabela.length * 2];
+            for (int i = 0; i < quantidade; i++) {
+                posicionar(i);
+            }
+        } else {
+            posicionar(id);
+        }
+    }
+
+    private void posicionar(int id) {
+        int mascara = tabela.length - 1;
+        int i = hashes[id] & mascara;
+        while (tabela[i] != 0) {
+            i = (i + 1) & mascara;
+        }
+        tabela[i] = id + 1;
+    }
+
+    private int idDominio(String dominio) {
+        Integer id = indiceDominios.get(dominio);
+        if (id == null) {
+            id = dominios.size();
+            dominios.add(dominio);
+            indiceDominios.put(dominio, id);
+        }
+        return id;
+    }
+
+    private static int espalhar(int h) {
+        // Mistura os bits altos nos baixos, já que a máscara usa só os baixos
+        return h ^ (h >>> 16);
+    }
+
+    // ---- Arena de textos ----
+
+    private static byte[] utf8(String texto) {
+        return texto == null || texto.isEmpty() ? null : texto.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copia o texto para a arena, prefixado pelo tamanho (varint), e devolve o endereço.
+     */
+    private int gravar(byte[] texto) {
+        int necessario = texto.length + 5;
+        // O endereço só comporta posições iniciais dentro do tamanho padrão de página
+        if (posicaoPagina >= TAMANHO_PAGINA || posicaoPagina + necessario > paginaAtualTamanho()) {
+            novaPagina(Math.max(TAMANHO_PAGINA, necessario));
+        }
+        byte[] pagina = paginas[paginaAtual];
+        int endereco = (paginaAtual << BITS_PAGINA) | posicaoPagina;
+        int tamanho = texto.length;
+        while ((tamanho & ~0x7F) != 0) {
+            pagina[posicaoPagina++] = (byte) ((tamanho & 0x7F) | 0x80);
+            tamanho >>>= 7;
+        }
+        pagina[posicaoPagina++] = (byte) tamanho;
+        System.arraycopy(texto, 0, pagina, posicaoPagina, texto.length);
+        posicaoPagina += texto.length;
+        return endereco;
+    }
+
+    private int paginaAtualTamanho() {
+        return paginaAtual < 0 ? 0 : paginas[paginaAtual].length;
+    }
+
+    private void novaPagina(int tamanho) {
+        if (paginaAtual + 1 >= MAXIMO_PAGINAS) {
+            throw new IllegalStateException("Limite de memória do repositório de contatos atingido");
+        }
+        paginaAtual++;
+        if (paginaAtual == paginas.length) {
+            paginas = Arrays.copyOf(paginas, paginas.length * 2);
+        }
+        paginas[paginaAtual] = new byte[tamanho];
+        posicaoPagina = 0;
+    }
+
+    /**
+     * Posição do primeiro byte do texto e seu tamanho, empacotados em um long.
+     */
+    private long localizarTexto(int endereco) {
+        byte[] pagina = paginas[endereco >>> BITS_PAGINA];
+        int posicao = endereco & (TAMANHO_PAGINA - 1);
+        int tamanho = 0;
+        int deslocamento = 0;
+        byte b;
+        do {
+            b = pagina[posicao++];
+            tamanho |= (b & 0x7F) << deslocamento;
+            deslocamento += 7;
+        } while (b < 0);
+        return ((long) posicao << 32) | tamanho;
+    }
+
+    private boolean textoIgual(int endereco, byte[] texto) {
+        if (endereco == SEM_NOME) {
+            return false;
+        }
+        long posicaoTamanho = localizarTexto(endereco);
+        int posicao = (int) (posicaoTamanho >>> 32);
+        int tamanho = (int) posicaoTamanho;
+        return tamanho == texto.length
+                && Arrays.equals(paginas[endereco >>> BITS_PAGINA], posicao, posicao + tamanho, texto, 0, tamanho);
+    }
+
+    private String lerTexto(int endereco) {
+        if (endereco == SEM_NOME) {
+            return "";
+        }
+        long posicaoTamanho = localizarTexto(endereco);
+        return new String(paginas[endereco >>> BITS_PAGINA], (int) (posicaoTamanho >>> 32), (int) posicaoTamanho,
+                StandardCharsets.UTF_8);
+    }
+
+    private String lerEmail(int id) {
+        String local = lerTexto(locais[id]);
+        int dominio = dominiosContato[id];
+        return dominio == SEM_DOMINIO ? local : local + "@" + dominios.get(dominio);
+    }
+}
@@ -0,0 +1,478 @@
+package com.emailextractor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Repositório de contatos persistente num banco H2 embutido (um arquivo
+ * {@code .mv.db}), que sobrevive entre execuções e pode ser compartilhado por
+ * várias contas.
+ *
+ * As ocorrências são acumuladas num lote em memória, já mescladas por endereço
+ * com as mesmas regras do repositório em memória, e gravadas com um MERGE em lote
+ * quando o lote enche ou a cada checkpoint ({@link #sincronizar()}). O heap fica
+ * limitado ao lote, qualquer que seja o número de contatos no índice.
+ *
+ * Nomes gravados por execuções anteriores valem como contatos restaurados: só são
+ * substituídos se estiverem vazios. Para isso cada execução recebe um número e a
+ * ordem (pasta, UID) do nome só é comparada dentro da mesma execução.
+ *
+ * O índice também guarda o checkpoint de cada pasta por conta, para que uma
+ * execução nova busque apenas as mensagens chegadas depois da anterior.
+ */
+class RepositorioContatosIndice implements RepositorioContatos {
+
+    static final String EXTENSAO = ".mv.db";
+    // Endereços distintos acumulados antes de gravar no banco
+    private static final int LOTE = 4096;
+    private static final int LINHAS_POR_LEITURA = 1000;
+
+    private static final String[] ESQUEMA = {
+        "CREATE TABLE IF NOT EXISTS contatos ("
+                + "email VARCHAR PRIMARY KEY, dominio VARCHAR NOT NULL, nome VARCHAR NOT NULL, "
+                + "data_ultimo_email BIGINT NOT NULL, execucao INT NOT NULL, ordem_nome BIGINT NOT NULL)",
+        "CREATE TABLE IF NOT EXISTS checkpoints ("
+                + "conta VARCHAR, perfil VARCHAR, pasta VARCHAR, "
+                + "uid_validity BIGINT NOT NULL, ultimo_uid BIGINT NOT NULL, PRIMARY KEY (conta, perfil, pasta))",
+        "CREATE SEQUENCE IF NOT EXISTS execucoes",
+        // Assinatura (STATUS) da pasta na última conclusão; 0 = desconhecida
+        "ALTER TABLE checkpoints ADD COLUMN IF NOT EXISTS uid_next BIGINT NOT NULL DEFAULT 0",
+        "ALTER TABLE checkpoints ADD COLUMN IF NOT EXISTS mensagens BIGINT NOT NULL DEFAULT 0",
+        "ALTER TABLE checkpoints ADD COLUMN IF NOT EXISTS highest_modseq BIGINT NOT NULL DEFAULT 0",
+        // Fila de falhas da pasta, como "uid:tentativas" separados por vírgula
+        "ALTER TABLE checkpoints ADD COLUMN IF NOT EXISTS falhas VARCHAR NOT NULL DEFAULT ''"
+    };
+
+    // Mesmas regras de atualizarSeNecessario: data mais recente; nome não vazio da menor
+    // ordem na mesma execução, ou qualquer nome se o atual estiver vazio. Um contato
+    // restaurado (substituir) impõe o nome, como no repositório em memória. O mesmo nome
+    // vindo de uma ordem menor na mesma execução só baixa ordem_nome.
+    private static final String SQL_MERGE =
+            "MERGE INTO contatos c USING (VALUES (CAST(? AS VARCHAR), CAST(? AS VARCHAR), CAST(? AS VARCHAR), "
+                    + "CAST(? AS BIGINT), CAST(? AS INT), CAST(? AS BIGINT), CAST(? AS BOOLEAN))) "
+                    + "v(email, dominio, nome, data_ultimo_email, execucao, ordem_nome, substituir) "
+                    + "ON c.email = v.email "
+                    + "WHEN MATCHED THEN UPDATE SET "
+                    + "data_ultimo_email = GREATEST(c.data_ultimo_email, v.data_ultimo_email), "
+                    + "nome = CASE WHEN " + novoNome() + " THEN v.nome ELSE c.nome END, "
+                    + "execucao = CASE WHEN " + novoNome() + " THEN v.execucao ELSE c.execucao END, "
+                    + "ordem_nome = CASE WHEN " + novoNome() + " THEN v.ordem_nome "
+                    + "WHEN v.nome <> '' AND v.nome = c.nome AND c.execucao = v.execucao "
+                    + "THEN LEAST(c.ordem_nome, v.ordem_nome) ELSE c.ordem_nome END "
+                    + "WHEN NOT MATCHED THEN INSERT (email, dominio, nome, data_ultimo_email, execucao, ordem_nome) "
+                    + "VALUES (v.email, v.dominio, v.nome, v.data_ultimo_email, v.execucao, v.ordem_nome)";
+
+    private static String novoNome() {
+        return "(v.nome <> '' AND v.nome <> c.nome AND (v.substituir OR c.nome = '' "
+                + "OR (c.execucao = v.execucao AND v.ordem_nome < c.ordem_nome)))";
+    }
+
+    /**
+     * Ocorrências de um endereço ainda não gravadas, já mescladas entre si.
+     */
+    private static final class Pendente {
+        String nome;
+        long data;
+        long ordemNome;
+        // Veio de uma base ou journal: o nome, se não vazio, substitui o gravado
+        boolean substituir;
+
+        Pendente(String nome, long data, long ordemNome, boolean substituir) {
+            this.nome = nome != null ? nome : "";
+            this.data = data;
+            this.ordemNome = ordemNome;
+            this.substituir = substituir;
+        }
+
+        boolean atualizarSeNecessario(String nome, long data, long ordem) {
+            boolean novaData = data > this.data;
+            // O mesmo nome com ordem menor também baixa a ordem (vai para ordem_nome no MERGE)
+            boolean menorOrdem = nome != null && !nome.isEmpty()
+                    && (this.nome.isEmpty() || ordem < this.ordemNome);
+            boolean novoNome = menorOrdem && !nome.equals(this.nome);
+            if (novaData) {
+                this.data = data;
+            }
+            if (novoNome) {
+                this.nome = nome;
+            }
+            if (menorOrdem) {
+                this.ordemNome = ordem;
+            }
+            return novaData || novoNome;
+        }
+    }
+
+    /**
+     * Recebe o checkpoint gravado de uma pasta.
+     */
+    interface ConsumidorCheckpoint {
+        /**
+         * @param assinatura STATUS da pasta na última conclusão, ou null
+         * @param falhas     UIDs que falharam e ainda serão buscados de novo -> tentativas feitas
+         */
+        void checkpoint(String pasta, long uidValidity, long ultimoUid, AssinaturaPasta assinatura,
+                TreeMap<Long, Integer> falhas);
+    }
+
+    private final Path arquivo;
+    // Escrita (lotes, checkpoints e consultas avulsas, sem autocommit) e leitura
+    // (percursos longos, num snapshot MVCC que não bloqueia a gravação dos lotes)
+    private final Connection escrita;
+    private final Connection leitura;
+    private final int execucao;
+
+    // Registros concorrentes tomam o bloqueio compartilhado; a gravação do lote, o exclusivo
+    private final ReadWriteLock bloqueio = new ReentrantReadWriteLock();
+    private final Map<String, Pendente> pendentes = new ConcurrentHashMap<>();
+    // Contatos no banco na última gravação do lote
+    private volatile int contagem;
+
+    private RepositorioContatosIndice(Path arquivo, Connection escrita, Connection leitura) throws SQLException {
+        this.arquivo = arquivo;
+        this.escrita = escrita;
+        this.leitura = leitura;
+        try (Statement comando = escrita.createStatement()) {
+            for (String sql : ESQUEMA) {
+                comando.execute(sql);
+            }
+            try (ResultSet proxima = comando.executeQuery("SELECT NEXT VALUE FOR execucoes")) {
+                proxima.next();
+                this.execucao = proxima.getInt(1);
+            }
+        }
+        escrita.commit();
+        try (Statement comando = leitura.createStatement()) {
+            // Percursos sem ORDER BY (ou pela chave) são entregues à medida que são lidos
+            comando.execute("SET LAZY_QUERY_EXECUTION TRUE");
+        }
+        this.contagem = contar();
+    }
+
+    /**
+     * Abre (ou cria) o índice; a extensão {@value #EXTENSAO} é opcional no nome.
+     */
+    static RepositorioContatosIndice abrir(Path arquivo) throws IOException {
+        String caminho = arquivo.toAbsolutePath().toString();
+        if (caminho.endsWith(EXTENSAO)) {
+            caminho = caminho.substring(0, caminho.length() - EXTENSAO.length());
+        }
+        String url = "jdbc:h2:file:" + caminho;
+        Connection escrita = null;
+        try {
+            escrita = DriverManager.getConnection(url);
+            escrita.setAutoCommit(false);
+            Connection leitura = DriverManager.getConnection(url);
+            return new RepositorioContatosIndice(Path.of(caminho + EXTENSAO), escrita, leitura);
+        } catch (SQLException e) {
+            if (escrita != null) {
+                try {
+                    escrita.close();
+                } catch (SQLException ignorada) {
+                    // Falha na abertura já reportada
+                }
+            }
+            throw new IOException("Não foi possível abrir o índice de contatos " + arquivo + ": " + e.getMessage(), e);
+        }
+    }
+
+    Path getArquivo() {
+        return arquivo;
+    }
+
+    @Override
+    public boolean registrar(String email, String nome, long data, long ordem) {
+        boolean[] alterado = new boolean[1];
+        bloqueio.readLock().lock();
+        try {
+            pendentes.compute(email, (chave, pendente) -> {
+                if (pendente == null) {
+                    alterado[0] = true;
+                    return new Pendente(nome, data, ordem, false);
+                }
+                alterado[0] = pendente.atualizarSeNecessario(nome, data, ordem);
+                return pendente;
+            });
+        } finally {
+            bloqueio.readLock().unlock();
+        }
+        if (pendentes.size() >= LOTE) {
+            gravarLote(false);
+        }
+        return alterado[0];
+    }
+
+    @Override
+    public void restaurar(String email, String nome, long data) {
+        bloqueio.readLock().lock();
+        try {
+            pendentes.compute(email, (chave, pendente) -> {
+                if (pendente == null) {
+                    return new Pendente(nome, data, 0, true);
+                }
+                if (nome != null && !nome.isEmpty()) {
+                    pendente.nome = nome;
+                    pendente.ordemNome = 0;
+                    pendente.substituir = true;
+                }
+                pendente.data = Math.max(data, pendente.data);
+                return pendente;
+            });
+        } finally {
+            bloqueio.readLock().unlock();
+        }
+        if (pendentes.size() >= LOTE) {
+            gravarLote(false);
+        }
+    }
+
+    /**
+     * Grava o lote pendente e confirma a transação. Chamado a cada checkpoint: depois
+     * dele, tudo o que foi registrado até aqui está no disco.
+     */
+    void sincronizar() throws IOException {
+        try {
+            gravarLote(true);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Grava o lote se ele ainda estiver cheio (ou sempre, se {@code forcar}); outra
+     * thread pode tê-lo gravado enquanto esta esperava o bloqueio.
+     */
+    private void gravarLote(boolean forcar) {
+        bloqueio.writeLock().lock();
+        try {
+            if (!forcar && pendentes.size() < LOTE) {
+                return;
+            }
+            if (!pendentes.isEmpty()) {
+                try (PreparedStatement merge = escrita.prepareStatement(SQL_MERGE)) {
+                    for (Map.Entry<String, Pendente> entrada : pendentes.entrySet()) {
+                        String email = entrada.getKey();
+                        Pendente pendente = entrada.getValue();
+                        merge.setString(1, email);
+                        merge.setString(2, email.substring(email.lastIndexOf('@') + 1));
+                        merge.setString(3, pendente.nome);
+                        merge.setLong(4, pendente.data);
+                        merge.setInt(5, execucao);
+                        merge.setLong(6, pendente.ordemNome);
+                        merge.setBoolean(7, pendente.substituir);
+                        merge.addBatch();
+                    }
+                    merge.executeBatch();
+                }
+                pendentes.clear();
+            }
+            escrita.commit();
+            contagem = contar();
+        } catch (SQLException e) {
+            throw new UncheckedIOException(new IOException("Erro ao gravar no índice de contatos: " + e.getMessage(), e));
+        } finally {
+            bloqueio.writeLock().unlock();
+        }
+    }
+
+    private int contar() throws SQLException {
+        try (Statement comando = escrita.createStatement();
+             ResultSet resultado = comando.executeQuery("SELECT COUNT(*) FROM contatos")) {
+            resultado.next();
+            return resultado.getInt(1);
+        }
+    }
+
+    @Override
+    public boolean ler(String email, ConsumidorContato consumidor) {
+        gravarLote(true);
+        bloqueio.writeLock().lock();
+        try (PreparedStatement consulta = escrita.prepareStatement(
+                "SELECT email, nome, data_ultimo_email FROM contatos WHERE email = ?")) {
+            consulta.setString(1, email);
+            try (ResultSet resultado = consulta.executeQuery()) {
+                if (!resultado.next()) {
+                    return false;
+                }
+                consumidor.contato(resultado.getString(1), resultado.getString(2), resultado.getLong(3));
+                return true;
+            }
+        } catch (SQLException e) {
+            throw new UncheckedIOException(new IOException("Erro ao ler o índice de contatos: " + e.getMessage(), e));
+        } finally {
+            bloqueio.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Percorre o índice depois de gravar o lote pendente. A leitura vê um snapshot do
+     * banco, então lotes gravados durante o percurso não são entregues.
+     */
+    @Override
+    public void paraCada(ConsumidorContato consumidor) {
+        percorrer("SELECT email, nome, data_ultimo_email FROM contatos", consumidor);
+    }
+
+    /**
+     * Percorre o índice já na ordem do CSV: o banco ordena (pela chave primária, no
+     * caso do e-mail), sem a ordenação externa do {@link ExportadorCsv}.
+     */
+    void paraCadaOrdenado(OrdenacaoCsv ordenacao, ConsumidorContato consumidor) {
+        String ordem;
+        switch (ordenacao) {
+            case DOMINIO:
+                ordem = "dominio, email";
+                break;
+            case DATA:
+                // SEM_DATA é Long.MIN_VALUE, então fica no fim da ordem decrescente
+                ordem = "data_ultimo_email DESC, email";
+                break;
+            default:
+                ordem = "email";
+        }
+        percorrer("SELECT email, nome, data_ultimo_email FROM contatos ORDER BY " + ordem, consumidor);
+    }
+
+    private void percorrer(String sql, ConsumidorContato consumidor) {
+        gravarLote(true);
+        try (Statement comando = leitura.createStatement()) {
+            comando.setFetchSize(LINHAS_POR_LEITURA);
+            try (ResultSet resultado = comando.executeQuery(sql)) {
+                while (resultado.next()) {
+                    consumidor.contato(resultado.getString(1), resultado.getString(2), resultado.getLong(3));
+                }
+            }
+        } catch (SQLException e) {
+            throw new UncheckedIOException(new IOException("Erro ao ler o índice de contatos: " + e.getMessage(), e));
+        }
+    }
+
+    /**
+     * Contatos no índice até a última gravação do lote; os ainda pendentes entram
+     * na gravação seguinte (a cada {@value #LOTE} endereços ou checkpoint).
+     */
+    @Override
+    public int tamanho() {
+        return contagem;
+    }
+
+    /**
+     * Descarta apenas as ocorrências ainda não gravadas: o conteúdo do índice é
+     * persistente e não é apagado junto com o estado da extração.
+     */
+    @Override
+    public void limpar() {
+        bloqueio.writeLock().lock();
+        try {
+            pendentes.clear();
+        } finally {
+            bloqueio.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Registra (na transação do próximo {@link #sincronizar()}) o checkpoint de uma
+     * pasta para a conta e o perfil de extração informados.
+     *
+     * @param assinatura STATUS da pasta na última conclusão, ou null
+     * @param falhas     fila de falhas da pasta (UID -> tentativas feitas)
+     */
+    void registrarCheckpoint(String conta, String perfil, String pasta, long uidValidity, long ultimoUid,
+            AssinaturaPasta assinatura, Map<Long, Integer> falhas) throws IOException {
+        bloqueio.writeLock().lock();
+        try (PreparedStatement merge = escrita.prepareStatement(
+                "MERGE INTO checkpoints (conta, perfil, pasta, uid_validity, ultimo_uid, uid_next, mensagens, "
+                        + "highest_modseq, falhas) KEY (conta, perfil, pasta) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            merge.setString(1, conta);
+            merge.setString(2, perfil);
+            merge.setString(3, pasta);
+            merge.setLong(4, uidValidity);
+            merge.setLong(5, ultimoUid);
+            merge.setLong(6, assinatura != null ? assinatura.uidNext : 0);
+            merge.setLong(7, assinatura != null ? assinatura.mensagens : 0);
+            merge.setLong(8, assinatura != null ? assinatura.highestModSeq : 0);
+            merge.setString(9, codificarFalhas(falhas));
+            merge.executeUpdate();
+        } catch (SQLException e) {
+            throw new IOException("Erro ao gravar checkpoint no índice de contatos: " + e.getMessage(), e);
+        } finally {
+            bloqueio.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Entrega os checkpoints gravados para a conta e o perfil; perfis diferentes
+     * (outros cabeçalhos, normalizações ou período) não compartilham checkpoints.
+     */
+    void lerCheckpoints(String conta, String perfil, ConsumidorCheckpoint consumidor) throws IOException {
+        try (PreparedStatement consulta = leitura.prepareStatement(
+                "SELECT pasta, uid_validity, ultimo_uid, uid_next, mensagens, highest_modseq, falhas FROM checkpoints "
+                        + "WHERE conta = ? AND perfil = ?")) {
+            consulta.setString(1, conta);
+            consulta.setString(2, perfil);
+            try (ResultSet resultado = consulta.executeQuery()) {
+                while (resultado.next()) {
+                    long uidValidity = resultado.getLong(2);
+                    long uidNext = resultado.getLong(4);
+                    AssinaturaPasta assinatura = uidNext > 0
+                            ? new AssinaturaPasta(uidValidity, uidNext, resultado.getLong(5), resultado.getLong(6))
+                            : null;
+                    consumidor.checkpoint(resultado.getString(1), uidValidity, resultado.getLong(3), assinatura,
+                            decodificarFalhas(resultado.getString(7)));
+                }
+            }
+        } catch (SQLException | NumberFormatException e) {
+            throw new IOException("Erro ao ler checkpoints do índice de contatos: " + e.getMessage(), e);
+        }
+    }
+
+    private static String codificarFalhas(Map<Long, Integer> falhas) {
+        StringBuilder texto = new StringBuilder();
+        if (falhas != null) {
+            for (Map.Entry<Long, Integer> falha : falhas.entrySet()) {
+                texto.append(texto.length() > 0 ? "," : "").append(falha.getKey()).append(':').append(falha.getValue());
+            }
+        }
+        return texto.toString();
+    }
+
+    private static TreeMap<Long, Integer> decodificarFalhas(String texto) {
+        TreeMap<Long, Integer> falhas = new TreeMap<>();
+        if (texto != null && !texto.isEmpty()) {
+            for (String item : texto.split(",")) {
+                int separador = item.indexOf(':');
+                falhas.put(Long.parseLong(item.substring(0, separador)), Integer.parseInt(item.substring(separador + 1)));
+            }
+        }
+        return falhas;
+    }
+
+    /**
+     * Grava o lote pendente e fecha as conexões. O banco é fechado quando a última
+     * conexão da JVM (de qualquer conta) for fechada.
+     */
+    void fechar() throws IOException {
+        try {
+            sincronizar();
+        } finally {
+            try {
+                leitura.close();
+                escrita.close();
+            } catch (SQLException e) {
+                throw new IOException("Erro ao fechar o índice de contatos: " + e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.emailextractor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Repositório de contatos sobre um {@link ConcurrentHashMap} de objetos imutáveis.
+ * Simples e sem disputa entre conexões, mas com bem mais de 150 bytes de
+ * sobrecarga por contato; para caixas com milhões de remetentes use
+ * {@link RepositorioContatosCompacto}.
+ */
+class RepositorioContatosMapa implements RepositorioContatos {
+
+    /**
+     * Contato em memória. É imutável: cada alteração gera uma nova instância no mapa
+     * (cópia na escrita), então o gravador de estado sempre lê contatos consistentes
+     * sem bloquear a extração.
+     */
+    private static final class Contato {
+        final String email;
+        final String nome;
+        final long data;
+        // Ordem (pasta, UID) da mensagem que forneceu o nome; 0 para contatos restaurados
+        final long ordemNome;
+
+        Contato(String email, String nome, long data, long ordemNome) {
+            this.email = email;
+            this.nome = nome != null ? nome : "";
+            this.data = data;
+            this.ordemNome = ordemNome;
+        }
+
+        Contato atualizarSeNecessario(String nome, long data, long ordem) {
+            boolean novaData = data > this.data;
+            // O mesmo nome vindo de uma ordem menor também baixa a ordem guardada; senão
+            // um nome diferente de ordem intermediária venceria conforme a chegada
+            boolean menorOrdem = nome != null && !nome.isEmpty()
+                    && (this.nome.isEmpty() || ordem < this.ordemNome);
+            if (!novaData && !menorOrdem) {
+                return this;
+            }
+            return new Contato(email,
+                    menorOrdem ? nome : this.nome,
+                    novaData ? data : this.data,
+                    menorOrdem ? ordem : this.ordemNome);
+        }
+
+        /**
+         * Se a atualização mudou o que é exportado (nome ou data), e não só a ordem do nome.
+         */
+        boolean diferenteDe(Contato anterior) {
+            return data != anterior.data || !nome.equals(anterior.nome);
+        }
+    }
+
+    private final Map<String, Contato> contatos = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean registrar(String email, String nome, long data, long ordem) {
+        boolean[] alterado = new boolean[1];
+        // compute é atômico por chave, o que permite várias conexões no mesmo mapa
+        contatos.compute(email, (chave, contato) -> {
+            if (contato == null) {
+                alterado[0] = true;
+                return new Contato(chave, nome, data, ordem);
+            }
+            Contato atualizado = contato.atualizarSeNecessario(nome, data, ordem);
+            alterado[0] = atualizado.diferenteDe(contato);
+            return atualizado;
+        });
+        return alterado[0];
+    }
+
+    @Override
+    public void restaurar(String email, String nome, long data) {
+        contatos.compute(email, (chave, contato) -> {
+            if (contato == null) {
+                return new Contato(chave, nome, data, 0);
+            }
+            boolean temNome = nome != null && !nome.isEmpty();
+            return new Contato(chave, temNome ? nome : contato.nome, Math.max(data, contato.data), 0);
+        });
+    }
+
+    @Override
+    public boolean ler(String email, ConsumidorContato consumidor) {
+        Contato contato = contatos.get(email);
+        if (contato == null) {
+            return false;
+        }
+        consumidor.contato(contato.email, contato.nome, contato.data);
+        return true;
+    }
+
+    @Override
+    public void paraCada(ConsumidorContato consumidor) {
+        for (Contato contato : contatos.values()) {
+            consumidor.contato(contato.email, contato.nome, contato.data);
+        }
+    }
+
+    @Override
+    public int tamanho() {
+        return contatos.size();
+    }
+
+    @Override
+    public void limpar() {
+        contatos.clear();
+    }
+}
@@ -0,0 +1,55 @@
+package com.emailextractor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AssinaturaPastaTest {
+
+    private static AssinaturaPasta assinatura(long uidValidity, long uidNext, long mensagens, long modSeq) {
+        return new AssinaturaPasta(uidValidity, uidNext, mensagens, modSeq);
+    }
+
+    @Test
+    void pulaQuandoOUidNextNaoPassouDoCheckpoint() {
+        assertTrue(assinatura(7, 51, 50, 0).semMensagensNovas(7, 50, null));
+        assertFalse(assinatura(7, 52, 51, 0).semMensagensNovas(7, 50, null));
+    }
+
+    @Test
+    void pulaQuandoOUidNextEhODaConclusaoAnterior() {
+        // As últimas mensagens foram apagadas: o checkpoint ficou abaixo do UIDNEXT
+        AssinaturaPasta anterior = assinatura(7, 60, 50, 10);
+        assertTrue(assinatura(7, 60, 45, 12).semMensagensNovas(7, 50, anterior));
+        assertFalse(assinatura(7, 61, 46, 13).semMensagensNovas(7, 50, anterior));
+    }
+
+    @Test
+    void naoPulaComUidValidityDiferente() {
+        AssinaturaPasta anterior = assinatura(7, 60, 50, 0);
+        assertFalse(assinatura(8, 51, 50, 0).semMensagensNovas(7, 50, anterior));
+        // A assinatura anterior é de outro UIDVALIDITY: só o checkpoint vale
+        assertFalse(assinatura(8, 60, 50, 0).semMensagensNovas(8, 50, anterior));
+    }
+
+    @Test
+    void pastaVaziaNaConclusaoAnterior() {
+        AssinaturaPasta anterior = assinatura(7, 1, 0, 5);
+        assertTrue(assinatura(7, 1, 0, 5).semMensagensNovas(7, 0, anterior));
+        assertFalse(assinatura(7, 2, 1, 6).semMensagensNovas(7, 0, anterior));
+        assertFalse(assinatura(7, 1, 0, 6).semMensagensNovas(7, 0, anterior));
+        // Nunca concluída, ou concluída com outro UIDVALIDITY
+        assertFalse(assinatura(7, 1, 0, 5).semMensagensNovas(7, 0, null));
+        assertFalse(assinatura(7, 1, 0, 5).semMensagensNovas(7, 0, assinatura(6, 1, 0, 5)));
+    }
+
+    @Test
+    void identicaComparaTodosOsCampos() {
+        AssinaturaPasta base = assinatura(7, 51, 50, 9);
+        assertTrue(base.identica(base.copiar()));
+        assertFalse(base.identica(assinatura(7, 51, 49, 9)));
+        assertFalse(base.identica(assinatura(7, 51, 50, 10)));
+        assertFalse(base.identica(null));
+    }
+}
@@ -0,0 +1,113 @@
+package com.emailextractor;
+
+import jakarta.mail.Address;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.InternetAddress;
+import org.junit.jupiter.api.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CacheEnderecosTest {
+
+    private static final Set<NormalizacaoEndereco> TODAS = EnumSet.allOf(NormalizacaoEndereco.class);
+
+    private static String email(Set<NormalizacaoEndereco> normalizacoes, String cabecalho) throws AddressException {
+        CacheEnderecos.Endereco[] enderecos = new CacheEnderecos(16, normalizacoes).doCabecalho(cabecalho);
+        assertEquals(1, enderecos.length, cabecalho);
+        return enderecos[0].email;
+    }
+
+    @Test
+    void semNormalizacoesSoMinusculas() throws AddressException {
+        Set<NormalizacaoEndereco> nenhuma = EnumSet.noneOf(NormalizacaoEndereco.class);
+        assertEquals("joao.silva+news@gmail.com", email(nenhuma, "Joao.Silva+News@GMAIL.com"));
+        assertEquals("ana@bücher.de", email(nenhuma, "ana@Bücher.de"));
+    }
+
+    @Test
+    void dominioInternacionalizadoViraPunycode() throws AddressException {
+        Set<NormalizacaoEndereco> idn = EnumSet.of(NormalizacaoEndereco.IDN);
+        assertEquals("ana@xn--bcher-kva.de", email(idn, "ana@bücher.de"));
+        assertEquals("ana@xn--bcher-kva.de", email(idn, "ana@xn--bcher-kva.de"));
+        assertEquals("ana@exemplo.com", email(idn, "ana@exemplo.com"));
+    }
+
+    @Test
+    void apelidosDoGmailSaoUnificados() throws AddressException {
+        Set<NormalizacaoEndereco> gmail = EnumSet.of(NormalizacaoEndereco.GMAIL);
+        assertEquals("joaosilva@gmail.com", email(gmail, "joao.silva@gmail.com"));
+        assertEquals("joaosilva@gmail.com", email(gmail, "Joao.Silva+news@gmail.com"));
+        assertEquals("joaosilva@gmail.com", email(gmail, "joaosilva+a+b@googlemail.com"));
+        // Outros domínios não seguem a regra do Gmail
+        assertEquals("joao.silva+news@exemplo.com", email(gmail, "joao.silva+news@exemplo.com"));
+    }
+
+    @Test
+    void gmailSemParteLocalMantemOEnderecoOriginal() throws AddressException {
+        Set<NormalizacaoEndereco> gmail = EnumSet.of(NormalizacaoEndereco.GMAIL);
+        assertEquals("+tag@gmail.com", email(gmail, "+tag@gmail.com"));
+        assertEquals(".@gmail.com", email(gmail, ".@gmail.com"));
+        assertEquals("+x@googlemail.com", email(gmail, "+x@googlemail.com"));
+        assertEquals("..+x@gmail.com", email(TODAS, "..+x@gmail.com"));
+        assertEquals("\".\"@gmail.com", email(gmail, "\".\"@gmail.com"));
+    }
+
+    @Test
+    void cacheDevolveOMesmoResultado() throws AddressException {
+        CacheEnderecos cache = new CacheEnderecos(16, TODAS);
+        CacheEnderecos.Endereco[] primeiro = cache.doCabecalho("\"Ana\" <Ana.B+x@gmail.com>, bob@bücher.de");
+        CacheEnderecos.Endereco[] segundo = cache.doCabecalho("\"Ana\" <Ana.B+x@gmail.com>, bob@bücher.de");
+        assertEquals(1, cache.getAcertos());
+        assertEquals(2, segundo.length);
+        assertEquals("anab@gmail.com", segundo[0].email);
+        assertEquals("Ana", segundo[0].nome);
+        assertEquals("bob@xn--bcher-kva.de", segundo[1].email);
+        assertEquals(primeiro[1].email, segundo[1].email);
+    }
+
+    @Test
+    void envelopeUsaAsMesmasRegras() throws AddressException, UnsupportedEncodingException {
+        CacheEnderecos cache = new CacheEnderecos(16, TODAS);
+        Address[] enderecos = {
+            new InternetAddress("Joao.Silva+x@gmail.com", "  \"João   Silva\" "),
+            new InternetAddress("+tag@gmail.com")
+        };
+        CacheEnderecos.Endereco[] resultado = cache.doEnvelope(enderecos);
+        assertEquals("joaosilva@gmail.com", resultado[0].email);
+        assertEquals("João Silva", resultado[0].nome);
+        assertEquals("+tag@gmail.com", resultado[1].email);
+    }
+
+    @Test
+    void nomeDecodificaPalavrasRfc2047() {
+        assertNull(CacheEnderecos.normalizarNome(null));
+        assertEquals("João", CacheEnderecos.normalizarNome("=?UTF-8?B?Sm/Do28=?="));
+        // Espaço entre duas palavras codificadas não faz parte do texto
+        assertEquals("João da Silva", CacheEnderecos.normalizarNome("=?UTF-8?Q?Jo=C3=A3o?= =?UTF-8?Q?_da_Silva?="));
+        // Palavra codificada colada a texto comum
+        assertEquals("Sr. José", CacheEnderecos.normalizarNome("Sr. =?ISO-8859-1?Q?Jos=E9?="));
+    }
+
+    @Test
+    void nomeComPalavrasEntreAspas() {
+        // O parser estrito não decodifica palavras dentro de aspas; as aspas ao redor saem
+        assertEquals("João Silva", CacheEnderecos.normalizarNome("\"=?UTF-8?Q?Jo=C3=A3o?= Silva\""));
+        assertEquals("João Silva", CacheEnderecos.normalizarNome("'=?UTF-8?Q?Jo=C3=A3o_Silva?='"));
+        // Palavras divididas entre um trecho entre aspas e outro fora delas
+        assertEquals("\"João\" Silva", CacheEnderecos.normalizarNome("\"=?UTF-8?Q?Jo=C3=A3o?=\" =?UTF-8?Q?Silva?="));
+        assertEquals("João Silva", CacheEnderecos.normalizarNome("\"=?UTF-8?Q?Jo=C3=A3o?=\n  =?UTF-8?Q?_Silva?=\""));
+    }
+
+    @Test
+    void nomeSemCodificacaoSoJuntaEspacos() {
+        assertEquals("Maria Souza", CacheEnderecos.normalizarNome("  Maria \t  Souza "));
+        assertEquals("O'Brien", CacheEnderecos.normalizarNome("O'Brien"));
+        // Charset desconhecido: a palavra fica como veio
+        assertEquals("=?X-DESCONHECIDO?Q?abc?=", CacheEnderecos.normalizarNome("=?X-DESCONHECIDO?Q?abc?="));
+    }
+}
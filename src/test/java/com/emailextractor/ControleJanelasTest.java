@@ -0,0 +1,152 @@
+package com.emailextractor;
+
+import jakarta.mail.UIDFolder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ControleJanelasTest {
+
+    private static List<JanelaUid> planejar(long... limites) {
+        List<JanelaUid> janelas = new ArrayList<>();
+        long inicio = 1;
+        for (long fim : limites) {
+            janelas.add(new JanelaUid(inicio, fim, (int) (fim - inicio + 1)));
+            inicio = fim + 1;
+        }
+        return janelas;
+    }
+
+    @Test
+    void cursorSoAvancaSobreOPrefixoConcluido() {
+        ControleJanelas controle = new ControleJanelas(planejar(100, 200, 300), 0, 100);
+        JanelaUid primeira = controle.proxima();
+        JanelaUid segunda = controle.proxima();
+        JanelaUid terceira = controle.proxima();
+        assertNull(controle.proxima());
+
+        controle.concluir(segunda);
+        assertEquals(0, controle.cursor());
+        primeira.ultimoUid = 40;
+        assertEquals(40, controle.cursor());
+        controle.concluir(primeira);
+        assertEquals(200, controle.cursor());
+        controle.concluir(terceira);
+        assertEquals(300, controle.cursor());
+    }
+
+    @Test
+    void ultimaJanelaAbertaUsaOUltimoUidVisto() {
+        List<JanelaUid> janelas = planejar(100);
+        janelas.add(new JanelaUid(101, UIDFolder.MAXUID, 50));
+        ControleJanelas controle = new ControleJanelas(janelas, 0, 100);
+        JanelaUid primeira = controle.proxima();
+        JanelaUid aberta = controle.proxima();
+
+        aberta.ultimoUid = 137;
+        controle.concluir(aberta);
+        controle.concluir(primeira);
+        assertEquals(137, controle.cursor());
+    }
+
+    @Test
+    void devolverDivideORestoEEntregaAntesDasNovas() {
+        ControleJanelas controle = new ControleJanelas(planejar(100, 200), 0, 100);
+        JanelaUid primeira = controle.proxima();
+        primeira.ultimoUid = 30;
+
+        assertEquals(50, controle.devolver(primeira));
+        assertEquals(30, controle.cursor());
+
+        // Restam [31, 100] (estimativa 70): acima do limite de 50, são divididas
+        JanelaUid parte1 = controle.proxima();
+        assertEquals(31, parte1.inicio);
+        assertEquals(80, parte1.fim);
+        assertEquals(30, parte1.ultimoUid);
+        JanelaUid parte2 = controle.proxima();
+        assertEquals(81, parte2.inicio);
+        assertEquals(100, parte2.fim);
+        // A janela ainda não atribuída também passa pelo limite
+        JanelaUid segunda = controle.proxima();
+        assertEquals(101, segunda.inicio);
+        assertEquals(150, segunda.fim);
+        JanelaUid resto = controle.proxima();
+        assertEquals(151, resto.inicio);
+        assertEquals(200, resto.fim);
+        assertNull(controle.proxima());
+
+        controle.concluir(parte2);
+        controle.concluir(segunda);
+        assertEquals(30, controle.cursor());
+        controle.concluir(parte1);
+        assertEquals(150, controle.cursor());
+        controle.concluir(resto);
+        assertEquals(200, controle.cursor());
+    }
+
+    @Test
+    void janelaProcessadaAteOFimNaoVolta() {
+        ControleJanelas controle = new ControleJanelas(planejar(100, 200), 0, 100);
+        JanelaUid primeira = controle.proxima();
+        primeira.ultimoUid = 100;
+
+        controle.devolver(primeira);
+        assertEquals(100, controle.cursor());
+        assertEquals(101, controle.proxima().inicio);
+    }
+
+    @Test
+    void limiteCaiPelaMetadeESobeAosPoucos() {
+        ControleJanelas controle = new ControleJanelas(planejar(5000), 0, 80);
+        assertEquals(80, controle.limite());
+        JanelaUid janela = controle.proxima();
+        assertEquals(40, controle.devolver(janela));
+        assertEquals(20, controle.devolver(List.of()));
+        assertEquals(ControleJanelas.LIMITE_MINIMO, controle.devolver(List.of()));
+        assertEquals(ControleJanelas.LIMITE_MINIMO, controle.devolver(List.of()));
+
+        JanelaUid proxima = controle.proxima();
+        assertEquals(ControleJanelas.LIMITE_MINIMO, proxima.estimativa);
+        controle.concluir(proxima);
+        assertEquals(ControleJanelas.LIMITE_MINIMO + 80 / 8, controle.limite());
+        for (int i = 0; i < 20; i++) {
+            controle.concluir(controle.proxima());
+        }
+        assertEquals(80, controle.limite());
+    }
+
+    @Test
+    void divideListaExataDeUids() {
+        long[] uids = {3, 7, 9, 15, 22, 40};
+        List<JanelaUid> janelas = new ArrayList<>(List.of(new JanelaUid(uids)));
+        ControleJanelas controle = new ControleJanelas(janelas, 0, 100);
+        JanelaUid janela = controle.proxima();
+        janela.ultimoUid = 9;
+        controle.devolver(janela);
+        controle.devolver(List.of());
+        controle.devolver(List.of());
+        controle.devolver(List.of());
+
+        // Limite 10: o resto {15, 22, 40} cabe inteiro
+        JanelaUid resto = controle.proxima();
+        assertArrayEquals(new long[]{15, 22, 40}, resto.uids);
+        assertEquals(9, controle.cursor());
+        controle.concluir(resto);
+        assertEquals(40, controle.cursor());
+    }
+
+    @Test
+    void abortarEncerraADistribuicao() {
+        List<JanelaUid> janelas = planejar(100, 200);
+        ControleJanelas controle = new ControleJanelas(janelas, 0, 100);
+        assertSame(janelas.get(0), controle.proxima());
+        controle.abortar();
+        assertNull(controle.proxima());
+    }
+}
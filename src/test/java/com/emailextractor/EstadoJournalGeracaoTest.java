@@ -0,0 +1,78 @@
+package com.emailextractor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Releitura do journal sobre a base: journals de uma geração anterior (sobras de
+ * uma compactação interrompida) são descartados; os da geração atual e os antigos,
+ * sem cabeçalho, são reaplicados.
+ */
+class EstadoJournalGeracaoTest {
+
+    private static final String CONTATO_JOURNAL =
+            "{\"contato\":{\"email\":\"novo@exemplo.com\",\"nome\":\"Novo\",\"dataUltimoEmail\":\"2024-01-02 10:00:00\"}}";
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void descartaJournalDeGeracaoAnterior() throws IOException {
+        gravarBase(FormatoEstado.BINARIO, 2);
+        gravarJournal("{\"geracao\":1}", CONTATO_JOURNAL);
+
+        ExtracaoConta conta = new ExtracaoConta(new OpcoesExtracao(), diretorio, null, false);
+        assertNotNull(conta.carregarEstadoSalvo());
+        assertEquals(1, conta.getContatos());
+        assertFalse(Files.exists(diretorio.resolve(ExtracaoConta.ARQUIVO_JOURNAL)));
+    }
+
+    @Test
+    void reaplicaJournalDaGeracaoAtual() throws IOException {
+        gravarBase(FormatoEstado.JSON, 2);
+        gravarJournal("{\"geracao\":2}", CONTATO_JOURNAL);
+
+        ExtracaoConta conta = new ExtracaoConta(new OpcoesExtracao(), diretorio, null, false);
+        assertNotNull(conta.carregarEstadoSalvo());
+        assertEquals(2, conta.getContatos());
+        assertTrue(Files.exists(diretorio.resolve(ExtracaoConta.ARQUIVO_JOURNAL)));
+    }
+
+    @Test
+    void reaplicaJournalSemCabecalho() throws IOException {
+        gravarBase(FormatoEstado.BINARIO, 0);
+        gravarJournal(CONTATO_JOURNAL);
+
+        ExtracaoConta conta = new ExtracaoConta(new OpcoesExtracao(), diretorio, null, false);
+        assertNotNull(conta.carregarEstadoSalvo());
+        assertEquals(2, conta.getContatos());
+    }
+
+    private void gravarBase(FormatoEstado formato, long geracao) throws IOException {
+        ExtracaoConta.EstadoProcesso metadados = new ExtracaoConta.EstadoProcesso();
+        metadados.servidor = "imap.exemplo.com";
+        metadados.usuario = "usuario@exemplo.com";
+        metadados.geracaoBase = geracao;
+        RepositorioContatosMapa contatos = new RepositorioContatosMapa();
+        contatos.restaurar("antigo@exemplo.com", "Antigo", 1_700_000_000_000L);
+        try (OutputStream saida = Files.newOutputStream(diretorio.resolve(formato.arquivoPadrao))) {
+            ExtracaoConta.escreverBase(saida, metadados, contatos, formato);
+        }
+    }
+
+    private void gravarJournal(String... linhas) throws IOException {
+        new JournalEstado(diretorio.resolve(ExtracaoConta.ARQUIVO_JOURNAL)).anexar(new ArrayList<>(List.of(linhas)));
+    }
+}
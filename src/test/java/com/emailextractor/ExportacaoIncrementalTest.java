@@ -0,0 +1,88 @@
+package com.emailextractor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExportacaoIncrementalTest {
+
+    // Datas em segundos inteiros, a precisão do CSV
+    private static final long DATA = 1_600_000_000_000L;
+
+    private static final String[][] CONTATOS = {
+            {"aspas@x.com", "John \"JJ\" Doe"},
+            {"separador@x.com", "Doe; John"},
+            {"quebra@x.com", "Linha 1\nLinha 2"},
+            {"retorno@x.com", "Linha 1\r\nLinha 2"},
+            {"tudo@x.com", "\"; \n\"\""},
+            {"barra@x.com", "C:\\caminho"},
+            {"vazio@x.com", ""},
+    };
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void releCsvComNomesEscapados() throws IOException {
+        verificarIdaEVolta(diretorio.resolve("contatos.csv"));
+    }
+
+    @Test
+    void releCsvComprimido() throws IOException {
+        verificarIdaEVolta(diretorio.resolve("contatos.csv.gz"));
+    }
+
+    @Test
+    void mesclagensSeguidasNaoAlteramOsNomes() throws IOException {
+        Path csv = diretorio.resolve("contatos.csv");
+        ExportacaoIncremental incremental = new ExportacaoIncremental(exportador(false));
+
+        ExportacaoIncremental.Resultado primeira = incremental.mesclar(repositorio(), csv, null);
+        assertEquals(CONTATOS.length, primeira.alterados);
+        for (int i = 0; i < 3; i++) {
+            ExportacaoIncremental.Resultado seguinte = incremental.mesclar(repositorio(), csv, null);
+            assertEquals(CONTATOS.length, seguinte.anteriores);
+            assertEquals(0, seguinte.alterados);
+        }
+        assertEquals(esperados(), lerNomes(csv));
+    }
+
+    private void verificarIdaEVolta(Path csv) throws IOException {
+        exportador(csv.toString().endsWith(".gz")).exportar(repositorio(), csv);
+        assertEquals(esperados(), lerNomes(csv));
+    }
+
+    private static ExportadorCsv exportador(boolean gzip) {
+        return new ExportadorCsv(OrdenacaoCsv.EMAIL, gzip, 64L << 20);
+    }
+
+    private static RepositorioContatos repositorio() {
+        RepositorioContatos contatos = new RepositorioContatosMapa();
+        for (String[] contato : CONTATOS) {
+            contatos.registrar(contato[0], contato[1], DATA, 1);
+        }
+        return contatos;
+    }
+
+    private static Map<String, String> esperados() {
+        Map<String, String> esperados = new HashMap<>();
+        for (String[] contato : CONTATOS) {
+            esperados.put(contato[0], contato[1] + "|" + DATA);
+        }
+        return esperados;
+    }
+
+    private static Map<String, String> lerNomes(Path csv) throws IOException {
+        RepositorioContatos lidos = new RepositorioContatosMapa();
+        assertEquals(CONTATOS.length, ExportacaoIncremental.lerCsv(csv, lidos));
+        Map<String, String> nomes = new HashMap<>();
+        lidos.paraCada((email, nome, data) -> nomes.put(email, nome + "|" + data));
+        return nomes;
+    }
+}
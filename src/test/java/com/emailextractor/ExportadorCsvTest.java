@@ -0,0 +1,114 @@
+package com.emailextractor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExportadorCsvTest {
+
+    private static final int CONTATOS = 3000;
+    // Poucos KB: força dezenas de corridas temporárias
+    private static final long ORCAMENTO_PEQUENO = 16 * 1024;
+    private static final long ORCAMENTO_GRANDE = 64L << 20;
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void intercalacaoDasCorridasOrdenaPorEmail() throws IOException {
+        verificarOrdem(OrdenacaoCsv.EMAIL, Comparator.comparing((String[] l) -> l[0]));
+    }
+
+    @Test
+    void intercalacaoDasCorridasOrdenaPorDominio() throws IOException {
+        verificarOrdem(OrdenacaoCsv.DOMINIO, Comparator.comparing((String[] l) -> l[0].substring(l[0].indexOf('@')))
+                .thenComparing(l -> l[0]));
+    }
+
+    @Test
+    void intercalacaoDasCorridasOrdenaPorData() throws IOException {
+        // Formato AAAA-MM-DD HH:mm:ss ordena como texto; sem data fica no fim
+        verificarOrdem(OrdenacaoCsv.DATA, Comparator.comparing((String[] l) -> l[2].isEmpty() ? "" : l[2])
+                .reversed().thenComparing(l -> l[0]));
+    }
+
+    @Test
+    void corridasSaoApagadasMesmoComFalha() throws IOException {
+        Path destino = diretorio.resolve("falha").resolve("contatos.csv");
+        Files.createDirectories(destino.getParent());
+        Files.createDirectory(destino);  // Um diretório no lugar do CSV faz a gravação final falhar
+        assertThrows(IOException.class,
+                () -> new ExportadorCsv(OrdenacaoCsv.EMAIL, false, ORCAMENTO_PEQUENO).exportar(repositorio(), destino));
+        assertEquals(List.of(), corridas(destino.getParent()));
+    }
+
+    @Test
+    void gzipComCorridasTemOMesmoConteudo() throws IOException {
+        Path simples = diretorio.resolve("memoria.csv");
+        Path comprimido = diretorio.resolve("corridas.csv.gz");
+        new ExportadorCsv(OrdenacaoCsv.EMAIL, false, ORCAMENTO_GRANDE).exportar(repositorio(), simples);
+        new ExportadorCsv(OrdenacaoCsv.EMAIL, true, ORCAMENTO_PEQUENO).exportar(repositorio(), comprimido);
+        assertEquals(texto(ler(simples)), texto(ler(comprimido)));
+    }
+
+    private void verificarOrdem(OrdenacaoCsv ordenacao, Comparator<String[]> esperada) throws IOException {
+        Path emMemoria = diretorio.resolve("memoria.csv");
+        Path comCorridas = diretorio.resolve("corridas.csv");
+        assertEquals(CONTATOS, new ExportadorCsv(ordenacao, false, ORCAMENTO_GRANDE).exportar(repositorio(), emMemoria));
+        assertEquals(CONTATOS, new ExportadorCsv(ordenacao, false, ORCAMENTO_PEQUENO).exportar(repositorio(), comCorridas));
+
+        List<String[]> linhas = ler(comCorridas);
+        assertEquals(CONTATOS, linhas.size());
+        List<String[]> ordenadas = new ArrayList<>(linhas);
+        ordenadas.sort(esperada);
+        assertEquals(texto(ordenadas), texto(linhas));
+        assertEquals(texto(ler(emMemoria)), texto(linhas));
+        assertEquals(List.of(), corridas(diretorio));
+    }
+
+    private static RepositorioContatos repositorio() {
+        Random aleatorio = new Random(42);
+        RepositorioContatos contatos = new RepositorioContatosMapa();
+        for (int i = 0; i < CONTATOS; i++) {
+            String email = "pessoa" + aleatorio.nextInt(1_000_000) + "-" + i + "@dominio" + aleatorio.nextInt(40) + ".com";
+            long data = i % 17 == 0 ? RepositorioContatos.SEM_DATA
+                    : 1_500_000_000_000L + aleatorio.nextInt(100_000_000) * 1000L;
+            contatos.registrar(email, "Nome " + i, data, 1);
+        }
+        return contatos;
+    }
+
+    private static List<String[]> ler(Path csv) throws IOException {
+        List<String[]> linhas = new ArrayList<>();
+        ExportadorCsv.ler(csv, (numero, campos) -> linhas.add(campos));
+        return linhas;
+    }
+
+    private static String texto(List<String[]> linhas) {
+        StringBuilder texto = new StringBuilder();
+        for (String[] linha : linhas) {
+            texto.append(String.join(";", linha)).append('\n');
+        }
+        return texto.toString();
+    }
+
+    private static List<Path> corridas(Path diretorio) throws IOException {
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            List<Path> corridas = new ArrayList<>();
+            arquivos.filter(p -> p.getFileName().toString().endsWith(".corrida")).forEach(corridas::add);
+            return corridas;
+        }
+    }
+}
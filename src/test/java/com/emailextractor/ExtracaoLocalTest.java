@@ -0,0 +1,85 @@
+package com.emailextractor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExtracaoLocalTest {
+
+    @TempDir
+    Path diretorio;
+
+    private void gravarEml(Path pasta, String nome, String remetente) throws IOException {
+        Files.createDirectories(pasta);
+        Files.writeString(pasta.resolve(nome), "From: " + remetente + "\r\nTo: eu@exemplo.com\r\nSubject: x\r\n"
+                + "Date: Mon, 1 Jan 2024 10:00:00 +0000\r\n\r\ncorpo\r\n", StandardCharsets.UTF_8);
+    }
+
+    private boolean extrair(Path origem, String... extras) {
+        List<String> args = new ArrayList<>(List.of("--local=" + origem, "--csv=" + diretorio.resolve("contatos.csv"),
+                "--incremental", "--alteracoes=" + diretorio.resolve("novos.csv"),
+                "--resumo=" + diretorio.resolve("resumo.json")));
+        args.addAll(List.of(extras));
+        return ExtracaoLocal.executar(OpcoesExtracao.parse(args.toArray(new String[0])));
+    }
+
+    private static List<String> emails(Path csv) throws IOException {
+        List<String> emails = new ArrayList<>();
+        ExportadorCsv.ler(csv, (numero, campos) -> emails.add(campos[0]));
+        return emails;
+    }
+
+    @Test
+    void alteracoesComGzipGanhamExtensaoGz() throws IOException {
+        Path origem = diretorio.resolve("mensagens");
+        gravarEml(origem, "1.eml", "Ana <ana@exemplo.com>");
+        assertTrue(extrair(origem, "--gzip"));
+        gravarEml(origem, "2.eml", "Bruno <bruno@exemplo.com>");
+        assertTrue(extrair(origem, "--gzip"));
+
+        Path alteracoes = diretorio.resolve("novos.csv.gz");
+        assertTrue(Files.exists(alteracoes));
+        assertFalse(Files.exists(diretorio.resolve("novos.csv")));
+        try (InputStream entrada = Files.newInputStream(alteracoes)) {
+            // Cabeçalho gzip
+            assertEquals(0x1f, entrada.read());
+            assertEquals(0x8b, entrada.read());
+        }
+        assertEquals(List.of("bruno@exemplo.com"), emails(alteracoes));
+        assertEquals(2, emails(diretorio.resolve("contatos.csv.gz")).size());
+    }
+
+    @Test
+    void alteracoesSemGzipMantemONome() throws IOException {
+        Path origem = diretorio.resolve("mensagens");
+        gravarEml(origem, "1.eml", "Ana <ana@exemplo.com>");
+        assertTrue(extrair(origem));
+
+        assertEquals(List.of("ana@exemplo.com"), emails(diretorio.resolve("novos.csv")));
+        assertFalse(Files.exists(diretorio.resolve("novos.csv.gz")));
+    }
+
+    @Test
+    void linkParaDiretorioAncestralNaoGeraCiclo() throws IOException {
+        Path origem = diretorio.resolve("mensagens");
+        gravarEml(origem.resolve("sub"), "1.eml", "Ana <ana@exemplo.com>");
+        try {
+            Files.createSymbolicLink(origem.resolve("sub").resolve("volta"), origem);
+        } catch (UnsupportedOperationException | IOException e) {
+            return; // Sistema sem links simbólicos
+        }
+        assertTrue(extrair(origem));
+        assertEquals(List.of("ana@exemplo.com"), emails(diretorio.resolve("contatos.csv")));
+    }
+}
@@ -0,0 +1,121 @@
+package com.emailextractor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FormatoEstadoBinarioTest {
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void contatosEMetadadosVoltamComoForamGravados() throws IOException {
+        Path arquivo = diretorio.resolve("estado.bin");
+        String nomeLongo = "Nome ".repeat(100);
+        try (DataOutputStream saida = new DataOutputStream(Files.newOutputStream(arquivo))) {
+            FormatoEstadoBinario.escreverCabecalho(saida, "{\"servidor\":\"imap.exemplo.com\"}");
+            FormatoEstadoBinario.escreverContato(saida, "ana@exemplo.com", "Ana", 1_700_000_000_000L);
+            FormatoEstadoBinario.escreverContato(saida, "jose@exemplo.com", "José Conceição", 0);
+            FormatoEstadoBinario.escreverContato(saida, "semnome@exemplo.com", null, FormatoEstadoBinario.SEM_DATA);
+            FormatoEstadoBinario.escreverContato(saida, "longo@exemplo.com", nomeLongo, 42);
+            FormatoEstadoBinario.escreverFim(saida);
+        }
+
+        assertTrue(FormatoEstadoBinario.ehBinario(arquivo));
+        List<String> lidos = new ArrayList<>();
+        String metadados = FormatoEstadoBinario.ler(arquivo,
+                (email, nome, data) -> lidos.add(email + "|" + nome + "|" + data));
+
+        assertEquals("{\"servidor\":\"imap.exemplo.com\"}", metadados);
+        assertEquals(List.of(
+                "ana@exemplo.com|Ana|1700000000000",
+                "jose@exemplo.com|José Conceição|0",
+                "semnome@exemplo.com||" + Long.MIN_VALUE,
+                "longo@exemplo.com|" + nomeLongo + "|42"), lidos);
+    }
+
+    @Test
+    void baseBinariaEJsonTemOMesmoConteudo() throws IOException {
+        ExtracaoConta.EstadoProcesso metadados = new ExtracaoConta.EstadoProcesso();
+        metadados.servidor = "imap.exemplo.com";
+        metadados.porta = 993;
+        metadados.usuario = "usuario@exemplo.com";
+        metadados.pastasSelecionadas = List.of("INBOX", "Enviados");
+        metadados.desdeInformado = "90d";
+        metadados.geracaoBase = 7;
+        RepositorioContatosMapa contatos = new RepositorioContatosMapa();
+        for (int i = 0; i < 1000; i++) {
+            contatos.restaurar("c" + i + "@exemplo.com", i % 2 == 0 ? "Nome " + i : null, 1_600_000_000_000L + i * 1000L);
+        }
+
+        for (FormatoEstado formato : FormatoEstado.values()) {
+            Path arquivo = diretorio.resolve(formato.arquivoPadrao);
+            try (OutputStream saida = Files.newOutputStream(arquivo)) {
+                ExtracaoConta.escreverBase(saida, metadados, contatos, formato);
+            }
+            assertEquals(formato == FormatoEstado.BINARIO, FormatoEstadoBinario.ehBinario(arquivo));
+
+            RepositorioContatosCompacto lidos = new RepositorioContatosCompacto();
+            ExtracaoConta.EstadoProcesso carregado = ExtracaoConta.carregarBase(arquivo, lidos);
+            assertEquals("imap.exemplo.com", carregado.servidor);
+            assertEquals(993, carregado.porta);
+            assertEquals(List.of("INBOX", "Enviados"), carregado.pastasSelecionadas);
+            assertEquals("90d", carregado.desdeInformado);
+            assertEquals(7, carregado.geracaoBase);
+            assertEquals(contatos.tamanho(), lidos.tamanho());
+            contatos.paraCada((email, nome, data) -> assertTrue(lidos.ler(email, (e, nomeLido, dataLida) -> {
+                assertEquals(nome == null ? "" : nome, nomeLido, formato + " " + email);
+                assertEquals(data, dataLida, formato + " " + email);
+            })));
+        }
+    }
+
+    @Test
+    void arquivoTruncadoFalhaComIOException() throws IOException {
+        Path arquivo = diretorio.resolve("estado.bin");
+        try (DataOutputStream saida = new DataOutputStream(Files.newOutputStream(arquivo))) {
+            FormatoEstadoBinario.escreverCabecalho(saida, "{}");
+            FormatoEstadoBinario.escreverContato(saida, "ana@exemplo.com", "Ana", 1);
+            FormatoEstadoBinario.escreverFim(saida);
+        }
+        byte[] completo = Files.readAllBytes(arquivo);
+        // Sem a sentinela e sem parte da data do último contato
+        Files.write(arquivo, Arrays.copyOf(completo, completo.length - 7));
+
+        IOException erro = assertThrows(IOException.class, () -> FormatoEstadoBinario.ler(arquivo, (e, n, d) -> { }));
+        assertTrue(erro.getMessage().contains("truncado"));
+    }
+
+    @Test
+    void versaoDesconhecidaERecusada() throws IOException {
+        Path arquivo = diretorio.resolve("estado.bin");
+        try (DataOutputStream saida = new DataOutputStream(Files.newOutputStream(arquivo))) {
+            saida.writeInt(FormatoEstadoBinario.MAGICO);
+            saida.writeInt(FormatoEstadoBinario.VERSAO + 1);
+        }
+        assertThrows(IOException.class, () -> FormatoEstadoBinario.ler(arquivo, (e, n, d) -> { }));
+    }
+
+    @Test
+    void jsonNaoEhReconhecidoComoBinario() throws IOException {
+        Path arquivo = diretorio.resolve("estado.json");
+        Files.writeString(arquivo, "{\"servidor\":\"x\"}");
+        assertFalse(FormatoEstadoBinario.ehBinario(arquivo));
+        Files.write(arquivo, new byte[2]);
+        assertFalse(FormatoEstadoBinario.ehBinario(arquivo));
+    }
+}
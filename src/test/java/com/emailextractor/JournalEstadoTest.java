@@ -0,0 +1,87 @@
+package com.emailextractor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalEstadoTest {
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void anexaELeLinhasEmOrdem() throws IOException {
+        JournalEstado journal = new JournalEstado(diretorio.resolve("estado.journal"));
+        assertTrue(journal.vazio());
+        assertEquals(List.of(), journal.lerJournal());
+
+        journal.anexar(List.of("a", "b"));
+        journal.anexar(List.of("c"));
+        assertFalse(journal.vazio());
+        assertEquals(List.of("a", "b", "c"), journal.lerJournal());
+    }
+
+    @Test
+    void descartaALinhaCortadaNoFim() throws IOException {
+        Path arquivo = diretorio.resolve("estado.journal");
+        JournalEstado journal = new JournalEstado(arquivo);
+        journal.anexar(List.of("{\"a\":1}", "{\"b\":2}"));
+        // Escrita interrompida no meio da linha (kill -9 durante a anexação)
+        Files.write(arquivo, "{\"c\":".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        assertEquals(List.of("{\"a\":1}", "{\"b\":2}"), journal.lerJournal());
+
+        // A linha cortada sai do arquivo: a anexação seguinte começa numa linha nova
+        journal.anexar(List.of("{\"d\":4}"));
+        assertEquals(List.of("{\"a\":1}", "{\"b\":2}", "{\"d\":4}"), journal.lerJournal());
+    }
+
+    @Test
+    void compactarTrocaABaseEApagaOJournal() throws IOException {
+        Path base = diretorio.resolve("estado.bin");
+        JournalEstado journal = new JournalEstado(diretorio.resolve("estado.journal"));
+        Files.writeString(base, "antiga");
+        journal.anexar(List.of("linha"));
+
+        journal.compactar(base, saida -> saida.write("nova".getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("nova", Files.readString(base));
+        assertTrue(journal.vazio());
+        assertFalse(Files.exists(diretorio.resolve("estado.bin.tmp")));
+    }
+
+    @Test
+    void falhaNaGravacaoAtomicaPreservaODestino() throws IOException {
+        Path destino = diretorio.resolve("estado.bin");
+        Files.writeString(destino, "integra");
+
+        assertThrows(IOException.class, () -> JournalEstado.gravarAtomicamente(destino, saida -> {
+            saida.write("pela metade".getBytes(StandardCharsets.UTF_8));
+            throw new IOException("disco cheio");
+        }));
+        assertEquals("integra", Files.readString(destino));
+    }
+
+    @Test
+    void precisaCompactarQuandoOJournalPassaDaBase() throws IOException {
+        Path base = diretorio.resolve("estado.bin");
+        Path arquivo = diretorio.resolve("estado.journal");
+        JournalEstado journal = new JournalEstado(arquivo);
+        Files.write(base, new byte[16 * 1024 * 1024]);
+        Files.write(arquivo, new byte[8 * 1024 * 1024]);
+        assertFalse(journal.precisaCompactar(base));
+        Files.write(arquivo, new byte[17 * 1024 * 1024]);
+        assertTrue(journal.precisaCompactar(base));
+    }
+}
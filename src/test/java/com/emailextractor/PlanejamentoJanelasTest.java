@@ -0,0 +1,108 @@
+package com.emailextractor;
+
+import com.icegreen.greenmail.user.GreenMailUser;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.Folder;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Store;
+import jakarta.mail.UIDFolder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Divisão da pasta em janelas de UID a partir das fronteiras buscadas no servidor.
+ */
+class PlanejamentoJanelasTest {
+
+    private static final String USUARIO = "usuario@exemplo.com";
+
+    private GreenMail servidor;
+    private Store store;
+    private Folder inbox;
+
+    @BeforeEach
+    void iniciar() throws MessagingException {
+        servidor = new GreenMail(ServerSetupTest.IMAP.dynamicPort());
+        servidor.start();
+        GreenMailUser usuario = servidor.setUser(USUARIO, USUARIO, "senha");
+        for (int i = 1; i <= 25; i++) {
+            usuario.deliver(GreenMailUtil.createTextEmail(USUARIO, "remetente" + i + "@exemplo.com",
+                    "Assunto " + i, "corpo", servidor.getImap().getServerSetup()));
+        }
+        // Sessão própria: o createStore do GreenMail espera o provedor com.sun.mail, não o Angus
+        store = Session.getInstance(new Properties()).getStore("imap");
+        store.connect("127.0.0.1", servidor.getImap().getPort(), USUARIO, "senha");
+        inbox = store.getFolder("INBOX");
+        inbox.open(Folder.READ_ONLY);
+    }
+
+    @AfterEach
+    void parar() throws MessagingException {
+        if (inbox != null && inbox.isOpen()) {
+            inbox.close(false);
+        }
+        if (store != null) {
+            store.close();
+        }
+        servidor.stop();
+    }
+
+    @Test
+    void divideEmJanelasDeTamanhoFixoComAUltimaAberta() throws MessagingException {
+        List<JanelaUid> janelas = ExtracaoConta.planejarJanelas(inbox, 1, 10);
+
+        assertEquals(3, janelas.size());
+        long[] uids = uids();
+        assertEquals(uids[0], janelas.get(0).inicio);
+        assertEquals(uids[10] - 1, janelas.get(0).fim);
+        assertEquals(uids[10], janelas.get(1).inicio);
+        assertEquals(uids[20] - 1, janelas.get(1).fim);
+        assertEquals(uids[20], janelas.get(2).inicio);
+        assertEquals(UIDFolder.MAXUID, janelas.get(2).fim);
+        assertEquals(10, janelas.get(0).estimativa);
+        assertEquals(5, janelas.get(2).estimativa);
+    }
+
+    @Test
+    void comecaNoCheckpointIgnorandoJanelasJaProcessadas() throws MessagingException {
+        long[] uids = uids();
+        long uidInicial = uids[14];
+
+        List<JanelaUid> janelas = ExtracaoConta.planejarJanelas(inbox, uidInicial, 10);
+
+        assertEquals(2, janelas.size());
+        assertEquals(uidInicial, janelas.get(0).inicio);
+        assertEquals(uids[20] - 1, janelas.get(0).fim);
+        assertEquals(UIDFolder.MAXUID, janelas.get(1).fim);
+    }
+
+    @Test
+    void pastaVaziaNaoTemJanelas() throws MessagingException {
+        Folder vazia = store.getFolder("Vazia");
+        assertTrue(vazia.create(Folder.HOLDS_MESSAGES));
+        vazia.open(Folder.READ_ONLY);
+        try {
+            assertTrue(ExtracaoConta.planejarJanelas(vazia, 1, 10).isEmpty());
+        } finally {
+            vazia.close(false);
+        }
+    }
+
+    private long[] uids() throws MessagingException {
+        long[] uids = new long[inbox.getMessageCount()];
+        for (int i = 0; i < uids.length; i++) {
+            uids[i] = ((UIDFolder) inbox).getUID(inbox.getMessage(i + 1));
+        }
+        return uids;
+    }
+}
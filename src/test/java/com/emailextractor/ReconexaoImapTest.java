@@ -0,0 +1,68 @@
+package com.emailextractor;
+
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.FolderClosedException;
+import jakarta.mail.MessagingException;
+import org.eclipse.angus.mail.iap.CommandFailedException;
+import org.eclipse.angus.mail.iap.ConnectionException;
+import org.eclipse.angus.mail.iap.Response;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReconexaoImapTest {
+
+    @Test
+    void codigoDeLimiteNaRespostaNo() {
+        MessagingException erro = new MessagingException("falhou",
+                new CommandFailedException(new Response("A7 NO [THROTTLED] Account exceeded command limit")));
+        assertTrue(ReconexaoImap.isLimite(erro));
+        assertTrue(ReconexaoImap.isFalhaConexao(erro));
+    }
+
+    @Test
+    void codigoDeLimiteNoLoginRecusado() {
+        assertTrue(ReconexaoImap.isLimite(new AuthenticationFailedException("[UNAVAILABLE] Temporary System Error")));
+        assertFalse(ReconexaoImap.isLimite(new AuthenticationFailedException("[AUTHENTICATIONFAILED] Invalid")));
+    }
+
+    @Test
+    void textoLivreNaoEhLimite() {
+        MessagingException semResposta = new MessagingException("Too many recipients; size exceeded");
+        assertFalse(ReconexaoImap.isLimite(semResposta));
+        assertFalse(ReconexaoImap.isFalhaConexao(semResposta));
+
+        MessagingException semCodigo = new MessagingException("falhou",
+                new CommandFailedException(new Response("A7 NO Too many messages, try again later")));
+        assertFalse(ReconexaoImap.isLimite(semCodigo));
+        assertFalse(ReconexaoImap.isFalhaConexao(semCodigo));
+
+        // Código no meio do texto, não logo depois do status
+        assertFalse(ReconexaoImap.isLimite(new CommandFailedException(new Response("A7 NO fetch failed [LIMIT]"))));
+    }
+
+    @Test
+    void quedasDeConexao() {
+        assertTrue(ReconexaoImap.isFalhaConexao(new FolderClosedException(null)));
+        assertTrue(ReconexaoImap.isFalhaConexao(new MessagingException("x",
+                new ConnectionException(null, new Response("* BYE [UNAVAILABLE] Server shutting down")))));
+        assertTrue(ReconexaoImap.isLimite(
+                new ConnectionException(null, new Response("* BYE [UNAVAILABLE] Server shutting down"))));
+        assertFalse(ReconexaoImap.isFalhaConexao(
+                new ReconexaoImap.TentativasEsgotadas("esgotadas", new FolderClosedException(null))));
+    }
+
+    @Test
+    void esperaDobraAteOTeto() {
+        ReconexaoImap reconexao = new ReconexaoImap(8, 5);
+        for (int falhas = 1; falhas <= 10; falhas++) {
+            long teto = Math.min(5000, 1000L << (falhas - 1));
+            long espera = reconexao.espera(falhas);
+            assertTrue(espera >= teto / 2 && espera <= teto, "espera " + espera + " fora de [" + teto / 2 + ", "
+                    + teto + "]");
+        }
+        assertTrue(reconexao.permite(8));
+        assertFalse(reconexao.permite(9));
+    }
+}
@@ -0,0 +1,188 @@
+package com.emailextractor;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RepositorioContatosCompactoTest {
+
+    private static String[] ler(RepositorioContatos repositorio, String email) {
+        String[] lido = new String[2];
+        assertTrue(repositorio.ler(email, (e, nome, data) -> {
+            lido[0] = nome;
+            lido[1] = Long.toString(data);
+        }), email);
+        return lido;
+    }
+
+    @Test
+    void enderecosComOMesmoHashFicamSeparados() {
+        // "Aa" e "BB" têm o mesmo hashCode, então os endereços colidem na tabela
+        assertEquals("Aa@exemplo.com".hashCode(), "BB@exemplo.com".hashCode());
+        RepositorioContatosCompacto repositorio = new RepositorioContatosCompacto();
+        assertTrue(repositorio.registrar("Aa@exemplo.com", "Primeiro", 10, 1));
+        assertTrue(repositorio.registrar("BB@exemplo.com", "Segundo", 20, 2));
+        assertTrue(repositorio.registrar("AaAa@exemplo.com", "Terceiro", 30, 3));
+        assertTrue(repositorio.registrar("BBBB@exemplo.com", "Quarto", 40, 4));
+
+        assertEquals(4, repositorio.tamanho());
+        assertEquals("Primeiro", ler(repositorio, "Aa@exemplo.com")[0]);
+        assertEquals("Segundo", ler(repositorio, "BB@exemplo.com")[0]);
+        assertEquals("Quarto", ler(repositorio, "BBBB@exemplo.com")[0]);
+        assertFalse(repositorio.ler("AaBB@exemplo.com", (e, nome, data) -> { }));
+    }
+
+    @Test
+    void mesmaParteLocalEmDominiosDiferentesESemDominio() {
+        RepositorioContatosCompacto repositorio = new RepositorioContatosCompacto();
+        repositorio.registrar("ana@a.com", "Ana A", 1, 1);
+        repositorio.registrar("ana@b.com", "Ana B", 2, 2);
+        repositorio.registrar("ana", "Ana local", 3, 3);
+
+        assertEquals(3, repositorio.tamanho());
+        assertEquals("Ana A", ler(repositorio, "ana@a.com")[0]);
+        assertEquals("Ana B", ler(repositorio, "ana@b.com")[0]);
+        assertEquals("Ana local", ler(repositorio, "ana")[0]);
+        assertFalse(repositorio.ler("ana@c.com", (e, nome, data) -> { }));
+    }
+
+    @Test
+    void cresceMantendoTodosOsContatosEAOrdemDeInsercao() {
+        RepositorioContatosCompacto repositorio = new RepositorioContatosCompacto();
+        int total = 200_000;
+        for (int i = 0; i < total; i++) {
+            repositorio.registrar("contato" + i + "@dominio" + (i % 97) + ".com", i % 3 == 0 ? null : "Nome " + i, i, i);
+        }
+        assertEquals(total, repositorio.tamanho());
+        for (int i = 0; i < total; i += 7) {
+            String[] lido = ler(repositorio, "contato" + i + "@dominio" + (i % 97) + ".com");
+            assertEquals(i % 3 == 0 ? "" : "Nome " + i, lido[0]);
+            assertEquals(Long.toString(i), lido[1]);
+        }
+
+        List<String> percorridos = new ArrayList<>();
+        repositorio.paraCada((email, nome, data) -> percorridos.add(email));
+        assertEquals(total, percorridos.size());
+        assertEquals("contato0@dominio0.com", percorridos.get(0));
+        assertEquals("contato" + (total - 1) + "@dominio" + ((total - 1) % 97) + ".com",
+                percorridos.get(total - 1));
+    }
+
+    @Test
+    void dataMaisRecenteENomeDeMenorOrdem() {
+        RepositorioContatosCompacto repositorio = new RepositorioContatosCompacto();
+        assertTrue(repositorio.registrar("x@exemplo.com", null, 100, 50));
+        assertTrue(repositorio.registrar("x@exemplo.com", "Depois", 50, 60));
+        assertEquals("Depois", ler(repositorio, "x@exemplo.com")[0]);
+        assertTrue(repositorio.registrar("x@exemplo.com", "Antes", 10, 40));
+        assertFalse(repositorio.registrar("x@exemplo.com", "Mais tarde", 90, 70));
+        assertFalse(repositorio.registrar("x@exemplo.com", "Antes", 100, 30));
+        assertTrue(repositorio.registrar("x@exemplo.com", null, 200, 80));
+
+        String[] lido = ler(repositorio, "x@exemplo.com");
+        assertEquals("Antes", lido[0]);
+        assertEquals("200", lido[1]);
+    }
+
+    @Test
+    void nomeDeMenorOrdemVenceEmQualquerOrdemDeChegada() {
+        // (ordem, nome): o nome da ordem 1 deve vencer, mesmo repetindo o da ordem 10
+        long[] ordens = {10, 1, 5};
+        String[] nomesChegada = {"A", "A", "B"};
+        int[][] permutacoes = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+        for (RepositorioContatos repositorio : List.of(new RepositorioContatosCompacto(), new RepositorioContatosMapa())) {
+            for (int[] permutacao : permutacoes) {
+                repositorio.limpar();
+                for (int i : permutacao) {
+                    repositorio.registrar("x@exemplo.com", nomesChegada[i], 100, ordens[i]);
+                }
+                assertEquals("A", ler(repositorio, "x@exemplo.com")[0],
+                        repositorio.getClass().getSimpleName() + " " + Arrays.toString(permutacao));
+            }
+        }
+    }
+
+    @Test
+    void mesmoNomeComOrdemMenorNaoContaComoAlteracao() {
+        for (RepositorioContatos repositorio : List.of(new RepositorioContatosCompacto(), new RepositorioContatosMapa())) {
+            assertTrue(repositorio.registrar("x@exemplo.com", "A", 100, 10));
+            assertFalse(repositorio.registrar("x@exemplo.com", "A", 100, 1));
+            // A ordem guardada agora é 1: um nome de ordem 5 não troca mais o nome
+            assertFalse(repositorio.registrar("x@exemplo.com", "B", 100, 5));
+            assertEquals("A", ler(repositorio, "x@exemplo.com")[0]);
+        }
+    }
+
+    @Test
+    void restaurarSubstituiONomeEMesclaAData() {
+        RepositorioContatosCompacto repositorio = new RepositorioContatosCompacto();
+        repositorio.registrar("x@exemplo.com", "Extraído", 100, 5);
+        repositorio.restaurar("x@exemplo.com", "Gravado", 50);
+        repositorio.restaurar("x@exemplo.com", null, 70);
+        assertEquals("Gravado", ler(repositorio, "x@exemplo.com")[0]);
+        assertEquals("100", ler(repositorio, "x@exemplo.com")[1]);
+        // Restaurado fica com ordem 0: nenhuma mensagem nova troca o nome
+        assertFalse(repositorio.registrar("x@exemplo.com", "Outro", 80, 1));
+        assertEquals("Gravado", ler(repositorio, "x@exemplo.com")[0]);
+    }
+
+    @Test
+    void textoMaiorQueUmaPagina() {
+        RepositorioContatosCompacto repositorio = new RepositorioContatosCompacto();
+        String nomeGrande = "n".repeat(3 * 1024 * 1024);
+        repositorio.registrar("antes@exemplo.com", "Antes", 1, 1);
+        repositorio.registrar("grande@exemplo.com", nomeGrande, 2, 2);
+        repositorio.registrar("depois@exemplo.com", "Depois ção", 3, 3);
+
+        assertEquals(nomeGrande, ler(repositorio, "grande@exemplo.com")[0]);
+        assertEquals("Antes", ler(repositorio, "antes@exemplo.com")[0]);
+        assertEquals("Depois ção", ler(repositorio, "depois@exemplo.com")[0]);
+    }
+
+    @Test
+    void limparEsvaziaEPermiteReusar() {
+        RepositorioContatosCompacto repositorio = new RepositorioContatosCompacto();
+        for (int i = 0; i < 5000; i++) {
+            repositorio.registrar("c" + i + "@exemplo.com", "N" + i, i, i);
+        }
+        repositorio.limpar();
+        assertEquals(0, repositorio.tamanho());
+        assertFalse(repositorio.ler("c1@exemplo.com", (e, nome, data) -> { }));
+        repositorio.registrar("c1@exemplo.com", "Novo", 1, 1);
+        assertEquals("Novo", ler(repositorio, "c1@exemplo.com")[0]);
+    }
+
+    @Test
+    void mesmoResultadoQueOMapa() {
+        RepositorioContatosCompacto compacto = new RepositorioContatosCompacto();
+        RepositorioContatosMapa mapa = new RepositorioContatosMapa();
+        Random aleatorio = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            String email = "u" + aleatorio.nextInt(5000) + "@d" + aleatorio.nextInt(20) + ".com";
+            String nome = aleatorio.nextInt(4) == 0 ? null : "Nome " + aleatorio.nextInt(10);
+            long data = aleatorio.nextInt(1_000_000);
+            long ordem = aleatorio.nextInt(100_000);
+            if (aleatorio.nextInt(10) == 0) {
+                compacto.restaurar(email, nome, data);
+                mapa.restaurar(email, nome, data);
+            } else {
+                assertEquals(mapa.registrar(email, nome, data, ordem), compacto.registrar(email, nome, data, ordem));
+            }
+        }
+
+        Map<String, String> esperado = new HashMap<>();
+        mapa.paraCada((email, nome, data) -> esperado.put(email, (nome == null ? "" : nome) + "|" + data));
+        Map<String, String> obtido = new HashMap<>();
+        compacto.paraCada((email, nome, data) -> obtido.put(email, nome + "|" + data));
+        assertEquals(esperado, obtido);
+    }
+}
@@ -0,0 +1,92 @@
+package com.emailextractor;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RepositorioContatosIndiceTest {
+
+    @TempDir
+    Path diretorio;
+
+    @Test
+    void checkpointGuardaAssinaturaEFilaDeFalhas() throws IOException {
+        Path arquivo = diretorio.resolve("indice");
+        TreeMap<Long, Integer> falhas = new TreeMap<>(Map.of(17L, 2, 5L, 1));
+
+        RepositorioContatosIndice indice = RepositorioContatosIndice.abrir(arquivo);
+        try {
+            indice.registrarCheckpoint("conta", "perfil", "INBOX", 7, 50,
+                    new AssinaturaPasta(7, 51, 50, 0), falhas);
+            indice.registrarCheckpoint("conta", "perfil", "Lixo", 9, 0, null, new TreeMap<>());
+            indice.sincronizar();
+        } finally {
+            indice.fechar();
+        }
+
+        Map<String, Object[]> lidos = new HashMap<>();
+        indice = RepositorioContatosIndice.abrir(arquivo);
+        try {
+            indice.lerCheckpoints("conta", "perfil", (pasta, uidValidity, ultimoUid, assinatura, lidas) ->
+                    lidos.put(pasta, new Object[]{uidValidity, ultimoUid, assinatura, lidas}));
+            indice.lerCheckpoints("conta", "outro perfil", (pasta, uidValidity, ultimoUid, assinatura, lidas) ->
+                    lidos.put("outro perfil", null));
+        } finally {
+            indice.fechar();
+        }
+
+        assertEquals(2, lidos.size());
+        Object[] inbox = lidos.get("INBOX");
+        assertEquals(50L, inbox[1]);
+        assertTrue(((AssinaturaPasta) inbox[2]).identica(new AssinaturaPasta(7, 51, 50, 0)));
+        assertEquals(falhas, inbox[3]);
+        Object[] lixo = lidos.get("Lixo");
+        assertNull(lixo[2]);
+        assertTrue(((TreeMap<?, ?>) lixo[3]).isEmpty());
+    }
+
+    @Test
+    void nomeDeMenorOrdemVenceDentroEEntreLotes() throws IOException {
+        // (ordem, nome): o nome da ordem 1 deve vencer, mesmo repetindo o da ordem 10
+        long[] ordens = {10, 1, 5};
+        String[] nomes = {"A", "A", "B"};
+        int[][] permutacoes = {{0, 1, 2}, {0, 2, 1}, {1, 0, 2}, {1, 2, 0}, {2, 0, 1}, {2, 1, 0}};
+
+        RepositorioContatosIndice indice = RepositorioContatosIndice.abrir(diretorio.resolve("indice"));
+        try {
+            for (int p = 0; p < permutacoes.length; p++) {
+                // Todas as ocorrências no mesmo lote: mescladas no Pendente
+                for (int i : permutacoes[p]) {
+                    indice.registrar("lote" + p + "@exemplo.com", nomes[i], 100, ordens[i]);
+                }
+                // Uma ocorrência por lote: mescladas pelo MERGE
+                for (int i : permutacoes[p]) {
+                    indice.registrar("merge" + p + "@exemplo.com", nomes[i], 100, ordens[i]);
+                    indice.sincronizar();
+                }
+            }
+            indice.sincronizar();
+
+            for (int p = 0; p < permutacoes.length; p++) {
+                for (String prefixo : new String[]{"lote", "merge"}) {
+                    String email = prefixo + p + "@exemplo.com";
+                    String[] nome = new String[1];
+                    assertTrue(indice.ler(email, (e, n, d) -> nome[0] = n));
+                    assertEquals("A", nome[0], email + " " + Arrays.toString(permutacoes[p]));
+                }
+            }
+        } finally {
+            indice.fechar();
+        }
+    }
+}